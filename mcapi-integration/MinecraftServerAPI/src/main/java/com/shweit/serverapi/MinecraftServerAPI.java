@@ -11,7 +11,15 @@ package com.shweit.serverapi;
 
 import com.shweit.serverapi.commands.RegisterCommands;
 import com.shweit.serverapi.endpoints.RegisterEndpoints;
+import com.shweit.serverapi.jobs.JobManager;
+import com.shweit.serverapi.metrics.MetricsCollector;
+import com.shweit.serverapi.state.StateCache;
+import com.shweit.serverapi.stats.LeaderboardIndex;
+import com.shweit.serverapi.stats.StatsService;
 import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.PlayerDirectory;
+import com.shweit.serverapi.utils.TickSampler;
+import com.shweit.serverapi.utils.UUIDResolver;
 import com.shweit.serverapi.webhooks.RegisterWebHooks;
 import com.shweit.serverapi.webhooks.server.ServerStop;
 import fi.iki.elonen.NanoHTTPD;
@@ -22,6 +30,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import com.shweit.serverapi.listeners.PlayerLoginListener;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 public class MinecraftServerAPI extends JavaPlugin  {
 
@@ -30,6 +39,14 @@ public class MinecraftServerAPI extends JavaPlugin  {
     public static FileConfiguration config;
     public static String pluginName = "MinecraftServerAPI";
     private static MinecraftServerAPI instance;
+    private static UUIDResolver uuidResolver;
+    private static PlayerDirectory playerDirectory;
+    private static TickSampler tickSampler;
+    private static StateCache stateCache;
+    private static JobManager jobManager;
+    private static StatsService statsService;
+    private static LeaderboardIndex leaderboardIndex;
+    private static MetricsCollector metricsCollector;
 
     private static boolean blockNewConnections = false;
     private static String blockNewConnectionsMessage;
@@ -57,10 +74,54 @@ public class MinecraftServerAPI extends JavaPlugin  {
             return;
         }
 
+        uuidResolver = new UUIDResolver(
+                getServer().getWorldContainer(),
+                getDataFolder(),
+                getConfig().getInt("uuid_cache.max_size", 10000),
+                TimeUnit.HOURS.toMillis(getConfig().getLong("uuid_cache.ttl_hours", 24)),
+                TimeUnit.MINUTES.toMillis(getConfig().getLong("uuid_cache.negative_ttl_minutes", 5)),
+                getConfig().getInt("uuid_cache.max_concurrent_requests", 4)
+        );
+        getServer().getPluginManager().registerEvents(uuidResolver, this);
+
+        playerDirectory = new PlayerDirectory(getServer().getWorlds().get(0).getWorldFolder(), getServer().getWorldContainer(), getDataFolder());
+        getServer().getPluginManager().registerEvents(playerDirectory, this);
+        playerDirectory.build(this);
+
+        tickSampler = new TickSampler();
+        tickSampler.start(this);
+
+        stateCache = new StateCache();
+        stateCache.start(this, getConfig().getLong("state_cache.interval_ticks", 20));
+        getServer().getPluginManager().registerEvents(stateCache, this);
+
+        jobManager = JobManager.fromConfig(getConfig());
+
+        statsService = new StatsService(
+                new File(getServer().getWorlds().get(0).getWorldFolder(), "stats"),
+                TimeUnit.SECONDS.toMillis(getConfig().getLong("stats.cache_seconds", 30)),
+                getConfig().getInt("stats.cache_size", 1000)
+        );
+        getServer().getPluginManager().registerEvents(statsService, this);
+
+        leaderboardIndex = new LeaderboardIndex(
+                statsService.getKeys(),
+                statsService.getStatsFolder(),
+                getServer().getWorldContainer(),
+                getConfig().getInt("leaderboards.size", 100)
+        );
+        leaderboardIndex.start(this, getConfig().getLong("leaderboards.scan_interval_seconds", 60) * 20L);
+
         int port = getConfig().getInt("port", DEFAULT_PORT);
         server = new WebServer(port, authEnabled, authKey);
 
         new RegisterEndpoints(server).registerEndpoints();
+        if (server.getResponseCache() != null) {
+            getServer().getPluginManager().registerEvents(server.getResponseCache(), this);
+        }
+
+        metricsCollector = new MetricsCollector(server, getServer().getWorldContainer());
+        metricsCollector.start(this, getConfig().getLong("metrics.interval_seconds", 15) * 20L);
 
         new RegisterWebHooks().registerWebHooks();
 
@@ -78,6 +139,35 @@ public class MinecraftServerAPI extends JavaPlugin  {
     @Override
     public final void onDisable() {
         new ServerStop().register();
+        RegisterWebHooks.shutdown();
+
+        if (uuidResolver != null) {
+            uuidResolver.save();
+        }
+
+        if (playerDirectory != null) {
+            playerDirectory.save();
+        }
+
+        if (tickSampler != null) {
+            tickSampler.stop();
+        }
+
+        if (stateCache != null) {
+            stateCache.stop();
+        }
+
+        if (jobManager != null) {
+            jobManager.shutdown();
+        }
+
+        if (leaderboardIndex != null) {
+            leaderboardIndex.stop();
+        }
+
+        if (metricsCollector != null) {
+            metricsCollector.stop();
+        }
 
         if (server != null) {
             server.stop();
@@ -96,6 +186,42 @@ public class MinecraftServerAPI extends JavaPlugin  {
         return instance;
     }
 
+    public WebServer getWebServer() {
+        return server;
+    }
+
+    public static TickSampler getTickSampler() {
+        return tickSampler;
+    }
+
+    public static StateCache getStateCache() {
+        return stateCache;
+    }
+
+    public static JobManager getJobManager() {
+        return jobManager;
+    }
+
+    public static StatsService getStatsService() {
+        return statsService;
+    }
+
+    public static LeaderboardIndex getLeaderboardIndex() {
+        return leaderboardIndex;
+    }
+
+    public static MetricsCollector getMetricsCollector() {
+        return metricsCollector;
+    }
+
+    public static UUIDResolver getUUIDResolver() {
+        return uuidResolver;
+    }
+
+    public static PlayerDirectory getPlayerDirectory() {
+        return playerDirectory;
+    }
+
     private void registerEvents() {
         getServer().getPluginManager().registerEvents(new PlayerLoginListener(), this);
     }
@@ -1,31 +1,83 @@
 package com.shweit.serverapi;
 
+import com.shweit.serverapi.metrics.HttpMetrics;
+import com.shweit.serverapi.metrics.RequestTrace;
+import com.shweit.serverapi.utils.BoundedAsyncRunner;
 import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.ResponseCache;
+import com.shweit.serverapi.utils.ResponseCompressor;
 import com.shweit.serverapi.utils.RouteDefinition;
+import com.shweit.serverapi.utils.RouteTrie;
+import com.shweit.serverapi.utils.StaticAsset;
 import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public final class WebServer extends NanoHTTPD {
+    /**
+     * Request headers are passed to the handlers as parameters with this prefix and a lower-case name.
+     */
+    public static final String HEADER_PREFIX = "header.";
+
+    public static final String METRICS_PATH = "/metrics";
+
     private final boolean isAuthenticated;
     private final String authKey;
-    private final List<RouteDefinition> routes = new ArrayList<>();
+    private final RouteTrie routes = new RouteTrie();
+    private final BoundedAsyncRunner connectionRunner;
+    private final HttpMetrics httpMetrics;
+    private final ResponseCache responseCache;
+    private final ResponseCompressor responseCompressor;
+    private final Map<String, StaticAsset> staticAssets = new ConcurrentHashMap<>();
 
     public WebServer(final int port, final boolean authenticationEnabled, final String authenticationKey) {
         super(port);
         this.isAuthenticated = authenticationEnabled;
         this.authKey = authenticationKey;
+
+        int maxConnections = MinecraftServerAPI.config.getInt("http.max_connections", 32);
+        this.connectionRunner = new BoundedAsyncRunner(
+                maxConnections,
+                MinecraftServerAPI.config.getInt("http.queue_size", 64),
+                MinecraftServerAPI.config.getBoolean("http.virtual_threads", false)
+        );
+        setAsyncRunner(connectionRunner);
+
+        this.httpMetrics = new HttpMetrics(
+                MinecraftServerAPI.config.getLong("http.slow_request_ms", 1000),
+                MinecraftServerAPI.config.getInt("http.slow_request_log_size", 100)
+        );
+        this.responseCache = MinecraftServerAPI.config.getBoolean("response_cache.enabled", true)
+                ? new ResponseCache(MinecraftServerAPI.config.getInt("response_cache.max_entries", 1000))
+                : null;
+        // Each connection compresses one response at a time, so there is never a need for more deflaters than workers
+        this.responseCompressor = MinecraftServerAPI.config.getBoolean("http.compression.enabled", true)
+                ? new ResponseCompressor(
+                        MinecraftServerAPI.config.getInt("http.compression.level", 6),
+                        MinecraftServerAPI.config.getInt("http.compression.min_size", 1024),
+                        maxConnections)
+                : null;
     }
 
     @Override
     public Response serve(final IHTTPSession session) {
         String uri = session.getUri();
         NanoHTTPD.Method method = session.getMethod();
+        RequestTrace trace = httpMetrics.startRequest(method.name(), uri);
         Map<String, String> params = new HashMap<>();
         boolean swaggerDocumentation = MinecraftServerAPI.config.getBoolean("swagger", true);
 
@@ -34,19 +86,27 @@ public final class WebServer extends NanoHTTPD {
         // Handle Swagger documentation and static files
         Response swaggerResponse = handleSwaggerDocumentation(uri, session, swaggerDocumentation);
         if (swaggerResponse != null) {
-            return swaggerResponse;
+            trace.endPhase(HttpMetrics.Phase.HANDLER);
+            return complete(session, trace, httpMetrics.getStaticFiles(), swaggerResponse);
         }
 
+        // Requests are counted per route pattern, not per URI
+        RouteTrie.Match match = routes.find(uri, method);
+        HttpMetrics.RouteStats routeStats = match != null ? httpMetrics.get(match.getRoute()) : httpMetrics.getUnmatched();
+
         // Handle authentication
         if (isAuthenticated && !isAllowedPath(uri, swaggerDocumentation)) {
             Response authResponse = handleAuthentication(session, uri);
             if (authResponse != null) {
-                return authResponse;
+                trace.endPhase(HttpMetrics.Phase.AUTH);
+                return complete(session, trace, routeStats, authResponse);
             }
         }
+        trace.endPhase(HttpMetrics.Phase.AUTH);
 
-        // Extract query parameters
+        // Extract query parameters and request headers
         extractQueryParams(session, params);
+        session.getHeaders().forEach((name, value) -> params.put(HEADER_PREFIX + name, value));
         
         // Extract body for POST requests
         if (method == Method.POST || method == Method.PUT) {
@@ -63,9 +123,30 @@ public final class WebServer extends NanoHTTPD {
                 Logger.error("Failed to parse request body: " + e.getMessage());
             }
         }
+        trace.endPhase(HttpMetrics.Phase.BODY);
 
         // Match routes and return appropriate response
-        return handleRouteMatching(uri, method, params);
+        Response response = handleRouteMatching(uri, method, match, params);
+        trace.endPhase(HttpMetrics.Phase.HANDLER);
+        return complete(session, trace, routeStats, response);
+    }
+
+    /**
+     * Compresses the response if the client accepts it and records the request once NanoHTTPD has written
+     * the response, which it signals by closing the response data.
+     */
+    private Response complete(final IHTTPSession session, final RequestTrace trace, final HttpMetrics.RouteStats routeStats, final Response response) {
+        trace.setResult(routeStats, response.getStatus().getRequestStatus());
+        if (responseCompressor != null) {
+            responseCompressor.compress(response, session.getHeaders().get("accept-encoding"));
+        }
+        if (response.getData() == null || "text/event-stream".equals(response.getMimeType())) {
+            // An event stream stays open until the client leaves, which is not latency
+            trace.complete();
+        } else {
+            response.setData(new TracedInputStream(response.getData(), trace));
+        }
+        return response;
     }
 
     // Method to handle Swagger documentation and static files
@@ -73,9 +154,9 @@ public final class WebServer extends NanoHTTPD {
         String finalUri = uri;
         if (swaggerDocumentation) {
             if ("/api-docs".equalsIgnoreCase(finalUri)) {
-                InputStream apiSpecStream = getClass().getResourceAsStream("/api.yaml");
-                if (apiSpecStream != null) {
-                    return newChunkedResponse(Response.Status.OK, "application/yaml", apiSpecStream);
+                StaticAsset apiSpec = getStaticAsset("/api.yaml", "application/yaml");
+                if (apiSpec != null) {
+                    return apiSpec.toResponse(session.getHeaders().get("if-none-match"), session.getHeaders().get("accept-encoding"));
                 } else {
                     return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "API documentation not found");
                 }
@@ -85,10 +166,9 @@ public final class WebServer extends NanoHTTPD {
                 if ("/".equals(finalUri)) {
                     finalUri = "/index.html"; // Redirect to the main Swagger UI page
                 }
-                InputStream resourceStream = getClass().getResourceAsStream("/swagger" + finalUri);
-                if (resourceStream != null) {
-                    String mimeType = determineMimeType(finalUri);
-                    return newChunkedResponse(Response.Status.OK, mimeType, resourceStream);
+                StaticAsset asset = getStaticAsset("/swagger" + finalUri, determineMimeType(finalUri));
+                if (asset != null) {
+                    return asset.toResponse(session.getHeaders().get("if-none-match"), session.getHeaders().get("accept-encoding"));
                 } else {
                     Logger.debug("Resource not found: " + finalUri);
                     return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "Route not Found");
@@ -98,6 +178,17 @@ public final class WebServer extends NanoHTTPD {
         return null;
     }
 
+    /**
+     * @return the file from the plugin jar, read on first use, or null if there is no such file
+     */
+    private StaticAsset getStaticAsset(final String resource, final String mimeType) {
+        StaticAsset asset = staticAssets.get(resource);
+        if (asset == null) {
+            asset = staticAssets.computeIfAbsent(resource, path -> StaticAsset.load(path, mimeType));
+        }
+        return asset;
+    }
+
     // Method to handle authentication
     private Response handleAuthentication(final IHTTPSession session, final String uri) {
         String authHeader = session.getHeaders().get("authorization");
@@ -116,28 +207,105 @@ public final class WebServer extends NanoHTTPD {
                 "/favicon-32x32.png", "/swagger-ui.css.map", "/favicon-16x16.png"
         ) : List.of();
 
+        // For scrapers that cannot send the key as a header, the metrics alone may be served without it
+        if (uri.equals(METRICS_PATH) && !MinecraftServerAPI.config.getBoolean("metrics.require_auth", true)) {
+            return true;
+        }
+
         return allowedPaths.stream().anyMatch(path -> uri.equals(path) || uri.startsWith("/swagger"));
     }
 
     // Method to extract query parameters
     private void extractQueryParams(final IHTTPSession session, final Map<String, String> params) {
         if (session.getQueryParameterString() != null) {
-            session.getParameters().forEach((key, value) -> params.put(key, value.get(0)));
+            session.getParameters().forEach((key, value) -> {
+                if (!key.startsWith(HEADER_PREFIX)) {
+                    params.put(key, value.get(0));
+                }
+            });
         }
     }
 
     // Method to handle route matching
-    private Response handleRouteMatching(final String uri, final NanoHTTPD.Method method, final Map<String, String> params) {
-        for (RouteDefinition route : routes) {
-            if (route.matches(uri, method, params)) {
-                return route.getHandler().apply(params);
-            }
+    private Response handleRouteMatching(final String uri, final NanoHTTPD.Method method, final RouteTrie.Match match, final Map<String, String> params) {
+        if (match != null) {
+            return call(match, params);
         }
+
+        Set<NanoHTTPD.Method> allowedMethods = routes.allowedMethods(uri);
+        if (!allowedMethods.isEmpty()) {
+            Logger.debug("Method " + method + " not allowed for: " + uri);
+            Response response = newFixedLengthResponse(Response.Status.METHOD_NOT_ALLOWED, MIME_PLAINTEXT, "Method Not Allowed");
+            response.addHeader("Allow", allowedMethods.stream().map(Enum::name).collect(Collectors.joining(", ")));
+            return response;
+        }
+
         Logger.debug("No route found for: " + uri + " with method: " + method);
         return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Not Found");
     }
 
 
+    // Responses are compressed by the ResponseCompressor, which reuses its deflaters and skips small bodies
+    @Override
+    protected boolean useGzipWhenAccepted(final Response r) {
+        return false;
+    }
+
+    @Override
+    protected ClientHandler createClientHandler(final Socket finalAccept, final InputStream inputStream) {
+        return new ConnectionHandler(inputStream, finalAccept);
+    }
+
+    /**
+     * Finds the route of a request that did not arrive over HTTP, such as a request in a batch.
+     *
+     * @return the route and its path parameters, or null if no route matches
+     */
+    public RouteTrie.Match findRoute(final String uri, final NanoHTTPD.Method method) {
+        return routes.find(uri, method);
+    }
+
+    /**
+     * Calls the handler of a matched route with the path parameters added to {@code params}, serving it from the response cache if the route allows it.
+     */
+    public Response call(final RouteTrie.Match match, final Map<String, String> params) {
+        params.putAll(match.getParams());
+        RouteDefinition route = match.getRoute();
+        if (responseCache == null || route.getCachePolicy() == null) {
+            return route.getHandler().apply(params);
+        }
+
+        Response cached = responseCache.get(route, params);
+        return cached != null ? cached : responseCache.load(route, params);
+    }
+
+    /**
+     * Returns a request header from the parameters passed to a handler, or null.
+     */
+    public static String getHeader(final Map<String, String> params, final String name) {
+        return params.get(HEADER_PREFIX + name.toLowerCase());
+    }
+
+    public JSONObject getConnectionStats() {
+        return connectionRunner.getStats();
+    }
+
+    public HttpMetrics getHttpMetrics() {
+        return httpMetrics;
+    }
+
+    public JSONObject getHttpStats() {
+        JSONArray routeStats = new JSONArray();
+        for (HttpMetrics.RouteStats route : httpMetrics.getRoutes()) {
+            routeStats.put(route.toJson());
+        }
+
+        JSONObject stats = new JSONObject();
+        stats.put("routes", routeStats);
+        stats.put("slowRequests", httpMetrics.getSlowRequests().toJson());
+        return stats;
+    }
+
     // Method to determine MIME type
     private String determineMimeType(final String uri) {
         if (uri.endsWith(".html")) return "text/html";
@@ -150,4 +318,73 @@ public final class WebServer extends NanoHTTPD {
     public void addRoute(final NanoHTTPD.Method method, final String routePattern, final Function<Map<String, String>, Response> handler) {
         routes.add(new RouteDefinition(method, routePattern, handler));
     }
+
+    /**
+     * Adds a route whose successful responses are kept in the response cache as long as the policy allows.
+     */
+    public void addCachedRoute(final NanoHTTPD.Method method, final String routePattern, final Function<Map<String, String>, Response> handler,
+                               final ResponseCache.Policy policy) {
+        routes.add(new RouteDefinition(method, routePattern, handler, responseCache == null ? null : policy));
+    }
+
+    /**
+     * @return the response cache, or null if it is disabled
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Completes the trace of a request when NanoHTTPD closes the response after sending it.
+     */
+    private static final class TracedInputStream extends FilterInputStream {
+        private final RequestTrace trace;
+
+        private TracedInputStream(final InputStream data, final RequestTrace requestTrace) {
+            super(data);
+            this.trace = requestTrace;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                trace.complete();
+            }
+        }
+    }
+
+    /**
+     * Answers connections the runner cannot take anymore with a 503 instead of just closing them.
+     */
+    private final class ConnectionHandler extends ClientHandler implements BoundedAsyncRunner.Rejectable {
+        private static final byte[] BUSY_BODY = "{\"error\":\"Too many concurrent requests, try again later.\"}".getBytes(StandardCharsets.UTF_8);
+
+        private final Socket socket;
+
+        private ConnectionHandler(final InputStream inputStream, final Socket acceptSocket) {
+            super(inputStream, acceptSocket);
+            this.socket = acceptSocket;
+        }
+
+        @Override
+        public void reject() {
+            String head = "HTTP/1.1 503 Service Unavailable\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + BUSY_BODY.length + "\r\n"
+                    + "Retry-After: 1\r\n"
+                    + "Connection: close\r\n\r\n";
+            try {
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write(head.getBytes(StandardCharsets.US_ASCII));
+                outputStream.write(BUSY_BODY);
+                outputStream.flush();
+            } catch (IOException e) {
+                Logger.debug("Could not answer rejected connection: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+    }
 }
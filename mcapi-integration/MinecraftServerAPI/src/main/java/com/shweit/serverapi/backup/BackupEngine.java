@@ -0,0 +1,662 @@
+package com.shweit.serverapi.backup;
+
+import com.shweit.serverapi.jobs.JobProgress;
+import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.MainThreadExecutor;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Creates a zip or incremental backup of a list of files and directories.
+ * <p>
+ *     Before anything is read, auto-save is disabled and all worlds are saved on the server
+ *     thread with {@code save-all flush}, which also waits until the chunk IO is written, so the
+ *     region files on disk are complete and stay unchanged while they are read. Only then are the
+ *     files listed, so files written by the save are included with their final size.
+ *     The files are then compressed in parallel: every worker deflates whole files into its own
+ *     spool file. Once all files are read the snapshot is complete and auto-save is restored;
+ *     backups that run at the same time share one freeze, so auto-save only comes back once the
+ *     last of them has read its files;
+ *     only then are the spooled entries stitched into the archive, which does not touch the
+ *     world anymore. Files with one of the configured extensions (by default already compressed
+ *     data such as region files) are stored instead of deflated.
+ * </p>
+ * <p>
+ *     A file that cannot be read, for example because it was deleted or is locked, is skipped with
+ *     a warning. Errors while writing the spool, the archive or the chunk store fail the backup.
+ * </p>
+ * <p>
+ *     Incremental backups use the same snapshot, but split every file into content-defined chunks
+ *     that are added to a {@link ChunkStore}; the backup itself is only a {@link BackupManifest}.
+ *     Snapshots are zip backups in which region files are replaced by {@link RegionDelta}s.
+ * </p>
+ */
+public final class BackupEngine implements JobProgress {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Auto-save is frozen once for all running backups. Only touched on the server thread
+    private static int frozenBackups;
+    private static List<World> frozenWorlds = List.of();
+
+    private final Settings settings;
+    private final List<String> sources;
+    private final String excludedPath;
+
+    private final AtomicInteger filesTotal = new AtomicInteger();
+    private final AtomicInteger filesDone = new AtomicInteger();
+    private final AtomicLong bytesTotal = new AtomicLong();
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    /**
+     * @param backupSettings compression settings
+     * @param paths files and directories to back up, relative to the server directory
+     * @param excludedFolder a folder that is never included, usually the backup folder itself
+     */
+    public BackupEngine(final Settings backupSettings, final List<String> paths, final File excludedFolder) {
+        this.settings = backupSettings;
+        this.sources = paths;
+        this.excludedPath = excludedFolder.getAbsolutePath();
+    }
+
+    /**
+     * Writes the backup to {@code target}, which must not exist yet.
+     */
+    public void createBackup(final File target) throws IOException, InterruptedException {
+        writeArchive(target, null, null);
+    }
+
+    /**
+     * Writes a snapshot to {@code target}: like a zip backup, but every region file is replaced by a
+     * {@link RegionDelta} holding only the chunks saved since the snapshot the headers in {@code previous} belong to.
+     *
+     * @param previous the region headers of the previous snapshot, empty to write base deltas of all regions
+     * @param metadata the content of {@link RegionSnapshots#METADATA_ENTRY}
+     */
+    public void createSnapshot(final File target, final Map<String, RegionDelta.Header> previous, final byte[] metadata)
+            throws IOException, InterruptedException {
+        writeArchive(target, previous, metadata);
+    }
+
+    private void writeArchive(final File target, final Map<String, RegionDelta.Header> previousRegions, final byte[] metadata)
+            throws IOException, InterruptedException {
+        long created = System.currentTimeMillis() / 1000;
+
+        Path spoolDirectory = Files.createTempDirectory(target.getAbsoluteFile().getParentFile().toPath(), ".spool-");
+        List<SpoolWorker> workers = new ArrayList<>();
+        try {
+            AtomicInteger spoolNumber = new AtomicInteger();
+            List<Task> tasks = processFrozen(() -> {
+                SpoolWorker worker = new SpoolWorker(spoolDirectory.resolve("spool-" + spoolNumber.getAndIncrement()), previousRegions, created);
+                synchronized (workers) {
+                    workers.add(worker);
+                }
+                return worker;
+            });
+
+            try (ZipArchiveWriter writer = new ZipArchiveWriter(target.toPath())) {
+                if (metadata != null) {
+                    writer.addEntry(RegionSnapshots.METADATA_ENTRY, metadata, created * 1000);
+                }
+                for (Task task : tasks) {
+                    if (task.directory) {
+                        writer.addDirectory(task.name, task.lastModified);
+                    } else if (task.spool != null) {
+                        writer.addEntry(task.entryName, task.method, task.crc, task.size, task.compressedSize, task.lastModified, task.spool, task.offset);
+                    }
+                }
+            }
+        } finally {
+            for (SpoolWorker worker : workers) {
+                worker.closeSpool();
+            }
+            deleteSpoolDirectory(spoolDirectory);
+        }
+    }
+
+    /**
+     * Creates an incremental backup: the content of every file is split into chunks that are added to
+     * {@code store} unless it holds them already, and the returned manifest lists the chunks of every file.
+     * Files whose size and modification time match {@code previous} are not read again.
+     *
+     * @param previous the manifest of the latest incremental backup, or null
+     */
+    public BackupManifest createIncrementalBackup(final String name, final ChunkStore store, final BackupManifest previous) throws IOException, InterruptedException {
+        Map<String, BackupManifest.Entry> previousEntries = new HashMap<>();
+        if (previous != null) {
+            for (BackupManifest.Entry entry : previous.getEntries()) {
+                previousEntries.put(entry.path(), entry);
+            }
+        }
+
+        List<Task> tasks = processFrozen(() -> new ChunkWorker(store, previousEntries));
+
+        List<BackupManifest.Entry> entries = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (task.directory) {
+                entries.add(new BackupManifest.Entry(task.name, true, 0, task.lastModified, List.of()));
+            } else if (task.chunks != null) {
+                entries.add(new BackupManifest.Entry(task.name, false, task.size, task.lastModified, task.chunks));
+            }
+        }
+        return new BackupManifest(name, System.currentTimeMillis(), entries);
+    }
+
+    private List<Task> collectAll() {
+        List<Task> tasks = new ArrayList<>();
+        for (String path : sources) {
+            File file = new File(path);
+            if (file.exists()) {
+                collect(file, file.getName(), tasks);
+            }
+        }
+        filesTotal.set((int) tasks.stream().filter(task -> !task.directory).count());
+        return tasks;
+    }
+
+    /**
+     * Saves the worlds and disables auto-save, if configured, then lists and processes all files in parallel.
+     *
+     * @return the processed tasks
+     */
+    private List<Task> processFrozen(final WorkerFactory workerFactory) throws IOException, InterruptedException {
+        if (!settings.disableAutoSave()) {
+            List<Task> tasks = collectAll();
+            process(tasks, workerFactory);
+            return tasks;
+        }
+
+        freezeWorlds();
+        try {
+            List<Task> tasks = collectAll();
+            process(tasks, workerFactory);
+            return tasks;
+        } finally {
+            releaseWorlds();
+        }
+    }
+
+    private void collect(final File file, final String name, final List<Task> tasks) {
+        if (file.isHidden() || file.getAbsolutePath().startsWith(excludedPath)) {
+            return;
+        }
+
+        if (file.isDirectory()) {
+            tasks.add(new Task(file, name, true));
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collect(child, name + "/" + child.getName(), tasks);
+                }
+            }
+            return;
+        }
+
+        tasks.add(new Task(file, name, false));
+        bytesTotal.addAndGet(file.length());
+    }
+
+    /**
+     * Disables auto-save unless another backup already did, and writes all worlds to disk.
+     * Every call that returns must be followed by {@link #releaseWorlds()}.
+     */
+    private void freezeWorlds() throws IOException, InterruptedException {
+        AtomicBoolean joined = new AtomicBoolean();
+        CompletableFuture<Void> future = MainThreadExecutor.supply(() -> {
+            joined.set(true);
+            if (frozenBackups++ == 0) {
+                List<World> disabled = new ArrayList<>();
+                for (World world : Bukkit.getWorlds()) {
+                    if (world.isAutoSave()) {
+                        world.setAutoSave(false);
+                        disabled.add(world);
+                    }
+                }
+                frozenWorlds = disabled;
+            }
+
+            // World.save() only queues the chunks, "save-all flush" returns once they are written
+            if (!Bukkit.dispatchCommand(Bukkit.getConsoleSender(), "save-all flush")) {
+                Logger.warning("save-all flush failed, region files may be incomplete in the backup");
+                Bukkit.getWorlds().forEach(World::save);
+            }
+            return null;
+        });
+
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            // The task may still run on the server thread, its freeze is released once it did
+            future.whenComplete((ignored, error) -> {
+                if (joined.get()) {
+                    releaseWorlds();
+                }
+            });
+            throw e;
+        } catch (ExecutionException e) {
+            if (joined.get()) {
+                releaseWorlds();
+            }
+            throw new IOException("Could not save the worlds before the backup: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Leaves the freeze and re-enables auto-save if no other backup is still reading.
+     */
+    private static void releaseWorlds() {
+        MainThreadExecutor.supply(() -> {
+            if (--frozenBackups == 0) {
+                frozenWorlds.forEach(world -> world.setAutoSave(true));
+                frozenWorlds = List.of();
+            }
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                Logger.warning("Could not re-enable auto-save after the backup: " + error.getMessage());
+            }
+        });
+    }
+
+    private void process(final List<Task> tasks, final WorkerFactory workerFactory) throws IOException, InterruptedException {
+        AtomicInteger nextTask = new AtomicInteger();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(settings.threads(), runnable -> {
+            Thread thread = new Thread(runnable, "MinecraftServerAPI-Backup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < settings.threads(); i++) {
+                workers.add(executor.submit(() -> {
+                    runWorker(tasks, nextTask, workerFactory.create());
+                    return null;
+                }));
+            }
+
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runWorker(final List<Task> tasks, final AtomicInteger nextTask, final Worker worker) throws IOException, InterruptedException {
+        try {
+            for (int index = nextTask.getAndIncrement(); index < tasks.size(); index = nextTask.getAndIncrement()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Backup was cancelled");
+                }
+
+                Task task = tasks.get(index);
+                if (task.directory) {
+                    continue;
+                }
+
+                try {
+                    worker.process(task);
+                } catch (SourceReadException e) {
+                    // A file that vanished or is locked should not fail the whole backup
+                    Logger.warning("Skipping " + task.name + " in backup: " + e.getMessage());
+                    task.spool = null;
+                    task.chunks = null;
+                }
+                filesDone.incrementAndGet();
+            }
+        } finally {
+            worker.close();
+        }
+    }
+
+    private static FileChannel openSource(final Path path) throws SourceReadException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new SourceReadException(e);
+        }
+    }
+
+    private static int readSource(final ReadableByteChannel source, final ByteBuffer buffer) throws SourceReadException {
+        try {
+            return source.read(buffer);
+        } catch (IOException e) {
+            throw new SourceReadException(e);
+        }
+    }
+
+    private static void deleteSpoolDirectory(final Path spoolDirectory) {
+        try (var files = Files.list(spoolDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spoolDirectory);
+        } catch (IOException e) {
+            Logger.warning("Could not delete backup spool " + spoolDirectory + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getFilesTotal() {
+        return filesTotal.get();
+    }
+
+    @Override
+    public long getFilesDone() {
+        return filesDone.get();
+    }
+
+    @Override
+    public long getBytesTotal() {
+        return bytesTotal.get();
+    }
+
+    @Override
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    private static final class Task {
+        private final File file;
+        private final String name;
+        private final boolean directory;
+        private final long lastModified;
+
+        // Set by the worker that processed the file
+        private FileChannel spool;
+        private String entryName;
+        private long offset;
+        private long size;
+        private long compressedSize;
+        private long crc;
+        private int method;
+        private List<String> chunks;
+
+        private Task(final File taskFile, final String entryName, final boolean isDirectory) {
+            this.file = taskFile;
+            this.name = entryName;
+            this.directory = isDirectory;
+            this.lastModified = taskFile.lastModified();
+        }
+    }
+
+    /**
+     * A file that is backed up could not be read. Unlike other errors, this only skips the file.
+     */
+    private static final class SourceReadException extends IOException {
+        private SourceReadException(final IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Reports the read errors of a file that is backed up as {@link SourceReadException}.
+     */
+    private static final class SourceInputStream extends FilterInputStream {
+        private SourceInputStream(final Path path) throws SourceReadException {
+            super(Channels.newInputStream(openSource(path)));
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw new SourceReadException(e);
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                throw new SourceReadException(e);
+            }
+        }
+    }
+
+    private interface Worker {
+        void process(Task task) throws IOException;
+
+        void close();
+    }
+
+    @FunctionalInterface
+    private interface WorkerFactory {
+        Worker create() throws IOException;
+    }
+
+    /**
+     * Deflates (or stores) whole files into its own spool file, from which the archive is stitched.
+     */
+    private final class SpoolWorker implements Worker {
+        private final FileChannel channel;
+        private final Map<String, RegionDelta.Header> previousRegions;
+        private final long created;
+        private final Deflater deflater = new Deflater(settings.compressionLevel(), true);
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] output = new byte[BUFFER_SIZE];
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * @param regions the region headers of the previous snapshot, or null if this is not a snapshot
+         * @param snapshotTime the time of the snapshot, in seconds
+         */
+        private SpoolWorker(final Path spoolFile, final Map<String, RegionDelta.Header> regions, final long snapshotTime) throws IOException {
+            this.channel = FileChannel.open(spoolFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.previousRegions = regions;
+            this.created = snapshotTime;
+        }
+
+        @Override
+        public void process(final Task task) throws IOException {
+            if (previousRegions != null && RegionSnapshots.isRegionFile(task.name)) {
+                RegionFile region;
+                try {
+                    region = RegionFile.read(task.file.toPath());
+                } catch (IOException e) {
+                    throw new SourceReadException(e);
+                }
+                // Files that are not valid region files are stored as they are
+                if (region != null) {
+                    byte[] delta = RegionDelta.create(region, previousRegions.get(task.name), created);
+                    spool(task, task.name + RegionDelta.EXTENSION, Channels.newChannel(new ByteArrayInputStream(delta)), false);
+                    bytesDone.addAndGet(task.file.length());
+                    return;
+                }
+            }
+
+            try (FileChannel source = openSource(task.file.toPath())) {
+                long size = spool(task, task.name, source, settings.isStored(task.name));
+                bytesDone.addAndGet(size);
+            }
+        }
+
+        private long spool(final Task task, final String entryName, final ReadableByteChannel source, final boolean store) throws IOException {
+            deflater.reset();
+            crc.reset();
+
+            long start = channel.position();
+            long size = 0;
+
+            input.clear();
+            while (readSource(source, input) >= 0) {
+                input.flip();
+                int length = input.remaining();
+                crc.update(input.array(), 0, length);
+                size += length;
+
+                if (store) {
+                    write(input);
+                } else {
+                    deflater.setInput(input.array(), 0, length);
+                    while (!deflater.needsInput()) {
+                        write(output, deflater.deflate(output));
+                    }
+                }
+                input.clear();
+            }
+
+            if (!store) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    write(output, deflater.deflate(output));
+                }
+            }
+
+            task.spool = channel;
+            task.entryName = entryName;
+            task.offset = start;
+            task.size = size;
+            task.compressedSize = channel.position() - start;
+            task.crc = crc.getValue();
+            task.method = store ? ZipEntry.STORED : ZipEntry.DEFLATED;
+            return size;
+        }
+
+        private void write(final ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void write(final byte[] data, final int length) throws IOException {
+            write(ByteBuffer.wrap(data, 0, length));
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+
+        // The spool is read again when the archive is stitched, so it is closed separately
+        private void closeSpool() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Logger.warning("Could not close backup spool: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Splits files into content-defined chunks and adds them to the chunk store.
+     */
+    private final class ChunkWorker implements Worker {
+        private final ChunkStore store;
+        private final Map<String, BackupManifest.Entry> previousEntries;
+        private final ContentDefinedChunker chunker = new ContentDefinedChunker(settings.averageChunkSize());
+        private final MessageDigest digest = BackupManifest.sha256();
+        private final Deflater deflater = new Deflater(settings.compressionLevel(), true);
+        private final byte[] buffer = new byte[settings.averageChunkSize() * 8 + 64];
+
+        private ChunkWorker(final ChunkStore chunkStore, final Map<String, BackupManifest.Entry> entries) {
+            this.store = chunkStore;
+            this.previousEntries = entries;
+        }
+
+        @Override
+        public void process(final Task task) throws IOException {
+            long size = task.file.length();
+            BackupManifest.Entry previous = previousEntries.get(task.name);
+            if (previous != null && !previous.directory() && previous.size() == size && previous.lastModified() == task.lastModified
+                    && previous.chunks().stream().allMatch(store::contains)) {
+                task.size = size;
+                task.chunks = previous.chunks();
+                bytesDone.addAndGet(size);
+                return;
+            }
+
+            List<String> chunks = new ArrayList<>();
+            long[] read = new long[1];
+            try (InputStream input = new SourceInputStream(task.file.toPath())) {
+                chunker.split(input, (data, length) -> {
+                    chunks.add(store.put(data, length, digest, deflater, buffer));
+                    read[0] += length;
+                    bytesDone.addAndGet(length);
+                });
+            }
+            task.size = read[0];
+            task.chunks = chunks;
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    public record Settings(int threads, int compressionLevel, List<String> storedExtensions, boolean disableAutoSave, int averageChunkSize) {
+        private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+        private static final int DEFAULT_AVERAGE_CHUNK_KB = 256;
+        private static final int MAX_AVERAGE_CHUNK_KB = 16 * 1024;
+        private static final List<String> DEFAULT_STORED_EXTENSIONS = List.of(".mca", ".mcc", ".zip", ".jar", ".gz", ".png");
+
+        public static Settings fromConfig(final FileConfiguration config) {
+            int defaultThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            int threads = config.getInt("backup.threads", 0);
+            List<String> extensions = config.isList("backup.store_extensions")
+                    ? config.getStringList("backup.store_extensions")
+                    : DEFAULT_STORED_EXTENSIONS;
+
+            return new Settings(
+                    threads > 0 ? threads : defaultThreads,
+                    Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, config.getInt("backup.compression_level", DEFAULT_COMPRESSION_LEVEL))),
+                    extensions.stream().map(extension -> extension.toLowerCase(Locale.ROOT)).toList(),
+                    config.getBoolean("backup.disable_autosave", true),
+                    Math.max(1, Math.min(MAX_AVERAGE_CHUNK_KB, config.getInt("backup.incremental.average_chunk_kb", DEFAULT_AVERAGE_CHUNK_KB))) * 1024
+            );
+        }
+
+        public boolean isStored(final String name) {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            for (String extension : storedExtensions) {
+                if (lowerName.endsWith(extension)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.shweit.serverapi.backup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * A sidecar index of a zip backup that lists one directory level without reading the whole archive.
+ * <p>
+ *     The index is built from the central directory of the archive and stores the entries grouped by
+ *     directory: a header, the records of every directory's children (directories first, then files,
+ *     each sorted by name) and at the end a table with the offset and number of records of every
+ *     directory. A listing reads the table up to the wanted directory and then only that directory's
+ *     records. Directory records carry the total size of the files below them.
+ * </p>
+ * <p>
+ *     Each file record keeps the offset of its local header, so a single file can be extracted by
+ *     seeking straight to its data. The index remembers the size and modification time of the
+ *     archive and is rebuilt when they no longer match.
+ * </p>
+ */
+public final class BackupIndex {
+    public static final String EXTENSION = ".index";
+    private static final int MAGIC = 0x4D434249;
+    private static final int VERSION = 1;
+    // Magic, version, archive length, archive modification time and table offset
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 8;
+    private static final long TABLE_OFFSET_POSITION = HEADER_SIZE - 8;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP16_LIMIT = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
+    private BackupIndex() { }
+
+    public static File fileOf(final File archive) {
+        return new File(archive.getPath() + EXTENSION);
+    }
+
+    /**
+     * Writes the index of an archive, replacing an existing one.
+     */
+    public static void write(final File archive) throws IOException {
+        Map<String, List<Entry>> directories = readCentralDirectory(archive);
+
+        Path indexPath = fileOf(archive).toPath();
+        Path temporary = Files.createTempFile(indexPath.getParent(), archive.getName(), ".tmp");
+        try {
+            List<long[]> table = new ArrayList<>(directories.size());
+            long tableOffset;
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeByte(VERSION);
+                output.writeLong(archive.length());
+                output.writeLong(archive.lastModified());
+                output.writeLong(0);
+
+                long position = HEADER_SIZE;
+                for (List<Entry> children : directories.values()) {
+                    table.add(new long[] {position, children.size()});
+                    for (Entry entry : children) {
+                        int before = output.size();
+                        writeRecord(output, entry);
+                        position += output.size() - before;
+                    }
+                }
+
+                tableOffset = position;
+                output.writeInt(directories.size());
+                int index = 0;
+                for (String directory : directories.keySet()) {
+                    output.writeUTF(directory);
+                    output.writeLong(table.get(index)[0]);
+                    output.writeInt((int) table.get(index)[1]);
+                    index++;
+                }
+            }
+
+            try (RandomAccessFile file = new RandomAccessFile(temporary.toFile(), "rw")) {
+                file.seek(TABLE_OFFSET_POSITION);
+                file.writeLong(tableOffset);
+            }
+            Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Lists the children of a directory of the archive, writing the index first if it is missing or outdated.
+     *
+     * @param directory the path of the directory without leading or trailing slash, empty for the root
+     * @return the listing, or null if the directory does not exist
+     */
+    public static Listing list(final File archive, final String directory, final int offset, final int limit) throws IOException {
+        try (RandomAccessFile index = openIndex(archive)) {
+            long[] location = findDirectory(index, directory);
+            if (location == null) {
+                return null;
+            }
+
+            int total = (int) location[1];
+            List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+            index.seek(location[0]);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(index.getChannel())));
+            for (int i = 0; i < total && entries.size() < limit; i++) {
+                Entry entry = readRecord(input);
+                if (i >= offset) {
+                    entries.add(entry);
+                }
+            }
+            return new Listing(total, entries);
+        }
+    }
+
+    /**
+     * Looks up a single entry of the archive.
+     *
+     * @return the entry, or null if the archive has no entry with that path
+     */
+    public static Entry find(final File archive, final String path) throws IOException {
+        int slash = path.lastIndexOf('/');
+        String directory = slash < 0 ? "" : path.substring(0, slash);
+        String name = path.substring(slash + 1);
+
+        try (RandomAccessFile index = openIndex(archive)) {
+            long[] location = findDirectory(index, directory);
+            if (location == null) {
+                return null;
+            }
+
+            index.seek(location[0]);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(index.getChannel())));
+            for (int i = 0; i < location[1]; i++) {
+                Entry entry = readRecord(input);
+                if (entry.name().equals(name)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Opens the uncompressed data of a file entry, starting right at its local header.
+     * The stream ends after {@link Entry#size()} bytes.
+     */
+    public static InputStream openEntry(final File archive, final Entry entry) throws IOException {
+        if (entry.directory()) {
+            throw new IOException(entry.path() + " is a directory");
+        }
+        if (entry.method() != ZipEntry.STORED && entry.method() != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method() + " for " + entry.path());
+        }
+
+        FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(channel, entry.offset(), LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("No local header for " + entry.path() + " at offset " + entry.offset());
+            }
+            channel.position(entry.offset() + LOCAL_HEADER_SIZE + unsignedShort(header, 26) + unsignedShort(header, 28));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        InputStream source = Channels.newInputStream(channel);
+        if (entry.method() == ZipEntry.STORED) {
+            return new BoundedInputStream(source, entry.compressedSize());
+        }
+
+        // Like ZipFile, give the raw inflater one byte past the data, as it may need it to detect the end of the stream
+        InputStream data = new BoundedInputStream(source, entry.compressedSize() + 1);
+
+        Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(data, inflater, INFLATE_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static RandomAccessFile openIndex(final File archive) throws IOException {
+        File indexFile = fileOf(archive);
+        if (indexFile.exists()) {
+            RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+            try {
+                if (index.length() >= HEADER_SIZE && index.readInt() == MAGIC && index.readUnsignedByte() == VERSION
+                        && index.readLong() == archive.length() && index.readLong() == archive.lastModified()) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // Unreadable index, written again below
+            }
+            index.close();
+        }
+
+        write(archive);
+        return new RandomAccessFile(indexFile, "r");
+    }
+
+    private static long[] findDirectory(final RandomAccessFile index, final String directory) throws IOException {
+        index.seek(TABLE_OFFSET_POSITION);
+        index.seek(index.readLong());
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(index.getChannel())));
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = input.readUTF();
+            long offset = input.readLong();
+            int children = input.readInt();
+            if (path.equals(directory)) {
+                return new long[] {offset, children};
+            }
+        }
+        return null;
+    }
+
+    private static void writeRecord(final DataOutputStream output, final Entry entry) throws IOException {
+        output.writeUTF(entry.path());
+        output.writeBoolean(entry.directory());
+        output.writeLong(entry.size());
+        output.writeLong(entry.compressedSize());
+        output.writeInt((int) entry.crc());
+        output.writeLong(entry.lastModified());
+        output.writeLong(entry.offset());
+        output.writeShort(entry.method());
+    }
+
+    private static Entry readRecord(final DataInputStream input) throws IOException {
+        return new Entry(input.readUTF(), input.readBoolean(), input.readLong(), input.readLong(),
+                input.readInt() & ZIP32_LIMIT, input.readLong(), input.readLong(), input.readUnsignedShort());
+    }
+
+    /**
+     * Reads the central directory of an archive and groups its entries by directory, adding
+     * the directories that only exist implicitly as the parent of an entry.
+     */
+    private static Map<String, List<Entry>> readCentralDirectory(final File archive) throws IOException {
+        Map<String, Entry> files = new HashMap<>();
+        Map<String, Entry> directories = new HashMap<>();
+        Map<String, long[]> totals = new HashMap<>();
+        directories.put("", new Entry("", true, 0, 0, 0, 0, -1, 0));
+
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            long[] central = locateCentralDirectory(channel);
+            channel.position(central[0]);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] fixed = new byte[CENTRAL_HEADER_SIZE];
+            ByteBuffer header = ByteBuffer.wrap(fixed).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (long i = 0; i < central[1]; i++) {
+                input.readFully(fixed);
+                if (header.getInt(0) != CENTRAL_HEADER_SIGNATURE) {
+                    throw new IOException("Corrupt central directory in " + archive.getName());
+                }
+                int method = unsignedShort(header, 10);
+                long lastModified = fromDosTime(header.getInt(12));
+                long crc = header.getInt(16) & ZIP32_LIMIT;
+                long compressedSize = header.getInt(20) & ZIP32_LIMIT;
+                long size = header.getInt(24) & ZIP32_LIMIT;
+                byte[] nameBytes = new byte[unsignedShort(header, 28)];
+                byte[] extra = new byte[unsignedShort(header, 30)];
+                int commentLength = unsignedShort(header, 32);
+                long offset = header.getInt(42) & ZIP32_LIMIT;
+                input.readFully(nameBytes);
+                input.readFully(extra);
+                input.skipNBytes(commentLength);
+
+                // ZIP64 values only follow for the fields that are saturated in the fixed header
+                ByteBuffer extraBuffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+                while (extraBuffer.remaining() >= 4) {
+                    int id = extraBuffer.getShort() & ZIP16_LIMIT;
+                    int length = extraBuffer.getShort() & ZIP16_LIMIT;
+                    int end = Math.min(extraBuffer.position() + length, extraBuffer.limit());
+                    if (id == ZIP64_EXTRA_ID) {
+                        if (size == ZIP32_LIMIT && extraBuffer.position() + 8 <= end) {
+                            size = extraBuffer.getLong();
+                        }
+                        if (compressedSize == ZIP32_LIMIT && extraBuffer.position() + 8 <= end) {
+                            compressedSize = extraBuffer.getLong();
+                        }
+                        if (offset == ZIP32_LIMIT && extraBuffer.position() + 8 <= end) {
+                            offset = extraBuffer.getLong();
+                        }
+                    }
+                    extraBuffer.position(end);
+                }
+
+                String path = trimSlashes(new String(nameBytes, StandardCharsets.UTF_8));
+                if (path.isEmpty()) {
+                    continue;
+                }
+                if (nameBytes[nameBytes.length - 1] == '/') {
+                    directories.put(path, new Entry(path, true, 0, 0, 0, lastModified, -1, 0));
+                } else {
+                    files.put(path, new Entry(path, false, size, compressedSize, crc, lastModified, offset, method));
+                }
+            }
+        }
+
+        for (Entry file : files.values()) {
+            String parent = file.path();
+            int slash;
+            while ((slash = parent.lastIndexOf('/')) >= 0) {
+                parent = parent.substring(0, slash);
+                directories.putIfAbsent(parent, new Entry(parent, true, 0, 0, 0, file.lastModified(), -1, 0));
+                long[] total = totals.computeIfAbsent(parent, key -> new long[2]);
+                total[0] += file.size();
+                total[1] += file.compressedSize();
+            }
+            long[] rootTotal = totals.computeIfAbsent("", key -> new long[2]);
+            rootTotal[0] += file.size();
+            rootTotal[1] += file.compressedSize();
+        }
+
+        Map<String, List<Entry>> children = new TreeMap<>();
+        children.put("", new ArrayList<>());
+        for (Entry directory : directories.values()) {
+            if (directory.path().isEmpty()) {
+                continue;
+            }
+            long[] total = totals.getOrDefault(directory.path(), new long[2]);
+            children.computeIfAbsent(directory.path(), key -> new ArrayList<>());
+            children.computeIfAbsent(parentOf(directory.path()), key -> new ArrayList<>())
+                    .add(new Entry(directory.path(), true, total[0], total[1], 0, directory.lastModified(), -1, 0));
+        }
+        for (Entry file : files.values()) {
+            children.computeIfAbsent(parentOf(file.path()), key -> new ArrayList<>()).add(file);
+        }
+
+        Comparator<Entry> order = Comparator.comparing((Entry entry) -> !entry.directory()).thenComparing(Entry::name);
+        children.values().forEach(list -> list.sort(order));
+        return children;
+    }
+
+    /**
+     * Finds the central directory through the end record, following the ZIP64 locator if there is one.
+     *
+     * @return the offset of the central directory and its number of entries
+     */
+    private static long[] locateCentralDirectory(final FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tailLength = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readFully(channel, size - tailLength, tailLength);
+
+        int end = -1;
+        for (int position = tailLength - END_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_SIGNATURE) {
+                end = position;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Not a zip archive");
+        }
+
+        long count = unsignedShort(tail, end + 10);
+        long offset = tail.getInt(end + 16) & ZIP32_LIMIT;
+        if (count != ZIP16_LIMIT && offset != ZIP32_LIMIT) {
+            return new long[] {offset, count};
+        }
+
+        long locatorPosition = size - tailLength + end - ZIP64_LOCATOR_SIZE;
+        ByteBuffer locator = readFully(channel, locatorPosition, ZIP64_LOCATOR_SIZE);
+        if (locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) {
+            return new long[] {offset, count};
+        }
+        ByteBuffer zip64End = readFully(channel, locator.getLong(8), 56);
+        if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+            throw new IOException("Corrupt ZIP64 end record");
+        }
+        return new long[] {zip64End.getLong(48), zip64End.getLong(32)};
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+        }
+        return buffer;
+    }
+
+    private static int unsignedShort(final ByteBuffer buffer, final int index) {
+        return buffer.getShort(index) & ZIP16_LIMIT;
+    }
+
+    private static long fromDosTime(final int dosTime) {
+        try {
+            return LocalDateTime.of(
+                    (dosTime >>> 25) + 1980,
+                    (dosTime >>> 21) & 0x0F,
+                    (dosTime >>> 16) & 0x1F,
+                    (dosTime >>> 11) & 0x1F,
+                    (dosTime >>> 5) & 0x3F,
+                    (dosTime << 1) & 0x3E
+            ).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (java.time.DateTimeException e) {
+            return 0;
+        }
+    }
+
+    private static String trimSlashes(final String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private static String parentOf(final String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    /**
+     * An entry of the archive. Directories have no offset and carry the total size of the files below them.
+     *
+     * @param path the path of the entry without trailing slash
+     * @param offset the offset of the local header in the archive, -1 for directories
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     */
+    public record Entry(String path, boolean directory, long size, long compressedSize, long crc, long lastModified,
+                        long offset, int method) {
+        public String name() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+
+    /**
+     * One page of a directory listing.
+     *
+     * @param total the number of children of the directory
+     */
+    public record Listing(int total, List<Entry> entries) {
+    }
+
+    /**
+     * Ends after a fixed number of bytes, so the inflater never reads into the next entry.
+     */
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream input;
+        private long remaining;
+
+        private BoundedInputStream(final InputStream source, final long length) {
+            this.input = source;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = input.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.shweit.serverapi.backup;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Inflater;
+
+/**
+ * The manifest of an incremental backup: every backed up file and directory, and for each file
+ * the hashes of the chunks in the {@link ChunkStore} that make up its content, in order.
+ * Manifests are stored as {@code <name>.manifest.json} next to the zip backups.
+ */
+public final class BackupManifest {
+    public static final String EXTENSION = ".manifest.json";
+    private static final int VERSION = 1;
+
+    private final String name;
+    private final long created;
+    private final List<Entry> entries;
+
+    public BackupManifest(final String backupName, final long createdAt, final List<Entry> backupEntries) {
+        this.name = backupName;
+        this.created = createdAt;
+        this.entries = backupEntries;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public long getTotalSize() {
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.size();
+        }
+        return total;
+    }
+
+    /**
+     * Writes the manifest to a temporary file first, so a half-written manifest never exists under its final name.
+     */
+    public void write(final File file) throws IOException {
+        Path temporary = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(writer)) {
+            json.beginObject();
+            json.name("version").value(VERSION);
+            json.name("name").value(name);
+            json.name("created").value(created);
+            json.name("entries").beginArray();
+            for (Entry entry : entries) {
+                json.beginObject();
+                json.name("path").value(entry.path());
+                json.name("lastModified").value(entry.lastModified());
+                if (entry.directory()) {
+                    json.name("directory").value(true);
+                } else {
+                    json.name("size").value(entry.size());
+                    json.name("chunks").beginArray();
+                    for (String chunk : entry.chunks()) {
+                        json.value(chunk);
+                    }
+                    json.endArray();
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static BackupManifest read(final File file) throws IOException {
+        String name = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+        long created = file.lastModified();
+        List<Entry> entries = new ArrayList<>();
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+             JsonReader json = new JsonReader(reader)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "name" -> name = json.nextString();
+                    case "created" -> created = json.nextLong();
+                    case "entries" -> {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            entries.add(readEntry(json));
+                        }
+                        json.endArray();
+                    }
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Invalid backup manifest " + file.getName() + ": " + e.getMessage(), e);
+        }
+
+        return new BackupManifest(name, created, entries);
+    }
+
+    private static Entry readEntry(final JsonReader json) throws IOException {
+        String path = null;
+        boolean directory = false;
+        long size = 0;
+        long lastModified = 0;
+        List<String> chunks = new ArrayList<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "path" -> path = json.nextString();
+                case "directory" -> directory = json.nextBoolean();
+                case "size" -> size = json.nextLong();
+                case "lastModified" -> lastModified = json.nextLong();
+                case "chunks" -> {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        chunks.add(json.nextString());
+                    }
+                    json.endArray();
+                }
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (path == null) {
+            throw new IOException("Backup manifest entry without a path");
+        }
+        return new Entry(path, directory, size, lastModified, chunks);
+    }
+
+    /**
+     * Collects the chunks referenced by all manifests in {@code backupFolder}.
+     */
+    public static Set<String> referencedChunks(final File backupFolder) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        File[] manifests = backupFolder.listFiles((dir, fileName) -> fileName.endsWith(EXTENSION));
+        if (manifests != null) {
+            for (File manifest : manifests) {
+                for (Entry entry : read(manifest).entries) {
+                    referenced.addAll(entry.chunks());
+                }
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Reassembles all files of the backup below {@code target}, verifying every chunk.
+     */
+    public void restore(final ChunkStore store, final File target) throws IOException {
+        MessageDigest digest = sha256();
+        Inflater inflater = new Inflater(true);
+        Path root = target.toPath().toAbsolutePath().normalize();
+
+        try {
+            for (Entry entry : entries) {
+                Path path = root.resolve(entry.path()).normalize();
+                if (!path.startsWith(root)) {
+                    throw new IOException("Backup entry outside of the target folder: " + entry.path());
+                }
+
+                if (entry.directory()) {
+                    Files.createDirectories(path);
+                } else {
+                    Files.createDirectories(path.getParent());
+                    try (OutputStream output = Files.newOutputStream(path)) {
+                        for (String chunk : entry.chunks()) {
+                            store.read(chunk, output, digest, inflater);
+                        }
+                    }
+                }
+                if (entry.lastModified() > 0) {
+                    path.toFile().setLastModified(entry.lastModified());
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A backed up file or directory. Paths use '/' and are relative to the server directory.
+     */
+    public record Entry(String path, boolean directory, long size, long lastModified, List<String> chunks) {
+    }
+}
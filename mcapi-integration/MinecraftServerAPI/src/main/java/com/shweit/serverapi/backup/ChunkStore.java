@@ -0,0 +1,184 @@
+package com.shweit.serverapi.backup;
+
+import com.shweit.serverapi.utils.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Content-addressed store for the chunks of incremental backups.
+ * <p>
+ *     Every chunk is stored once, in {@code <directory>/<first two hex digits>/<sha-256>}. The
+ *     first byte of a chunk file tells whether the rest is raw or deflated; chunks are only kept
+ *     deflated if that saves at least a tenth of their size, so already compressed region data
+ *     is not inflated again on restore.
+ * </p>
+ * <p>
+ *     Creating a backup holds the read lock of {@link #getLock()} and garbage collection the write lock,
+ *     so chunks written by a backup that has not written its manifest yet are never collected.
+ * </p>
+ */
+public final class ChunkStore {
+    private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    private final Path directory;
+
+    public ChunkStore(final File storeDirectory) {
+        this.directory = storeDirectory.toPath();
+    }
+
+    public static ReadWriteLock getLock() {
+        return LOCK;
+    }
+
+    /**
+     * Stores a chunk unless a chunk with the same content exists already.
+     *
+     * @param digest a SHA-256 digest owned by the calling thread
+     * @param deflater a raw deflater owned by the calling thread
+     * @param buffer scratch space of at least {@code length + 64} bytes owned by the calling thread
+     * @return the hash of the chunk
+     */
+    public String put(final byte[] data, final int length, final MessageDigest digest, final Deflater deflater, final byte[] buffer) throws IOException {
+        digest.reset();
+        digest.update(data, 0, length);
+        String hash = HEX.formatHex(digest.digest());
+
+        Path file = pathOf(hash);
+        if (Files.exists(file)) {
+            return hash;
+        }
+
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        int compressedLength = deflater.deflate(buffer, 1, buffer.length - 1);
+        boolean deflated = deflater.finished() && compressedLength < length - length / 10;
+
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), hash, ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary)) {
+            if (deflated) {
+                buffer[0] = DEFLATED;
+                output.write(buffer, 0, compressedLength + 1);
+            } else {
+                output.write(RAW);
+                output.write(data, 0, length);
+            }
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            moveIfAbsent(temporary, file);
+        } catch (FileAlreadyExistsException e) {
+            // Another worker stored the same chunk in the meantime
+            Files.deleteIfExists(temporary);
+        }
+        return hash;
+    }
+
+    private static void moveIfAbsent(final Path temporary, final Path file) throws IOException {
+        try {
+            Files.move(temporary, file);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes the content of a chunk to {@code output}, verifying its hash.
+     */
+    public void read(final String hash, final OutputStream output, final MessageDigest digest, final Inflater inflater) throws IOException {
+        byte[] stored = Files.readAllBytes(pathOf(hash));
+        if (stored.length == 0) {
+            throw new IOException("Chunk " + hash + " is empty");
+        }
+
+        byte[] data;
+        if (stored[0] == DEFLATED) {
+            inflater.reset();
+            inflater.setInput(stored, 1, stored.length - 1);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream(stored.length * 2);
+            byte[] part = new byte[64 * 1024];
+            try {
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(part);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Chunk " + hash + " is truncated");
+                    }
+                    inflated.write(part, 0, count);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Chunk " + hash + " is corrupt: " + e.getMessage(), e);
+            }
+            data = inflated.toByteArray();
+        } else {
+            data = Arrays.copyOfRange(stored, 1, stored.length);
+        }
+
+        digest.reset();
+        if (!hash.equals(HEX.formatHex(digest.digest(data)))) {
+            throw new IOException("Chunk " + hash + " does not match its hash");
+        }
+        output.write(data);
+    }
+
+    public boolean contains(final String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    /**
+     * Deletes every chunk not in {@code referenced}. Must be called with the write lock held.
+     *
+     * @return the number of deleted chunks
+     */
+    public int collectGarbage(final Set<String> referenced) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                String name = file.getFileName().toString();
+                if (!referenced.contains(name)) {
+                    try {
+                        Files.delete(file);
+                        deleted++;
+                    } catch (IOException e) {
+                        Logger.warning("Could not delete unused backup chunk " + name + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private Path pathOf(final String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -0,0 +1,76 @@
+package com.shweit.serverapi.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+/**
+ * Splits a stream into chunks whose boundaries depend on the content, not on the offset.
+ * <p>
+ *     A gear rolling hash over roughly the last 64 bytes is updated for every byte; a chunk ends
+ *     where its top bits are all zero. Inserting or changing bytes therefore only moves the
+ *     boundaries next to the change, and the chunks before and after it hash the same as in
+ *     the previous backup. Chunks are at least a quarter and at most four times the average size.
+ * </p>
+ * <p>
+ *     The gear table is generated from a fixed seed, so boundaries are stable across restarts.
+ *     Instances keep their buffers and are not thread-safe.
+ * </p>
+ */
+public final class ContentDefinedChunker {
+    private static final long[] GEAR = new long[256];
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4D696E6563726166L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+    private final byte[] chunk;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+    public ContentDefinedChunker(final int averageSize) {
+        int bits = 31 - Integer.numberOfLeadingZeros(Math.max(1024, averageSize));
+        this.minSize = (1 << bits) / 4;
+        this.maxSize = (1 << bits) * 4;
+        this.mask = ((1L << bits) - 1) << (Long.SIZE - bits);
+        this.chunk = new byte[maxSize];
+    }
+
+    public void split(final InputStream input, final ChunkConsumer consumer) throws IOException {
+        int length = 0;
+        long hash = 0;
+        int read;
+
+        while ((read = input.read(readBuffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                byte value = readBuffer[i];
+                chunk[length++] = value;
+                hash = (hash << 1) + GEAR[value & 0xFF];
+
+                if ((length >= minSize && (hash & mask) == 0) || length == maxSize) {
+                    consumer.accept(chunk, length);
+                    length = 0;
+                    hash = 0;
+                }
+            }
+        }
+
+        if (length > 0) {
+            consumer.accept(chunk, length);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * @param data buffer holding the chunk; it is reused for the next chunk once this method returns
+         */
+        void accept(byte[] data, int length) throws IOException;
+    }
+}
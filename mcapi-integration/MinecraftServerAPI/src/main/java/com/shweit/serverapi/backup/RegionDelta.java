@@ -0,0 +1,151 @@
+package com.shweit.serverapi.backup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+
+/**
+ * The chunks of a region file that changed since the previous snapshot.
+ * <p>
+ *     A delta starts with a header holding the full timestamp table and the set of existing chunks
+ *     of the region at the time of the snapshot, followed by the payload of every chunk that was
+ *     added or saved since the previous snapshot and a marker for every chunk that was removed.
+ *     A base delta is written against an empty region and holds every chunk, so a region is rebuilt
+ *     by applying all deltas from its latest base up to the wanted snapshot.
+ * </p>
+ * <p>
+ *     Chunk timestamps only have a resolution of one second, so chunks saved in the same second
+ *     the previous snapshot was taken are always treated as changed.
+ * </p>
+ */
+public final class RegionDelta {
+    public static final String EXTENSION = ".delta";
+    private static final int MAGIC = 0x4D434144;
+    private static final int VERSION = 1;
+    private static final int FLAG_BASE = 1;
+
+    private RegionDelta() { }
+
+    /**
+     * Creates the delta of {@code region} against the state in {@code previous}.
+     *
+     * @param previous the header of the delta in the previous snapshot, or null to create a base delta
+     * @param created the time of this snapshot, in seconds
+     */
+    public static byte[] create(final RegionFile region, final Header previous, final long created) throws IOException {
+        int[] timestamps = region.getTimestamps();
+        byte[][] payloads = region.getPayloads();
+        BitSet present = new BitSet(RegionFile.CHUNKS);
+        for (int index = 0; index < RegionFile.CHUNKS; index++) {
+            if (payloads[index] != null) {
+                present.set(index);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(previous == null ? FLAG_BASE : 0);
+        output.writeLong(created);
+        for (int timestamp : timestamps) {
+            output.writeInt(timestamp);
+        }
+        output.write(toBytes(present));
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordOutput = new DataOutputStream(records);
+        int count = 0;
+        for (int index = 0; index < RegionFile.CHUNKS; index++) {
+            boolean exists = present.get(index);
+            boolean existed = previous != null && previous.present().get(index);
+
+            if (exists && (!existed || timestamps[index] != previous.timestamps()[index] || timestamps[index] >= previous.created())) {
+                recordOutput.writeShort(index);
+                recordOutput.writeInt(payloads[index].length);
+                recordOutput.write(payloads[index]);
+                count++;
+            } else if (!exists && existed) {
+                recordOutput.writeShort(index);
+                recordOutput.writeInt(0);
+                count++;
+            }
+        }
+
+        output.writeInt(count);
+        records.writeTo(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the header of a delta, leaving the stream at the first chunk record.
+     */
+    public static Header readHeader(final DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a region delta");
+        }
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported region delta version " + version);
+        }
+
+        boolean base = (input.readUnsignedByte() & FLAG_BASE) != 0;
+        long created = input.readLong();
+        int[] timestamps = new int[RegionFile.CHUNKS];
+        for (int index = 0; index < RegionFile.CHUNKS; index++) {
+            timestamps[index] = input.readInt();
+        }
+        byte[] present = new byte[RegionFile.CHUNKS / Byte.SIZE];
+        input.readFully(present);
+
+        return new Header(base, created, timestamps, BitSet.valueOf(present));
+    }
+
+    /**
+     * Applies a delta to the chunk payloads of a region.
+     *
+     * @param payloads the payloads of the region before this delta, updated in place
+     * @return the header of the delta, whose timestamps are the ones of the region after this delta
+     */
+    public static Header apply(final InputStream delta, final byte[][] payloads) throws IOException {
+        DataInputStream input = new DataInputStream(delta);
+        Header header = readHeader(input);
+
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            int index = input.readUnsignedShort();
+            int length = input.readInt();
+            if (index >= RegionFile.CHUNKS || length < 0) {
+                throw new IOException("Corrupt region delta record");
+            }
+
+            if (length == 0) {
+                payloads[index] = null;
+            } else {
+                payloads[index] = new byte[length];
+                input.readFully(payloads[index]);
+            }
+        }
+        return header;
+    }
+
+    private static byte[] toBytes(final BitSet bits) {
+        byte[] bytes = new byte[RegionFile.CHUNKS / Byte.SIZE];
+        byte[] set = bits.toByteArray();
+        System.arraycopy(set, 0, bytes, 0, set.length);
+        return bytes;
+    }
+
+    /**
+     * The state of a region at the time of a snapshot.
+     *
+     * @param base whether the delta was written against an empty region
+     * @param created the time of the snapshot, in seconds
+     */
+    public record Header(boolean base, long created, int[] timestamps, BitSet present) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.shweit.serverapi.backup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads and writes Anvil region files ({@code .mca}).
+ * <p>
+ *     A region file holds up to 1024 chunks. The first 4 KiB sector holds the location of every
+ *     chunk (offset and length in 4 KiB sectors), the second the time each chunk was last saved, in
+ *     seconds. A chunk payload starts with its length and compression type, followed by the
+ *     compressed NBT data. Payloads are kept exactly as they are on disk and never decompressed.
+ * </p>
+ */
+public final class RegionFile {
+    public static final int CHUNKS = 1024;
+    public static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SECTORS = 2;
+    private static final int MAX_SECTOR_COUNT = 0xFF;
+
+    private final int[] timestamps;
+    private final byte[][] payloads;
+
+    /**
+     * @param chunkTimestamps the save time of every chunk, in seconds
+     * @param chunkPayloads the payload of every chunk (length, compression type and data), null for chunks that do not exist
+     */
+    public RegionFile(final int[] chunkTimestamps, final byte[][] chunkPayloads) {
+        this.timestamps = chunkTimestamps;
+        this.payloads = chunkPayloads;
+    }
+
+    /**
+     * Reads a region file, or returns null if it is not a valid region file.
+     */
+    public static RegionFile read(final Path path) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        if (data.length < HEADER_SECTORS * SECTOR_SIZE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int[] timestamps = new int[CHUNKS];
+        byte[][] payloads = new byte[CHUNKS][];
+
+        for (int index = 0; index < CHUNKS; index++) {
+            int location = buffer.getInt(index * 4);
+            timestamps[index] = buffer.getInt(SECTOR_SIZE + index * 4);
+            if (location == 0) {
+                continue;
+            }
+
+            long start = (long) (location >>> 8) * SECTOR_SIZE;
+            long sectors = location & MAX_SECTOR_COUNT;
+            if (start < HEADER_SECTORS * SECTOR_SIZE || start + 4 > data.length) {
+                return null;
+            }
+
+            int length = buffer.getInt((int) start);
+            if (length <= 0 || length + 4 > sectors * SECTOR_SIZE || start + 4 + length > data.length) {
+                return null;
+            }
+            payloads[index] = Arrays.copyOfRange(data, (int) start, (int) start + 4 + length);
+        }
+
+        return new RegionFile(timestamps, payloads);
+    }
+
+    /**
+     * Writes the region file with all chunks packed behind the header, in the order of their index.
+     */
+    public void write(final OutputStream output) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        int sector = HEADER_SECTORS;
+        for (int index = 0; index < CHUNKS; index++) {
+            header.putInt(SECTOR_SIZE + index * 4, timestamps[index]);
+            if (payloads[index] == null) {
+                continue;
+            }
+
+            int sectors = (payloads[index].length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+            if (sectors > MAX_SECTOR_COUNT) {
+                throw new IOException("Chunk " + index + " is too large for a region file");
+            }
+            header.putInt(index * 4, sector << 8 | sectors);
+            sector += sectors;
+        }
+        output.write(header.array());
+
+        byte[] padding = new byte[SECTOR_SIZE];
+        for (byte[] payload : payloads) {
+            if (payload != null) {
+                output.write(payload);
+                int remainder = payload.length % SECTOR_SIZE;
+                if (remainder != 0) {
+                    output.write(padding, 0, SECTOR_SIZE - remainder);
+                }
+            }
+        }
+    }
+
+    public int[] getTimestamps() {
+        return timestamps;
+    }
+
+    public byte[][] getPayloads() {
+        return payloads;
+    }
+}
@@ -0,0 +1,245 @@
+package com.shweit.serverapi.backup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Snapshots are zip backups in which every region file is replaced by a {@link RegionDelta} against
+ * the previous snapshot, so only the chunks saved since then are stored. Every snapshot names its
+ * parent in {@value #METADATA_ENTRY}; a snapshot without a parent holds base deltas of all regions.
+ * <p>
+ *     This class also rebuilds the complete files of a snapshot. It does not depend on the server,
+ *     so a snapshot can be restored while the server is stopped:
+ *     {@code java -cp MinecraftServerAPI.jar com.shweit.serverapi.backup.RegionSnapshots <backup folder> <snapshot> <target folder>}
+ * </p>
+ */
+public final class RegionSnapshots {
+    public static final String EXTENSION = ".snapshot.zip";
+    public static final String METADATA_ENTRY = ".snapshot.properties";
+    private static final String REGION_EXTENSION = ".mca";
+
+    private RegionSnapshots() { }
+
+    public static File fileOf(final File backupFolder, final String name) {
+        return new File(backupFolder, name + EXTENSION);
+    }
+
+    public static boolean isRegionFile(final String name) {
+        return name.endsWith(REGION_EXTENSION);
+    }
+
+    public static byte[] metadata(final String name, final String parent, final long created) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("name", name);
+        properties.setProperty("created", Long.toString(created));
+        if (parent != null) {
+            properties.setProperty("parent", parent);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        properties.store(output, null);
+        return output.toByteArray();
+    }
+
+    public static Info readInfo(final File snapshot) throws IOException {
+        try (ZipFile zip = new ZipFile(snapshot)) {
+            return readInfo(zip);
+        }
+    }
+
+    private static Info readInfo(final ZipFile zip) throws IOException {
+        ZipEntry entry = zip.getEntry(METADATA_ENTRY);
+        if (entry == null) {
+            throw new IOException(zip.getName() + " is not a snapshot");
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = zip.getInputStream(entry)) {
+            properties.load(input);
+        }
+        return new Info(properties.getProperty("name"), properties.getProperty("parent"), Long.parseLong(properties.getProperty("created", "0")));
+    }
+
+    /**
+     * Reads the state of every region in a snapshot, keyed by the path of the region file.
+     */
+    public static Map<String, RegionDelta.Header> readRegionHeaders(final File snapshot) throws IOException {
+        Map<String, RegionDelta.Header> headers = new HashMap<>();
+        try (ZipFile zip = new ZipFile(snapshot)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(REGION_EXTENSION + RegionDelta.EXTENSION)) {
+                    try (DataInputStream input = new DataInputStream(zip.getInputStream(entry))) {
+                        headers.put(regionName(entry.getName()), RegionDelta.readHeader(input));
+                    }
+                }
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Returns the number of snapshots from {@code name} back to the latest snapshot without a parent, inclusive.
+     */
+    public static int chainLength(final File backupFolder, final String name) throws IOException {
+        int length = 0;
+        for (String current = name; current != null; current = readInfo(fileOf(backupFolder, current)).parent()) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the names of the snapshots that use {@code name} as their parent.
+     */
+    public static List<String> dependents(final File backupFolder, final String name) throws IOException {
+        List<String> dependents = new ArrayList<>();
+        File[] snapshots = backupFolder.listFiles((dir, fileName) -> fileName.endsWith(EXTENSION));
+        if (snapshots != null) {
+            for (File snapshot : snapshots) {
+                Info info = readInfo(snapshot);
+                if (name.equals(info.parent())) {
+                    dependents.add(info.name());
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Writes all files of a snapshot below {@code target}, rebuilding every region file from its deltas.
+     */
+    public static void rebuild(final File backupFolder, final String name, final File target) throws IOException {
+        Path root = target.toPath().toAbsolutePath().normalize();
+        Map<String, ZipFile> snapshots = new HashMap<>();
+
+        try {
+            ZipFile zip = open(backupFolder, name, snapshots);
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().equals(METADATA_ENTRY)) {
+                    continue;
+                }
+
+                boolean delta = entry.getName().endsWith(REGION_EXTENSION + RegionDelta.EXTENSION);
+                String fileName = delta ? regionName(entry.getName()) : entry.getName();
+                Path path = root.resolve(fileName).normalize();
+                if (!path.startsWith(root)) {
+                    throw new IOException("Snapshot entry outside of the target folder: " + entry.getName());
+                }
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                    continue;
+                }
+
+                Files.createDirectories(path.getParent());
+                if (delta) {
+                    try (OutputStream output = Files.newOutputStream(path)) {
+                        rebuildRegion(backupFolder, name, fileName, snapshots).write(output);
+                    }
+                } else {
+                    try (InputStream input = zip.getInputStream(entry)) {
+                        Files.copy(input, path, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                path.toFile().setLastModified(entry.getTime());
+            }
+        } finally {
+            for (ZipFile snapshot : snapshots.values()) {
+                snapshot.close();
+            }
+        }
+    }
+
+    private static RegionFile rebuildRegion(final File backupFolder, final String name, final String region,
+                                            final Map<String, ZipFile> snapshots) throws IOException {
+        // Walk back to the latest base delta of this region, then apply the deltas from there on
+        Deque<ZipFile> chain = new ArrayDeque<>();
+        String current = name;
+        while (true) {
+            ZipFile zip = open(backupFolder, current, snapshots);
+            ZipEntry entry = zip.getEntry(region + RegionDelta.EXTENSION);
+            if (entry == null) {
+                throw new IOException("Snapshot " + current + " has no data for " + region);
+            }
+            chain.push(zip);
+
+            RegionDelta.Header header;
+            try (DataInputStream input = new DataInputStream(zip.getInputStream(entry))) {
+                header = RegionDelta.readHeader(input);
+            }
+            if (header.base()) {
+                break;
+            }
+
+            current = readInfo(zip).parent();
+            if (current == null) {
+                throw new IOException("Snapshot chain of " + region + " has no base");
+            }
+        }
+
+        byte[][] payloads = new byte[RegionFile.CHUNKS][];
+        RegionDelta.Header last = null;
+        for (ZipFile zip : chain) {
+            try (InputStream input = zip.getInputStream(zip.getEntry(region + RegionDelta.EXTENSION))) {
+                last = RegionDelta.apply(input, payloads);
+            }
+        }
+        return new RegionFile(last.timestamps(), payloads);
+    }
+
+    private static ZipFile open(final File backupFolder, final String name, final Map<String, ZipFile> snapshots) throws IOException {
+        ZipFile zip = snapshots.get(name);
+        if (zip == null) {
+            File file = fileOf(backupFolder, name);
+            if (!file.exists()) {
+                throw new IOException("Snapshot " + name + " not found");
+            }
+            zip = new ZipFile(file, StandardCharsets.UTF_8);
+            snapshots.put(name, zip);
+        }
+        return zip;
+    }
+
+    private static String regionName(final String deltaName) {
+        return deltaName.substring(0, deltaName.length() - RegionDelta.EXTENSION.length());
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: RegionSnapshots <backup folder> <snapshot name> <target folder>");
+            System.exit(1);
+        }
+
+        rebuild(new File(args[0]), args[1], new File(args[2]));
+        System.out.println("Restored snapshot " + args[1] + " to " + args[2]);
+    }
+
+    /**
+     * @param parent the snapshot the deltas were written against, or null
+     * @param created the time the snapshot was taken, in milliseconds
+     */
+    public record Info(String name, String parent, long created) {
+    }
+}
@@ -0,0 +1,237 @@
+package com.shweit.serverapi.backup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a zip archive from entries whose data is already compressed.
+ * <p>
+ *     {@link java.util.zip.ZipOutputStream} always compresses the data it is given itself, so
+ *     entries deflated in parallel cannot be added to it. This writer takes the raw (stored or
+ *     raw-deflated) bytes of an entry together with its CRC and sizes and copies them into the
+ *     archive with {@link FileChannel#transferTo}. ZIP64 records are written when the archive
+ *     or an entry exceeds the limits of the classic format.
+ * </p>
+ */
+public final class ZipArchiveWriter implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP16_LIMIT = 0xFFFF;
+    private static final short VERSION_DEFAULT = 20;
+    private static final short VERSION_ZIP64 = 45;
+    private static final short FLAG_UTF8 = 0x0800;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+
+    private final FileChannel channel;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    // Large enough for the biggest header: fixed fields, a name of up to 65535 bytes and the ZIP64 extra field
+    private final ByteBuffer header = ByteBuffer.allocate(ZIP16_LIMIT + 128).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    public ZipArchiveWriter(final Path target) throws IOException {
+        this.channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    public void addDirectory(final String name, final long lastModified) throws IOException {
+        writeLocalHeader(name.endsWith("/") ? name : name + "/", ZipEntry.STORED, 0, 0, 0, lastModified);
+    }
+
+    /**
+     * Adds an entry whose data is {@code compressedSize} bytes of {@code source}, starting at {@code offset}.
+     *
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED} (raw deflate without zlib header)
+     */
+    public void addEntry(final String name, final int method, final long crc, final long size, final long compressedSize,
+                         final long lastModified, final FileChannel source, final long offset) throws IOException {
+        writeLocalHeader(name, method, crc, size, compressedSize, lastModified);
+
+        long transferred = 0;
+        while (transferred < compressedSize) {
+            long count = source.transferTo(offset + transferred, compressedSize - transferred, channel);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of data for " + name);
+            }
+            transferred += count;
+        }
+        position += compressedSize;
+    }
+
+    /**
+     * Adds a small entry that is stored without compression.
+     */
+    public void addEntry(final String name, final byte[] data, final long lastModified) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeLocalHeader(name, ZipEntry.STORED, crc.getValue(), data.length, data.length, lastModified);
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    private void writeLocalHeader(final String name, final int method, final long crc, final long size, final long compressedSize,
+                                  final long lastModified) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > ZIP16_LIMIT) {
+            throw new IOException("Entry name too long: " + name);
+        }
+        boolean zip64 = size >= ZIP32_LIMIT || compressedSize >= ZIP32_LIMIT;
+        int dosTime = toDosTime(lastModified);
+
+        CentralEntry entry = new CentralEntry(nameBytes, method, crc, size, compressedSize, dosTime, position, name.endsWith("/"));
+        entries.add(entry);
+
+        header.clear();
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        header.putShort(FLAG_UTF8);
+        header.putShort((short) method);
+        header.putInt(dosTime);
+        header.putInt((int) crc);
+        header.putInt((int) (zip64 ? ZIP32_LIMIT : compressedSize));
+        header.putInt((int) (zip64 ? ZIP32_LIMIT : size));
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        writeHeader(nameBytes);
+        if (zip64) {
+            header.clear();
+            header.putShort(ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(size);
+            header.putLong(compressedSize);
+            writeHeader(null);
+        }
+    }
+
+    private void writeHeader(final byte[] name) throws IOException {
+        if (name != null) {
+            header.put(name);
+        }
+        header.flip();
+        while (header.hasRemaining()) {
+            position += channel.write(header);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long centralStart = position;
+            for (CentralEntry entry : entries) {
+                writeCentralEntry(entry);
+            }
+            writeEnd(centralStart, position - centralStart);
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeCentralEntry(final CentralEntry entry) throws IOException {
+        boolean sizeZip64 = entry.size >= ZIP32_LIMIT || entry.compressedSize >= ZIP32_LIMIT;
+        boolean offsetZip64 = entry.offset >= ZIP32_LIMIT;
+        int extraLength = (sizeZip64 ? 16 : 0) + (offsetZip64 ? 8 : 0);
+
+        header.clear();
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort(VERSION_ZIP64);
+        header.putShort(extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        header.putShort(FLAG_UTF8);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) (sizeZip64 ? ZIP32_LIMIT : entry.compressedSize));
+        header.putInt((int) (sizeZip64 ? ZIP32_LIMIT : entry.size));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) (extraLength > 0 ? extraLength + 4 : 0));
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(entry.directory ? DIRECTORY_ATTRIBUTE : 0);
+        header.putInt((int) (offsetZip64 ? ZIP32_LIMIT : entry.offset));
+        header.put(entry.name);
+        if (extraLength > 0) {
+            header.putShort(ZIP64_EXTRA_ID);
+            header.putShort((short) extraLength);
+            if (sizeZip64) {
+                header.putLong(entry.size);
+                header.putLong(entry.compressedSize);
+            }
+            if (offsetZip64) {
+                header.putLong(entry.offset);
+            }
+        }
+        writeHeader(null);
+    }
+
+    private void writeEnd(final long centralStart, final long centralSize) throws IOException {
+        boolean zip64 = entries.size() >= ZIP16_LIMIT || centralStart >= ZIP32_LIMIT || centralSize >= ZIP32_LIMIT;
+
+        if (zip64) {
+            long zip64EndOffset = position;
+            header.clear();
+            header.putInt(ZIP64_END_SIGNATURE);
+            header.putLong(44);
+            header.putShort(VERSION_ZIP64);
+            header.putShort(VERSION_ZIP64);
+            header.putInt(0);
+            header.putInt(0);
+            header.putLong(entries.size());
+            header.putLong(entries.size());
+            header.putLong(centralSize);
+            header.putLong(centralStart);
+
+            header.putInt(ZIP64_LOCATOR_SIGNATURE);
+            header.putInt(0);
+            header.putLong(zip64EndOffset);
+            header.putInt(1);
+            writeHeader(null);
+        }
+
+        header.clear();
+        header.putInt(END_SIGNATURE);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) (zip64 ? ZIP16_LIMIT : entries.size()));
+        header.putShort((short) (zip64 ? ZIP16_LIMIT : entries.size()));
+        header.putInt((int) (zip64 ? ZIP32_LIMIT : centralSize));
+        header.putInt((int) (zip64 ? ZIP32_LIMIT : centralStart));
+        header.putShort((short) 0);
+        writeHeader(null);
+    }
+
+    private static int toDosTime(final long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    private record CentralEntry(byte[] name, int method, long crc, long size, long compressedSize, int dosTime, long offset, boolean directory) {
+    }
+}
@@ -4,8 +4,11 @@ import com.shweit.serverapi.MinecraftServerAPI;
 import com.shweit.serverapi.WebServer;
 import com.shweit.serverapi.endpoints.v1.*;
 import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.ResponseCache;
 import fi.iki.elonen.NanoHTTPD;
 
+import java.util.concurrent.TimeUnit;
+
 public final class RegisterEndpoints {
     private final WebServer server;
 
@@ -16,6 +19,11 @@ public final class RegisterEndpoints {
     private final WorldAPI worldAPI;
     private final BackupAPI backupAPI;
     private final MaintenanceAPI maintenanceAPI;
+    private final WebHookAPI webHookAPI;
+    private final JobAPI jobAPI;
+    private final LeaderboardAPI leaderboardAPI;
+    private final MetricsAPI metricsAPI;
+    private final BatchAPI batchAPI;
 
     public RegisterEndpoints(final WebServer webServer) {
         this.server = webServer;
@@ -27,9 +35,19 @@ public final class RegisterEndpoints {
         this.worldAPI = new WorldAPI();
         this.backupAPI = new BackupAPI();
         this.maintenanceAPI = new MaintenanceAPI();
+        this.webHookAPI = new WebHookAPI();
+        this.jobAPI = new JobAPI();
+        this.leaderboardAPI = new LeaderboardAPI();
+        this.metricsAPI = new MetricsAPI();
+        this.batchAPI = new BatchAPI(webServer);
     }
 
     public void registerEndpoints() {
+        // Routes built from the state cache are cached until it takes its next snapshot, plugin routes until a plugin is enabled or disabled
+        long cacheTtl = TimeUnit.SECONDS.toMillis(MinecraftServerAPI.config.getLong("response_cache.ttl_seconds", 300));
+        ResponseCache.Policy statePolicy = new ResponseCache.Policy(cacheTtl, () -> MinecraftServerAPI.getStateCache().get());
+        ResponseCache.Policy pluginPolicy = new ResponseCache.Policy(cacheTtl, () -> server.getResponseCache().getPluginsVersion());
+
         server.addRoute(NanoHTTPD.Method.GET, "/v1/players", playerAPI::getPlayers);
         Logger.debug("Registered GET /v1/players");
 
@@ -72,7 +90,7 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.GET, "/v1/ping", serverAPI::ping);
         Logger.debug("Registered GET /v1/ping");
 
-        server.addRoute(NanoHTTPD.Method.GET, "/v1/server", serverAPI::serverInfo);
+        server.addCachedRoute(NanoHTTPD.Method.GET, "/v1/server", serverAPI::serverInfo, statePolicy);
         Logger.debug("Registered GET /v1/server");
 
         server.addRoute(NanoHTTPD.Method.GET, "/v1/server/health", serverAPI::getServerHealth);
@@ -81,6 +99,12 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.GET, "/v1/server/tps", serverAPI::tps);
         Logger.debug("Registered GET /v1/server/tps");
 
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/server/connections", serverAPI::connections);
+        Logger.debug("Registered GET /v1/server/connections");
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/server/http-stats", serverAPI::httpStats);
+        Logger.debug("Registered GET /v1/server/http-stats");
+
         server.addRoute(NanoHTTPD.Method.GET, "/v1/server/uptime", serverAPI::uptime);
         Logger.debug("Registered GET /v1/server/uptime");
 
@@ -111,6 +135,12 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.GET, "/v1/server/log", serverAPI::getLog);
         Logger.debug("Registered GET /v1/server/log");
 
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/server/chat/stream", serverAPI::streamChat);
+        Logger.debug("Registered GET /v1/server/chat/stream");
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/server/log/stream", serverAPI::streamLog);
+        Logger.debug("Registered GET /v1/server/log/stream");
+
         server.addRoute(NanoHTTPD.Method.POST, "/v1/server/exec-multiple", serverAPI::execMultipleCommands);
         Logger.debug("Registered POST /v1/server/exec-multiple");
 
@@ -129,7 +159,7 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.POST, "/v1/whitelist/deactivate", whitelistAPI::deactivateWhitelist);
         Logger.debug("Registered POST /v1/whitelist/deactivate");
 
-        server.addRoute(NanoHTTPD.Method.GET, "/v1/plugins", pluginAPI::getPlugins);
+        server.addCachedRoute(NanoHTTPD.Method.GET, "/v1/plugins", pluginAPI::getPlugins, pluginPolicy);
         Logger.debug("Registered GET /v1/plugins");
 
         server.addRoute(NanoHTTPD.Method.POST, "/v1/plugins", pluginAPI::postPlugin);
@@ -144,10 +174,10 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.POST, "/v1/plugins/deactivate", pluginAPI::deactivatePlugin);
         Logger.debug("Registered POST /v1/plugins/deactivate");
 
-        server.addRoute(NanoHTTPD.Method.GET, "/v1/plugins/{name}", pluginAPI::getPlugin);
+        server.addCachedRoute(NanoHTTPD.Method.GET, "/v1/plugins/{name}", pluginAPI::getPlugin, pluginPolicy);
         Logger.debug("Registered GET /v1/plugins/{name}");
 
-        server.addRoute(NanoHTTPD.Method.GET, "/v1/worlds", worldAPI::getWorlds);
+        server.addCachedRoute(NanoHTTPD.Method.GET, "/v1/worlds", worldAPI::getWorlds, statePolicy);
         Logger.debug("Registered GET /v1/worlds");
 
         server.addRoute(NanoHTTPD.Method.POST, "/v1/worlds", worldAPI::createWorld);
@@ -156,7 +186,7 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.DELETE, "/v1/worlds", worldAPI::deleteWorld);
         Logger.debug("Registered DELETE /v1/worlds");
 
-        server.addRoute(NanoHTTPD.Method.GET, "/v1/worlds/{world}", worldAPI::getWorld);
+        server.addCachedRoute(NanoHTTPD.Method.GET, "/v1/worlds/{world}", worldAPI::getWorld, statePolicy);
         Logger.debug("Registered GET /v1/worlds/{world}");
 
         server.addRoute(NanoHTTPD.Method.PUT, "/v1/worlds/{world}", worldAPI::updateWorld);
@@ -180,6 +210,36 @@ public final class RegisterEndpoints {
         server.addRoute(NanoHTTPD.Method.GET, "/v1/backups/{name}/download", backupAPI::downloadBackup);
         Logger.debug("Registered GET /v1/backups/{name}/download");
 
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/backups/{name}/tree", backupAPI::getBackupTree);
+        Logger.debug("Registered GET /v1/backups/{name}/tree");
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/backups/{name}/file", backupAPI::extractBackupFile);
+        Logger.debug("Registered GET /v1/backups/{name}/file");
+
+        server.addRoute(NanoHTTPD.Method.POST, "/v1/backups/{name}/restore", backupAPI::restoreBackup);
+        Logger.debug("Registered POST /v1/backups/{name}/restore");
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/jobs", jobAPI::getJobs);
+        Logger.debug("Registered GET /v1/jobs");
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/jobs/{id}", jobAPI::getJob);
+        Logger.debug("Registered GET /v1/jobs/{id}");
+
+        server.addRoute(NanoHTTPD.Method.DELETE, "/v1/jobs/{id}", jobAPI::cancelJob);
+        Logger.debug("Registered DELETE /v1/jobs/{id}");
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/leaderboards/{statistic}", leaderboardAPI::getLeaderboard);
+        Logger.debug("Registered GET /v1/leaderboards/{statistic}");
+
+        server.addRoute(NanoHTTPD.Method.GET, WebServer.METRICS_PATH, metricsAPI::getMetrics);
+        Logger.debug("Registered GET " + WebServer.METRICS_PATH);
+
+        server.addRoute(NanoHTTPD.Method.GET, "/v1/webhooks", webHookAPI::getWebHookStats);
+        Logger.debug("Registered GET /v1/webhooks");
+
+        server.addRoute(NanoHTTPD.Method.POST, BatchAPI.BATCH_PATH, batchAPI::batch);
+        Logger.debug("Registered POST " + BatchAPI.BATCH_PATH);
+
         if (MinecraftServerAPI.isPluginInstalled("Maintenance")) {
             server.addRoute(NanoHTTPD.Method.GET, "/v1/maintenance", maintenanceAPI::getMaintenanceStatus);
             Logger.debug("Registered GET /v1/maintenance");
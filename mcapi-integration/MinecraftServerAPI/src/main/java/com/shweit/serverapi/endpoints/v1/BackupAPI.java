@@ -3,14 +3,24 @@ package com.shweit.serverapi.endpoints.v1;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.backup.BackupEngine;
+import com.shweit.serverapi.backup.BackupIndex;
+import com.shweit.serverapi.backup.BackupManifest;
+import com.shweit.serverapi.backup.ChunkStore;
+import com.shweit.serverapi.backup.RegionDelta;
+import com.shweit.serverapi.backup.RegionSnapshots;
+import com.shweit.serverapi.jobs.Job;
+import com.shweit.serverapi.utils.FileResponses;
 import com.shweit.serverapi.utils.Helper;
 import com.shweit.serverapi.utils.Logger;
 import fi.iki.elonen.NanoHTTPD;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.json.JSONObject;
 
 import java.io.*;
 import java.util.*;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -27,6 +37,12 @@ public final class BackupAPI {
         "ops.json",
         "whitelist.json"
     );
+    private static final String CHUNK_FOLDER = "chunks";
+    private static final String RESTORE_FOLDER = "restore";
+    private static final int TREE_PAGE_SIZE = 100;
+    private static final int TREE_MAX_PAGE_SIZE = 1000;
+    // Held while a snapshot is created, so its parent cannot be deleted in the meantime
+    private static final ReentrantLock SNAPSHOT_LOCK = new ReentrantLock();
 
     public NanoHTTPD.Response getBackups(final Map<String, String> ignoredParams) {
         // Get zipped Archived inside the /backups folder in the plugin directory
@@ -36,7 +52,7 @@ public final class BackupAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
         }
 
-        File[] backups = backupFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".zip"));
+        File[] backups = backupFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".zip") || name.endsWith(BackupManifest.EXTENSION));
         if (backups == null) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
         }
@@ -45,9 +61,24 @@ public final class BackupAPI {
         for (File backup : backups) {
             JsonObject backupObject = new JsonObject();
             backupObject.addProperty("name", backup.getName());
-            backupObject.addProperty("size", Helper.formatSize(backup.length()));
             backupObject.addProperty("lastModified", Helper.dateConverter(backup.lastModified()));
 
+            if (backup.getName().endsWith(BackupManifest.EXTENSION)) {
+                try {
+                    backupObject.addProperty("size", Helper.formatSize(BackupManifest.read(backup).getTotalSize()));
+                } catch (IOException e) {
+                    Logger.warning("Could not read backup manifest " + backup.getName() + ": " + e.getMessage());
+                    continue;
+                }
+                backupObject.addProperty("type", "incremental");
+                backupObject.addProperty("status", "completed");
+                backupArray.add(backupObject);
+                continue;
+            }
+
+            backupObject.addProperty("size", Helper.formatSize(backup.length()));
+            backupObject.addProperty("type", backup.getName().endsWith(RegionSnapshots.EXTENSION) ? "snapshot" : "full");
+
             if (backup.getName().endsWith(".loading.zip")) {
                 backupObject.addProperty("status", "in_progress"); // Indicate that the backup is still in progress
             } else {
@@ -74,8 +105,15 @@ public final class BackupAPI {
             backupFolder.mkdirs();
         }
 
+        String type = params.getOrDefault("type", "full");
+        if (!type.equals("full") && !type.equals("incremental") && !type.equals("snapshot")) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Type must be full, incremental or snapshot\"}");
+        }
+
         File backupFile = new File(backupFolder, name + ".loading.zip");
-        if (backupFile.exists()) {
+        File manifestFile = new File(backupFolder, name + BackupManifest.EXTENSION);
+        if (backupFile.exists() || new File(backupFolder, name + ".zip").exists() || manifestFile.exists()
+                || RegionSnapshots.fileOf(backupFolder, name).exists()) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Backup with that name already exists\"}");
         }
 
@@ -94,71 +132,124 @@ public final class BackupAPI {
         // Exclude the backups folder from being included in the backup
         filesToBackupList.remove(backupFolder.getAbsolutePath());
 
-        // Create a new thread to create the backup
-        Thread backupThread = new Thread(() -> {
-            try (FileOutputStream fos = new FileOutputStream(backupFile);
-                 ZipOutputStream zos = new ZipOutputStream(fos)) {
+        BackupEngine engine = new BackupEngine(BackupEngine.Settings.fromConfig(config), filesToBackupList, backupFolder);
 
-                for (String filePath : filesToBackupList) {
-                    File fileToZip = new File(filePath);
-                    if (fileToZip.exists()) {
-                        zipFile(fileToZip, fileToZip.getName(), zos, backupFolder.getAbsolutePath());
+        Job job;
+        try {
+            job = MinecraftServerAPI.getJobManager().submit("backup", "Create " + type + " backup " + name, backupJob -> {
+                backupJob.trackProgress(engine);
+                File finalBackupFile = type.equals("snapshot") ? RegionSnapshots.fileOf(backupFolder, name) : new File(backupFolder, name + ".zip");
+                try {
+                    if (type.equals("incremental")) {
+                        createIncrementalBackup(engine, backupFolder, name, manifestFile);
+                        finalBackupFile = manifestFile;
+                    } else {
+                        if (type.equals("snapshot")) {
+                            createSnapshot(engine, backupFolder, name, backupFile, config.getInt("backup.snapshot.full_every", 24));
+                        } else {
+                            engine.createBackup(backupFile);
+                        }
+
+                        // Rename file to remove .loading
+                        if (!(backupFile.renameTo(finalBackupFile))) {
+                            throw new IOException("Failed to rename backup file: " + backupFile.getName());
+                        }
+                        if (type.equals("full")) {
+                            writeIndex(finalBackupFile);
+                        }
                     }
-                }
-
-                // Rename file to remove .loading
-                File finalBackupFile = new File(backupFolder, name + ".zip");
-                if (!(backupFile.renameTo(finalBackupFile))) {
-                    Logger.error("Failed to rename backup file: " + backupFile.getName());
+                } catch (IOException | InterruptedException e) {
+                    backupFile.delete();
+                    throw e;
                 }
 
                 Logger.info("Backup created successfully: " + finalBackupFile.getName());
 
-            } catch (IOException e) {
-                Logger.error("Error creating backup: " + e.getMessage());
-            }
-        });
-        backupThread.setName("BackupThread-" + name + "-" + backupThread.getId());
-
-        backupThread.start();
+                JSONObject result = new JSONObject();
+                result.put("name", name);
+                result.put("type", type);
+                result.put("file", finalBackupFile.getName());
+                result.put("size", finalBackupFile.length());
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            return JobAPI.queueFull();
+        }
 
         JsonObject response = new JsonObject();
         response.addProperty("message", "Backup creation started");
-        response.addProperty("threadId", backupThread.getId());
-        response.addProperty("threadName", backupThread.getName());
+        response.addProperty("type", type);
+        response.addProperty("jobId", job.getId());
 
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
     }
 
-    private void zipFile(final File fileToZip, final String fileName, final ZipOutputStream zos, final String backupFolderPath) throws IOException {
-        if (fileToZip.isHidden()) {
-            return;
+    private static void writeIndex(final File backupFile) {
+        try {
+            BackupIndex.write(backupFile);
+        } catch (IOException e) {
+            // The index is written again when the backup is browsed for the first time
+            Logger.warning("Could not write the index of backup " + backupFile.getName() + ": " + e.getMessage());
         }
-        if (fileToZip.isDirectory()) {
-            if (fileName.endsWith("/")) {
-                zos.putNextEntry(new ZipEntry(fileName));
-                zos.closeEntry();
-            } else {
-                zos.putNextEntry(new ZipEntry(fileName + "/"));
-                zos.closeEntry();
-            }
-            File[] children = fileToZip.listFiles();
-            for (File childFile : children) {
-                // Recursively zip files, but skip the backup folder itself
-                if (!childFile.getAbsolutePath().startsWith(backupFolderPath)) {
-                    zipFile(childFile, fileName + "/" + childFile.getName(), zos, backupFolderPath);
+    }
+
+    private static void createIncrementalBackup(final BackupEngine engine, final File backupFolder, final String name, final File manifestFile)
+            throws IOException, InterruptedException {
+        ChunkStore store = new ChunkStore(new File(backupFolder, CHUNK_FOLDER));
+
+        // Keeps the garbage collection of a concurrent delete from removing chunks before the manifest references them
+        ChunkStore.getLock().readLock().lock();
+        try {
+            BackupManifest manifest = engine.createIncrementalBackup(name, store, latestManifest(backupFolder));
+            manifest.write(manifestFile);
+        } finally {
+            ChunkStore.getLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot against the latest snapshot, or a snapshot of base deltas if there is none
+     * or the chain of snapshots since the last base snapshot has reached {@code fullEvery}.
+     */
+    private static void createSnapshot(final BackupEngine engine, final File backupFolder, final String name, final File target, final int fullEvery)
+            throws IOException, InterruptedException {
+        SNAPSHOT_LOCK.lock();
+        try {
+            String parent = null;
+            Map<String, RegionDelta.Header> previous = Map.of();
+
+            File[] snapshots = backupFolder.listFiles((dir, fileName) -> fileName.endsWith(RegionSnapshots.EXTENSION));
+            if (snapshots != null && snapshots.length > 0) {
+                File latest = Collections.max(Arrays.asList(snapshots), Comparator.comparingLong(File::lastModified));
+                try {
+                    String latestName = RegionSnapshots.readInfo(latest).name();
+                    if (RegionSnapshots.chainLength(backupFolder, latestName) < fullEvery) {
+                        previous = RegionSnapshots.readRegionHeaders(latest);
+                        parent = latestName;
+                    }
+                } catch (IOException e) {
+                    Logger.warning("Could not read snapshot " + latest.getName() + ", writing a base snapshot: " + e.getMessage());
                 }
             }
-            return;
-        }
-        try (FileInputStream fis = new FileInputStream(fileToZip)) {
-            ZipEntry zipEntry = new ZipEntry(fileName);
-            zos.putNextEntry(zipEntry);
-            byte[] bytes = new byte[1024];
-            int length;
-            while ((length = fis.read(bytes)) >= 0) {
-                zos.write(bytes, 0, length);
-            }
+
+            engine.createSnapshot(target, previous, RegionSnapshots.metadata(name, parent, System.currentTimeMillis()));
+        } finally {
+            SNAPSHOT_LOCK.unlock();
+        }
+    }
+
+    private static BackupManifest latestManifest(final File backupFolder) {
+        File[] manifests = backupFolder.listFiles((dir, fileName) -> fileName.endsWith(BackupManifest.EXTENSION));
+        if (manifests == null || manifests.length == 0) {
+            return null;
+        }
+
+        File latest = Collections.max(Arrays.asList(manifests), Comparator.comparingLong(File::lastModified));
+        try {
+            return BackupManifest.read(latest);
+        } catch (IOException e) {
+            Logger.warning("Could not read backup manifest " + latest.getName() + ", all files are read again: " + e.getMessage());
+            return null;
         }
     }
 
@@ -169,6 +260,20 @@ public final class BackupAPI {
         }
 
         File backupFolder = new File("backups");
+        File manifestFile = new File(backupFolder, name + BackupManifest.EXTENSION);
+        if (manifestFile.exists()) {
+            if (!manifestFile.delete()) {
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to delete backup\"}");
+            }
+            collectUnusedChunks(backupFolder);
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{\"message\": \"Backup deleted successfully\"}");
+        }
+
+        File snapshotFile = RegionSnapshots.fileOf(backupFolder, name);
+        if (snapshotFile.exists()) {
+            return deleteSnapshot(backupFolder, name, snapshotFile);
+        }
+
         File backupFile = new File(backupFolder, name + ".zip");
         if (!backupFile.exists()) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Backup not found\"}");
@@ -177,37 +282,122 @@ public final class BackupAPI {
         if (!backupFile.delete()) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to delete backup\"}");
         }
+        BackupIndex.fileOf(backupFile).delete();
 
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{\"message\": \"Backup deleted successfully\"}");
     }
 
-    public NanoHTTPD.Response getStatus(final Map<String, String> params) {
-        int threadId = Integer.parseInt(params.get("threadId"));
+    private NanoHTTPD.Response deleteSnapshot(final File backupFolder, final String name, final File snapshotFile) {
+        if (!SNAPSHOT_LOCK.tryLock()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"A snapshot is being created, try again later\"}");
+        }
+
+        try {
+            // Later snapshots only hold the chunks that changed since this one
+            List<String> dependents = RegionSnapshots.dependents(backupFolder, name);
+            if (!dependents.isEmpty()) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Snapshot is needed to restore later snapshots, delete them first");
+                JsonArray dependentArray = new JsonArray();
+                dependents.forEach(dependentArray::add);
+                error.add("dependents", dependentArray);
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", error.toString());
+            }
 
-        if (threadId == 0) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Thread ID is required\"}");
+            if (!snapshotFile.delete()) {
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to delete backup\"}");
+            }
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{\"message\": \"Backup deleted successfully\"}");
+        } catch (IOException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read snapshots\"}");
+        } finally {
+            SNAPSHOT_LOCK.unlock();
         }
+    }
 
-        Thread thread = Thread.getAllStackTraces().keySet().stream()
-            .filter(t -> t.getId() == threadId)
-            .findFirst()
-            .orElse(null);
+    /**
+     * Deletes the chunks no manifest references anymore. Runs in the background, since it waits for running incremental backups.
+     */
+    private static void collectUnusedChunks(final File backupFolder) {
+        Thread collector = new Thread(() -> {
+            ChunkStore.getLock().writeLock().lock();
+            try {
+                int deleted = new ChunkStore(new File(backupFolder, CHUNK_FOLDER)).collectGarbage(BackupManifest.referencedChunks(backupFolder));
+                Logger.debug("Deleted " + deleted + " unused backup chunks");
+            } catch (IOException e) {
+                Logger.error("Error deleting unused backup chunks: " + e.getMessage());
+            } finally {
+                ChunkStore.getLock().writeLock().unlock();
+            }
+        }, "BackupChunkCollector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    public NanoHTTPD.Response restoreBackup(final Map<String, String> params) {
+        String name = params.get("name");
+        if (name == null || name.isEmpty()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Name is required\"}");
+        }
 
-        if (thread == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Thread not found\"}");
+        File backupFolder = new File("backups");
+        File manifestFile = new File(backupFolder, name + BackupManifest.EXTENSION);
+        boolean snapshot = RegionSnapshots.fileOf(backupFolder, name).exists();
+        if (!manifestFile.exists() && !snapshot) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Incremental backup or snapshot not found\"}");
+        }
+
+        // Restoring into the live server directory would overwrite loaded worlds, so the files are staged in a separate folder
+        File target = new File(new File(backupFolder, RESTORE_FOLDER), name);
+        if (target.exists()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Backup was already restored\"}");
+        }
+
+        Job job;
+        try {
+            job = MinecraftServerAPI.getJobManager().submit("backup.restore", "Restore backup " + name, restoreJob -> {
+                if (snapshot) {
+                    RegionSnapshots.rebuild(backupFolder, name, target);
+                } else {
+                    ChunkStore.getLock().readLock().lock();
+                    try {
+                        BackupManifest.read(manifestFile).restore(new ChunkStore(new File(backupFolder, CHUNK_FOLDER)), target);
+                    } finally {
+                        ChunkStore.getLock().readLock().unlock();
+                    }
+                }
+                Logger.info("Backup restored successfully to " + target.getPath());
+
+                JSONObject result = new JSONObject();
+                result.put("target", target.getPath());
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            return JobAPI.queueFull();
         }
 
         JsonObject response = new JsonObject();
-        response.addProperty("name", thread.getName());
-        response.addProperty("state", thread.getState().name());
-        response.addProperty("alive", thread.isAlive());
-        response.addProperty("daemon", thread.isDaemon());
-        response.addProperty("interrupted", thread.isInterrupted());
-        response.addProperty("priority", thread.getPriority());
+        response.addProperty("message", "Backup restore started");
+        response.addProperty("target", target.getPath());
+        response.addProperty("jobId", job.getId());
 
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
     }
 
+    public NanoHTTPD.Response getStatus(final Map<String, String> params) {
+        String jobId = params.get("jobId");
+        if (jobId == null || jobId.isEmpty()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Job ID is required\"}");
+        }
+
+        Job job = MinecraftServerAPI.getJobManager().get(jobId);
+        if (job == null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Job not found\"}");
+        }
+
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", job.toJson().toString());
+    }
+
     public NanoHTTPD.Response getBackup(final Map<String, String> params) {
         String name = params.get("name");
         if (name == null || name.isEmpty()) {
@@ -215,7 +405,15 @@ public final class BackupAPI {
         }
 
         File backupFolder = new File("backups");
+        File manifestFile = new File(backupFolder, name + BackupManifest.EXTENSION);
+        if (manifestFile.exists()) {
+            return getIncrementalBackup(name, manifestFile);
+        }
+
         File backupFile = new File(backupFolder, name + ".zip");
+        if (!backupFile.exists()) {
+            backupFile = RegionSnapshots.fileOf(backupFolder, name);
+        }
         if (!backupFile.exists()) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Backup not found\"}");
         }
@@ -241,6 +439,48 @@ public final class BackupAPI {
         }
     }
 
+    private NanoHTTPD.Response getIncrementalBackup(final String name, final File manifestFile) {
+        try {
+            BackupManifest manifest = BackupManifest.read(manifestFile);
+            JsonObject root = new JsonObject();
+            for (BackupManifest.Entry entry : manifest.getEntries()) {
+                addManifestEntryToTree(root, entry);
+            }
+
+            JsonObject response = new JsonObject();
+            response.addProperty("name", name);
+            response.addProperty("type", "incremental");
+            response.addProperty("size", Helper.formatSize(manifest.getTotalSize()));
+            response.addProperty("created", Helper.dateConverter(manifest.getCreated()));
+            response.add("files", root);
+
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
+        } catch (IOException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read backup\"}");
+        }
+    }
+
+    private void addManifestEntryToTree(final JsonObject root, final BackupManifest.Entry entry) {
+        String[] pathParts = entry.path().split("/");
+        JsonObject currentDir = root;
+
+        for (int i = 0; i < pathParts.length; i++) {
+            String part = pathParts[i];
+            if (i == pathParts.length - 1 && !entry.directory()) {
+                JsonObject fileObject = new JsonObject();
+                fileObject.addProperty("size", Helper.formatSize(entry.size()));
+                fileObject.addProperty("lastModified", Helper.dateConverter(entry.lastModified()));
+                fileObject.addProperty("chunks", entry.chunks().size());
+                currentDir.add(part, fileObject);
+            } else {
+                if (!currentDir.has(part)) {
+                    currentDir.add(part, new JsonObject());
+                }
+                currentDir = currentDir.getAsJsonObject(part);
+            }
+        }
+    }
+
     private void addEntryToTree(final JsonObject root, final ZipEntry entry) {
         String[] pathParts = entry.getName().split("/");
         JsonObject currentDir = root;
@@ -264,6 +504,127 @@ public final class BackupAPI {
         }
     }
 
+    public NanoHTTPD.Response getBackupTree(final Map<String, String> params) {
+        File backupFile = findFullBackup(params);
+        if (backupFile == null) {
+            return backupNotBrowsable(params);
+        }
+
+        int offset;
+        int limit;
+        try {
+            offset = Integer.parseInt(params.getOrDefault("offset", "0"));
+            limit = Math.min(Integer.parseInt(params.getOrDefault("limit", Integer.toString(TREE_PAGE_SIZE))), TREE_MAX_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Offset and limit must be numbers\"}");
+        }
+        if (offset < 0 || limit < 0) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Offset and limit must not be negative\"}");
+        }
+
+        String path = trimPath(params.getOrDefault("path", ""));
+        try {
+            BackupIndex.Listing listing = BackupIndex.list(backupFile, path, offset, limit);
+            if (listing == null) {
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Directory not found in backup\"}");
+            }
+
+            JsonArray entries = new JsonArray();
+            for (BackupIndex.Entry entry : listing.entries()) {
+                JsonObject entryObject = new JsonObject();
+                entryObject.addProperty("name", entry.name());
+                entryObject.addProperty("path", entry.path());
+                entryObject.addProperty("type", entry.directory() ? "directory" : "file");
+                entryObject.addProperty("size", entry.size());
+                entryObject.addProperty("compressedSize", entry.compressedSize());
+                if (!entry.directory()) {
+                    entryObject.addProperty("crc", String.format("%08x", entry.crc()));
+                }
+                entryObject.addProperty("lastModified", Helper.dateConverter(entry.lastModified()));
+                entries.add(entryObject);
+            }
+
+            JsonObject response = new JsonObject();
+            response.addProperty("name", params.get("name"));
+            response.addProperty("path", path);
+            response.addProperty("total", listing.total());
+            response.addProperty("offset", offset);
+            response.addProperty("limit", limit);
+            if (offset + listing.entries().size() < listing.total()) {
+                response.addProperty("nextOffset", offset + listing.entries().size());
+            }
+            response.add("entries", entries);
+
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
+        } catch (IOException e) {
+            Logger.error("Could not read the index of backup " + backupFile.getName() + ": " + e.getMessage());
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read backup\"}");
+        }
+    }
+
+    public NanoHTTPD.Response extractBackupFile(final Map<String, String> params) {
+        File backupFile = findFullBackup(params);
+        if (backupFile == null) {
+            return backupNotBrowsable(params);
+        }
+
+        String path = trimPath(params.getOrDefault("path", ""));
+        if (path.isEmpty()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Path is required\"}");
+        }
+
+        try {
+            BackupIndex.Entry entry = BackupIndex.find(backupFile, path);
+            if (entry == null) {
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"File not found in backup\"}");
+            }
+            if (entry.directory()) {
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Path is a directory\"}");
+            }
+
+            NanoHTTPD.Response response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/octet-stream",
+                    BackupIndex.openEntry(backupFile, entry), entry.size());
+            response.addHeader("Content-Disposition", "attachment; filename=\"" + entry.name().replace("\"", "") + "\"");
+            response.addHeader("X-Content-CRC32", String.format("%08x", entry.crc()));
+            return response;
+        } catch (IOException e) {
+            Logger.error("Could not extract " + path + " from backup " + backupFile.getName() + ": " + e.getMessage());
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read backup\"}");
+        }
+    }
+
+    /**
+     * Returns the zip file of a full backup, or null if the backup is missing or not a full backup.
+     */
+    private static File findFullBackup(final Map<String, String> params) {
+        String name = params.get("name");
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        File backupFile = new File(new File("backups"), name + ".zip");
+        return backupFile.exists() ? backupFile : null;
+    }
+
+    private static NanoHTTPD.Response backupNotBrowsable(final Map<String, String> params) {
+        String name = params.get("name");
+        File backupFolder = new File("backups");
+        if (name != null && (new File(backupFolder, name + BackupManifest.EXTENSION).exists() || RegionSnapshots.fileOf(backupFolder, name).exists())) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Only full backups can be browsed, restore incremental backups and snapshots instead\"}");
+        }
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Backup not found\"}");
+    }
+
+    private static String trimPath(final String path) {
+        String trimmed = path.replace('\\', '/');
+        while (trimmed.startsWith("/")) {
+            trimmed = trimmed.substring(1);
+        }
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
     public NanoHTTPD.Response downloadBackup(final Map<String, String> params) {
         String name = params.get("name");
         if (name == null || name.isEmpty()) {
@@ -271,14 +632,20 @@ public final class BackupAPI {
         }
 
         File backupFolder = new File("backups");
+        if (new File(backupFolder, name + BackupManifest.EXTENSION).exists()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Incremental backups cannot be downloaded, restore them instead\"}");
+        }
+        if (RegionSnapshots.fileOf(backupFolder, name).exists()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Snapshots only hold changed chunks and cannot be downloaded, restore them instead\"}");
+        }
+
         File backupFile = new File(backupFolder, name + ".zip");
         if (!backupFile.exists()) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Backup not found\"}");
         }
 
         try {
-            FileInputStream fis = new FileInputStream(backupFile);
-            NanoHTTPD.Response response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/zip", fis, backupFile.length());
+            NanoHTTPD.Response response = FileResponses.serve(backupFile, "application/zip", params);
             response.addHeader("Content-Disposition", "attachment; filename=\"" + backupFile.getName() + "\"");
             return response;
         } catch (IOException e) {
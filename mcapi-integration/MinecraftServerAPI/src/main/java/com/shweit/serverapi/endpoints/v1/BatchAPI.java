@@ -0,0 +1,302 @@
+package com.shweit.serverapi.endpoints.v1;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.WebServer;
+import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.MainThreadExecutor;
+import com.shweit.serverapi.utils.RouteDefinition;
+import com.shweit.serverapi.utils.RouteTrie;
+import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs many API requests in one HTTP request.
+ * <p>
+ *     All usernames of the batch are resolved in one pass before any request runs, asking Mojang in bulk
+ *     for the ones that are not known locally. Whitelist changes, teleports and commands are checked by the
+ *     same {@link MainThreadAction} as their routes, and their changes are run on the server thread
+ *     together: consecutive ones share a single task, so they wait for one tick instead of one each. Any
+ *     other route is called through its regular handler. Requests run in the order of the batch and each
+ *     gets its own status and body in the result.
+ * </p>
+ */
+public final class BatchAPI {
+    public static final String BATCH_PATH = "/v1/batch";
+
+    private static final int DEFAULT_MAX_REQUESTS = 1000;
+
+    private final WebServer server;
+    // Routes whose work is grouped into one task on the server thread, by method and route pattern
+    private final Map<String, Function<Map<String, String>, MainThreadAction>> operations = new HashMap<>();
+
+    public BatchAPI(final WebServer webServer) {
+        this.server = webServer;
+
+        operations.put("POST /v1/whitelist", params -> WhitelistAPI.prepareWhitelist(params, true));
+        operations.put("DELETE /v1/whitelist", params -> WhitelistAPI.prepareWhitelist(params, false));
+        operations.put("POST /v1/players/{username}/location", PlayerAPI::prepareTeleport);
+        operations.put("POST /v1/server/exec", ServerAPI::prepareExecCommand);
+    }
+
+    public NanoHTTPD.Response batch(final Map<String, String> params) {
+        String body = params.get("postData");
+        if (body == null || body.isEmpty()) {
+            return error(NanoHTTPD.Response.Status.BAD_REQUEST, "Invalid request body. Expected JSON with 'requests' array.");
+        }
+
+        // Either {"requests": [...]} or the array on its own
+        JSONArray requests = null;
+        try {
+            Object json = new JSONTokener(body).nextValue();
+            if (json instanceof JSONObject) {
+                requests = ((JSONObject) json).optJSONArray("requests");
+            } else if (json instanceof JSONArray) {
+                requests = (JSONArray) json;
+            }
+        } catch (JSONException e) {
+            Logger.debug("Invalid batch body: " + e.getMessage());
+        }
+        if (requests == null) {
+            return error(NanoHTTPD.Response.Status.BAD_REQUEST, "Missing 'requests' array in request body.");
+        }
+
+        int maxRequests = MinecraftServerAPI.config.getInt("batch.max_requests", DEFAULT_MAX_REQUESTS);
+        if (requests.length() > maxRequests) {
+            return error(NanoHTTPD.Response.Status.BAD_REQUEST, "A batch can contain at most " + maxRequests + " requests.");
+        }
+
+        List<SubRequest> subRequests = new ArrayList<>(requests.length());
+        Set<String> usernames = new LinkedHashSet<>();
+        for (int i = 0; i < requests.length(); i++) {
+            SubRequest subRequest = parse(requests.opt(i));
+            subRequests.add(subRequest);
+            if (subRequest.params() != null && subRequest.params().get("username") != null) {
+                usernames.add(subRequest.params().get("username"));
+            }
+        }
+
+        // Warms the resolver cache, so the requests find their usernames without asking Mojang one by one
+        if (!usernames.isEmpty()) {
+            MinecraftServerAPI.getUUIDResolver().resolveAll(usernames);
+        }
+
+        Result[] results = new Result[subRequests.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<Supplier<MainThreadAction.Outcome>> pendingWork = new ArrayList<>();
+        for (int i = 0; i < subRequests.size(); i++) {
+            SubRequest subRequest = subRequests.get(i);
+            if (subRequest.error() != null) {
+                results[i] = subRequest.error();
+                continue;
+            }
+
+            RouteDefinition route = subRequest.match().getRoute();
+            Function<Map<String, String>, MainThreadAction> operation = operations.get(route.getHttpMethod() + " " + route.getRoutePattern());
+            if (operation == null) {
+                // Everything queued so far has to run before this request to keep the order of the batch
+                runOnMainThread(pending, pendingWork, results);
+                results[i] = call(subRequest);
+                continue;
+            }
+
+            MainThreadAction action = operation.apply(subRequest.params());
+            if (action.getOutcome() != null) {
+                results[i] = Result.of(action.getOutcome());
+            } else {
+                pending.add(i);
+                pendingWork.add(action.getApply());
+            }
+        }
+        runOnMainThread(pending, pendingWork, results);
+
+        JSONArray resultsJson = new JSONArray();
+        for (Result result : results) {
+            resultsJson.put(result.toJson());
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("results", resultsJson);
+        response.put("totalRequests", results.length);
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
+    }
+
+    private SubRequest parse(final Object json) {
+        if (!(json instanceof JSONObject)) {
+            return SubRequest.invalid("Each request must be an object with 'method' and 'path'.");
+        }
+        JSONObject request = (JSONObject) json;
+
+        NanoHTTPD.Method method;
+        try {
+            method = NanoHTTPD.Method.valueOf(request.optString("method", "GET").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return SubRequest.invalid("Unknown method: " + request.optString("method"));
+        }
+
+        String path = request.optString("path", null);
+        if (path == null || path.isEmpty()) {
+            return SubRequest.invalid("Missing 'path'.");
+        }
+
+        RouteTrie.Match match = server.findRoute(path, method);
+        if (match == null) {
+            return new SubRequest(null, null, new Result(NanoHTTPD.Response.Status.NOT_FOUND.getRequestStatus(), "No route found for " + method + " " + path));
+        }
+        if (match.getRoute().getRoutePattern().equals(BATCH_PATH)) {
+            return SubRequest.invalid("Batches cannot be nested.");
+        }
+
+        Map<String, String> params = new HashMap<>();
+        JSONObject paramsJson = request.optJSONObject("params");
+        if (paramsJson != null) {
+            for (String key : paramsJson.keySet()) {
+                Object value = paramsJson.get(key);
+                if (value != JSONObject.NULL) {
+                    params.put(key, value.toString());
+                }
+            }
+        }
+        if (request.has("body") && !request.isNull("body")) {
+            params.put("postData", request.get("body").toString());
+        }
+        // Added here already, so usernames in the path are resolved together with the others
+        params.putAll(match.getParams());
+
+        return new SubRequest(match, params, null);
+    }
+
+    /**
+     * Calls the regular handler of a route and reads its response.
+     */
+    private Result call(final SubRequest subRequest) {
+        NanoHTTPD.Response response = server.call(subRequest.match(), subRequest.params());
+        int status = response.getStatus().getRequestStatus();
+        try (InputStream data = response.getData()) {
+            if (data == null) {
+                return new Result(status, null);
+            }
+
+            String mimeType = response.getMimeType() == null ? "" : response.getMimeType().toLowerCase(Locale.ROOT);
+            // Closing the data ends event streams and downloads without reading them
+            if (mimeType.startsWith("text/event-stream") || !(mimeType.startsWith("text/") || mimeType.contains("json") || mimeType.contains("yaml"))) {
+                return new Result(NanoHTTPD.Response.Status.BAD_REQUEST.getRequestStatus(), "Responses of type " + response.getMimeType() + " cannot be part of a batch.");
+            }
+
+            String text = new String(data.readAllBytes(), StandardCharsets.UTF_8);
+            if (mimeType.contains("json") && !text.isEmpty()) {
+                try {
+                    return new Result(status, new JSONTokener(text).nextValue());
+                } catch (JSONException e) {
+                    return new Result(status, text);
+                }
+            }
+            return new Result(status, text);
+        } catch (IOException e) {
+            Logger.error("Could not read response of " + subRequest.match().getRoute().getRoutePattern() + ": " + e.getMessage());
+            return new Result(NanoHTTPD.Response.Status.INTERNAL_ERROR.getRequestStatus(), "Failed to read response");
+        }
+    }
+
+    /**
+     * Runs the queued work in a single task on the server thread and stores the result of each request.
+     */
+    private static void runOnMainThread(final List<Integer> pending, final List<Supplier<MainThreadAction.Outcome>> pendingWork, final Result[] results) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Supplier<MainThreadAction.Outcome>> work = new ArrayList<>(pendingWork);
+        List<Result> workResults;
+        try {
+            workResults = MainThreadExecutor.await(MainThreadExecutor.supply(() -> {
+                List<Result> done = new ArrayList<>(work.size());
+                for (Supplier<MainThreadAction.Outcome> task : work) {
+                    try {
+                        done.add(Result.of(task.get()));
+                    } catch (RuntimeException e) {
+                        Logger.error("Error in batch request: " + e.getMessage());
+                        done.add(new Result(NanoHTTPD.Response.Status.INTERNAL_ERROR.getRequestStatus(), "Failed to run request"));
+                    }
+                }
+                return done;
+            }));
+        } catch (TimeoutException e) {
+            workResults = failAll(work.size(), NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "The server did not run the request in time, nothing was changed.");
+        } catch (ExecutionException e) {
+            Logger.error("Error running batch: " + e.getCause().getMessage());
+            workResults = failAll(work.size(), NanoHTTPD.Response.Status.INTERNAL_ERROR, "Failed to run request");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workResults = failAll(work.size(), NanoHTTPD.Response.Status.INTERNAL_ERROR, "Failed to run request");
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            results[pending.get(i)] = workResults.get(i);
+        }
+        pending.clear();
+        pendingWork.clear();
+    }
+
+    private static List<Result> failAll(final int count, final NanoHTTPD.Response.Status status, final String message) {
+        List<Result> failed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            failed.add(new Result(status.getRequestStatus(), message));
+        }
+        return failed;
+    }
+
+    private static NanoHTTPD.Response error(final NanoHTTPD.Response.Status status, final String message) {
+        JSONObject error = new JSONObject();
+        error.put("error", message);
+        return NanoHTTPD.newFixedLengthResponse(status, "application/json", error.toString());
+    }
+
+    /**
+     * @param error the result of a request that cannot be run, or null
+     */
+    private record SubRequest(RouteTrie.Match match, Map<String, String> params, Result error) {
+
+        private static SubRequest invalid(final String message) {
+            return new SubRequest(null, null, new Result(NanoHTTPD.Response.Status.BAD_REQUEST.getRequestStatus(), message));
+        }
+    }
+
+    /**
+     * @param body the JSON body of the response, or an error message for failed requests
+     */
+    private record Result(int status, Object body) {
+
+        private static Result of(final MainThreadAction.Outcome outcome) {
+            return new Result(outcome.status().getRequestStatus(), outcome.body());
+        }
+
+        private JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("status", status);
+            if (status >= 400 && body instanceof String) {
+                json.put("body", new JSONObject().put("error", body));
+            } else {
+                json.put("body", body == null ? JSONObject.NULL : body);
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.shweit.serverapi.endpoints.v1;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.jobs.Job;
+import com.shweit.serverapi.jobs.JobManager;
+import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public final class JobAPI {
+    public NanoHTTPD.Response getJobs(final Map<String, String> params) {
+        JobManager jobManager = MinecraftServerAPI.getJobManager();
+        List<Job> jobs = jobManager.getJobs();
+
+        String state = params.get("state");
+        if (state != null && !state.isEmpty()) {
+            jobs = jobs.stream().filter(job -> job.getState().name().equalsIgnoreCase(state)).collect(Collectors.toList());
+        }
+
+        JSONObject response = jobManager.getStats();
+        response.put("jobs", JobManager.toJson(jobs));
+
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
+    }
+
+    public NanoHTTPD.Response getJob(final Map<String, String> params) {
+        Job job = MinecraftServerAPI.getJobManager().get(params.get("id"));
+        if (job == null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Job not found\"}");
+        }
+
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", job.toJson().toString());
+    }
+
+    public NanoHTTPD.Response cancelJob(final Map<String, String> params) {
+        JobManager jobManager = MinecraftServerAPI.getJobManager();
+        Job job = jobManager.get(params.get("id"));
+        if (job == null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{\"error\": \"Job not found\"}");
+        }
+
+        if (!jobManager.cancel(job)) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Job has already finished\"}");
+        }
+
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", job.toJson().toString());
+    }
+
+    /**
+     * The response for a job that was submitted: 202 with the job, so the client can poll /v1/jobs/{id}.
+     */
+    public static NanoHTTPD.Response accepted(final Job job) {
+        JSONObject response = new JSONObject();
+        response.put("message", "Job submitted");
+        response.put("jobId", job.getId());
+        response.put("job", job.toJson());
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.ACCEPTED, "application/json", response.toString());
+    }
+
+    public static NanoHTTPD.Response queueFull() {
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "application/json",
+                "{\"error\": \"Too many jobs are queued, try again later\"}");
+    }
+}
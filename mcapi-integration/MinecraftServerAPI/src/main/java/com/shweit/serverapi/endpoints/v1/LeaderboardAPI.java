@@ -0,0 +1,47 @@
+package com.shweit.serverapi.endpoints.v1;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.stats.LeaderboardIndex;
+import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Map;
+
+public final class LeaderboardAPI {
+    private static final int DEFAULT_LIMIT = 10;
+
+    public NanoHTTPD.Response getLeaderboard(final Map<String, String> params) {
+        LeaderboardIndex index = MinecraftServerAPI.getLeaderboardIndex();
+        if (!index.isReady()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "application/json",
+                    "{\"error\": \"Leaderboards are still being built, try again later\"}");
+        }
+
+        int limit;
+        try {
+            limit = Math.min(Integer.parseInt(params.getOrDefault("limit", Integer.toString(DEFAULT_LIMIT))), index.getMaxSize());
+        } catch (NumberFormatException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Limit must be a number\"}");
+        }
+        if (limit < 0) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Limit must not be negative\"}");
+        }
+
+        String statistic = params.get("statistic");
+        LeaderboardIndex.Leaderboard leaderboard = index.get(statistic);
+        if (leaderboard == null) {
+            JSONObject error = new JSONObject();
+            error.put("error", "Unknown statistic: " + statistic);
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", error.toString());
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("statistic", statistic.toUpperCase(Locale.ROOT));
+        response.put("updatedAt", index.getUpdatedAt());
+        response.put("players", leaderboard.getPlayers());
+        response.put("entries", leaderboard.toJson(limit));
+
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
+    }
+}
@@ -0,0 +1,94 @@
+package com.shweit.serverapi.endpoints.v1;
+
+import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.MainThreadExecutor;
+import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONObject;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A request that changes the server, split into a check that runs on the HTTP thread and the change
+ * itself, which has to run on the server thread.
+ * <p>
+ *     The regular route and {@link BatchAPI} share both steps, so a request is validated and answered the
+ *     same way either way. A route waits for its own change with {@link #respond()}, while a batch runs
+ *     the changes of consecutive requests in a single task.
+ * </p>
+ */
+final class MainThreadAction {
+    private final Outcome outcome;
+    private final Supplier<Outcome> apply;
+
+    private MainThreadAction(final Outcome result, final Supplier<Outcome> applyStep) {
+        this.outcome = result;
+        this.apply = applyStep;
+    }
+
+    /**
+     * An action that was rejected by its check and has nothing to run.
+     */
+    static MainThreadAction failed(final NanoHTTPD.Response.Status status, final String message) {
+        return new MainThreadAction(Outcome.error(status, message), null);
+    }
+
+    /**
+     * @param applyStep the change, which is run on the server thread
+     */
+    static MainThreadAction apply(final Supplier<Outcome> applyStep) {
+        return new MainThreadAction(null, applyStep);
+    }
+
+    /**
+     * @return the result of the check, or null if {@link #getApply()} has to run
+     */
+    Outcome getOutcome() {
+        return outcome;
+    }
+
+    Supplier<Outcome> getApply() {
+        return apply;
+    }
+
+    /**
+     * Runs the change on the server thread and waits for it.
+     */
+    NanoHTTPD.Response respond() {
+        if (outcome != null) {
+            return outcome.toResponse();
+        }
+
+        try {
+            return MainThreadExecutor.await(MainThreadExecutor.supply(apply)).toResponse();
+        } catch (TimeoutException e) {
+            return Outcome.error(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE,
+                    "The server did not run the request within " + MainThreadExecutor.getTimeoutSeconds() + " seconds, nothing was changed.").toResponse();
+        } catch (ExecutionException e) {
+            Logger.error("Error running request: " + e.getCause().getMessage());
+            return Outcome.error(NanoHTTPD.Response.Status.INTERNAL_ERROR, "Failed to run request").toResponse();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.error(NanoHTTPD.Response.Status.INTERNAL_ERROR, "Failed to run request").toResponse();
+        }
+    }
+
+    /**
+     * The status and JSON body of an action. Errors have the body {@code {"error": message}}.
+     */
+    record Outcome(NanoHTTPD.Response.Status status, JSONObject body) {
+
+        static Outcome ok(final JSONObject body) {
+            return new Outcome(NanoHTTPD.Response.Status.OK, body);
+        }
+
+        static Outcome error(final NanoHTTPD.Response.Status status, final String message) {
+            return new Outcome(status, new JSONObject().put("error", message));
+        }
+
+        NanoHTTPD.Response toResponse() {
+            return NanoHTTPD.newFixedLengthResponse(status, "application/json", body.toString());
+        }
+    }
+}
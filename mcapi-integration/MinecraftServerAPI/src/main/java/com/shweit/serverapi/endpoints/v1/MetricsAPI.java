@@ -0,0 +1,15 @@
+package com.shweit.serverapi.endpoints.v1;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.metrics.PrometheusWriter;
+import fi.iki.elonen.NanoHTTPD;
+
+import java.util.Map;
+
+public final class MetricsAPI {
+
+    public NanoHTTPD.Response getMetrics(final Map<String, String> params) {
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, PrometheusWriter.CONTENT_TYPE,
+                MinecraftServerAPI.getMetricsCollector().scrape());
+    }
+}
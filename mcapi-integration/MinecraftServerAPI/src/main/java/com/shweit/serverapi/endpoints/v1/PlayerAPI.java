@@ -1,29 +1,38 @@
 package com.shweit.serverapi.endpoints.v1;
 
 import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.state.PlayerState;
+import com.shweit.serverapi.stats.StatsService;
+import com.shweit.serverapi.stats.StatsSnapshot;
 import com.shweit.serverapi.utils.Helper;
 import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.PlayerDirectory;
 import fi.iki.elonen.NanoHTTPD;
 import org.bukkit.*;
 import org.bukkit.advancement.Advancement;
 import org.bukkit.advancement.AdvancementProgress;
-import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 public final class PlayerAPI {
+    private static final int OFFLINE_PLAYERS_PAGE_SIZE = 100;
+    private static final int OFFLINE_PLAYERS_MAX_PAGE_SIZE = 1000;
 
     public NanoHTTPD.Response getPlayers(final Map<String, String> ignoredParams) {
         JSONArray playersArray = new JSONArray();
 
-        for (Player player : Bukkit.getOnlinePlayers()) {
+        for (PlayerState player : MinecraftServerAPI.getStateCache().get().players().values()) {
             JSONObject playerJson = new JSONObject();
-            playerJson.put("name", player.getName());
-            playerJson.put("uuid", player.getUniqueId().toString());
+            playerJson.put("name", player.name());
+            playerJson.put("uuid", player.uuid().toString());
             playersArray.put(playerJson);
         }
 
@@ -49,18 +58,40 @@ public final class PlayerAPI {
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", responseJson.toString());
     }
 
-    public NanoHTTPD.Response getOfflinePlayers(final Map<String, String> ignoredParams) {
+    public NanoHTTPD.Response getOfflinePlayers(final Map<String, String> params) {
+        PlayerDirectory playerDirectory = MinecraftServerAPI.getPlayerDirectory();
+        if (!playerDirectory.isReady()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "application/json",
+                    "{\"error\": \"The player directory is still being built, try again later\"}");
+        }
+
+        int offset;
+        int limit;
+        try {
+            offset = Integer.parseInt(params.getOrDefault("offset", "0"));
+            limit = Math.min(Integer.parseInt(params.getOrDefault("limit", Integer.toString(OFFLINE_PLAYERS_PAGE_SIZE))), OFFLINE_PLAYERS_MAX_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Offset and limit must be numbers\"}");
+        }
+        if (offset < 0 || limit < 0) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"Offset and limit must not be negative\"}");
+        }
+
+        PlayerDirectory.Page page = playerDirectory.list(params.get("prefix"), offset, limit);
         JSONArray offlinePlayersArray = new JSONArray();
 
-        for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+        for (PlayerDirectory.Entry player : page.getEntries()) {
             JSONObject playerJson = new JSONObject();
             playerJson.put("name", player.getName());
-            playerJson.put("uuid", player.getUniqueId().toString());
+            playerJson.put("uuid", player.getUuid().toString());
             offlinePlayersArray.put(playerJson);
         }
 
         JSONObject responseJson = new JSONObject();
         responseJson.put("offlinePlayers", offlinePlayersArray);
+        responseJson.put("total", page.getTotal());
+        responseJson.put("offset", offset);
+        responseJson.put("limit", limit);
 
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", responseJson.toString());
     }
@@ -73,6 +104,11 @@ public final class PlayerAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
+        PlayerState onlinePlayer = MinecraftServerAPI.getStateCache().get().getPlayer(uuid);
+        if (onlinePlayer != null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", onlinePlayer.toJson().toString());
+        }
+
         OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
 
         if (!offlinePlayer.hasPlayedBefore()) {
@@ -121,43 +157,43 @@ public final class PlayerAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-
-        if (!offlinePlayer.hasPlayedBefore()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
-        Map<String, Object> stats = new HashMap<>();
-
-        for (Statistic stat : Statistic.values()) {
-            if (!stat.isSubstatistic()) {
-                stats.put(stat.name(), offlinePlayer.getStatistic(stat));
+        // Only non-zero values are returned unless zeros=true, optionally only for some statistics
+        Set<Statistic> filter = null;
+        String filterParam = params.get("filter");
+        if (filterParam != null && !filterParam.isEmpty()) {
+            filter = EnumSet.noneOf(Statistic.class);
+            for (String name : filterParam.split(",")) {
+                try {
+                    filter.add(Statistic.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    JSONObject error = new JSONObject();
+                    error.put("error", "Unknown statistic: " + name.trim());
+                    return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", error.toString());
+                }
             }
         }
+        boolean includeZeros = "true".equals(params.get("zeros"));
 
-        for (Material material : Material.values()) {
-            try {
-                if (material.isBlock()) {
-                    stats.put("MINE_BLOCK_" + material.name(), offlinePlayer.getStatistic(Statistic.MINE_BLOCK, material));
-                }
-                stats.put("USE_ITEM_" + material.name(), offlinePlayer.getStatistic(Statistic.USE_ITEM, material));
-                stats.put("BREAK_ITEM_" + material.name(), offlinePlayer.getStatistic(Statistic.BREAK_ITEM, material));
-                stats.put("CRAFT_ITEM_" + material.name(), offlinePlayer.getStatistic(Statistic.CRAFT_ITEM, material));
-            } catch (IllegalArgumentException e) {
-                Logger.warning("Failed to get statistic for material: " + material.name());
-            }
+        StatsService statsService = MinecraftServerAPI.getStatsService();
+        StatsSnapshot stats;
+        try {
+            stats = statsService.get(uuid);
+        } catch (TimeoutException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "application/json", "{\"error\": \"Server did not respond in time\"}");
+        } catch (IOException | ExecutionException e) {
+            Logger.error("Could not read statistics of " + uuid + ": " + e.getMessage());
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read statistics\"}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read statistics\"}");
         }
 
-        for (EntityType entityType : EntityType.values()) {
-            try {
-                stats.put("KILL_ENTITY_" + entityType.name(), offlinePlayer.getStatistic(Statistic.KILL_ENTITY, entityType));
-                stats.put("ENTITY_KILLED_BY_" + entityType.name(), offlinePlayer.getStatistic(Statistic.ENTITY_KILLED_BY, entityType));
-            } catch (IllegalArgumentException e) {
-                Logger.warning("Failed to get statistic for entity type: " + entityType.name());
-            }
+        if (stats == null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", new JSONObject(stats).toString());
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json",
+                stats.toJson(statsService.getKeys(), filter, includeZeros).toString());
     }
 
     public NanoHTTPD.Response getPlayerAdvancements(final Map<String, String> params) {
@@ -210,44 +246,13 @@ public final class PlayerAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-
-        if (!offlinePlayer.hasPlayedBefore()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
         // Player needs to be online to be able to get inventory
-        Player player = offlinePlayer.getPlayer();
-        if (player == null || !player.isOnline()) {
+        PlayerState player = MinecraftServerAPI.getStateCache().get().getPlayer(uuid);
+        if (player == null) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        JSONObject inventoryJson = new JSONObject();
-
-        for (int i = 0; i < player.getInventory().getSize(); i++) {
-            if (player.getInventory().getItem(i) == null || player.getInventory().getItem(i).getType() == Material.AIR) {
-                continue;
-            }
-
-            JSONObject itemJson = new JSONObject();
-            itemJson.put("type", player.getInventory().getItem(i).getType().name());
-            itemJson.put("amount", player.getInventory().getItem(i).getAmount());
-            itemJson.put("durability", player.getInventory().getItem(i).getDurability());
-            itemJson.put("displayName", player.getInventory().getItem(i).getItemMeta().getDisplayName());
-            itemJson.put("lore", player.getInventory().getItem(i).getItemMeta().getLore());
-            itemJson.put("enchantments", player.getInventory().getItem(i).getEnchantments());
-            itemJson.put("attributes", player.getInventory().getItem(i).getItemMeta().getAttributeModifiers());
-            itemJson.put("flags", player.getInventory().getItem(i).getItemMeta().getItemFlags());
-            itemJson.put("unbreakable", player.getInventory().getItem(i).getItemMeta().isUnbreakable());
-            if (player.getInventory().getItem(i).getItemMeta().hasCustomModelData()) {
-                itemJson.put("customModelData", player.getInventory().getItem(i).getItemMeta().getCustomModelData());
-            }
-            itemJson.put("itemFlags", player.getInventory().getItem(i).getItemMeta().getItemFlags());
-            itemJson.put("itemMeta", player.getInventory().getItem(i).getItemMeta());
-            inventoryJson.put(String.valueOf(i), itemJson);
-        }
-
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", inventoryJson.toString());
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", player.inventoryToJson().toString());
     }
 
     public NanoHTTPD.Response getPlayerInventorySlot(final Map<String, String> params) {
@@ -259,39 +264,18 @@ public final class PlayerAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-
-        if (!offlinePlayer.hasPlayedBefore()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
         // Spieler muss online sein, um Inventar abrufen zu können
-        Player player = offlinePlayer.getPlayer();
-        if (player == null || !player.isOnline()) {
+        PlayerState player = MinecraftServerAPI.getStateCache().get().getPlayer(uuid);
+        if (player == null) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        if (player.getInventory().getItem(i) == null || player.getInventory().getItem(i).getType() == Material.AIR) {
+        ItemStack item = player.inventory().get(i);
+        if (item == null) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
-        JSONObject itemJson = new JSONObject();
-        itemJson.put("type", player.getInventory().getItem(i).getType().name());
-        itemJson.put("amount", player.getInventory().getItem(i).getAmount());
-        itemJson.put("durability", player.getInventory().getItem(i).getDurability());
-        itemJson.put("displayName", player.getInventory().getItem(i).getItemMeta().getDisplayName());
-        itemJson.put("lore", player.getInventory().getItem(i).getItemMeta().getLore());
-        itemJson.put("enchantments", player.getInventory().getItem(i).getEnchantments());
-        itemJson.put("attributes", player.getInventory().getItem(i).getItemMeta().getAttributeModifiers());
-        itemJson.put("flags", player.getInventory().getItem(i).getItemMeta().getItemFlags());
-        itemJson.put("unbreakable", player.getInventory().getItem(i).getItemMeta().isUnbreakable());
-        if (player.getInventory().getItem(i).getItemMeta().hasCustomModelData()) {
-            itemJson.put("customModelData", player.getInventory().getItem(i).getItemMeta().getCustomModelData());
-        }
-        itemJson.put("itemFlags", player.getInventory().getItem(i).getItemMeta().getItemFlags());
-        itemJson.put("itemMeta", player.getInventory().getItem(i).getItemMeta());
-
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", itemJson.toString());
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", PlayerState.itemToJson(item).toString());
     }
 
     public NanoHTTPD.Response kickPlayer(final Map<String, String> params) {
@@ -378,6 +362,11 @@ public final class PlayerAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
 
+        PlayerState onlinePlayer = MinecraftServerAPI.getStateCache().get().getPlayer(uuid);
+        if (onlinePlayer != null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", onlinePlayer.location().toJson().toString());
+        }
+
         OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
 
         if (!offlinePlayer.hasPlayedBefore()) {
@@ -397,43 +386,52 @@ public final class PlayerAPI {
     }
 
     public NanoHTTPD.Response setPlayerLocation(final Map<String, String> params) {
-        String username = params.get("username");
-        UUID uuid = Helper.usernameToUUID(username);
-
-        if (uuid == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
+        return prepareTeleport(params).respond();
+    }
 
-        if (!offlinePlayer.hasPlayedBefore()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
-        // Player needs to be online to be able to set location
-        Player player = offlinePlayer.getPlayer();
-        if (player == null || !player.isOnline()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
+    /**
+     * Checks a teleport, which is then made on the server thread. Shared with {@link BatchAPI}.
+     */
+    static MainThreadAction prepareTeleport(final Map<String, String> params) {
+        UUID uuid = Helper.usernameToUUID(params.get("username"));
+        if (uuid == null || !Bukkit.getOfflinePlayer(uuid).hasPlayedBefore()) {
+            return MainThreadAction.failed(NanoHTTPD.Response.Status.NOT_FOUND, "Player not found");
         }
 
         // Get location from request
         String worldName = params.get("world");
-        double x = Double.parseDouble(params.get("x"));
-        double y = Double.parseDouble(params.get("y"));
-        double z = Double.parseDouble(params.get("z"));
-        float yaw = params.get("yaw") != null ? Float.parseFloat(params.get("yaw")) : player.getLocation().getYaw();
-        float pitch = params.get("pitch") != null ? Float.parseFloat(params.get("pitch")) : player.getLocation().getPitch();
-
-        World world = Bukkit.getWorld(worldName);
-        if (world == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
+        if (worldName == null) {
+            return MainThreadAction.failed(NanoHTTPD.Response.Status.BAD_REQUEST, "world parameter is required");
+        }
+        double x;
+        double y;
+        double z;
+        Float yaw;
+        Float pitch;
+        try {
+            x = Double.parseDouble(params.get("x"));
+            y = Double.parseDouble(params.get("y"));
+            z = Double.parseDouble(params.get("z"));
+            yaw = params.get("yaw") != null ? Float.valueOf(params.get("yaw")) : null;
+            pitch = params.get("pitch") != null ? Float.valueOf(params.get("pitch")) : null;
+        } catch (NullPointerException | NumberFormatException e) {
+            return MainThreadAction.failed(NanoHTTPD.Response.Status.BAD_REQUEST, "x, y and z are required and must be numbers");
+        }
+
+        return MainThreadAction.apply(() -> {
+            // Player needs to be online to be able to set location
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) {
+                return MainThreadAction.Outcome.error(NanoHTTPD.Response.Status.NOT_FOUND, "Player is not online");
+            }
+            World world = Bukkit.getWorld(worldName);
+            if (world == null) {
+                return MainThreadAction.Outcome.error(NanoHTTPD.Response.Status.NOT_FOUND, "World not found");
+            }
 
-        Location location = new Location(world, x, y, z, yaw, pitch);
-        Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> {
-            player.teleport(location);
+            Location current = player.getLocation();
+            player.teleport(new Location(world, x, y, z, yaw != null ? yaw : current.getYaw(), pitch != null ? pitch : current.getPitch()));
+            return MainThreadAction.Outcome.ok(new JSONObject());
         });
-
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
     }
 }
@@ -1,6 +1,7 @@
 package com.shweit.serverapi.endpoints.v1;
 
 import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.jobs.Job;
 import com.shweit.serverapi.utils.Logger;
 import fi.iki.elonen.NanoHTTPD;
 import org.bukkit.Bukkit;
@@ -16,6 +17,7 @@ import java.util.Map;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.shweit.serverapi.utils.Helper.deleteDirectory;
 
@@ -63,52 +65,65 @@ public final class PluginAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\":\"Missing plugin URL.\"}");
         }
 
-        try {
-            // Set up connection to the URL
-            URL url = new URL(pluginUrl);
-            URLConnection connection = url.openConnection();
-            connection.connect();
-
-            // Get input stream from the connection
-            InputStream inputStream = new BufferedInputStream(url.openStream());
-
-            // Determine the filename from the URL
-            String fileName = pluginUrl.substring(pluginUrl.lastIndexOf('/') + 1);
+        boolean reload = "true".equals(params.get("reload"));
 
-            // Path to the plugins directory (adjust path as needed)
-            File pluginDir = new File("plugins");
-
-            // Path to save the plugin file
-            File pluginFile = new File(pluginDir, fileName);
-            FileOutputStream outputStream = new FileOutputStream(pluginFile);
-
-            // Buffer for data and downloading
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-            }
-
-            // Close streams
-            outputStream.close();
-            inputStream.close();
-
-            if (params.get("reload").equals("true")) {
-                final long delay = 20L;
-                new BukkitRunnable() {
-                    @Override
-                    public void run() {
-                        Bukkit.reload();
+        Job job;
+        try {
+            job = MinecraftServerAPI.getJobManager().submit("plugin.download", "Download plugin from " + pluginUrl, downloadJob -> {
+                // Set up connection to the URL
+                URL url = new URL(pluginUrl);
+                URLConnection connection = url.openConnection();
+                connection.connect();
+                downloadJob.getCounter().setBytesTotal(Math.max(0, connection.getContentLengthLong()));
+
+                // Determine the filename from the URL
+                String fileName = pluginUrl.substring(pluginUrl.lastIndexOf('/') + 1);
+
+                // Path to the plugins directory (adjust path as needed)
+                File pluginDir = new File("plugins");
+
+                // Download next to the target first, so a cancelled download never leaves a broken jar behind
+                File pluginFile = new File(pluginDir, fileName);
+                File partFile = new File(pluginDir, fileName + ".part");
+
+                try (InputStream inputStream = new BufferedInputStream(connection.getInputStream());
+                     FileOutputStream outputStream = new FileOutputStream(partFile)) {
+                    byte[] buffer = new byte[8192];
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) != -1) {
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException("Download was cancelled");
+                        }
+                        outputStream.write(buffer, 0, bytesRead);
+                        downloadJob.getCounter().addBytesDone(bytesRead);
                     }
-                }.runTaskLater(MinecraftServerAPI.getInstance(), delay);
-            }
-
-            // Return a success response
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
-        } catch (Exception e) {
-            Logger.error(e.getMessage());
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{}");
+                } catch (IOException | InterruptedException e) {
+                    partFile.delete();
+                    throw e;
+                }
+                Files.move(partFile.toPath(), pluginFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+                if (reload) {
+                    final long delay = 20L;
+                    new BukkitRunnable() {
+                        @Override
+                        public void run() {
+                            Bukkit.reload();
+                        }
+                    }.runTaskLater(MinecraftServerAPI.getInstance(), delay);
+                }
+
+                JSONObject result = new JSONObject();
+                result.put("file", pluginFile.getName());
+                result.put("size", pluginFile.length());
+                result.put("reload", reload);
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            return JobAPI.queueFull();
         }
+
+        return JobAPI.accepted(job);
     }
 
     public NanoHTTPD.Response deletePlugin(final Map<String, String> params) {
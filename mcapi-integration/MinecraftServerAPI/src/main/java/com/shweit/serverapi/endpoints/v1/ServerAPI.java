@@ -6,15 +6,15 @@ import com.shweit.serverapi.handlers.BetterCommandExecutor;
 import com.shweit.serverapi.handlers.CommandOutputCapture;
 import com.shweit.serverapi.handlers.LogHandler;
 import com.shweit.serverapi.listeners.ChatListener;
-import com.shweit.serverapi.utils.Helper;
+import com.shweit.serverapi.state.StateSnapshot;
+import com.shweit.serverapi.state.WorldState;
 import com.shweit.serverapi.utils.Logger;
-import com.shweit.serverapi.utils.RouteDefinition;
+import com.shweit.serverapi.utils.MainThreadExecutor;
+import com.shweit.serverapi.utils.RingBuffer;
+import com.shweit.serverapi.utils.SseBroadcaster;
 import fi.iki.elonen.NanoHTTPD;
 import org.bukkit.Bukkit;
-import org.bukkit.World;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -33,6 +33,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.shweit.serverapi.utils.Helper.formatSize;
@@ -40,13 +42,31 @@ import static com.shweit.serverapi.utils.Helper.formatSize;
 public final class ServerAPI {
     private final ChatListener chatListener;
     private final LogHandler logHandler;
+    // Every open event stream keeps one of the web server's workers busy
+    private final Semaphore streamPermits;
+
+    // The encoded server icon, read again only when the file changes
+    private String serverIcon;
+    private long serverIconModified;
+
+    private static final int DEFAULT_CHAT_HISTORY = 1000;
+    private static final int DEFAULT_LOG_HISTORY = 5000;
+    private static final int DEFAULT_STREAM_QUEUE = 256;
+    private static final int DEFAULT_MAX_STREAMS = 8;
 
     public ServerAPI() {
-        chatListener = new ChatListener();
+        int streamQueueSize = Math.max(1, MinecraftServerAPI.config.getInt("history.stream_queue", DEFAULT_STREAM_QUEUE));
+
+        chatListener = new ChatListener(Math.max(1, MinecraftServerAPI.config.getInt("history.chat", DEFAULT_CHAT_HISTORY)), streamQueueSize);
         Bukkit.getPluginManager().registerEvents(chatListener, MinecraftServerAPI.getInstance());
 
-        logHandler = new LogHandler();
+        logHandler = new LogHandler(Math.max(1, MinecraftServerAPI.config.getInt("history.log", DEFAULT_LOG_HISTORY)), streamQueueSize);
         Logger.getLogger().addHandler(logHandler);
+
+        // Leave at least half of the workers to regular requests
+        int maxConnections = MinecraftServerAPI.config.getInt("http.max_connections", 32);
+        int maxStreams = MinecraftServerAPI.config.getInt("history.max_streams", DEFAULT_MAX_STREAMS);
+        streamPermits = new Semaphore(Math.max(0, Math.min(maxStreams, maxConnections / 2)));
     }
 
     public NanoHTTPD.Response ping(final Map<String, String> ignoredParams) {
@@ -54,53 +74,37 @@ public final class ServerAPI {
     }
 
     public NanoHTTPD.Response serverInfo(final Map<String, String> ignoredParams) {
-        JSONObject serverInfo = new JSONObject();
-
-        serverInfo.put("name", Bukkit.getServer().getName());
-        serverInfo.put("motd", Bukkit.getServer().getMotd());
-        serverInfo.put("version", Bukkit.getServer().getVersion());
-        serverInfo.put("bukkitVersion", Bukkit.getServer().getBukkitVersion());
-        serverInfo.put("ip", Bukkit.getServer().getIp());
-        serverInfo.put("port", Bukkit.getServer().getPort());
-        serverInfo.put("maxPlayers", Bukkit.getServer().getMaxPlayers());
-        serverInfo.put("onlinePlayers", Bukkit.getServer().getOnlinePlayers().size());
-        serverInfo.put("whitelisted", Bukkit.getServer().hasWhitelist());
-        serverInfo.put("viewDistance", Bukkit.getServer().getViewDistance());
-        serverInfo.put("simulationDistance", Bukkit.getServer().getSimulationDistance());
-        serverInfo.put("spawnRadius", Bukkit.getServer().getSpawnRadius());
-        serverInfo.put("worldType", Bukkit.getServer().getWorldType());
-
-        JSONObject plugins = new JSONObject();
-        for (Plugin key : Bukkit.getServer().getPluginManager().getPlugins()) {
-            plugins.put(key.getName(), key.getDescription().getVersion());
-        }
-        serverInfo.put("plugins", plugins);
+        StateSnapshot state = MinecraftServerAPI.getStateCache().get();
+        JSONObject serverInfo = state.server().toJson();
+        serverInfo.put("onlinePlayers", state.players().size());
 
         JSONObject worlds = new JSONObject();
-        for (World world : Bukkit.getServer().getWorlds()) {
-            worlds.put(world.getName(), world.getEnvironment().name());
+        for (WorldState world : state.worlds().values()) {
+            worlds.put(world.name(), world.environment());
         }
         serverInfo.put("worlds", worlds);
+        serverInfo.put("icon", getServerIcon());
 
-        serverInfo.put("defaultGameMode", Bukkit.getServer().getDefaultGameMode().name());
-        serverInfo.put("allowEnd", Bukkit.getServer().getAllowEnd());
-        serverInfo.put("allowNether", Bukkit.getServer().getAllowNether());
-        serverInfo.put("allowFlight", Bukkit.getServer().getAllowFlight());
-        serverInfo.put("generateStructures", Bukkit.getServer().getGenerateStructures());
-        serverInfo.put("hardcore", Bukkit.getServer().isHardcore());
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", serverInfo.toString());
+    }
 
+    private synchronized String getServerIcon() {
         File serverIconFile = new File("server-icon.png");
+        long modified = serverIconFile.lastModified();
+        if (serverIcon != null && modified == serverIconModified) {
+            return serverIcon;
+        }
 
+        serverIconModified = modified;
         try {
             byte[] iconBytes = Files.readAllBytes(serverIconFile.toPath());
             String base64Icon = Base64.getEncoder().encodeToString(iconBytes);
 
-            serverInfo.put("icon", "data:image/png;base64," + base64Icon);
+            serverIcon = "data:image/png;base64," + base64Icon;
         } catch (IOException e) {
-            serverInfo.put("icon", "No server icon found");
+            serverIcon = "No server icon found";
         }
-
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", serverInfo.toString());
+        return serverIcon;
     }
 
     public NanoHTTPD.Response getServerHealth(final Map<String, String> ignoredParams) {
@@ -161,17 +165,26 @@ public final class ServerAPI {
 
         // Uptime
         healthJson.put("uptime", formatUpTime(runtimeBean.getUptime()));
-        healthJson.put("tps", Helper.calculateTPS());
+        healthJson.put("tps", MinecraftServerAPI.getTickSampler().getTPS(60));
 
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", healthJson.toString());
     }
 
     public NanoHTTPD.Response tps(final Map<String, String> ignoredParams) {
-        JSONObject tpsJson = new JSONObject();
-        tpsJson.put("tps", Helper.calculateTPS());
+        JSONObject tpsJson = MinecraftServerAPI.getTickSampler().toJson();
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", tpsJson.toString());
     }
 
+    public NanoHTTPD.Response connections(final Map<String, String> ignoredParams) {
+        JSONObject connectionsJson = MinecraftServerAPI.getInstance().getWebServer().getConnectionStats();
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", connectionsJson.toString());
+    }
+
+    public NanoHTTPD.Response httpStats(final Map<String, String> ignoredParams) {
+        JSONObject httpStatsJson = MinecraftServerAPI.getInstance().getWebServer().getHttpStats();
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", httpStatsJson.toString());
+    }
+
     public NanoHTTPD.Response uptime(final Map<String, String> ignoredParams) {
         RuntimeMXBean runtimeBean = ManagementFactory.getRuntimeMXBean();
         JSONObject uptimeJson = new JSONObject();
@@ -225,39 +238,25 @@ public final class ServerAPI {
     }
 
     public NanoHTTPD.Response execCommand(final Map<String, String> params) {
-        String command = params.get("command");
+        return prepareExecCommand(params).respond();
+    }
 
+    /**
+     * Checks a command, which is then run on the server thread. Shared with {@link BatchAPI}.
+     */
+    static MainThreadAction prepareExecCommand(final Map<String, String> params) {
+        String command = params.get("command");
         if (command == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\":\"Invalid Command.\"}");
+            return MainThreadAction.failed(NanoHTTPD.Response.Status.BAD_REQUEST, "Invalid Command.");
         }
 
-        final BetterCommandExecutor.CommandResult[] result = new BetterCommandExecutor.CommandResult[1];
-
-        BukkitTask t1 = Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> {
-            result[0] = BetterCommandExecutor.executeCommand(command);
+        return MainThreadAction.apply(() -> {
+            BetterCommandExecutor.CommandResult result = BetterCommandExecutor.executeCommand(command);
+            JSONObject jsonResponse = new JSONObject();
+            jsonResponse.put("success", result.isSuccess());
+            jsonResponse.put("output", result.getOutput());
+            return MainThreadAction.Outcome.ok(jsonResponse);
         });
-
-        while (Bukkit.getScheduler().isCurrentlyRunning(t1.getTaskId()) || Bukkit.getScheduler().isQueued(t1.getTaskId())) {
-            try {
-                Logger.debug("Waiting for command to finish...");
-                final int sleepTime = 100;
-                Thread.sleep(sleepTime);
-            } catch (InterruptedException e) {
-                Logger.error(e.getMessage());
-                Thread.currentThread().interrupt();
-            }
-        }
-
-        JSONObject jsonResponse = new JSONObject();
-        if (result[0] != null) {
-            jsonResponse.put("success", result[0].isSuccess());
-            jsonResponse.put("output", result[0].getOutput());
-        } else {
-            jsonResponse.put("success", false);
-            jsonResponse.put("output", new ArrayList<>());
-        }
-
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", jsonResponse.toString());
     }
 
     public NanoHTTPD.Response reload(final Map<String, String> ignoredParams) {
@@ -314,18 +313,74 @@ public final class ServerAPI {
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
     }
 
-    public NanoHTTPD.Response getChat(final Map<String, String> ignoredParams) {
+    public NanoHTTPD.Response getChat(final Map<String, String> params) {
+        RingBuffer<ChatListener.ChatMessage> buffer = chatListener.getMessages();
+        long[] paging = parsePaging(params, buffer.getCapacity());
+        if (paging == null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\":\"Invalid since or limit.\"}");
+        }
+
+        JSONArray messages = new JSONArray();
+        for (RingBuffer.Entry<ChatListener.ChatMessage> entry : buffer.since(paging[0], (int) paging[1])) {
+            messages.put(entry.getValue().toJson(entry.getSequence()));
+        }
+
         JSONObject chatJson = new JSONObject();
-        chatJson.put("messages", chatListener.getMessages());
+        chatJson.put("messages", messages);
+        chatJson.put("latestSequence", buffer.getLatestSequence());
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", chatJson.toString());
     }
 
-    public NanoHTTPD.Response getLog(final Map<String, String> ignoredParams) {
+    public NanoHTTPD.Response getLog(final Map<String, String> params) {
+        RingBuffer<LogHandler.LogEntry> buffer = logHandler.getLog();
+        long[] paging = parsePaging(params, buffer.getCapacity());
+        if (paging == null) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\":\"Invalid since or limit.\"}");
+        }
+
+        JSONArray log = new JSONArray();
+        for (RingBuffer.Entry<LogHandler.LogEntry> entry : buffer.since(paging[0], (int) paging[1])) {
+            log.put(entry.getValue().toJson(entry.getSequence()));
+        }
+
         JSONObject logJson = new JSONObject();
-        logJson.put("log", logHandler.getLog());
+        logJson.put("log", log);
+        logJson.put("latestSequence", buffer.getLatestSequence());
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", logJson.toString());
     }
 
+    public NanoHTTPD.Response streamChat(final Map<String, String> params) {
+        return openStream(chatListener.getMessages(), chatListener.getStream(), params);
+    }
+
+    public NanoHTTPD.Response streamLog(final Map<String, String> params) {
+        return openStream(logHandler.getLog(), logHandler.getStream(), params);
+    }
+
+    private <T> NanoHTTPD.Response openStream(final RingBuffer<T> buffer, final SseBroadcaster<T> broadcaster, final Map<String, String> params) {
+        // A reconnecting EventSource sends the id of the last event it received as Last-Event-ID.
+        // Without either the stream only contains new entries.
+        String sinceParam = params.containsKey("since") ? params.get("since") : WebServer.getHeader(params, "Last-Event-ID");
+        long since;
+        try {
+            since = sinceParam == null ? buffer.getLatestSequence() : Long.parseLong(sinceParam.trim());
+        } catch (NumberFormatException e) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\":\"Invalid since.\"}");
+        }
+
+        if (!streamPermits.tryAcquire()) {
+            NanoHTTPD.Response response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "application/json",
+                    "{\"error\":\"Too many open streams.\"}");
+            response.addHeader("Retry-After", "5");
+            return response;
+        }
+
+        InputStream events = broadcaster.subscribe(() -> buffer.since(since, buffer.getCapacity()), streamPermits::release);
+        NanoHTTPD.Response response = NanoHTTPD.newChunkedResponse(NanoHTTPD.Response.Status.OK, "text/event-stream", events);
+        response.addHeader("Cache-Control", "no-cache");
+        return response;
+    }
+
     public NanoHTTPD.Response execMultipleCommands(final Map<String, String> params) {
         String body = params.get("postData");
         
@@ -349,43 +404,38 @@ public final class ServerAPI {
                     "application/json", "{\"error\":\"Commands array cannot be empty.\"}");
             }
             
-            JSONArray results = new JSONArray();
-            
+            List<String> commandList = new ArrayList<>(commands.length());
             for (int i = 0; i < commands.length(); i++) {
-                String command = commands.getString(i);
-                
-                final BetterCommandExecutor.CommandResult[] result = new BetterCommandExecutor.CommandResult[1];
-                
-                BukkitTask task = Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> {
-                    result[0] = BetterCommandExecutor.executeCommand(command);
-                });
-                
-                while (Bukkit.getScheduler().isCurrentlyRunning(task.getTaskId()) || 
-                       Bukkit.getScheduler().isQueued(task.getTaskId())) {
-                    try {
-                        Logger.debug("Waiting for command to finish: " + command);
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        Logger.error(e.getMessage());
-                        Thread.currentThread().interrupt();
-                    }
-                }
-                
-                if (result[0] != null) {
-                    JSONObject commandResult = new JSONObject();
-                    commandResult.put("command", result[0].getCommand());
-                    commandResult.put("success", result[0].isSuccess());
-                    commandResult.put("output", result[0].getOutput());
-                    results.put(commandResult);
-                }
+                commandList.add(commands.getString(i));
             }
             
+            // All commands run one after another in the same tick. They do not go through the job
+            // manager, so they never wait behind backups or other long-running jobs
+            List<BetterCommandExecutor.CommandResult> commandResults;
+            try {
+                commandResults = MainThreadExecutor.await(BetterCommandExecutor.executeCommandsAsync(commandList));
+            } catch (TimeoutException e) {
+                return commandTimeout();
+            }
+
+            JSONArray results = new JSONArray();
+            for (BetterCommandExecutor.CommandResult result : commandResults) {
+                JSONObject commandResult = new JSONObject();
+                commandResult.put("command", result.getCommand());
+                commandResult.put("success", result.isSuccess());
+                commandResult.put("output", result.getOutput());
+                results.put(commandResult);
+            }
+
             JSONObject response = new JSONObject();
             response.put("results", results);
-            response.put("totalCommands", commands.length());
-            
+            response.put("totalCommands", commandList.size());
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR,
+                "application/json", "{\"error\":\"Interrupted while executing the commands.\"}");
         } catch (Exception e) {
             Logger.error("Error executing multiple commands: " + e.getMessage());
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, 
@@ -393,6 +443,30 @@ public final class ServerAPI {
         }
     }
 
+    private NanoHTTPD.Response commandTimeout() {
+        JSONObject error = new JSONObject();
+        error.put("error", "The server did not run the commands within " + MainThreadExecutor.getTimeoutSeconds() + " seconds, none of them ran.");
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.SERVICE_UNAVAILABLE, "application/json", error.toString());
+    }
+
+    /**
+     * Reads the optional "since" and "limit" query parameters.
+     *
+     * @return {since, limit}, or null if one of them is not a valid number
+     */
+    private long[] parsePaging(final Map<String, String> params, final int maxLimit) {
+        try {
+            long since = params.containsKey("since") ? Long.parseLong(params.get("since")) : -1;
+            int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : maxLimit;
+            if (since < -1 || limit < 0) {
+                return null;
+            }
+            return new long[] {since, Math.min(limit, maxLimit)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     private String formatUpTime(final long uptime) {
         long uptimeSeconds = uptime / 1000;
         long uptimeMinutes = uptimeSeconds / 60;
@@ -0,0 +1,25 @@
+package com.shweit.serverapi.endpoints.v1;
+
+import com.shweit.serverapi.webhooks.RegisterWebHooks;
+import com.shweit.serverapi.webhooks.WebHookDispatcher;
+import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+public final class WebHookAPI {
+    public NanoHTTPD.Response getWebHookStats(final Map<String, String> ignoredParams) {
+        WebHookDispatcher dispatcher = RegisterWebHooks.getDispatcher();
+
+        JSONObject stats;
+        if (dispatcher != null) {
+            stats = dispatcher.getStats();
+        } else {
+            stats = new JSONObject();
+            stats.put("endpoints", new JSONArray());
+        }
+
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", stats.toString());
+    }
+}
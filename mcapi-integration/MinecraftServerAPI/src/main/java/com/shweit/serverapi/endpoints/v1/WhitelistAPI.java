@@ -31,43 +31,34 @@ public final class WhitelistAPI {
     }
 
     public NanoHTTPD.Response postWhitelist(final Map<String, String> params) {
-        String playerName = params.get("username");
-        if (playerName == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{error: 'username parameter is required'}");
-        }
-
-        UUID uuid = Helper.usernameToUUID(playerName);
-        if (uuid == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
-        OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-        if (player.isWhitelisted()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
-        }
-
-        Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> player.setWhitelisted(true));
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
+        return prepareWhitelist(params, true).respond();
     }
 
     public NanoHTTPD.Response deleteWhitelist(final Map<String, String> params) {
+        return prepareWhitelist(params, false).respond();
+    }
+
+    /**
+     * Checks a whitelist change, which is then made on the server thread. Shared with {@link BatchAPI}.
+     */
+    static MainThreadAction prepareWhitelist(final Map<String, String> params, final boolean whitelisted) {
         String playerName = params.get("username");
         if (playerName == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{error: 'username parameter is required'}");
+            return MainThreadAction.failed(NanoHTTPD.Response.Status.BAD_REQUEST, "username parameter is required");
         }
 
         UUID uuid = Helper.usernameToUUID(playerName);
         if (uuid == null) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
-        }
-
-        OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-        if (!player.isWhitelisted()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
+            return MainThreadAction.failed(NanoHTTPD.Response.Status.NOT_FOUND, "Player not found");
         }
 
-        Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> player.setWhitelisted(false));
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
+        return MainThreadAction.apply(() -> {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+            if (player.isWhitelisted() != whitelisted) {
+                player.setWhitelisted(whitelisted);
+            }
+            return MainThreadAction.Outcome.ok(new JSONObject());
+        });
     }
 
     public NanoHTTPD.Response activateWhitelist(final Map<String, String> params) {
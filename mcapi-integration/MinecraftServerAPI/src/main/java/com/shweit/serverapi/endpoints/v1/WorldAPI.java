@@ -1,63 +1,34 @@
 package com.shweit.serverapi.endpoints.v1;
 
 import com.shweit.serverapi.MinecraftServerAPI;
-import com.shweit.serverapi.utils.Helper;
+import com.shweit.serverapi.jobs.Job;
+import com.shweit.serverapi.state.WorldState;
 import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.MainThreadExecutor;
 import fi.iki.elonen.NanoHTTPD;
 import org.bukkit.*;
 import org.bukkit.entity.SpawnCategory;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class WorldAPI {
     public NanoHTTPD.Response getWorlds(final Map<String, String> ignoredParams) {
         JSONObject response = new JSONObject();
 
-        List<World> worlds = Bukkit.getWorlds();
-        worlds.forEach(w -> {
-            JSONObject worldObject = new JSONObject();
-            worldObject.put("name", w.getName());
-            worldObject.put("environment", w.getEnvironment().name());
-            worldObject.put("seed", w.getSeed());
-            worldObject.put("time", w.getTime());
-            worldObject.put("fullTime", w.getFullTime());
-            worldObject.put("difficulty", w.getDifficulty().name());
-            worldObject.put("weatherDuration", w.getWeatherDuration());
-            worldObject.put("thunderDuration", w.getThunderDuration());
-            worldObject.put("allowAnimals", w.getAllowAnimals());
-            worldObject.put("allowMonsters", w.getAllowMonsters());
-            worldObject.put("maxHeight", w.getMaxHeight());
-            worldObject.put("seaLevel", w.getSeaLevel());
-            worldObject.put("generateStructures", w.canGenerateStructures());
-            worldObject.put("pvp", w.getPVP());
-            worldObject.put("keepSpawnInMemory", w.getKeepSpawnInMemory());
-            worldObject.put("ambientSpawnLimit", w.getAmbientSpawnLimit());
-            worldObject.put("animalSpawnLimit", w.getAnimalSpawnLimit());
-            worldObject.put("monsterSpawnLimit", w.getMonsterSpawnLimit());
-            worldObject.put("waterAnimalSpawnLimit", w.getWaterAnimalSpawnLimit());
-            worldObject.put("waterAmbientSpawnLimit", w.getWaterAmbientSpawnLimit());
-            worldObject.put("lightningDuration", w.getWeatherDuration());
-            worldObject.put("ticksPerAnimalSpawns", w.getTicksPerAnimalSpawns());
-            worldObject.put("ticksPerMonsterSpawns", w.getTicksPerMonsterSpawns());
-            worldObject.put("ticksPerWaterSpawns", w.getTicksPerWaterSpawns());
-            worldObject.put("ticksPerAmbientSpawns", w.getTicksPerAmbientSpawns());
-            worldObject.put("ticksPerWaterAmbientSpawns", w.getTicksPerWaterAmbientSpawns());
-            worldObject.put("worldBorder", w.getWorldBorder().getSize());
-            worldObject.put("worldType", w.getWorldType().name());
-            worldObject.put("generator", w.getGenerator());
-
-            JSONObject gameRules = new JSONObject();
-            for (String gameRule : w.getGameRules()) {
-                gameRules.put(gameRule, w.getGameRuleValue(gameRule));
-            }
-            worldObject.put("gameRules", gameRules);
-
-            response.put(w.getName(), worldObject);
-        });
+        for (WorldState world : MinecraftServerAPI.getStateCache().get().worlds().values()) {
+            response.put(world.name(), world.toJson());
+        }
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
     }
 
@@ -76,11 +47,14 @@ public final class WorldAPI {
         String spawnY = params.get("spawnY");
         String spawnZ = params.get("spawnZ");
 
-        AtomicBoolean success = new AtomicBoolean(true);
-        JSONObject error = new JSONObject();
+        if (worldName == null || worldName.isEmpty()) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{\"error\": \"World name is required\"}");
+        }
 
-        Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> {
-            try {
+        Job job;
+        try {
+            // Creating a world has to happen on the server thread; the job waits for it there
+            job = MinecraftServerAPI.getJobManager().submit("world.create", "Create world " + worldName, createJob -> MainThreadExecutor.supply(() -> {
                 // World creation
                 WorldCreator worldCreator = new WorldCreator(worldName);
 
@@ -130,19 +104,17 @@ public final class WorldAPI {
                 if (Boolean.parseBoolean(hardcore)) {
                     world.setHardcore(true);
                 }
-            } catch (Exception e) {
-                success.set(false);
-                Logger.error("Error creating world: " + e.getMessage());
-                e.getStackTrace();
-                error.put("error", e.getMessage());
-            }
-        });
 
-        if (success.get()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
+                JSONObject result = new JSONObject();
+                result.put("world", world.getName());
+                result.put("uuid", world.getUID().toString());
+                return result;
+            }).get());
+        } catch (RejectedExecutionException e) {
+            return JobAPI.queueFull();
         }
 
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", error.toString());
+        return JobAPI.accepted(job);
     }
 
     public NanoHTTPD.Response deleteWorld(final Map<String, String> params) {
@@ -151,34 +123,48 @@ public final class WorldAPI {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, "application/json", "{}");
         }
 
-        AtomicBoolean success = new AtomicBoolean(true);
-        JSONObject error = new JSONObject();
+        Job job;
+        try {
+            job = MinecraftServerAPI.getJobManager().submit("world.delete", "Delete world " + worldName, deleteJob -> {
+                File worldFolder = MainThreadExecutor.supply(() -> {
+                    World world = Bukkit.getWorld(worldName);
+                    if (world == null) {
+                        throw new IllegalArgumentException("World not found");
+                    }
+                    if (!Bukkit.unloadWorld(world, false)) {
+                        throw new IllegalStateException("World could not be unloaded");
+                    }
+                    return world.getWorldFolder();
+                }).get();
+
+                // The files are deleted off the server thread, only unloading has to happen there
+                deleteWorldFolder(worldFolder, deleteJob.getCounter());
+
+                JSONObject result = new JSONObject();
+                result.put("world", worldName);
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            return JobAPI.queueFull();
+        }
 
-        Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> {
-            try {
-                World world = Bukkit.getWorld(worldName);
-                if (world != null) {
-                    Bukkit.unloadWorld(world, false);
-                    File worldFolder = world.getWorldFolder();
-                    Helper.deleteDirectory(worldFolder);
-                    success.set(world.getWorldFolder().delete());
-                } else {
-                    success.set(false);
-                    error.put("error", "World not found");
-                }
-            } catch (Exception e) {
-                success.set(false);
-                Logger.error("Error deleting world: " + e.getMessage());
-                e.getStackTrace();
-                error.put("error", e.getMessage());
-            }
-        });
+        return JobAPI.accepted(job);
+    }
 
-        if (success.get()) {
-            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", "{}");
+    private static void deleteWorldFolder(final File worldFolder, final Job.Counter counter) throws IOException, InterruptedException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(worldFolder.toPath())) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
         }
 
-        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", error.toString());
+        counter.setFilesTotal(paths.size());
+        for (Path path : paths) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException("World deletion was cancelled");
+            }
+            Files.delete(path);
+            counter.addFilesDone(1);
+        }
     }
 
     public NanoHTTPD.Response getWorld(final Map<String, String> params) {
@@ -189,48 +175,11 @@ public final class WorldAPI {
 
         JSONObject response = new JSONObject();
 
-        World world = Bukkit.getWorld(worldName);
+        WorldState world = MinecraftServerAPI.getStateCache().get().getWorld(worldName);
         if (world == null) {
             return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, "application/json", "{}");
         }
-        JSONObject worldObject = new JSONObject();
-        worldObject.put("name", world.getName());
-        worldObject.put("environment", world.getEnvironment().name());
-        worldObject.put("seed", world.getSeed());
-        worldObject.put("time", world.getTime());
-        worldObject.put("fullTime", world.getFullTime());
-        worldObject.put("difficulty", world.getDifficulty().name());
-        worldObject.put("weatherDuration", world.getWeatherDuration());
-        worldObject.put("thunderDuration", world.getThunderDuration());
-        worldObject.put("allowAnimals", world.getAllowAnimals());
-        worldObject.put("allowMonsters", world.getAllowMonsters());
-        worldObject.put("maxHeight", world.getMaxHeight());
-        worldObject.put("seaLevel", world.getSeaLevel());
-        worldObject.put("generateStructures", world.canGenerateStructures());
-        worldObject.put("pvp", world.getPVP());
-        worldObject.put("keepSpawnInMemory", world.getKeepSpawnInMemory());
-        worldObject.put("ambientSpawnLimit", world.getAmbientSpawnLimit());
-        worldObject.put("animalSpawnLimit", world.getAnimalSpawnLimit());
-        worldObject.put("monsterSpawnLimit", world.getMonsterSpawnLimit());
-        worldObject.put("waterAnimalSpawnLimit", world.getWaterAnimalSpawnLimit());
-        worldObject.put("waterAmbientSpawnLimit", world.getWaterAmbientSpawnLimit());
-        worldObject.put("lightningDuration", world.getWeatherDuration());
-        worldObject.put("ticksPerAnimalSpawns", world.getTicksPerAnimalSpawns());
-        worldObject.put("ticksPerMonsterSpawns", world.getTicksPerMonsterSpawns());
-        worldObject.put("ticksPerWaterSpawns", world.getTicksPerWaterSpawns());
-        worldObject.put("ticksPerAmbientSpawns", world.getTicksPerAmbientSpawns());
-        worldObject.put("ticksPerWaterAmbientSpawns", world.getTicksPerWaterAmbientSpawns());
-        worldObject.put("worldBorder", world.getWorldBorder().getSize());
-        worldObject.put("worldType", world.getWorldType().name());
-        worldObject.put("generator", world.getGenerator());
-
-        JSONObject gameRules = new JSONObject();
-        for (String gameRule : world.getGameRules()) {
-            gameRules.put(gameRule, world.getGameRuleValue(gameRule));
-        }
-        worldObject.put("gameRules", gameRules);
-
-        response.put(world.getName(), worldObject);
+        response.put(world.name(), world.toJson());
 
         return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", response.toString());
     }
@@ -1,5 +1,6 @@
 package com.shweit.serverapi.handlers;
 
+import com.shweit.serverapi.utils.MainThreadExecutor;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.Server;
@@ -56,6 +57,26 @@ public class BetterCommandExecutor {
         }
     }
     
+    /**
+     * Execute a command on the server thread, the future is completed in the tick that runs it
+     */
+    public static CompletableFuture<CommandResult> executeCommandAsync(String command) {
+        return MainThreadExecutor.supply(() -> executeCommand(command));
+    }
+    
+    /**
+     * Execute several commands in order within a single tick
+     */
+    public static CompletableFuture<List<CommandResult>> executeCommandsAsync(List<String> commands) {
+        return MainThreadExecutor.supply(() -> {
+            List<CommandResult> results = new ArrayList<>(commands.size());
+            for (String command : commands) {
+                results.add(executeCommand(command));
+            }
+            return results;
+        });
+    }
+    
     /**
      * Get informative output for commands that don't normally produce output
      */
@@ -1,24 +1,25 @@
 package com.shweit.serverapi.handlers;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import com.shweit.serverapi.utils.Helper;
+import com.shweit.serverapi.utils.RingBuffer;
+import com.shweit.serverapi.utils.SseBroadcaster;
+import org.json.JSONObject;
+
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
 
 public final class LogHandler extends Handler {
-    private final List<HashMap<String, String>> log = new ArrayList<>();
+    private final RingBuffer<LogEntry> log;
+    private final SseBroadcaster<LogEntry> stream;
+
+    public LogHandler(final int capacity, final int streamQueueSize) {
+        this.log = new RingBuffer<>(capacity);
+        this.stream = new SseBroadcaster<>(entry -> entry.getValue().toJson(entry.getSequence()).toString(), streamQueueSize);
+    }
 
     @Override
     public void publish(final LogRecord record) {
-        HashMap<String, String> logRecord = new HashMap<>();
-        logRecord.put("level", record.getLevel().getName());
-        logRecord.put("message", record.getMessage());
-
-        String readableTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(record.getMillis());
-        logRecord.put("time", readableTime);
-        log.add(logRecord);
+        stream.publish(log.add(new LogEntry(record.getMillis(), record.getLevel().getName().intern(), record.getMessage())));
     }
 
     @Override
@@ -31,7 +32,44 @@ public final class LogHandler extends Handler {
 
     }
 
-    public List<HashMap<String, String>> getLog() {
+    public RingBuffer<LogEntry> getLog() {
         return log;
     }
+
+    public SseBroadcaster<LogEntry> getStream() {
+        return stream;
+    }
+
+    public static final class LogEntry {
+        private final long timestamp;
+        private final String level;
+        private final String message;
+
+        public LogEntry(final long entryTimestamp, final String entryLevel, final String entryMessage) {
+            this.timestamp = entryTimestamp;
+            this.level = entryLevel;
+            this.message = entryMessage;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getLevel() {
+            return level;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public JSONObject toJson(final long sequence) {
+            JSONObject json = new JSONObject();
+            json.put("sequence", sequence);
+            json.put("level", level);
+            json.put("message", message);
+            json.put("time", Helper.dateConverter(timestamp));
+            return json;
+        }
+    }
 }
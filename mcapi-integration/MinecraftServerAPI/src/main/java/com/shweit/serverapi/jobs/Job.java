@@ -0,0 +1,227 @@
+package com.shweit.serverapi.jobs;
+
+import com.shweit.serverapi.utils.Helper;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A long-running operation submitted to the {@link JobManager}.
+ * <p>
+ *     The task of a job reports its progress either through the counters of {@link #getCounter()}
+ *     or by handing its own {@link JobProgress} to {@link #trackProgress}. Throughput and ETA are
+ *     derived from the bytes processed since the job started.
+ * </p>
+ */
+public final class Job {
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final String type;
+    private final String description;
+    private final long createdAt = System.currentTimeMillis();
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+    private final CompletableFuture<Job> completion = new CompletableFuture<>();
+    private final Counter counter = new Counter();
+
+    private volatile JobProgress progress = counter;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile boolean cancelRequested;
+    private volatile JSONObject result;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    Job(final String jobId, final String jobType, final String jobDescription) {
+        this.id = jobId;
+        this.type = jobType;
+        this.description = jobDescription;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * The result of a succeeded job, or null.
+     */
+    public JSONObject getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Completes when the job has finished, in any state.
+     */
+    public CompletableFuture<Job> getCompletion() {
+        return completion;
+    }
+
+    public Counter getCounter() {
+        return counter;
+    }
+
+    public void trackProgress(final JobProgress source) {
+        this.progress = source;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void setFuture(final Future<?> jobFuture) {
+        this.future = jobFuture;
+    }
+
+    boolean start() {
+        if (!state.compareAndSet(State.QUEUED, State.RUNNING)) {
+            return false;
+        }
+        startedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Requests cancellation: a queued job is cancelled right away, a running job is interrupted.
+     *
+     * @return true if the job was queued and is now cancelled
+     */
+    boolean cancel() {
+        cancelRequested = true;
+        Future<?> jobFuture = future;
+        if (jobFuture != null) {
+            jobFuture.cancel(true);
+        }
+        return finish(State.QUEUED, State.CANCELLED, null, "Cancelled");
+    }
+
+    boolean finish(final State finalState, final JSONObject jobResult, final String jobError) {
+        return finish(State.RUNNING, finalState, jobResult, jobError);
+    }
+
+    private boolean finish(final State expected, final State finalState, final JSONObject jobResult, final String jobError) {
+        if (!state.compareAndSet(expected, finalState)) {
+            return false;
+        }
+        result = jobResult;
+        error = jobError;
+        finishedAt = System.currentTimeMillis();
+        completion.complete(this);
+        return true;
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("type", type);
+        json.put("description", description);
+        json.put("state", state.get().name().toLowerCase(Locale.ROOT));
+        json.put("cancelRequested", cancelRequested);
+        json.put("createdAt", Helper.dateConverter(createdAt));
+        if (startedAt > 0) {
+            json.put("startedAt", Helper.dateConverter(startedAt));
+        }
+        if (finishedAt > 0) {
+            json.put("finishedAt", Helper.dateConverter(finishedAt));
+        }
+
+        JobProgress current = progress;
+        long bytesDone = current.getBytesDone();
+        long bytesTotal = current.getBytesTotal();
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        long elapsedMillis = startedAt > 0 ? Math.max(1, end - startedAt) : 0;
+
+        JSONObject progressJson = new JSONObject();
+        progressJson.put("filesDone", current.getFilesDone());
+        progressJson.put("filesTotal", current.getFilesTotal());
+        progressJson.put("bytesDone", bytesDone);
+        progressJson.put("bytesTotal", bytesTotal);
+        if (elapsedMillis > 0) {
+            long bytesPerSecond = bytesDone * 1000 / elapsedMillis;
+            progressJson.put("elapsedSeconds", elapsedMillis / 1000);
+            progressJson.put("bytesPerSecond", bytesPerSecond);
+            if (state.get() == State.RUNNING && bytesTotal > 0 && bytesPerSecond > 0) {
+                progressJson.put("etaSeconds", Math.max(0, bytesTotal - bytesDone) / bytesPerSecond);
+            }
+        }
+        if (bytesTotal > 0) {
+            progressJson.put("percent", Math.min(100, bytesDone * 100 / bytesTotal));
+        }
+        json.put("progress", progressJson);
+
+        if (result != null) {
+            json.put("result", result);
+        }
+        if (error != null) {
+            json.put("error", error);
+        }
+        return json;
+    }
+
+    /**
+     * Progress counters for tasks that do not keep their own.
+     */
+    public static final class Counter implements JobProgress {
+        private final AtomicLong filesDone = new AtomicLong();
+        private final AtomicLong filesTotal = new AtomicLong();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong bytesTotal = new AtomicLong();
+
+        public void setFilesTotal(final long total) {
+            filesTotal.set(total);
+        }
+
+        public void addFilesDone(final long files) {
+            filesDone.addAndGet(files);
+        }
+
+        public void setBytesTotal(final long total) {
+            bytesTotal.set(total);
+        }
+
+        public void addBytesDone(final long bytes) {
+            bytesDone.addAndGet(bytes);
+        }
+
+        @Override
+        public long getFilesDone() {
+            return filesDone.get();
+        }
+
+        @Override
+        public long getFilesTotal() {
+            return filesTotal.get();
+        }
+
+        @Override
+        public long getBytesDone() {
+            return bytesDone.get();
+        }
+
+        @Override
+        public long getBytesTotal() {
+            return bytesTotal.get();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.shweit.serverapi.jobs;
+
+import com.shweit.serverapi.utils.Logger;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs long-running operations such as backups, world creation and plugin downloads as jobs.
+ * <p>
+ *     At most {@code jobs.max_concurrent} jobs run at once and up to {@code jobs.queue_size} more
+ *     wait; submitting beyond that fails with a {@link RejectedExecutionException}. Finished jobs
+ *     are kept in a history of the last {@code jobs.history_size} jobs, so their result can still
+ *     be read after the thread that ran them is gone.
+ * </p>
+ */
+public final class JobManager {
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> active = new ConcurrentHashMap<>();
+    private final Deque<Job> history = new ArrayDeque<>();
+    private final int historySize;
+    private final AtomicLong nextId = new AtomicLong();
+
+    public JobManager(final int maxConcurrent, final int queueSize, final int maxHistory) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, maxConcurrent);
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                    Thread thread = new Thread(runnable, "MinecraftServerAPI-Job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.historySize = Math.max(1, maxHistory);
+    }
+
+    public static JobManager fromConfig(final FileConfiguration config) {
+        return new JobManager(
+                config.getInt("jobs.max_concurrent", 2),
+                config.getInt("jobs.queue_size", 16),
+                config.getInt("jobs.history_size", 100)
+        );
+    }
+
+    /**
+     * Queues a job.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public Job submit(final String type, final String description, final Task task) {
+        Job job = new Job(Long.toString(nextId.incrementAndGet()), type, description);
+        active.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job, task)));
+        } catch (RejectedExecutionException e) {
+            active.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    private void run(final Job job, final Task task) {
+        if (!job.start()) {
+            return;
+        }
+
+        try {
+            job.finish(Job.State.SUCCEEDED, task.run(job), null);
+        } catch (InterruptedException | CancellationException e) {
+            job.finish(Job.State.CANCELLED, null, "Cancelled");
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (job.isCancelRequested()) {
+                job.finish(Job.State.CANCELLED, null, "Cancelled");
+            } else {
+                Logger.error("Job " + job.getId() + " (" + job.getType() + ") failed: " + cause.getMessage());
+                job.finish(Job.State.FAILED, null, String.valueOf(cause.getMessage()));
+            }
+        } finally {
+            archive(job);
+        }
+    }
+
+    /**
+     * Cancels a queued job or interrupts a running one.
+     *
+     * @return false if the job has already finished
+     */
+    public boolean cancel(final Job job) {
+        if (job.getState().isFinished()) {
+            return false;
+        }
+        if (job.cancel()) {
+            archive(job);
+        }
+        return true;
+    }
+
+    private void archive(final Job job) {
+        if (active.remove(job.getId()) == null) {
+            return;
+        }
+        synchronized (history) {
+            history.addFirst(job);
+            while (history.size() > historySize) {
+                history.removeLast();
+            }
+        }
+    }
+
+    public Job get(final String id) {
+        Job job = active.get(id);
+        if (job != null) {
+            return job;
+        }
+        synchronized (history) {
+            for (Job finished : history) {
+                if (finished.getId().equals(id)) {
+                    return finished;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the queued and running jobs, oldest first, followed by the history, newest first.
+     */
+    public List<Job> getJobs() {
+        List<Job> jobs = new ArrayList<>(active.values());
+        jobs.sort(Comparator.comparingLong(job -> Long.parseLong(job.getId())));
+        synchronized (history) {
+            jobs.addAll(history);
+        }
+        return jobs;
+    }
+
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        stats.put("maxConcurrent", executor.getMaximumPoolSize());
+        stats.put("running", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        return stats;
+    }
+
+    public static JSONArray toJson(final List<Job> jobs) {
+        JSONArray array = new JSONArray();
+        jobs.forEach(job -> array.put(job.toJson()));
+        return array;
+    }
+
+    /**
+     * Interrupts all running jobs and drops the queued ones.
+     */
+    public void shutdown() {
+        active.values().forEach(this::cancel);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Runs the job. Tasks should stop with an {@link InterruptedException} when interrupted.
+         *
+         * @return the result of the job, or null
+         */
+        JSONObject run(Job job) throws Exception;
+    }
+}
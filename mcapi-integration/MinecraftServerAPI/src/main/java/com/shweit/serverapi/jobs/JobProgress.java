@@ -0,0 +1,14 @@
+package com.shweit.serverapi.jobs;
+
+/**
+ * Progress of a job. Totals are 0 while they are unknown.
+ */
+public interface JobProgress {
+    long getFilesDone();
+
+    long getFilesTotal();
+
+    long getBytesDone();
+
+    long getBytesTotal();
+}
@@ -1,26 +1,64 @@
 package com.shweit.serverapi.listeners;
 
+import com.shweit.serverapi.utils.Helper;
+import com.shweit.serverapi.utils.RingBuffer;
+import com.shweit.serverapi.utils.SseBroadcaster;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
-
-import java.text.SimpleDateFormat;
-import java.util.*;
+import org.json.JSONObject;
 
 public final class ChatListener implements Listener {
-    private final List<HashMap<String, String>> messages = new ArrayList<>();
+    private final RingBuffer<ChatMessage> messages;
+    private final SseBroadcaster<ChatMessage> stream;
+
+    public ChatListener(final int capacity, final int streamQueueSize) {
+        this.messages = new RingBuffer<>(capacity);
+        this.stream = new SseBroadcaster<>(entry -> entry.getValue().toJson(entry.getSequence()).toString(), streamQueueSize);
+    }
 
     @EventHandler
     public void onPlayerChat(final org.bukkit.event.player.AsyncPlayerChatEvent event) {
-        HashMap<String, String> message = new HashMap<>();
-        message.put("player", event.getPlayer().getName());
-        message.put("message", event.getMessage());
-
-        String readableTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
-        message.put("time", readableTime);
-        messages.add(message);
+        stream.publish(messages.add(new ChatMessage(System.currentTimeMillis(), event.getPlayer().getName(), event.getMessage())));
     }
 
-    public List<HashMap<String, String>> getMessages() {
+    public RingBuffer<ChatMessage> getMessages() {
         return messages;
     }
+
+    public SseBroadcaster<ChatMessage> getStream() {
+        return stream;
+    }
+
+    public static final class ChatMessage {
+        private final long timestamp;
+        private final String player;
+        private final String message;
+
+        public ChatMessage(final long messageTimestamp, final String messagePlayer, final String messageText) {
+            this.timestamp = messageTimestamp;
+            this.player = messagePlayer;
+            this.message = messageText;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getPlayer() {
+            return player;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public JSONObject toJson(final long sequence) {
+            JSONObject json = new JSONObject();
+            json.put("sequence", sequence);
+            json.put("player", player);
+            json.put("message", message);
+            json.put("time", Helper.dateConverter(timestamp));
+            return json;
+        }
+    }
 }
@@ -0,0 +1,286 @@
+package com.shweit.serverapi.metrics;
+
+import com.shweit.serverapi.utils.RouteDefinition;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests of the web server and their latency per route pattern, such as
+ * {@code GET /v1/players/{username}}, so the number of series does not grow with the number of players.
+ * <p>
+ *     Besides the total latency, every request is split into the phases of {@link Phase}, each with
+ *     its own histogram. Recording a request only increments atomic counters, no lock is taken.
+ *     Requests that match no route are counted as {@code unmatched}, Swagger UI files as {@code static}.
+ * </p>
+ */
+public final class HttpMetrics {
+    /** Upper bounds of the latency histogram buckets in seconds; the last bucket is unbounded. */
+    private static final double[] BUCKET_BOUNDS_SECONDS = {
+        0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10,
+    };
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_SECONDS.length];
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_SECONDS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS_SECONDS[i] * NANOS_PER_SECOND);
+        }
+    }
+
+    /**
+     * The parts a request is timed in.
+     */
+    public enum Phase {
+        /** Finding the route and checking the authentication key. */
+        AUTH,
+        /** Reading query parameters, headers and the request body. */
+        BODY,
+        /** Running the handler of the route, which also builds the response body. */
+        HANDLER,
+        /** Writing the response to the client, including compression. */
+        SERIALIZATION;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Map<RouteDefinition, RouteStats> byRoute = new ConcurrentHashMap<>();
+    private final RouteStats unmatched = new RouteStats("", "unmatched");
+    private final RouteStats staticFiles = new RouteStats("GET", "static");
+    private final SlowRequestLog slowRequests;
+
+    /**
+     * @param slowThresholdMillis requests taking longer are added to the slow request log
+     * @param slowLogSize number of slow requests kept
+     */
+    public HttpMetrics(final long slowThresholdMillis, final int slowLogSize) {
+        this.slowRequests = new SlowRequestLog(slowThresholdMillis, slowLogSize);
+    }
+
+    /**
+     * Starts timing a request. Its phases are then ended in order and the trace is completed once the response was sent.
+     */
+    public RequestTrace startRequest(final String method, final String uri) {
+        return new RequestTrace(this, method, uri);
+    }
+
+    /**
+     * @return the statistics of a route, created on first use
+     */
+    public RouteStats get(final RouteDefinition route) {
+        RouteStats stats = byRoute.get(route);
+        if (stats == null) {
+            stats = byRoute.computeIfAbsent(route, definition -> new RouteStats(definition.getHttpMethod().name(), definition.getRoutePattern()));
+        }
+        return stats;
+    }
+
+    public RouteStats getUnmatched() {
+        return unmatched;
+    }
+
+    public RouteStats getStaticFiles() {
+        return staticFiles;
+    }
+
+    public SlowRequestLog getSlowRequests() {
+        return slowRequests;
+    }
+
+    /**
+     * @return the statistics of every route that received at least one request
+     */
+    public List<RouteStats> getRoutes() {
+        List<RouteStats> routes = new ArrayList<>(byRoute.values());
+        routes.add(staticFiles);
+        routes.add(unmatched);
+        routes.removeIf(stats -> stats.getCount() == 0);
+        return routes;
+    }
+
+    public static double[] getBucketBounds() {
+        return BUCKET_BOUNDS_SECONDS.clone();
+    }
+
+    void complete(final RequestTrace trace) {
+        trace.getRoute().record(trace.getStatus(), trace.getDurationNanos(), trace.getPhaseNanos());
+        slowRequests.offer(trace);
+    }
+
+    public static final class RouteStats {
+        private final String method;
+        private final String route;
+        private final Histogram total = new Histogram();
+        private final Histogram[] phases = new Histogram[Phase.values().length];
+        private final Map<Integer, LongAdder> byStatus = new ConcurrentHashMap<>();
+
+        private RouteStats(final String httpMethod, final String routePattern) {
+            this.method = httpMethod;
+            this.route = routePattern;
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram();
+            }
+        }
+
+        /**
+         * @param phaseNanos the duration of each phase, indexed by the ordinal of {@link Phase}
+         */
+        public void record(final int status, final long durationNanos, final long[] phaseNanos) {
+            total.record(durationNanos);
+            for (int i = 0; i < phases.length; i++) {
+                phases[i].record(phaseNanos[i]);
+            }
+
+            LongAdder counter = byStatus.get(status);
+            if (counter == null) {
+                counter = byStatus.computeIfAbsent(status, code -> new LongAdder());
+            }
+            counter.increment();
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public long getCount() {
+            return total.getCount();
+        }
+
+        public double getSumSeconds() {
+            return total.getSumNanos() / NANOS_PER_SECOND;
+        }
+
+        /**
+         * @return the number of requests per histogram bucket, not cumulative
+         */
+        public long[] getHistogram() {
+            return total.getCounts();
+        }
+
+        public double getPhaseSumSeconds(final Phase phase) {
+            return phases[phase.ordinal()].getSumNanos() / NANOS_PER_SECOND;
+        }
+
+        /**
+         * @return the number of requests per histogram bucket of one phase, not cumulative
+         */
+        public long[] getPhaseHistogram(final Phase phase) {
+            return phases[phase.ordinal()].getCounts();
+        }
+
+        /**
+         * @return the number of requests per response status
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            byStatus.forEach((status, counter) -> counts.put(status, counter.sum()));
+            return counts;
+        }
+
+        public JSONObject toJson() {
+            JSONObject statuses = new JSONObject();
+            getStatusCounts().forEach((status, count) -> statuses.put(Integer.toString(status), count));
+
+            JSONObject phaseJson = new JSONObject();
+            for (Phase phase : Phase.values()) {
+                phaseJson.put(phase.getName(), phases[phase.ordinal()].toJson());
+            }
+
+            JSONObject json = new JSONObject();
+            json.put("method", method);
+            json.put("route", route);
+            json.put("statuses", statuses);
+            json.put("total", total.toJson());
+            json.put("phases", phaseJson);
+            return json;
+        }
+    }
+
+    /**
+     * A latency histogram with the buckets of {@link #getBucketBounds()}.
+     */
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_NANOS.length + 1);
+        private final LongAdder sumNanos = new LongAdder();
+
+        private void record(final long durationNanos) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_NANOS.length && durationNanos > BUCKET_BOUNDS_NANOS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            sumNanos.add(durationNanos);
+        }
+
+        private long getCount() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        private long getSumNanos() {
+            return sumNanos.sum();
+        }
+
+        private long[] getCounts() {
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        /**
+         * Estimates a percentile by interpolating inside its bucket, like Prometheus' {@code histogram_quantile}.
+         * Percentiles in the unbounded bucket are reported as the largest bound.
+         */
+        private static double percentileMillis(final long[] counts, final long count, final double percentile) {
+            double rank = percentile * count;
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_NANOS.length; i++) {
+                if (cumulative + counts[i] >= rank && counts[i] > 0) {
+                    long lower = i == 0 ? 0 : BUCKET_BOUNDS_NANOS[i - 1];
+                    double position = (rank - cumulative) / counts[i];
+                    return (lower + (BUCKET_BOUNDS_NANOS[i] - lower) * position) / NANOS_PER_MILLI;
+                }
+                cumulative += counts[i];
+            }
+            return BUCKET_BOUNDS_NANOS[BUCKET_BOUNDS_NANOS.length - 1] / NANOS_PER_MILLI;
+        }
+
+        private JSONObject toJson() {
+            long[] counts = getCounts();
+            long count = 0;
+            for (long bucketCount : counts) {
+                count += bucketCount;
+            }
+            double sumMillis = getSumNanos() / NANOS_PER_MILLI;
+
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("sumMs", sumMillis);
+            json.put("meanMs", count == 0 ? 0 : sumMillis / count);
+            json.put("p50Ms", count == 0 ? 0 : percentileMillis(counts, count, 0.50));
+            json.put("p95Ms", count == 0 ? 0 : percentileMillis(counts, count, 0.95));
+            json.put("p99Ms", count == 0 ? 0 : percentileMillis(counts, count, 0.99));
+            return json;
+        }
+    }
+}
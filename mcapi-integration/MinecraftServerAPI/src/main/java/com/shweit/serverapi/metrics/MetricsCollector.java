@@ -0,0 +1,280 @@
+package com.shweit.serverapi.metrics;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import com.shweit.serverapi.WebServer;
+import com.shweit.serverapi.state.StateSnapshot;
+import com.shweit.serverapi.utils.Logger;
+import com.shweit.serverapi.utils.TickSampler;
+import com.shweit.serverapi.webhooks.RegisterWebHooks;
+import com.shweit.serverapi.webhooks.WebHookDispatcher;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the metrics served at {@code /metrics} in the Prometheus text format.
+ * <p>
+ *     Values that are expensive or must be read on the server thread are collected in the background every
+ *     {@code metrics.interval_seconds}: the JVM, disk and tick duration percentiles on an async thread,
+ *     the loaded chunks and entities of every world on the server thread. A scrape only combines the last
+ *     collected values with counters that are cheap to read, so scraping never blocks on the server thread.
+ * </p>
+ */
+public final class MetricsCollector {
+    private static final double MILLIS_PER_SECOND = 1000.0;
+    private static final String[] TICK_INTERVAL_PERCENTILES = {"p50", "p95", "p99"};
+
+    private final WebServer webServer;
+    private final File serverDirectory;
+
+    private volatile String collected = "";
+    private volatile List<WorldSample> worlds = List.of();
+    private BukkitTask asyncTask;
+    private BukkitTask syncTask;
+
+    public MetricsCollector(final WebServer server, final File directory) {
+        this.webServer = server;
+        this.serverDirectory = directory;
+    }
+
+    public void start(final Plugin plugin, final long intervalTicks) {
+        long interval = Math.max(1L, intervalTicks);
+        asyncTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::collectJvm, 0L, interval);
+        syncTask = Bukkit.getScheduler().runTaskTimer(plugin, this::collectWorlds, 1L, interval);
+    }
+
+    public void stop() {
+        if (asyncTask != null) {
+            asyncTask.cancel();
+            asyncTask = null;
+        }
+        if (syncTask != null) {
+            syncTask.cancel();
+            syncTask = null;
+        }
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        writeServer(writer);
+        writeWorlds(writer);
+        writeHttp(writer);
+        writeWebHooks(writer);
+        writeJobs(writer);
+        return writer + collected;
+    }
+
+    private void collectJvm() {
+        try {
+            PrometheusWriter writer = new PrometheusWriter();
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            MemoryUsage heap = memory.getHeapMemoryUsage();
+            MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+            writer.family("jvm_memory_bytes_used", "gauge", "Used memory of the JVM")
+                    .sample("jvm_memory_bytes_used", heap.getUsed(), "area", "heap")
+                    .sample("jvm_memory_bytes_used", nonHeap.getUsed(), "area", "nonheap");
+            writer.family("jvm_memory_bytes_committed", "gauge", "Memory committed by the JVM")
+                    .sample("jvm_memory_bytes_committed", heap.getCommitted(), "area", "heap")
+                    .sample("jvm_memory_bytes_committed", nonHeap.getCommitted(), "area", "nonheap");
+            writer.family("jvm_memory_bytes_max", "gauge", "Maximum memory of the JVM, -1 if undefined")
+                    .sample("jvm_memory_bytes_max", heap.getMax(), "area", "heap")
+                    .sample("jvm_memory_bytes_max", nonHeap.getMax(), "area", "nonheap");
+
+            writer.family("jvm_gc_collection_seconds", "summary", "Time spent in garbage collections");
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                writer.sample("jvm_gc_collection_seconds_count", Math.max(0, collector.getCollectionCount()), "gc", collector.getName());
+                writer.sample("jvm_gc_collection_seconds_sum", Math.max(0, collector.getCollectionTime()) / MILLIS_PER_SECOND, "gc", collector.getName());
+            }
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long[] deadlocked = threads.findDeadlockedThreads();
+            writer.family("jvm_threads_current", "gauge", "Current number of live threads").sample("jvm_threads_current", threads.getThreadCount());
+            writer.family("jvm_threads_daemon", "gauge", "Current number of live daemon threads").sample("jvm_threads_daemon", threads.getDaemonThreadCount());
+            writer.family("jvm_threads_peak", "gauge", "Peak number of live threads").sample("jvm_threads_peak", threads.getPeakThreadCount());
+            writer.family("jvm_threads_deadlocked", "gauge", "Threads deadlocked waiting for monitors or synchronizers")
+                    .sample("jvm_threads_deadlocked", deadlocked == null ? 0 : deadlocked.length);
+
+            writer.family("process_uptime_seconds", "gauge", "Uptime of the JVM")
+                    .sample("process_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / MILLIS_PER_SECOND);
+            writer.family("system_load_average_1m", "gauge", "System load average of the last minute, -1 if unavailable")
+                    .sample("system_load_average_1m", ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+            writer.family("system_cpu_count", "gauge", "Processors available to the JVM")
+                    .sample("system_cpu_count", Runtime.getRuntime().availableProcessors());
+
+            try {
+                FileStore store = Files.getFileStore(serverDirectory.toPath());
+                writer.family("minecraft_disk_bytes", "gauge", "Size of the file system holding the server directory")
+                        .sample("minecraft_disk_bytes", store.getTotalSpace(), "kind", "total")
+                        .sample("minecraft_disk_bytes", store.getUsableSpace(), "kind", "usable");
+            } catch (IOException e) {
+                Logger.debug("Could not read disk usage: " + e.getMessage());
+            }
+
+            JSONObject tickInterval = MinecraftServerAPI.getTickSampler().toJson().getJSONObject("tickIntervalMs");
+            writer.family("minecraft_tick_interval_percentile_seconds", "gauge", "Time between two server ticks, percentiles over the last minute");
+            for (String percentile : TICK_INTERVAL_PERCENTILES) {
+                writer.sample("minecraft_tick_interval_percentile_seconds", tickInterval.getDouble(percentile) / MILLIS_PER_SECOND, "percentile", percentile);
+            }
+
+            collected = writer.toString();
+        } catch (Exception e) {
+            Logger.error("Failed to collect metrics: " + e.getMessage());
+        }
+    }
+
+    private void collectWorlds() {
+        List<WorldSample> samples = new ArrayList<>();
+        for (World world : Bukkit.getWorlds()) {
+            samples.add(new WorldSample(world.getName(), world.getLoadedChunks().length, world.getEntities().size(), world.getPlayers().size()));
+        }
+        worlds = List.copyOf(samples);
+    }
+
+    private void writeServer(final PrometheusWriter writer) {
+        TickSampler tickSampler = MinecraftServerAPI.getTickSampler();
+        writer.family("minecraft_tps", "gauge", "Ticks per second, at most 20")
+                .sample("minecraft_tps", tickSampler.getTPS(60), "window", "1m")
+                .sample("minecraft_tps", tickSampler.getTPS(5 * 60), "window", "5m")
+                .sample("minecraft_tps", tickSampler.getTPS(15 * 60), "window", "15m");
+
+        long[] boundsMs = TickSampler.getBucketBounds();
+        double[] bounds = new double[boundsMs.length];
+        for (int i = 0; i < boundsMs.length; i++) {
+            bounds[i] = boundsMs[i] / MILLIS_PER_SECOND;
+        }
+        writer.family("minecraft_tick_interval_seconds", "histogram", "Time between two server ticks")
+                .histogram("minecraft_tick_interval_seconds", bounds, tickSampler.getHistogram(), tickSampler.getIntervalSumSeconds());
+
+        StateSnapshot snapshot = MinecraftServerAPI.getStateCache().get();
+        if (snapshot != null) {
+            writer.family("minecraft_players_online", "gauge", "Players online").sample("minecraft_players_online", snapshot.players().size());
+            writer.family("minecraft_players_max", "gauge", "Maximum number of players").sample("minecraft_players_max", snapshot.server().maxPlayers());
+        }
+    }
+
+    private void writeWorlds(final PrometheusWriter writer) {
+        List<WorldSample> samples = worlds;
+        if (samples.isEmpty()) {
+            return;
+        }
+
+        writer.family("minecraft_world_loaded_chunks", "gauge", "Loaded chunks per world");
+        for (WorldSample sample : samples) {
+            writer.sample("minecraft_world_loaded_chunks", sample.loadedChunks(), "world", sample.name());
+        }
+        writer.family("minecraft_world_entities", "gauge", "Entities per world");
+        for (WorldSample sample : samples) {
+            writer.sample("minecraft_world_entities", sample.entities(), "world", sample.name());
+        }
+        writer.family("minecraft_world_players", "gauge", "Players per world");
+        for (WorldSample sample : samples) {
+            writer.sample("minecraft_world_players", sample.players(), "world", sample.name());
+        }
+    }
+
+    private void writeHttp(final PrometheusWriter writer) {
+        List<HttpMetrics.RouteStats> routes = webServer.getHttpMetrics().getRoutes();
+
+        writer.family("mcapi_http_requests_total", "counter", "HTTP requests per route pattern and status");
+        for (HttpMetrics.RouteStats route : routes) {
+            for (Map.Entry<Integer, Long> status : route.getStatusCounts().entrySet()) {
+                writer.sample("mcapi_http_requests_total", status.getValue(),
+                        "method", route.getMethod(), "route", route.getRoute(), "code", Integer.toString(status.getKey()));
+            }
+        }
+
+        double[] bounds = HttpMetrics.getBucketBounds();
+        writer.family("mcapi_http_request_duration_seconds", "histogram", "Time to handle an HTTP request per route pattern");
+        for (HttpMetrics.RouteStats route : routes) {
+            writer.histogram("mcapi_http_request_duration_seconds", bounds, route.getHistogram(), route.getSumSeconds(),
+                    "method", route.getMethod(), "route", route.getRoute());
+        }
+
+        writer.family("mcapi_http_request_phase_seconds", "histogram", "Time spent in each phase of an HTTP request per route pattern");
+        for (HttpMetrics.RouteStats route : routes) {
+            for (HttpMetrics.Phase phase : HttpMetrics.Phase.values()) {
+                writer.histogram("mcapi_http_request_phase_seconds", bounds, route.getPhaseHistogram(phase), route.getPhaseSumSeconds(phase),
+                        "method", route.getMethod(), "route", route.getRoute(), "phase", phase.getName());
+            }
+        }
+
+        JSONObject connections = webServer.getConnectionStats();
+        writer.family("mcapi_http_connections_active", "gauge", "Connections being handled")
+                .sample("mcapi_http_connections_active", connections.getLong("active"));
+        writer.family("mcapi_http_connections_queued", "gauge", "Connections waiting for a handler thread")
+                .sample("mcapi_http_connections_queued", connections.getLong("queued"));
+        writer.family("mcapi_http_connections_accepted_total", "counter", "Connections accepted")
+                .sample("mcapi_http_connections_accepted_total", connections.getLong("accepted"));
+        writer.family("mcapi_http_connections_rejected_total", "counter", "Connections rejected because the queue was full")
+                .sample("mcapi_http_connections_rejected_total", connections.getLong("rejected"));
+    }
+
+    private void writeWebHooks(final PrometheusWriter writer) {
+        WebHookDispatcher dispatcher = RegisterWebHooks.getDispatcher();
+        if (dispatcher == null) {
+            return;
+        }
+
+        JSONObject stats = dispatcher.getStats();
+        JSONArray endpoints = stats.getJSONArray("endpoints");
+        writer.family("mcapi_webhook_capture_dropped_total", "counter", "Events dropped before they reached an endpoint queue")
+                .sample("mcapi_webhook_capture_dropped_total", stats.getLong("captureDropped"));
+        writeEndpoints(writer, endpoints, "queued", "mcapi_webhook_queue_depth", "gauge", "Events waiting for delivery");
+        writeEndpoints(writer, endpoints, "delivered", "mcapi_webhook_delivered_total", "counter", "Events delivered");
+        writeEndpoints(writer, endpoints, "retries", "mcapi_webhook_retries_total", "counter", "Delivery retries");
+        writeEndpoints(writer, endpoints, "deadLetters", "mcapi_webhook_dead_letters_total", "counter", "Events given up after all retries");
+        writeEndpoints(writer, endpoints, "dropped", "mcapi_webhook_dropped_total", "counter", "Events dropped because the queue was full");
+    }
+
+    private static void writeEndpoints(final PrometheusWriter writer, final JSONArray endpoints, final String key,
+                                       final String name, final String type, final String help) {
+        writer.family(name, type, help);
+        for (int i = 0; i < endpoints.length(); i++) {
+            JSONObject endpoint = endpoints.getJSONObject(i);
+            writer.sample(name, endpoint.getLong(key), "endpoint", endpointLabel(endpoint.getString("url")));
+        }
+    }
+
+    /**
+     * Webhook URLs often carry a token in their query or user info, which must not end up in a time series database.
+     */
+    private static String endpointLabel(final String url) {
+        try {
+            URI uri = new URI(url);
+            return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), null, null).toString();
+        } catch (URISyntaxException e) {
+            return "invalid";
+        }
+    }
+
+    private void writeJobs(final PrometheusWriter writer) {
+        JSONObject stats = MinecraftServerAPI.getJobManager().getStats();
+        writer.family("mcapi_jobs_running", "gauge", "Background jobs running").sample("mcapi_jobs_running", stats.getLong("running"));
+        writer.family("mcapi_jobs_queued", "gauge", "Background jobs waiting to run").sample("mcapi_jobs_queued", stats.getLong("queued"));
+    }
+
+    private record WorldSample(String name, int loadedChunks, int entities, int players) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.shweit.serverapi.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4.
+ */
+public final class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder out = new StringBuilder(16 * 1024);
+
+    /**
+     * Starts a metric family. All samples of a family must follow its header.
+     *
+     * @param type {@code gauge}, {@code counter}, {@code histogram} or {@code summary}
+     */
+    public PrometheusWriter family(final String name, final String type, final String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public PrometheusWriter sample(final String name, final double value, final String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        appendValue(value);
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the buckets, sum and count of a histogram family.
+     *
+     * @param bounds the upper bounds of the buckets, without the unbounded last bucket
+     * @param counts the number of observations per bucket, not cumulative, with the unbounded bucket last
+     * @param labels alternating label names and values, which are added to every sample
+     */
+    public PrometheusWriter histogram(final String name, final double[] bounds, final long[] counts, final double sum, final String... labels) {
+        String[] bucketLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, bucketLabels, 0, labels.length);
+        bucketLabels[labels.length] = "le";
+
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            bucketLabels[labels.length + 1] = i < bounds.length ? formatValue(bounds[i]) : "+Inf";
+            sample(name + "_bucket", cumulative, bucketLabels);
+        }
+        sample(name + "_sum", sum, labels);
+        sample(name + "_count", cumulative, labels);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void appendValue(final double value) {
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            out.append(formatValue(value));
+        }
+    }
+
+    private static String formatValue(final double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private void escape(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.shweit.serverapi.metrics;
+
+/**
+ * Times the phases of one request. Used by the thread serving the request only, so nothing here is synchronized.
+ */
+public final class RequestTrace {
+    private final HttpMetrics metrics;
+    private final String method;
+    private final String uri;
+    private final long startedAt = System.currentTimeMillis();
+    private final long start = System.nanoTime();
+    private final long[] phaseNanos = new long[HttpMetrics.Phase.values().length];
+    private long mark = start;
+    private long end;
+    private HttpMetrics.RouteStats route;
+    private int status;
+
+    RequestTrace(final HttpMetrics httpMetrics, final String httpMethod, final String requestUri) {
+        this.metrics = httpMetrics;
+        this.method = httpMethod;
+        this.uri = requestUri;
+    }
+
+    /**
+     * Adds the time since the previous phase ended to this phase.
+     */
+    public void endPhase(final HttpMetrics.Phase phase) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - mark;
+        mark = now;
+    }
+
+    /**
+     * @param routeStats the route the request is counted for
+     * @param responseStatus the status of the response
+     */
+    public void setResult(final HttpMetrics.RouteStats routeStats, final int responseStatus) {
+        this.route = routeStats;
+        this.status = responseStatus;
+    }
+
+    /**
+     * Ends the {@link HttpMetrics.Phase#SERIALIZATION} phase and records the request. Later calls are ignored.
+     */
+    public void complete() {
+        if (end != 0 || route == null) {
+            return;
+        }
+        endPhase(HttpMetrics.Phase.SERIALIZATION);
+        end = mark;
+        metrics.complete(this);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    HttpMetrics.RouteStats getRoute() {
+        return route;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    long getDurationNanos() {
+        return end - start;
+    }
+
+    long[] getPhaseNanos() {
+        return phaseNanos;
+    }
+}
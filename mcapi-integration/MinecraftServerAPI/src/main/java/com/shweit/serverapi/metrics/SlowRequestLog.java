@@ -0,0 +1,89 @@
+package com.shweit.serverapi.metrics;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent requests that took longer than {@code http.slow_request_ms}, with the time of each phase.
+ * <p>
+ *     Entries are written into a fixed ring, claiming a slot with a single atomic increment, so a slow
+ *     request never waits for a lock and the oldest entry is overwritten once the ring is full.
+ * </p>
+ */
+public final class SlowRequestLog {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long thresholdNanos;
+    private final long thresholdMillis;
+    private final AtomicReferenceArray<SlowRequest> entries;
+    private final AtomicLong written = new AtomicLong();
+
+    public SlowRequestLog(final long threshold, final int size) {
+        this.thresholdMillis = Math.max(0, threshold);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.entries = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    void offer(final RequestTrace trace) {
+        if (trace.getDurationNanos() < thresholdNanos) {
+            return;
+        }
+
+        long[] phaseNanos = trace.getPhaseNanos();
+        double[] phaseMillis = new double[phaseNanos.length];
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseMillis[i] = phaseNanos[i] / NANOS_PER_MILLI;
+        }
+
+        SlowRequest entry = new SlowRequest(trace.getStartedAt(), trace.getMethod(), trace.getUri(), trace.getRoute().getRoute(),
+                trace.getStatus(), trace.getDurationNanos() / NANOS_PER_MILLI, phaseMillis);
+        entries.set((int) (written.getAndIncrement() % entries.length()), entry);
+    }
+
+    /**
+     * @return the slow requests, newest first
+     */
+    public JSONObject toJson() {
+        long count = written.get();
+        JSONArray requests = new JSONArray();
+        for (long i = count - 1; i >= Math.max(0, count - entries.length()); i--) {
+            SlowRequest entry = entries.get((int) (i % entries.length()));
+            if (entry != null) {
+                requests.put(entry.toJson());
+            }
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("thresholdMs", thresholdMillis);
+        json.put("total", count);
+        json.put("requests", requests);
+        return json;
+    }
+
+    /**
+     * @param phaseMillis the duration of each phase, indexed by the ordinal of {@link HttpMetrics.Phase}
+     */
+    private record SlowRequest(long time, String method, String uri, String route, int status, double durationMillis, double[] phaseMillis) {
+
+        private JSONObject toJson() {
+            JSONObject phases = new JSONObject();
+            for (HttpMetrics.Phase phase : HttpMetrics.Phase.values()) {
+                phases.put(phase.getName(), phaseMillis[phase.ordinal()]);
+            }
+
+            JSONObject json = new JSONObject();
+            json.put("time", time);
+            json.put("method", method);
+            json.put("uri", uri);
+            json.put("route", route);
+            json.put("status", status);
+            json.put("durationMs", durationMillis);
+            json.put("phasesMs", phases);
+            return json;
+        }
+    }
+}
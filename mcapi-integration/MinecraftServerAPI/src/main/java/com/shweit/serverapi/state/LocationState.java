@@ -0,0 +1,32 @@
+package com.shweit.serverapi.state;
+
+import org.bukkit.Location;
+import org.json.JSONObject;
+
+/**
+ * A copy of a {@link Location}.
+ */
+public record LocationState(String world, double x, double y, double z, float yaw, float pitch) {
+
+    /**
+     * @return the copy, or null if the location is null
+     */
+    public static LocationState of(final Location location) {
+        if (location == null) {
+            return null;
+        }
+        return new LocationState(location.getWorld() == null ? null : location.getWorld().getName(),
+                location.getX(), location.getY(), location.getZ(), location.getYaw(), location.getPitch());
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("world", world);
+        json.put("x", x);
+        json.put("y", y);
+        json.put("z", z);
+        json.put("yaw", yaw);
+        json.put("pitch", pitch);
+        return json;
+    }
+}
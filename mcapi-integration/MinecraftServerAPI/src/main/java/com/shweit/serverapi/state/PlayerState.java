@@ -0,0 +1,104 @@
+package com.shweit.serverapi.state;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * A copy of the state of an online player.
+ * <p>
+ *     The items are clones that belong to nobody but this copy, so their meta can be read from any thread.
+ * </p>
+ */
+public record PlayerState(
+        String name,
+        UUID uuid,
+        long firstPlayed,
+        long lastPlayed,
+        boolean banned,
+        boolean whitelisted,
+        boolean op,
+        LocationState location,
+        LocationState lastDeathLocation,
+        Map<Integer, ItemStack> inventory
+) {
+
+    /**
+     * Must be called on the server thread.
+     */
+    public static PlayerState capture(final Player player) {
+        Map<Integer, ItemStack> items = new TreeMap<>();
+        PlayerInventory playerInventory = player.getInventory();
+        for (int slot = 0; slot < playerInventory.getSize(); slot++) {
+            ItemStack item = playerInventory.getItem(slot);
+            if (item != null && item.getType() != Material.AIR) {
+                items.put(slot, item.clone());
+            }
+        }
+
+        return new PlayerState(
+                player.getName(),
+                player.getUniqueId(),
+                player.getFirstPlayed(),
+                player.getLastPlayed(),
+                player.isBanned(),
+                player.isWhitelisted(),
+                player.isOp(),
+                LocationState.of(player.getLocation()),
+                LocationState.of(player.getLastDeathLocation()),
+                Collections.unmodifiableMap(items)
+        );
+    }
+
+    public JSONObject toJson() {
+        JSONObject playerJson = new JSONObject();
+        playerJson.put("name", name);
+        playerJson.put("uuid", uuid.toString());
+        playerJson.put("firstPlayed", firstPlayed);
+        playerJson.put("lastPlayed", lastPlayed);
+        playerJson.put("isOnline", true);
+        playerJson.put("isBanned", banned);
+        playerJson.put("isWhitelisted", whitelisted);
+        playerJson.put("isOp", op);
+        playerJson.put("location", location.toJson());
+        playerJson.put("lastDeathLocation", lastDeathLocation == null ? new JSONObject() : lastDeathLocation.toJson());
+        return playerJson;
+    }
+
+    public JSONObject inventoryToJson() {
+        JSONObject inventoryJson = new JSONObject();
+        for (Map.Entry<Integer, ItemStack> slot : inventory.entrySet()) {
+            inventoryJson.put(String.valueOf(slot.getKey()), itemToJson(slot.getValue()));
+        }
+        return inventoryJson;
+    }
+
+    @SuppressWarnings("deprecation")
+    public static JSONObject itemToJson(final ItemStack item) {
+        ItemMeta meta = item.getItemMeta();
+        JSONObject itemJson = new JSONObject();
+        itemJson.put("type", item.getType().name());
+        itemJson.put("amount", item.getAmount());
+        itemJson.put("durability", item.getDurability());
+        itemJson.put("displayName", meta.getDisplayName());
+        itemJson.put("lore", meta.getLore());
+        itemJson.put("enchantments", item.getEnchantments());
+        itemJson.put("attributes", meta.getAttributeModifiers());
+        itemJson.put("flags", meta.getItemFlags());
+        itemJson.put("unbreakable", meta.isUnbreakable());
+        if (meta.hasCustomModelData()) {
+            itemJson.put("customModelData", meta.getCustomModelData());
+        }
+        itemJson.put("itemFlags", meta.getItemFlags());
+        itemJson.put("itemMeta", meta);
+        return itemJson;
+    }
+}
@@ -0,0 +1,94 @@
+package com.shweit.serverapi.state;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A copy of the settings of the server and the versions of its plugins.
+ */
+public record ServerInfo(
+        String name,
+        String motd,
+        String version,
+        String bukkitVersion,
+        String ip,
+        int port,
+        int maxPlayers,
+        boolean whitelisted,
+        int viewDistance,
+        int simulationDistance,
+        int spawnRadius,
+        String worldType,
+        Map<String, String> plugins,
+        String defaultGameMode,
+        boolean allowEnd,
+        boolean allowNether,
+        boolean allowFlight,
+        boolean generateStructures,
+        boolean hardcore
+) {
+
+    /**
+     * Must be called on the server thread.
+     */
+    public static ServerInfo capture(final Server server) {
+        Map<String, String> plugins = new LinkedHashMap<>();
+        for (Plugin plugin : server.getPluginManager().getPlugins()) {
+            plugins.put(plugin.getName(), plugin.getDescription().getVersion());
+        }
+
+        return new ServerInfo(
+                server.getName(),
+                server.getMotd(),
+                server.getVersion(),
+                server.getBukkitVersion(),
+                server.getIp(),
+                server.getPort(),
+                server.getMaxPlayers(),
+                server.hasWhitelist(),
+                server.getViewDistance(),
+                server.getSimulationDistance(),
+                server.getSpawnRadius(),
+                server.getWorldType(),
+                Collections.unmodifiableMap(plugins),
+                server.getDefaultGameMode().name(),
+                server.getAllowEnd(),
+                server.getAllowNether(),
+                server.getAllowFlight(),
+                server.getGenerateStructures(),
+                server.isHardcore()
+        );
+    }
+
+    /**
+     * The server info without the online players and worlds, which belong to the snapshot.
+     */
+    public JSONObject toJson() {
+        JSONObject serverInfo = new JSONObject();
+        serverInfo.put("name", name);
+        serverInfo.put("motd", motd);
+        serverInfo.put("version", version);
+        serverInfo.put("bukkitVersion", bukkitVersion);
+        serverInfo.put("ip", ip);
+        serverInfo.put("port", port);
+        serverInfo.put("maxPlayers", maxPlayers);
+        serverInfo.put("whitelisted", whitelisted);
+        serverInfo.put("viewDistance", viewDistance);
+        serverInfo.put("simulationDistance", simulationDistance);
+        serverInfo.put("spawnRadius", spawnRadius);
+        serverInfo.put("worldType", worldType);
+        serverInfo.put("plugins", new JSONObject(plugins));
+        serverInfo.put("defaultGameMode", defaultGameMode);
+        serverInfo.put("allowEnd", allowEnd);
+        serverInfo.put("allowNether", allowNether);
+        serverInfo.put("allowFlight", allowFlight);
+        serverInfo.put("generateStructures", generateStructures);
+        serverInfo.put("hardcore", hardcore);
+        return serverInfo;
+    }
+}
@@ -0,0 +1,145 @@
+package com.shweit.serverapi.state;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes a {@link StateSnapshot} for the read endpoints, so they never touch the Bukkit API from a web server thread.
+ * <p>
+ *     A task on the server thread copies the server info, every world and every online player into
+ *     immutable records every {@code state_cache.interval_ticks} and swaps the reference at once. Requests
+ *     read the latest snapshot without locking, so the cost per tick depends on the number of worlds
+ *     and players, but not on how many clients poll.
+ * </p>
+ * <p>
+ *     Loading or unloading a world or plugin and the gamerule and difficulty commands take a new
+ *     snapshot on the next tick, so these changes show up without waiting for the interval. Responses
+ *     built from a snapshot are cached until it is replaced.
+ * </p>
+ */
+public final class StateCache implements Runnable, Listener {
+    private static final Set<String> WORLD_COMMANDS = Set.of("gamerule", "difficulty");
+
+    private final AtomicReference<StateSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private Plugin owner;
+    private BukkitTask task;
+
+    /**
+     * Takes the first snapshot right away, so it must be called on the server thread.
+     */
+    public void start(final Plugin plugin, final long intervalTicks) {
+        owner = plugin;
+        run();
+        long interval = Math.max(1L, intervalTicks);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this, interval, interval);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * @return the latest snapshot
+     */
+    public StateSnapshot get() {
+        return snapshot.get();
+    }
+
+    /**
+     * Takes a new snapshot on the next tick, unless one is already due.
+     */
+    public void refresh() {
+        if (owner != null && owner.isEnabled() && refreshPending.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(owner, () -> {
+                refreshPending.set(false);
+                run();
+            });
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(final WorldLoadEvent event) {
+        refresh();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        refresh();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(final PluginEnableEvent event) {
+        refresh();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(final PluginDisableEvent event) {
+        refresh();
+    }
+
+    // Bukkit has no event for changed gamerules or difficulty, so the commands are watched instead
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onServerCommand(final ServerCommandEvent event) {
+        refreshOnWorldCommand(event.getCommand());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(final PlayerCommandPreprocessEvent event) {
+        refreshOnWorldCommand(event.getMessage().substring(1));
+    }
+
+    private void refreshOnWorldCommand(final String command) {
+        String label = command.trim().split(" ", 2)[0].toLowerCase(Locale.ROOT);
+        if (label.startsWith("minecraft:")) {
+            label = label.substring("minecraft:".length());
+        }
+        if (WORLD_COMMANDS.contains(label)) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void run() {
+        Map<String, WorldState> worlds = new LinkedHashMap<>();
+        for (World world : Bukkit.getWorlds()) {
+            worlds.put(world.getName(), WorldState.capture(world));
+        }
+
+        Map<UUID, PlayerState> players = new LinkedHashMap<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            players.put(player.getUniqueId(), PlayerState.capture(player));
+        }
+
+        snapshot.set(new StateSnapshot(
+                System.currentTimeMillis(),
+                ServerInfo.capture(Bukkit.getServer()),
+                Collections.unmodifiableMap(worlds),
+                Collections.unmodifiableMap(players)
+        ));
+    }
+}
@@ -0,0 +1,28 @@
+package com.shweit.serverapi.state;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The state of the server, its worlds and its online players at one tick.
+ *
+ * @param capturedAt the time the snapshot was taken
+ * @param worlds the worlds by name, in the order of {@code Bukkit.getWorlds()}
+ * @param players the online players by UUID, in the order of {@code Bukkit.getOnlinePlayers()}
+ */
+public record StateSnapshot(long capturedAt, ServerInfo server, Map<String, WorldState> worlds, Map<UUID, PlayerState> players) {
+
+    /**
+     * @return the world, or null if it is not loaded
+     */
+    public WorldState getWorld(final String name) {
+        return worlds.get(name);
+    }
+
+    /**
+     * @return the player, or null if they are not online
+     */
+    public PlayerState getPlayer(final UUID uuid) {
+        return players.get(uuid);
+    }
+}
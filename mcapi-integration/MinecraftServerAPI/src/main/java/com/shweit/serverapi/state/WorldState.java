@@ -0,0 +1,122 @@
+package com.shweit.serverapi.state;
+
+import org.bukkit.World;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A copy of the settings and state of a world.
+ */
+public record WorldState(
+        String name,
+        String environment,
+        long seed,
+        long time,
+        long fullTime,
+        String difficulty,
+        int weatherDuration,
+        int thunderDuration,
+        boolean allowAnimals,
+        boolean allowMonsters,
+        int maxHeight,
+        int seaLevel,
+        boolean generateStructures,
+        boolean pvp,
+        boolean keepSpawnInMemory,
+        int ambientSpawnLimit,
+        int animalSpawnLimit,
+        int monsterSpawnLimit,
+        int waterAnimalSpawnLimit,
+        int waterAmbientSpawnLimit,
+        long ticksPerAnimalSpawns,
+        long ticksPerMonsterSpawns,
+        long ticksPerWaterSpawns,
+        long ticksPerAmbientSpawns,
+        long ticksPerWaterAmbientSpawns,
+        double worldBorder,
+        String worldType,
+        String generator,
+        Map<String, String> gameRules
+) {
+
+    /**
+     * Must be called on the server thread.
+     */
+    @SuppressWarnings("deprecation")
+    public static WorldState capture(final World world) {
+        Map<String, String> gameRules = new LinkedHashMap<>();
+        for (String gameRule : world.getGameRules()) {
+            gameRules.put(gameRule, world.getGameRuleValue(gameRule));
+        }
+
+        return new WorldState(
+                world.getName(),
+                world.getEnvironment().name(),
+                world.getSeed(),
+                world.getTime(),
+                world.getFullTime(),
+                world.getDifficulty().name(),
+                world.getWeatherDuration(),
+                world.getThunderDuration(),
+                world.getAllowAnimals(),
+                world.getAllowMonsters(),
+                world.getMaxHeight(),
+                world.getSeaLevel(),
+                world.canGenerateStructures(),
+                world.getPVP(),
+                world.getKeepSpawnInMemory(),
+                world.getAmbientSpawnLimit(),
+                world.getAnimalSpawnLimit(),
+                world.getMonsterSpawnLimit(),
+                world.getWaterAnimalSpawnLimit(),
+                world.getWaterAmbientSpawnLimit(),
+                world.getTicksPerAnimalSpawns(),
+                world.getTicksPerMonsterSpawns(),
+                world.getTicksPerWaterSpawns(),
+                world.getTicksPerAmbientSpawns(),
+                world.getTicksPerWaterAmbientSpawns(),
+                world.getWorldBorder().getSize(),
+                world.getWorldType() == null ? null : world.getWorldType().name(),
+                world.getGenerator() == null ? null : world.getGenerator().getClass().getName(),
+                Collections.unmodifiableMap(gameRules)
+        );
+    }
+
+    public JSONObject toJson() {
+        JSONObject worldObject = new JSONObject();
+        worldObject.put("name", name);
+        worldObject.put("environment", environment);
+        worldObject.put("seed", seed);
+        worldObject.put("time", time);
+        worldObject.put("fullTime", fullTime);
+        worldObject.put("difficulty", difficulty);
+        worldObject.put("weatherDuration", weatherDuration);
+        worldObject.put("thunderDuration", thunderDuration);
+        worldObject.put("allowAnimals", allowAnimals);
+        worldObject.put("allowMonsters", allowMonsters);
+        worldObject.put("maxHeight", maxHeight);
+        worldObject.put("seaLevel", seaLevel);
+        worldObject.put("generateStructures", generateStructures);
+        worldObject.put("pvp", pvp);
+        worldObject.put("keepSpawnInMemory", keepSpawnInMemory);
+        worldObject.put("ambientSpawnLimit", ambientSpawnLimit);
+        worldObject.put("animalSpawnLimit", animalSpawnLimit);
+        worldObject.put("monsterSpawnLimit", monsterSpawnLimit);
+        worldObject.put("waterAnimalSpawnLimit", waterAnimalSpawnLimit);
+        worldObject.put("waterAmbientSpawnLimit", waterAmbientSpawnLimit);
+        worldObject.put("lightningDuration", weatherDuration);
+        worldObject.put("ticksPerAnimalSpawns", ticksPerAnimalSpawns);
+        worldObject.put("ticksPerMonsterSpawns", ticksPerMonsterSpawns);
+        worldObject.put("ticksPerWaterSpawns", ticksPerWaterSpawns);
+        worldObject.put("ticksPerAmbientSpawns", ticksPerAmbientSpawns);
+        worldObject.put("ticksPerWaterAmbientSpawns", ticksPerWaterAmbientSpawns);
+        worldObject.put("worldBorder", worldBorder);
+        worldObject.put("worldType", worldType);
+        worldObject.put("generator", generator);
+        worldObject.put("gameRules", new JSONObject(gameRules));
+        return worldObject;
+    }
+}
@@ -0,0 +1,441 @@
+package com.shweit.serverapi.stats;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shweit.serverapi.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Statistic;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Keeps the best players of every statistic, so leaderboards are answered without touching a single stats file.
+ * <p>
+ *     A task on an async scheduler thread lists {@code world/stats/} periodically and only parses the files
+ *     whose modification time changed since the previous scan. The leaderboards hold the top
+ *     {@code leaderboards.size} players of every key and of the total of every typed statistic (e.g. all
+ *     blocks mined). Only the keys a new, changed or deleted file has or had are rebuilt from the snapshots
+ *     in memory, together with the totals of their statistics; every other leaderboard is carried over and
+ *     all are published at once. Online players show up with the values of their last save, since that is
+ *     when the server writes their stats file.
+ * </p>
+ * <p>
+ *     A change of {@code usercache.json} rebuilds every leaderboard, since the names are part of them.
+ * </p>
+ */
+public final class LeaderboardIndex implements Runnable {
+    private static final String FILE_EXTENSION = ".json";
+
+    private final StatKeys keys;
+    private final File statsFolder;
+    private final File userCacheFile;
+    private final int maxSize;
+
+    // Only touched by the scan, which is synchronized. Sorted, so ties keep their order between rebuilds
+    private final Map<UUID, StatsSnapshot> snapshots = new TreeMap<>();
+    private final Map<UUID, String> names = new HashMap<>();
+    private long userCacheModified;
+
+    private volatile Boards boards;
+    private BukkitTask task;
+
+    public LeaderboardIndex(final StatKeys statKeys, final File folder, final File serverDirectory, final int size) {
+        this.keys = statKeys;
+        this.statsFolder = folder;
+        this.userCacheFile = new File(serverDirectory, "usercache.json");
+        this.maxSize = Math.max(1, size);
+    }
+
+    public void start(final Plugin plugin, final long periodTicks) {
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, 0L, Math.max(1L, periodTicks));
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return false until the first scan has finished
+     */
+    public boolean isReady() {
+        return boards != null;
+    }
+
+    /**
+     * @return the time the leaderboards were last rebuilt, or 0 before the first scan
+     */
+    public long getUpdatedAt() {
+        Boards current = boards;
+        return current == null ? 0L : current.updatedAt;
+    }
+
+    /**
+     * @param name a key such as {@code MINE_BLOCK_STONE} or {@code PLAY_ONE_MINUTE}, or a typed statistic
+     *             such as {@code MINE_BLOCK} for the total over all its blocks, items or entities
+     * @return the leaderboard, an empty one if nobody has this statistic yet, or null if the name is unknown
+     *         or the first scan has not finished
+     */
+    public Leaderboard get(final String name) {
+        Boards current = boards;
+        if (current == null) {
+            return null;
+        }
+
+        String upperName = name.toUpperCase(Locale.ROOT);
+        int key = keys.byName(upperName);
+        if (key >= 0) {
+            return current.byKey[key] == null ? Leaderboard.EMPTY : current.byKey[key];
+        }
+
+        Statistic statistic;
+        try {
+            statistic = Statistic.valueOf(upperName);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (statistic.getType() == Statistic.Type.UNTYPED) {
+            return null;
+        }
+        Leaderboard total = current.totals[statistic.ordinal()];
+        return total == null ? Leaderboard.EMPTY : total;
+    }
+
+    @Override
+    public void run() {
+        try {
+            scan();
+        } catch (Exception e) {
+            Logger.error("Failed to update leaderboards: " + e.getMessage());
+        }
+    }
+
+    private synchronized void scan() {
+        boolean changed = false;
+        boolean[] affectedKeys = new boolean[keys.size()];
+
+        File[] files = statsFolder.listFiles((dir, fileName) -> fileName.endsWith(FILE_EXTENSION));
+        Set<UUID> seen = new HashSet<>();
+        if (files != null) {
+            for (File file : files) {
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(file.getName().substring(0, file.getName().length() - FILE_EXTENSION.length()));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                seen.add(uuid);
+
+                StatsSnapshot known = snapshots.get(uuid);
+                if (known != null && known.getTakenAt() == file.lastModified()) {
+                    continue;
+                }
+
+                try {
+                    StatsSnapshot snapshot = StatsSnapshot.read(file, keys);
+                    markKeys(affectedKeys, known);
+                    markKeys(affectedKeys, snapshot);
+                    snapshots.put(uuid, snapshot);
+                    changed = true;
+                } catch (Exception e) {
+                    // Most likely caught while the server writes it, the next scan tries again
+                    Logger.debug("Could not read " + file.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        Iterator<Map.Entry<UUID, StatsSnapshot>> iterator = snapshots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, StatsSnapshot> entry = iterator.next();
+            if (!seen.contains(entry.getKey())) {
+                markKeys(affectedKeys, entry.getValue());
+                iterator.remove();
+                changed = true;
+            }
+        }
+
+        if (loadNames() || boards == null) {
+            boards = build(null);
+        } else if (changed) {
+            boards = build(affectedKeys);
+        }
+    }
+
+    private static void markKeys(final boolean[] affectedKeys, final StatsSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            affectedKeys[snapshot.keyAt(i)] = true;
+        }
+    }
+
+    /**
+     * @param affectedKeys the keys to rebuild, or null to rebuild every leaderboard
+     */
+    private Boards build(final boolean[] affectedKeys) {
+        Boards previous = boards;
+        boolean rebuildAll = affectedKeys == null || previous == null;
+        boolean[] affectedTotals = new boolean[Statistic.values().length];
+        for (int key = 0; key < keys.size(); key++) {
+            Statistic statistic = keys.getStatistic(key);
+            if (statistic.getType() != Statistic.Type.UNTYPED && (rebuildAll || affectedKeys[key])) {
+                affectedTotals[statistic.ordinal()] = true;
+            }
+        }
+
+        UUID[] players = snapshots.keySet().toArray(new UUID[0]);
+        String[] playerNames = new String[players.length];
+        TopK[] byKey = new TopK[keys.size()];
+        TopK[] totals = new TopK[affectedTotals.length];
+        long[] sums = new long[totals.length];
+
+        for (int player = 0; player < players.length; player++) {
+            playerNames[player] = names.get(players[player]);
+            StatsSnapshot snapshot = snapshots.get(players[player]);
+
+            for (int i = 0; i < snapshot.size(); i++) {
+                int key = snapshot.keyAt(i);
+                int value = snapshot.valueAt(i);
+                if (rebuildAll || affectedKeys[key]) {
+                    if (byKey[key] == null) {
+                        byKey[key] = new TopK(maxSize);
+                    }
+                    byKey[key].offer(player, value);
+                }
+
+                int ordinal = keys.getStatistic(key).ordinal();
+                if (affectedTotals[ordinal]) {
+                    sums[ordinal] += value;
+                }
+            }
+
+            for (int ordinal = 0; ordinal < sums.length; ordinal++) {
+                if (sums[ordinal] != 0) {
+                    if (totals[ordinal] == null) {
+                        totals[ordinal] = new TopK(maxSize);
+                    }
+                    totals[ordinal].offer(player, sums[ordinal]);
+                    sums[ordinal] = 0;
+                }
+            }
+        }
+
+        Leaderboard[] keyBoards = new Leaderboard[byKey.length];
+        for (int key = 0; key < byKey.length; key++) {
+            if (!rebuildAll && !affectedKeys[key]) {
+                keyBoards[key] = previous.byKey[key];
+            } else if (byKey[key] != null) {
+                keyBoards[key] = byKey[key].toLeaderboard(players, playerNames);
+            }
+        }
+        Leaderboard[] totalBoards = new Leaderboard[totals.length];
+        for (int ordinal = 0; ordinal < totals.length; ordinal++) {
+            if (!affectedTotals[ordinal]) {
+                totalBoards[ordinal] = previous == null ? null : previous.totals[ordinal];
+            } else if (totals[ordinal] != null) {
+                totalBoards[ordinal] = totals[ordinal].toLeaderboard(players, playerNames);
+            }
+        }
+
+        return new Boards(keyBoards, totalBoards, System.currentTimeMillis());
+    }
+
+    /**
+     * @return whether usercache.json changed since it was last read
+     */
+    private boolean loadNames() {
+        long modified = userCacheFile.lastModified();
+        if (modified == userCacheModified) {
+            return false;
+        }
+        userCacheModified = modified;
+        names.clear();
+        if (modified == 0L) {
+            return true;
+        }
+
+        try (Reader reader = Files.newBufferedReader(userCacheFile.toPath(), StandardCharsets.UTF_8)) {
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject profile = element.getAsJsonObject();
+                names.put(UUID.fromString(profile.get("uuid").getAsString()), profile.get("name").getAsString());
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.warning("Could not read usercache.json: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * The best players of one statistic, best first.
+     */
+    public static final class Leaderboard {
+        private static final Leaderboard EMPTY = new Leaderboard(new UUID[0], new String[0], new long[0], 0);
+
+        private final UUID[] uuids;
+        private final String[] playerNames;
+        private final long[] values;
+        private final int players;
+
+        private Leaderboard(final UUID[] rankedUuids, final String[] rankedNames, final long[] rankedValues, final int playerCount) {
+            this.uuids = rankedUuids;
+            this.playerNames = rankedNames;
+            this.values = rankedValues;
+            this.players = playerCount;
+        }
+
+        /**
+         * @return the number of players with a non-zero value, including those not on the leaderboard
+         */
+        public int getPlayers() {
+            return players;
+        }
+
+        public JSONArray toJson(final int limit) {
+            JSONArray entries = new JSONArray();
+            int count = Math.min(limit, uuids.length);
+            for (int i = 0; i < count; i++) {
+                JSONObject entry = new JSONObject();
+                entry.put("rank", i + 1);
+                entry.put("uuid", uuids[i].toString());
+                if (playerNames[i] != null) {
+                    entry.put("name", playerNames[i]);
+                }
+                entry.put("value", values[i]);
+                entries.put(entry);
+            }
+            return entries;
+        }
+    }
+
+    private static final class Boards {
+        private final Leaderboard[] byKey;
+        private final Leaderboard[] totals;
+        private final long updatedAt;
+
+        private Boards(final Leaderboard[] keyBoards, final Leaderboard[] totalBoards, final long time) {
+            this.byKey = keyBoards;
+            this.totals = totalBoards;
+            this.updatedAt = time;
+        }
+    }
+
+    /**
+     * A bounded min-heap of player indices whose root is the worst player on the board, so a player
+     * who does not make it is rejected with a single comparison.
+     */
+    private static final class TopK {
+        private final int[] heapPlayers;
+        private final long[] heapValues;
+        private int size;
+        private int offered;
+
+        private TopK(final int capacity) {
+            this.heapPlayers = new int[capacity];
+            this.heapValues = new long[capacity];
+        }
+
+        private void offer(final int player, final long value) {
+            offered++;
+            if (size < heapPlayers.length) {
+                heapPlayers[size] = player;
+                heapValues[size] = value;
+                siftUp(size++);
+            } else if (ranksBelow(heapValues[0], heapPlayers[0], value, player)) {
+                heapPlayers[0] = player;
+                heapValues[0] = value;
+                siftDown(0);
+            }
+        }
+
+        private Leaderboard toLeaderboard(final UUID[] players, final String[] playerNames) {
+            int count = size;
+            UUID[] rankedUuids = new UUID[count];
+            String[] rankedNames = new String[count];
+            long[] rankedValues = new long[count];
+
+            // Taking the root repeatedly yields the worst player first
+            for (int rank = count - 1; rank >= 0; rank--) {
+                rankedUuids[rank] = players[heapPlayers[0]];
+                rankedNames[rank] = playerNames[heapPlayers[0]];
+                rankedValues[rank] = heapValues[0];
+                size--;
+                heapPlayers[0] = heapPlayers[size];
+                heapValues[0] = heapValues[size];
+                siftDown(0);
+            }
+            return new Leaderboard(rankedUuids, rankedNames, rankedValues, offered);
+        }
+
+        /**
+         * Ties are broken by player index, so the order does not change between rebuilds.
+         */
+        private static boolean ranksBelow(final long value, final int player, final long otherValue, final int otherPlayer) {
+            return value < otherValue || (value == otherValue && player > otherPlayer);
+        }
+
+        private void siftUp(final int start) {
+            int index = start;
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!ranksBelow(heapValues[index], heapPlayers[index], heapValues[parent], heapPlayers[parent])) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(final int start) {
+            int index = start;
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && ranksBelow(heapValues[left], heapPlayers[left], heapValues[worst], heapPlayers[worst])) {
+                    worst = left;
+                }
+                if (right < size && ranksBelow(heapValues[right], heapPlayers[right], heapValues[worst], heapPlayers[worst])) {
+                    worst = right;
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(index, worst);
+                index = worst;
+            }
+        }
+
+        private void swap(final int a, final int b) {
+            int player = heapPlayers[a];
+            heapPlayers[a] = heapPlayers[b];
+            heapPlayers[b] = player;
+            long value = heapValues[a];
+            heapValues[a] = heapValues[b];
+            heapValues[b] = value;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.shweit.serverapi.stats;
+
+import org.bukkit.Keyed;
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Statistic;
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers every statistic a player can have, so a player's statistics fit into two primitive arrays.
+ * <p>
+ *     A key is either an untyped statistic such as {@code PLAY_ONE_MINUTE} or a typed statistic
+ *     together with its block, item or entity, such as {@code MINE_BLOCK_STONE}. Keys are also
+ *     found by the names the server uses in {@code world/stats/<uuid>.json}, e.g.
+ *     {@code minecraft:mined} and {@code minecraft:stone}.
+ * </p>
+ * <p>
+ *     {@link Statistic#getKey()} is only the lower case enum name, which is not what vanilla writes to
+ *     the stats file for the typed statistics and for several custom ones, so those are mapped explicitly.
+ * </p>
+ */
+public final class StatKeys {
+    private static final String NAMESPACE = "minecraft:";
+    private static final String CUSTOM_CATEGORY = NAMESPACE + "custom";
+
+    private final Statistic[] statistics;
+    private final Keyed[] qualifiers;
+    private final String[] names;
+    private final Map<String, Integer> byName = new HashMap<>();
+    private final Map<String, Integer> byFileKey = new HashMap<>();
+
+    private StatKeys(final List<Statistic> statisticList, final List<Keyed> qualifierList) {
+        this.statistics = statisticList.toArray(new Statistic[0]);
+        this.qualifiers = qualifierList.toArray(new Keyed[0]);
+        this.names = new String[statistics.length];
+
+        for (int key = 0; key < statistics.length; key++) {
+            Statistic statistic = statistics[key];
+            Keyed qualifier = qualifiers[key];
+            if (qualifier == null) {
+                names[key] = statistic.name();
+                byFileKey.put(fileKey(CUSTOM_CATEGORY, vanillaName(statistic)), key);
+            } else {
+                names[key] = statistic.name() + "_" + ((Enum<?>) qualifier).name();
+                byFileKey.put(fileKey(vanillaName(statistic), qualifier.getKey().toString()), key);
+            }
+            byName.put(names[key], key);
+        }
+    }
+
+    /**
+     * Builds the keys of all statistics the server knows.
+     */
+    public static StatKeys build() {
+        List<Statistic> statisticList = new ArrayList<>();
+        List<Keyed> qualifierList = new ArrayList<>();
+
+        for (Statistic statistic : Statistic.values()) {
+            Statistic.Type type = statistic.getType();
+            if (type == Statistic.Type.UNTYPED) {
+                statisticList.add(statistic);
+                qualifierList.add(null);
+            } else if (type == Statistic.Type.ENTITY) {
+                for (EntityType entityType : EntityType.values()) {
+                    if (entityType != EntityType.UNKNOWN && entityType.isAlive()) {
+                        statisticList.add(statistic);
+                        qualifierList.add(entityType);
+                    }
+                }
+            } else {
+                boolean blocks = type == Statistic.Type.BLOCK;
+                for (Material material : Material.values()) {
+                    if (!material.isLegacy() && (blocks ? material.isBlock() : material.isItem())) {
+                        statisticList.add(statistic);
+                        qualifierList.add(material);
+                    }
+                }
+            }
+        }
+
+        return new StatKeys(statisticList, qualifierList);
+    }
+
+    public int size() {
+        return statistics.length;
+    }
+
+    public Statistic getStatistic(final int key) {
+        return statistics[key];
+    }
+
+    /**
+     * The name of a key as used in the API, e.g. {@code PLAY_ONE_MINUTE} or {@code MINE_BLOCK_STONE}.
+     */
+    public String getName(final int key) {
+        return names[key];
+    }
+
+    /**
+     * @return the key with that API name, or -1
+     */
+    public int byName(final String name) {
+        return byName.getOrDefault(name, -1);
+    }
+
+    /**
+     * @param category the statistic in a stats file, e.g. {@code minecraft:mined} or {@code minecraft:custom}
+     * @param name the entry in that statistic, e.g. {@code minecraft:stone} or {@code minecraft:play_time}
+     * @return the key, or -1 if the server does not know this statistic
+     */
+    public int byFileKey(final String category, final String name) {
+        return byFileKey.getOrDefault(fileKey(category, name), -1);
+    }
+
+    /**
+     * Reads the value of a key from the server. Must be called on the server thread.
+     */
+    public int read(final OfflinePlayer player, final int key) {
+        Keyed qualifier = qualifiers[key];
+        try {
+            if (qualifier == null) {
+                return player.getStatistic(statistics[key]);
+            }
+            if (qualifier instanceof Material) {
+                return player.getStatistic(statistics[key], (Material) qualifier);
+            }
+            return player.getStatistic(statistics[key], (EntityType) qualifier);
+        } catch (IllegalArgumentException e) {
+            // The server does not track this combination
+            return 0;
+        }
+    }
+
+    /**
+     * The name of a statistic in a stats file: the category of a typed statistic, or the entry in
+     * {@code minecraft:custom} of an untyped one.
+     */
+    static String vanillaName(final Statistic statistic) {
+        switch (statistic) {
+            case MINE_BLOCK:
+                return NAMESPACE + "mined";
+            case USE_ITEM:
+                return NAMESPACE + "used";
+            case BREAK_ITEM:
+                return NAMESPACE + "broken";
+            case CRAFT_ITEM:
+                return NAMESPACE + "crafted";
+            case PICKUP:
+                return NAMESPACE + "picked_up";
+            case DROP:
+                return NAMESPACE + "dropped";
+            case KILL_ENTITY:
+                return NAMESPACE + "killed";
+            case ENTITY_KILLED_BY:
+                return NAMESPACE + "killed_by";
+            case DROP_COUNT:
+                return NAMESPACE + "drop";
+            case PLAY_ONE_MINUTE:
+                return NAMESPACE + "play_time";
+            case CAKE_SLICES_EATEN:
+                return NAMESPACE + "eat_cake_slice";
+            case CAULDRON_FILLED:
+                return NAMESPACE + "fill_cauldron";
+            case CAULDRON_USED:
+                return NAMESPACE + "use_cauldron";
+            case ARMOR_CLEANED:
+                return NAMESPACE + "clean_armor";
+            case BANNER_CLEANED:
+                return NAMESPACE + "clean_banner";
+            case BREWINGSTAND_INTERACTION:
+                return NAMESPACE + "interact_with_brewingstand";
+            case BEACON_INTERACTION:
+                return NAMESPACE + "interact_with_beacon";
+            case DROPPER_INSPECTED:
+                return NAMESPACE + "inspect_dropper";
+            case HOPPER_INSPECTED:
+                return NAMESPACE + "inspect_hopper";
+            case DISPENSER_INSPECTED:
+                return NAMESPACE + "inspect_dispenser";
+            case NOTEBLOCK_PLAYED:
+                return NAMESPACE + "play_noteblock";
+            case NOTEBLOCK_TUNED:
+                return NAMESPACE + "tune_noteblock";
+            case FLOWER_POTTED:
+                return NAMESPACE + "pot_flower";
+            case TRAPPED_CHEST_TRIGGERED:
+                return NAMESPACE + "trigger_trapped_chest";
+            case ENDERCHEST_OPENED:
+                return NAMESPACE + "open_enderchest";
+            case ITEM_ENCHANTED:
+                return NAMESPACE + "enchant_item";
+            case RECORD_PLAYED:
+                return NAMESPACE + "play_record";
+            case FURNACE_INTERACTION:
+                return NAMESPACE + "interact_with_furnace";
+            case CRAFTING_TABLE_INTERACTION:
+                return NAMESPACE + "interact_with_crafting_table";
+            case CHEST_OPENED:
+                return NAMESPACE + "open_chest";
+            case SHULKER_BOX_OPENED:
+                return NAMESPACE + "open_shulker_box";
+            default:
+                return statistic.getKey().toString();
+        }
+    }
+
+    private static String fileKey(final String category, final String name) {
+        return category + " " + name;
+    }
+}
@@ -0,0 +1,129 @@
+package com.shweit.serverapi.stats;
+
+import com.shweit.serverapi.utils.MainThreadExecutor;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serves the statistics of players from a per-player cache.
+ * <p>
+ *     Offline players are read from the stats file the server writes to {@code world/stats/<uuid>.json}
+ *     and stay cached until that file changes. The stats file of an online player is only written on
+ *     auto-save, so online players are read on the server thread instead and cached for
+ *     {@code stats.cache_seconds}. The cached entry of a player is dropped when they join or quit.
+ * </p>
+ */
+public final class StatsService implements Listener {
+    private static final String FILE_EXTENSION = ".json";
+
+    private final StatKeys keys = StatKeys.build();
+    private final Map<UUID, StatsSnapshot> cache = new ConcurrentHashMap<>();
+    private final Set<UUID> onlinePlayers = ConcurrentHashMap.newKeySet();
+    private final File statsFolder;
+    private final long onlineCacheMillis;
+    private final int maxSize;
+
+    /**
+     * Must be created on the server thread.
+     */
+    public StatsService(final File folder, final long onlineCache, final int maxEntries) {
+        this.statsFolder = folder;
+        this.onlineCacheMillis = onlineCache;
+        this.maxSize = Math.max(1, maxEntries);
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            onlinePlayers.add(player.getUniqueId());
+        }
+    }
+
+    public StatKeys getKeys() {
+        return keys;
+    }
+
+    public File getStatsFolder() {
+        return statsFolder;
+    }
+
+    /**
+     * @return the statistics of the player, or null if the player never played on this server
+     * @throws TimeoutException if the server thread did not read the statistics of an online player in time
+     */
+    public StatsSnapshot get(final UUID uuid) throws IOException, TimeoutException, ExecutionException, InterruptedException {
+        long now = System.currentTimeMillis();
+        StatsSnapshot cached = cache.get(uuid);
+
+        if (onlinePlayers.contains(uuid)) {
+            if (cached != null && now - cached.getTakenAt() < onlineCacheMillis) {
+                return cached;
+            }
+
+            StatsSnapshot snapshot = MainThreadExecutor.await(MainThreadExecutor.supply(() -> {
+                Player player = Bukkit.getPlayer(uuid);
+                return player == null ? null : StatsSnapshot.capture(player, keys);
+            }));
+            if (snapshot != null) {
+                put(uuid, snapshot);
+                return snapshot;
+            }
+            // The player left in the meantime, their stats file is current again
+        }
+
+        File file = new File(statsFolder, uuid + FILE_EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+        if (cached != null && cached.getTakenAt() == file.lastModified()) {
+            return cached;
+        }
+
+        StatsSnapshot snapshot = StatsSnapshot.read(file, keys);
+        put(uuid, snapshot);
+        return snapshot;
+    }
+
+    @EventHandler
+    public void onPlayerJoin(final PlayerJoinEvent event) {
+        onlinePlayers.add(event.getPlayer().getUniqueId());
+        cache.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(final PlayerQuitEvent event) {
+        onlinePlayers.remove(event.getPlayer().getUniqueId());
+        cache.remove(event.getPlayer().getUniqueId());
+    }
+
+    private void put(final UUID uuid, final StatsSnapshot snapshot) {
+        cache.put(uuid, snapshot);
+        if (cache.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Drops about a tenth of the cache, so a full cache is not scanned again on every insert.
+     */
+    private synchronized void evict() {
+        int toRemove = cache.size() - maxSize + maxSize / 10;
+        Iterator<StatsSnapshot> iterator = cache.values().iterator();
+        while (toRemove > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            toRemove--;
+        }
+    }
+}
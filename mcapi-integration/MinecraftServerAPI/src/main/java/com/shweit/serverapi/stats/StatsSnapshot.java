@@ -0,0 +1,132 @@
+package com.shweit.serverapi.stats;
+
+import org.bukkit.Statistic;
+import org.bukkit.entity.Player;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The non-zero statistics of a player at one point in time, as sorted key and value arrays.
+ */
+public final class StatsSnapshot {
+    private final int[] keys;
+    private final int[] values;
+    private final long takenAt;
+
+    private StatsSnapshot(final int[] sortedKeys, final int[] keyValues, final long time) {
+        this.keys = sortedKeys;
+        this.values = keyValues;
+        this.takenAt = time;
+    }
+
+    /**
+     * Reads the statistics of an online player. Must be called on the server thread.
+     */
+    public static StatsSnapshot capture(final Player player, final StatKeys statKeys) {
+        int[] sortedKeys = new int[statKeys.size()];
+        int[] keyValues = new int[statKeys.size()];
+        int count = 0;
+        for (int key = 0; key < statKeys.size(); key++) {
+            int value = statKeys.read(player, key);
+            if (value != 0) {
+                sortedKeys[count] = key;
+                keyValues[count] = value;
+                count++;
+            }
+        }
+        return new StatsSnapshot(Arrays.copyOf(sortedKeys, count), Arrays.copyOf(keyValues, count), System.currentTimeMillis());
+    }
+
+    /**
+     * Reads a stats file written by the server. Statistics the server does not know are skipped.
+     */
+    public static StatsSnapshot read(final File file, final StatKeys statKeys) throws IOException {
+        long modified = file.lastModified();
+        JSONObject stats = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).optJSONObject("stats");
+
+        TreeMap<Integer, Integer> found = new TreeMap<>();
+        if (stats != null) {
+            for (String category : stats.keySet()) {
+                JSONObject entries = stats.optJSONObject(category);
+                if (entries == null) {
+                    continue;
+                }
+                for (String name : entries.keySet()) {
+                    int key = statKeys.byFileKey(category, name);
+                    int value = entries.optInt(name);
+                    if (key >= 0 && value != 0) {
+                        found.put(key, value);
+                    }
+                }
+            }
+        }
+
+        int[] sortedKeys = new int[found.size()];
+        int[] keyValues = new int[found.size()];
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : found.entrySet()) {
+            sortedKeys[index] = entry.getKey();
+            keyValues[index] = entry.getValue();
+            index++;
+        }
+        return new StatsSnapshot(sortedKeys, keyValues, modified);
+    }
+
+    public int get(final int key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? 0 : values[index];
+    }
+
+    /**
+     * The number of non-zero statistics, which can be iterated with {@link #keyAt(int)} and {@link #valueAt(int)}.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    public int keyAt(final int index) {
+        return keys[index];
+    }
+
+    public int valueAt(final int index) {
+        return values[index];
+    }
+
+    /**
+     * The time the statistics were read from the player, or the time the stats file was last written.
+     */
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    /**
+     * @param filter the statistics to include, or null for all
+     * @param includeZeros whether to include every key of the filtered statistics, not only the non-zero ones
+     */
+    public JSONObject toJson(final StatKeys statKeys, final Set<Statistic> filter, final boolean includeZeros) {
+        JSONObject json = new JSONObject();
+        if (includeZeros) {
+            for (int key = 0; key < statKeys.size(); key++) {
+                if (filter == null || filter.contains(statKeys.getStatistic(key))) {
+                    json.put(statKeys.getName(key), get(key));
+                }
+            }
+            return json;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            if (filter == null || filter.contains(statKeys.getStatistic(keys[i]))) {
+                json.put(statKeys.getName(keys[i]), values[i]);
+            }
+        }
+        return json;
+    }
+}
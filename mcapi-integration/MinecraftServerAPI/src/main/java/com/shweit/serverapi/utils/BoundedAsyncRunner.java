@@ -0,0 +1,141 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+import org.json.JSONObject;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves NanoHTTPD connections from a bounded pool instead of one new thread per connection.
+ * <p>
+ *     NanoHTTPD hands every accepted connection to the runner, and a connection keeps its worker
+ *     while it is kept alive. At most {@code maxConnections} connections are served at once,
+ *     up to {@code queueSize} more wait for a free worker, and everything beyond that is
+ *     rejected: handlers implementing {@link Rejectable} answer with a 503, others are closed.
+ * </p>
+ * <p>
+ *     On Java 21 and newer the workers can be virtual threads; the limits stay the same.
+ * </p>
+ */
+public final class BoundedAsyncRunner implements NanoHTTPD.AsyncRunner {
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final Set<NanoHTTPD.ClientHandler> running = ConcurrentHashMap.newKeySet();
+    private final int maxConnections;
+    private final int queueSize;
+    private final boolean virtualThreads;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BoundedAsyncRunner(final int connections, final int queue, final boolean useVirtualThreads) {
+        this.maxConnections = Math.max(1, connections);
+        this.queueSize = Math.max(1, queue);
+
+        ThreadFactory threadFactory = useVirtualThreads ? createVirtualThreadFactory() : null;
+        this.virtualThreads = threadFactory != null;
+        if (threadFactory == null) {
+            threadFactory = createPlatformThreadFactory();
+        }
+
+        this.executor = new ThreadPoolExecutor(maxConnections, maxConnections, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void exec(final NanoHTTPD.ClientHandler handler) {
+        try {
+            executor.execute(() -> serve(handler));
+            accepted.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            Logger.debug("Rejected connection, " + maxConnections + " connections active and " + queueSize + " queued");
+            if (handler instanceof Rejectable) {
+                ((Rejectable) handler).reject();
+            } else {
+                handler.close();
+            }
+        }
+    }
+
+    private void serve(final NanoHTTPD.ClientHandler handler) {
+        running.add(handler);
+        active.incrementAndGet();
+        try {
+            handler.run();
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+            running.remove(handler);
+        }
+    }
+
+    @Override
+    public void closed(final NanoHTTPD.ClientHandler handler) {
+        running.remove(handler);
+    }
+
+    @Override
+    public void closeAll() {
+        for (NanoHTTPD.ClientHandler handler : running) {
+            handler.close();
+        }
+        executor.shutdownNow();
+    }
+
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        stats.put("maxConnections", maxConnections);
+        stats.put("queueSize", queueSize);
+        stats.put("virtualThreads", virtualThreads);
+        stats.put("active", active.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("accepted", accepted.get());
+        stats.put("completed", completed.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private static ThreadFactory createPlatformThreadFactory() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "MinecraftServerAPI-HTTP-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // The plugin is built for Java 17, so virtual threads are looked up at runtime
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "MinecraftServerAPI-HTTP-", 1L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            Logger.warning("Virtual threads are not available on this Java version, using platform threads.");
+            return null;
+        }
+    }
+
+    /**
+     * A connection handler that can answer a connection that is not going to be served.
+     */
+    public interface Rejectable {
+        void reject();
+    }
+}
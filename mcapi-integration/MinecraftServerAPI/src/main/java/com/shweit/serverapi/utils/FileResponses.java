@@ -0,0 +1,175 @@
+package com.shweit.serverapi.utils;
+
+import com.shweit.serverapi.WebServer;
+import fi.iki.elonen.NanoHTTPD;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * Streams files from disk with support for conditional and range requests.
+ * <p>
+ *     The file is read through a {@link FileChannel} positioned at the start of the requested range,
+ *     so the heap only ever holds the buffer NanoHTTPD copies through, no matter how large the file is.
+ *     Responses carry an {@code ETag} derived from size and modification time and a {@code Last-Modified}
+ *     header. {@code If-None-Match} and {@code If-Modified-Since} are answered with 304, a single
+ *     {@code Range} (guarded by {@code If-Range}) with 206. Multiple ranges are not supported and are
+ *     answered with the full file, which the HTTP specification allows.
+ * </p>
+ */
+public final class FileResponses {
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final String RANGE_UNIT = "bytes=";
+
+    private FileResponses() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * @param params the request parameters, including the request headers added by {@link WebServer}
+     */
+    public static NanoHTTPD.Response serve(final File file, final String mimeType, final Map<String, String> params) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String etag = etag(file);
+
+        if (isNotModified(params, etag, lastModified)) {
+            return withValidators(NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_MODIFIED, mimeType, ""), etag, lastModified);
+        }
+
+        long start = 0;
+        long count = length;
+        NanoHTTPD.Response.Status status = NanoHTTPD.Response.Status.OK;
+        String contentRange = null;
+
+        String range = WebServer.getHeader(params, "range");
+        if (range != null && isRangeCurrent(WebServer.getHeader(params, "if-range"), etag, lastModified)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds != null && bounds.length == 0) {
+                NanoHTTPD.Response response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.RANGE_NOT_SATISFIABLE, "application/json", "{\"error\": \"Range not satisfiable\"}");
+                response.addHeader("Content-Range", "bytes */" + length);
+                return withValidators(response, etag, lastModified);
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                count = bounds[1] - bounds[0] + 1;
+                status = NanoHTTPD.Response.Status.PARTIAL_CONTENT;
+                contentRange = "bytes " + bounds[0] + "-" + bounds[1] + "/" + length;
+            }
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel.position(start);
+        // NanoHTTPD sends exactly count bytes and closes the stream, and with it the channel, afterwards
+        NanoHTTPD.Response response = NanoHTTPD.newFixedLengthResponse(status, mimeType, Channels.newInputStream(channel), count);
+        if (contentRange != null) {
+            response.addHeader("Content-Range", contentRange);
+        }
+        return withValidators(response, etag, lastModified);
+    }
+
+    public static String etag(final File file) {
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    private static NanoHTTPD.Response withValidators(final NanoHTTPD.Response response, final String etag, final long lastModified) {
+        response.addHeader("Accept-Ranges", "bytes");
+        response.addHeader("ETag", etag);
+        response.addHeader("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(lastModified)));
+        return response;
+    }
+
+    private static boolean isNotModified(final Map<String, String> params, final String etag, final long lastModified) {
+        String ifNoneMatch = WebServer.getHeader(params, "if-none-match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.equals("*") || trimmed.replaceFirst("^W/", "").equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Long since = parseDate(WebServer.getHeader(params, "if-modified-since"));
+        return since != null && lastModified / 1000 <= since;
+    }
+
+    private static boolean isRangeCurrent(final String ifRange, final String etag, final long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+
+        Long date = parseDate(ifRange);
+        return date != null && date == lastModified / 1000;
+    }
+
+    /**
+     * Parses a single byte range.
+     *
+     * @return the first and last byte of the range, an empty array if the range cannot be satisfied,
+     *         or null if the header is invalid or asks for multiple ranges and should be ignored
+     */
+    static long[] parseRange(final String range, final long length) {
+        if (!range.startsWith(RANGE_UNIT) || range.contains(",")) {
+            return null;
+        }
+
+        String spec = range.substring(RANGE_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return new long[0];
+                }
+                return new long[] {Math.max(0, length - suffix), length - 1};
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return new long[0];
+            }
+            return new long[] {start, Math.min(end, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long parseDate(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), HTTP_DATE).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -1,13 +1,9 @@
 package com.shweit.serverapi.utils;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.shweit.serverapi.MinecraftServerAPI;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.util.UUID;
 
@@ -18,49 +14,7 @@ public final class Helper {
     }
 
     public static UUID usernameToUUID(final String username) {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.mojang.com/users/profiles/minecraft/" + username))
-                .build();
-        HttpResponse<String> response;
-
-        UUID playerUUID;
-
-        try {
-            response = java.net.http.HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
-            JsonObject jsonObject = JsonParser.parseString(response.body()).getAsJsonObject();
-            playerUUID = UUID.fromString(jsonObject.get("id").getAsString().replaceAll("(\\w{8})(\\w{4})(\\w{4})(\\w{4})(\\w{12})", "$1-$2-$3-$4-$5"));
-        } catch (InterruptedException e) {
-            Logger.error("Request was interrupted: " + e.getMessage());
-            Thread.currentThread().interrupt();
-            return null;
-        } catch (IOException e) {
-            Logger.error("Failed to convert username to UUID: " + username + " - " + e.getMessage());
-            return null;
-        } catch (Exception e) {
-            Logger.error("Unexpected error occurred: " + e.getMessage());
-            return null;
-        }
-
-        return playerUUID;
-    }
-
-    public static double calculateTPS() {
-        final int ticksSize = 600;
-        final double maxTps = 20.0;
-
-        long[] ticks = new long[ticksSize];
-        int tickCount = 0;
-
-        ticks[tickCount % ticksSize] = System.currentTimeMillis();
-        tickCount++;
-
-        if (tickCount < 100) {
-            return maxTps;
-        }
-        int target = (tickCount - 1 - 100) % ticksSize;
-        long elapsed = System.currentTimeMillis() - ticks[target];
-
-        return 100 / (elapsed / 1000.0);
+        return MinecraftServerAPI.getUUIDResolver().resolve(username);
     }
 
     public static void deleteDirectory(final File directory) throws IOException {
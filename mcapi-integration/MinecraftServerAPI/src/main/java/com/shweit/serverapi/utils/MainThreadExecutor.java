@@ -0,0 +1,101 @@
+package com.shweit.serverapi.utils;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs work on the server thread and hands the result back to the calling thread.
+ * <p>
+ *     The returned future is completed from the tick that runs the task, so a caller blocked in
+ *     {@link #await(CompletableFuture)} wakes up as soon as the work is done instead of polling the
+ *     scheduler. Tasks whose future was cancelled (for example after a timeout) are skipped if
+ *     they have not started yet.
+ * </p>
+ * <p>
+ *     Whether a task runs or is skipped is decided once, so a caller that gets a {@link TimeoutException}
+ *     from {@link #await(CompletableFuture)} knows the task never ran and never will. A task that already
+ *     started when the timeout hit is waited for instead, since it is holding the server thread anyway.
+ * </p>
+ */
+public final class MainThreadExecutor {
+    private static final long DEFAULT_TIMEOUT_SECONDS = 10;
+
+    private MainThreadExecutor() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public static <T> CompletableFuture<T> supply(final Supplier<T> task) {
+        TaskFuture<T> future = new TaskFuture<>();
+
+        if (Bukkit.isPrimaryThread()) {
+            future.claim();
+            complete(future, task);
+            return future;
+        }
+
+        try {
+            Bukkit.getScheduler().runTask(MinecraftServerAPI.getInstance(), () -> {
+                if (future.claim() && !future.isDone()) {
+                    complete(future, task);
+                }
+            });
+        } catch (IllegalStateException e) {
+            // The plugin is being disabled, the scheduler does not accept new tasks
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private static <T> void complete(final CompletableFuture<T> future, final Supplier<T> task) {
+        try {
+            future.complete(task.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Waits for the future for the configured {@code commands.timeout_seconds}. On timeout the task is
+     * skipped if the server thread has not picked it up yet, otherwise its result is still waited for.
+     *
+     * @throws TimeoutException if the task did not run and will not run anymore
+     */
+    public static <T> T await(final CompletableFuture<T> future) throws TimeoutException, ExecutionException, InterruptedException {
+        try {
+            return future.get(getTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            if (future instanceof TaskFuture && !((TaskFuture<?>) future).claim()) {
+                // The task is running on the server thread, reporting a failure would hide its effects
+                return future.get();
+            }
+            future.cancel(false);
+            throw e;
+        }
+    }
+
+    /**
+     * A future whose task is either run or skipped, whichever claims it first.
+     */
+    private static final class TaskFuture<T> extends CompletableFuture<T> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * @return true if the caller decides whether the task runs, false if that was decided already
+         */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    public static long getTimeoutSeconds() {
+        return Math.max(1, MinecraftServerAPI.config.getLong("commands.timeout_seconds", DEFAULT_TIMEOUT_SECONDS));
+    }
+}
@@ -0,0 +1,364 @@
+package com.shweit.serverapi.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Every player who ever joined the server, sorted by name, for paging and prefix search without
+ * {@code Bukkit.getOfflinePlayers()}, which loads the data of every player on each call.
+ * <p>
+ *     The directory is built once on an async thread from the files in {@code world/playerdata/}.
+ *     Names come from usercache.json, then from the directory saved by the previous run, and only
+ *     for the remaining players from the {@code bukkit.lastKnownName} tag of their player data file.
+ *     Afterwards it is only updated by join events. Readers get an immutable sorted array, which a
+ *     join replaces with a copy, so a page is found with a binary search.
+ * </p>
+ */
+public final class PlayerDirectory implements Listener {
+    private static final String FILE_EXTENSION = ".dat";
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.key, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(entry -> entry.uuid);
+
+    private static final int TAG_END = 0;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int[] TAG_SIZES = {0, 1, 2, 4, 8, 4, 8};
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+
+    private final File playerDataFolder;
+    private final File userCacheFile;
+    private final File directoryFile;
+
+    // Only touched while holding the lock of this directory
+    private final Map<UUID, Entry> byUuid = new HashMap<>();
+    private final Map<UUID, String> pendingJoins = new HashMap<>();
+    private boolean ready;
+
+    private volatile Entry[] sorted;
+
+    public PlayerDirectory(final File worldFolder, final File serverDirectory, final File dataFolder) {
+        this.playerDataFolder = new File(worldFolder, "playerdata");
+        this.userCacheFile = new File(serverDirectory, "usercache.json");
+        this.directoryFile = new File(dataFolder, "player-directory.json");
+    }
+
+    public void build(final Plugin plugin) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                long start = System.currentTimeMillis();
+                load();
+                Logger.debug("Built player directory with " + sorted.length + " players in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                Logger.error("Failed to build player directory: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return false until the directory has been built
+     */
+    public boolean isReady() {
+        return sorted != null;
+    }
+
+    /**
+     * @param prefix only players whose name starts with this, ignoring case, or null for all players.
+     *               Players whose name is unknown are listed last and never match a prefix.
+     */
+    public Page list(final String prefix, final int offset, final int limit) {
+        Entry[] entries = sorted;
+        int from = 0;
+        int to = entries.length;
+
+        if (prefix != null && !prefix.isEmpty()) {
+            String key = prefix.toLowerCase(Locale.ROOT);
+            from = lowerBound(entries, key);
+            to = lowerBound(entries, key + Character.MAX_VALUE);
+        }
+
+        int total = to - from;
+        int pageStart = (int) Math.min((long) from + offset, to);
+        int pageEnd = (int) Math.min((long) pageStart + limit, to);
+        return new Page(total, Arrays.asList(Arrays.copyOfRange(entries, pageStart, pageEnd)));
+    }
+
+    @EventHandler
+    public synchronized void onPlayerJoin(final PlayerJoinEvent event) {
+        if (!ready) {
+            pendingJoins.put(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+            return;
+        }
+
+        Entry previous = byUuid.get(event.getPlayer().getUniqueId());
+        if (previous != null && event.getPlayer().getName().equals(previous.name)) {
+            return;
+        }
+
+        Entry entry = new Entry(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        byUuid.put(entry.uuid, entry);
+
+        List<Entry> updated = new ArrayList<>(sorted.length + 1);
+        updated.addAll(Arrays.asList(sorted));
+        if (previous != null) {
+            updated.remove(Collections.binarySearch(updated, previous, ORDER));
+        }
+        updated.add(-Collections.binarySearch(updated, entry, ORDER) - 1, entry);
+        sorted = updated.toArray(new Entry[0]);
+    }
+
+    /**
+     * Writes the names of all players to the plugin folder, so the next start does not have to read player data files.
+     */
+    public synchronized void save() {
+        if (!ready) {
+            return;
+        }
+
+        JsonArray entries = new JsonArray();
+        for (Entry entry : sorted) {
+            if (entry.name == null) {
+                continue;
+            }
+            JsonObject json = new JsonObject();
+            json.addProperty("uuid", entry.uuid.toString());
+            json.addProperty("name", entry.name);
+            entries.add(json);
+        }
+
+        try {
+            Files.createDirectories(directoryFile.getParentFile().toPath());
+            try (Writer writer = Files.newBufferedWriter(directoryFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(entries.toString());
+            }
+        } catch (IOException e) {
+            Logger.error("Could not save " + directoryFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        Map<UUID, String> names = new HashMap<>();
+        readNames(directoryFile, names);
+        // The server's cache is newer than ours
+        readNames(userCacheFile, names);
+
+        String[] files = playerDataFolder.list();
+        List<Entry> entries = new ArrayList<>();
+        if (files != null) {
+            for (String file : files) {
+                if (!file.endsWith(FILE_EXTENSION)) {
+                    continue;
+                }
+
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(file.substring(0, file.length() - FILE_EXTENSION.length()));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+
+                String name = names.get(uuid);
+                if (name == null) {
+                    name = readLastKnownName(new File(playerDataFolder, file));
+                }
+                entries.add(new Entry(uuid, name));
+            }
+        }
+
+        synchronized (this) {
+            for (Entry entry : entries) {
+                byUuid.put(entry.uuid, entry);
+            }
+            for (Map.Entry<UUID, String> join : pendingJoins.entrySet()) {
+                byUuid.put(join.getKey(), new Entry(join.getKey(), join.getValue()));
+            }
+            pendingJoins.clear();
+
+            Entry[] all = byUuid.values().toArray(new Entry[0]);
+            Arrays.sort(all, ORDER);
+            sorted = all;
+            ready = true;
+        }
+    }
+
+    private static void readNames(final File file, final Map<UUID, String> names) {
+        if (!file.isFile()) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject profile = element.getAsJsonObject();
+                names.put(UUID.fromString(profile.get("uuid").getAsString()), profile.get("name").getAsString());
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.warning("Could not read " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the name CraftBukkit stores in the {@code bukkit} compound of a player data file.
+     *
+     * @return the name, or null if the file has none or cannot be read
+     */
+    private static String readLastKnownName(final File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readByte() != TAG_COMPOUND) {
+                return null;
+            }
+            in.readUTF();
+
+            int type;
+            while ((type = in.readByte()) != TAG_END) {
+                String name = in.readUTF();
+                if (type != TAG_COMPOUND || !name.equals("bukkit")) {
+                    skipPayload(in, type);
+                    continue;
+                }
+
+                int childType;
+                while ((childType = in.readByte()) != TAG_END) {
+                    String childName = in.readUTF();
+                    if (childType == TAG_STRING && childName.equals("lastKnownName")) {
+                        return in.readUTF();
+                    }
+                    skipPayload(in, childType);
+                }
+                return null;
+            }
+            return null;
+        } catch (IOException e) {
+            Logger.debug("Could not read " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void skipPayload(final DataInputStream in, final int type) throws IOException {
+        if (type > TAG_END && type < TAG_SIZES.length) {
+            in.skipNBytes(TAG_SIZES[type]);
+            return;
+        }
+
+        switch (type) {
+            case TAG_BYTE_ARRAY:
+                in.skipNBytes(in.readInt());
+                break;
+            case TAG_STRING:
+                in.skipNBytes(in.readUnsignedShort());
+                break;
+            case TAG_LIST:
+                int elementType = in.readByte();
+                int length = in.readInt();
+                for (int i = 0; i < length; i++) {
+                    skipPayload(in, elementType);
+                }
+                break;
+            case TAG_COMPOUND:
+                int childType;
+                while ((childType = in.readByte()) != TAG_END) {
+                    in.skipNBytes(in.readUnsignedShort());
+                    skipPayload(in, childType);
+                }
+                break;
+            case TAG_INT_ARRAY:
+                in.skipNBytes(4L * in.readInt());
+                break;
+            case TAG_LONG_ARRAY:
+                in.skipNBytes(8L * in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown tag type " + type);
+        }
+    }
+
+    /**
+     * @return the index of the first entry whose name is not less than the key
+     */
+    private static int lowerBound(final Entry[] entries, final String key) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            String middleKey = entries[middle].key;
+            if (middleKey != null && middleKey.compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public static final class Page {
+        private final int total;
+        private final List<Entry> entries;
+
+        private Page(final int matching, final List<Entry> pageEntries) {
+            this.total = matching;
+            this.entries = pageEntries;
+        }
+
+        /**
+         * @return the number of players matching the prefix, on all pages
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    public static final class Entry {
+        private final UUID uuid;
+        private final String name;
+        private final String key;
+
+        private Entry(final UUID playerUuid, final String playerName) {
+            this.uuid = playerUuid;
+            this.name = playerName;
+            this.key = playerName == null ? null : playerName.toLowerCase(Locale.ROOT);
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        /**
+         * @return the name of the player, or null if the server does not know it
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.shweit.serverapi.utils;
+
+import com.shweit.serverapi.WebServer;
+import fi.iki.elonen.NanoHTTPD;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the responses of expensive read routes, keyed by route pattern and request parameters.
+ * <p>
+ *     A route opts in with a {@link Policy}. An entry is served until its TTL expires or the version
+ *     of its policy changes, e.g. when the state cache took a new snapshot or a plugin was enabled or
+ *     disabled. Only successful responses are kept, and only their status, type and body, so cached
+ *     routes must not set headers of their own. Versions are compared by identity, so checking an
+ *     entry needs no lock.
+ * </p>
+ */
+public final class ResponseCache implements Listener {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private volatile Object pluginsVersion = new Object();
+
+    public ResponseCache(final int maxSize) {
+        this.maxEntries = Math.max(1, maxSize);
+    }
+
+    /**
+     * @param params the parameters of the request; headers and the request body are not part of the key
+     * @return the cached response, or null
+     */
+    public NanoHTTPD.Response get(final RouteDefinition route, final Map<String, String> params) {
+        Entry entry = entries.get(key(route, params));
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= entry.expiresAt || entry.version != route.getCachePolicy().version().get()) {
+            return null;
+        }
+        return entry.toResponse();
+    }
+
+    /**
+     * Calls the handler of the route and keeps its response if it was successful.
+     *
+     * @return the response of the handler, or a copy of it if it was cached
+     */
+    public NanoHTTPD.Response load(final RouteDefinition route, final Map<String, String> params) {
+        Policy policy = route.getCachePolicy();
+        // Taken before the handler runs, so a change in between drops the entry early rather than late
+        Object version = policy.version().get();
+        long expiresAt = System.currentTimeMillis() + policy.ttlMillis();
+
+        NanoHTTPD.Response response = route.getHandler().apply(params);
+        if (response.getStatus() != NanoHTTPD.Response.Status.OK || response.getData() == null) {
+            return response;
+        }
+
+        byte[] body;
+        try (InputStream data = response.getData()) {
+            body = data.readAllBytes();
+        } catch (IOException e) {
+            Logger.debug("Could not cache response of " + route.getRoutePattern() + ": " + e.getMessage());
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.INTERNAL_ERROR, "application/json", "{\"error\": \"Failed to read response\"}");
+        }
+
+        if (entries.size() >= maxEntries) {
+            Logger.debug("Response cache is full, clearing " + entries.size() + " entries");
+            entries.clear();
+        }
+        Entry entry = new Entry(response.getMimeType(), body, version, expiresAt);
+        entries.put(key(route, params), entry);
+        return entry.toResponse();
+    }
+
+    /**
+     * @return a token that changes whenever a plugin is enabled or disabled
+     */
+    public Object getPluginsVersion() {
+        return pluginsVersion;
+    }
+
+    @EventHandler
+    public void onPluginEnable(final PluginEnableEvent event) {
+        pluginsVersion = new Object();
+    }
+
+    @EventHandler
+    public void onPluginDisable(final PluginDisableEvent event) {
+        pluginsVersion = new Object();
+    }
+
+    private static String key(final RouteDefinition route, final Map<String, String> params) {
+        StringBuilder key = new StringBuilder(route.getRoutePattern());
+        for (Map.Entry<String, String> param : new TreeMap<>(params).entrySet()) {
+            if (param.getKey().startsWith(WebServer.HEADER_PREFIX) || param.getKey().equals("postData")) {
+                continue;
+            }
+            key.append('\n').append(param.getKey()).append('=').append(param.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * How long the responses of a route may be cached.
+     *
+     * @param ttlMillis the longest time a response is served from the cache
+     * @param version returns a token that is replaced when the data of the route changes; entries of an older token are not served
+     */
+    public record Policy(long ttlMillis, Supplier<Object> version) {
+    }
+
+    private static final class Entry {
+        private final String mimeType;
+        private final byte[] body;
+        private final Object version;
+        private final long expiresAt;
+
+        private Entry(final String type, final byte[] content, final Object policyVersion, final long expiry) {
+            this.mimeType = type;
+            this.body = content;
+            this.version = policyVersion;
+            this.expiresAt = expiry;
+        }
+
+        private NanoHTTPD.Response toResponse() {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, mimeType, new ByteArrayInputStream(body), body.length);
+        }
+    }
+}
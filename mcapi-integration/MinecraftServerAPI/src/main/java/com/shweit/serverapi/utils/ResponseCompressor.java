@@ -0,0 +1,238 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * Compresses response bodies with gzip or deflate, whichever the client prefers in its {@code Accept-Encoding}.
+ * <p>
+ *     Bodies are compressed while NanoHTTPD writes them, so a streamed response is never held in memory,
+ *     and are always sent chunked since their compressed length is not known up front. Bodies below
+ *     {@code http.compression.min_size}, binary types and event streams are sent as they are. Every
+ *     {@link Deflater} holds native memory, so they are reset and reused from a pool instead of
+ *     being created per response.
+ * </p>
+ */
+public final class ResponseCompressor {
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final int level;
+    private final int minSize;
+    // Gzip writes its own header and trailer around raw deflate data, deflate uses the zlib wrapper
+    private final BlockingQueue<Deflater> gzipPool;
+    private final BlockingQueue<Deflater> deflatePool;
+
+    public ResponseCompressor(final int compressionLevel, final int minimumSize, final int poolSize) {
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+        this.minSize = Math.max(0, minimumSize);
+        this.gzipPool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.deflatePool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    /**
+     * Compresses the body of the response if the client accepts it and it is worth it.
+     *
+     * @param acceptEncoding the Accept-Encoding header of the request, or null
+     */
+    public void compress(final NanoHTTPD.Response response, final String acceptEncoding) {
+        String encoding = negotiate(acceptEncoding);
+        InputStream data = response.getData();
+        if (encoding == null || data == null || response.getHeader("Content-Encoding") != null || !isCompressible(response)) {
+            return;
+        }
+
+        // Fixed-length bodies are byte arrays, so their size is known; streamed bodies are compressed regardless
+        if (data instanceof ByteArrayInputStream && ((ByteArrayInputStream) data).available() < minSize) {
+            return;
+        }
+
+        boolean gzip = encoding.equals(GZIP);
+        BlockingQueue<Deflater> pool = gzip ? gzipPool : deflatePool;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, gzip);
+        }
+
+        response.setData(new CompressingInputStream(data, deflater, pool, gzip));
+        response.setChunkedTransfer(true);
+        response.addHeader("Content-Encoding", encoding);
+        response.addHeader("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * @return gzip or deflate, whichever has the higher quality, preferring gzip; null if the client accepts neither
+     */
+    static String negotiate(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        double gzipQuality = 0;
+        double deflateQuality = 0;
+        double anyQuality = -1;
+        boolean gzipListed = false;
+        boolean deflateListed = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            switch (coding) {
+                case GZIP:
+                case "x-gzip":
+                    gzipQuality = Math.max(gzipQuality, quality);
+                    gzipListed = true;
+                    break;
+                case DEFLATE:
+                    deflateQuality = Math.max(deflateQuality, quality);
+                    deflateListed = true;
+                    break;
+                case "*":
+                    anyQuality = quality;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // A wildcard only applies to codings that are not listed
+        if (anyQuality > 0 && !gzipListed) {
+            gzipQuality = anyQuality;
+        }
+        if (anyQuality > 0 && !deflateListed) {
+            deflateQuality = anyQuality;
+        }
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return GZIP;
+        }
+        return deflateQuality > 0 ? DEFLATE : null;
+    }
+
+    private static boolean isCompressible(final NanoHTTPD.Response response) {
+        int status = response.getStatus().getRequestStatus();
+        if (status < 200 || status == 204 || status == 304) {
+            return false;
+        }
+
+        String mimeType = response.getMimeType();
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        // Event streams must reach the client unbuffered
+        if (type.startsWith("text/event-stream")) {
+            return false;
+        }
+        return type.startsWith("text/") || type.contains("json") || type.contains("javascript") || type.contains("xml") || type.contains("yaml");
+    }
+
+    /**
+     * Reads the compressed form of a body. Closing it returns the deflater to its pool.
+     */
+    private static final class CompressingInputStream extends InputStream {
+        private final CheckedInputStream source;
+        private final DeflaterInputStream deflated;
+        private final Deflater deflater;
+        private final BlockingQueue<Deflater> pool;
+        private final boolean gzip;
+        private final byte[] header;
+        private byte[] trailer;
+        private int headerPosition;
+        private int trailerPosition;
+        private boolean closed;
+
+        private CompressingInputStream(final InputStream data, final Deflater pooledDeflater, final BlockingQueue<Deflater> deflaterPool, final boolean useGzip) {
+            this.source = new CheckedInputStream(data, new CRC32());
+            this.deflated = new DeflaterInputStream(source, pooledDeflater);
+            this.deflater = pooledDeflater;
+            this.pool = deflaterPool;
+            this.gzip = useGzip;
+            this.header = useGzip ? GZIP_HEADER : new byte[0];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (headerPosition < header.length) {
+                int count = Math.min(length, header.length - headerPosition);
+                System.arraycopy(header, headerPosition, buffer, offset, count);
+                headerPosition += count;
+                return count;
+            }
+
+            if (trailer == null) {
+                int count = deflated.read(buffer, offset, length);
+                if (count > 0) {
+                    return count;
+                }
+                // Zlib data already ends with a checksum, gzip adds the CRC and size of the body
+                trailer = gzip ? gzipTrailer(source.getChecksum().getValue(), deflater.getBytesRead()) : new byte[0];
+            }
+
+            if (trailerPosition >= trailer.length) {
+                return -1;
+            }
+            int count = Math.min(length, trailer.length - trailerPosition);
+            System.arraycopy(trailer, trailerPosition, buffer, offset, count);
+            trailerPosition += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                deflated.close();
+            } finally {
+                deflater.reset();
+                if (!pool.offer(deflater)) {
+                    deflater.end();
+                }
+            }
+        }
+
+        private static byte[] gzipTrailer(final long crc, final long size) {
+            byte[] bytes = new byte[GZIP_TRAILER_SIZE];
+            for (int i = 0; i < 4; i++) {
+                bytes[i] = (byte) (crc >>> (8 * i));
+                bytes[4 + i] = (byte) (size >>> (8 * i));
+            }
+            return bytes;
+        }
+    }
+}
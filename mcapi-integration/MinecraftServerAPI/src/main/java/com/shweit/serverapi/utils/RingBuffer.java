@@ -0,0 +1,89 @@
+package com.shweit.serverapi.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity, lock-free ring buffer that can be written from several threads at once.
+ * <p>
+ *     Every added value gets a monotonically increasing sequence number starting at 0.
+ *     Once the buffer is full the oldest values are overwritten. Readers page through the
+ *     buffer by passing the last sequence they have seen to {@link #since(long, int)}.
+ * </p>
+ */
+public final class RingBuffer<T> {
+    private final AtomicReferenceArray<Entry<T>> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final int capacity;
+
+    public RingBuffer(final int bufferCapacity) {
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = bufferCapacity;
+        this.slots = new AtomicReferenceArray<>(bufferCapacity);
+    }
+
+    public Entry<T> add(final T value) {
+        long sequence = nextSequence.getAndIncrement();
+        Entry<T> entry = new Entry<>(sequence, value);
+        slots.set((int) (sequence % capacity), entry);
+        return entry;
+    }
+
+    /**
+     * Returns up to {@code limit} entries with a sequence greater than {@code sequence}, oldest first.
+     * Pass -1 to start at the oldest entry still held in the buffer. The result ends before the first
+     * entry that is still being written, so it never has gaps a later call could fill.
+     */
+    public List<Entry<T>> since(final long sequence, final int limit) {
+        long end = nextSequence.get();
+        long start = Math.max(sequence + 1, end - capacity);
+        List<Entry<T>> result = new ArrayList<>((int) Math.max(0, Math.min(limit, end - start)));
+
+        for (long current = Math.max(start, 0); current < end && result.size() < limit; current++) {
+            Entry<T> entry = slots.get((int) (current % capacity));
+            if (entry == null || entry.getSequence() < current) {
+                // Claimed by a writer but not published yet. Stop here, a reader that skipped it would move its cursor past it for good
+                break;
+            }
+            // A newer sequence means the entry was overwritten already and is lost anyway
+            if (entry.getSequence() == current) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the sequence of the most recently added entry, or -1 if nothing was added yet
+     */
+    public long getLatestSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public static final class Entry<T> {
+        private final long sequence;
+        private final T value;
+
+        private Entry(final long entrySequence, final T entryValue) {
+            this.sequence = entrySequence;
+            this.value = entryValue;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.shweit.serverapi.utils;
 
 import fi.iki.elonen.NanoHTTPD;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -9,11 +11,32 @@ public final class RouteDefinition {
     private final String routePattern;
     private final NanoHTTPD.Method httpMethod;
     private final Function<Map<String, String>, NanoHTTPD.Response> handler;
+    private final String[] segments;
+    private final String[] paramNames;
+    private final ResponseCache.Policy cachePolicy;
 
     public RouteDefinition(final NanoHTTPD.Method method, final String pattern, final Function<Map<String, String>, NanoHTTPD.Response> routeHandler) {
+        this(method, pattern, routeHandler, null);
+    }
+
+    /**
+     * @param policy how long responses of this route may be cached, or null to never cache them
+     */
+    public RouteDefinition(final NanoHTTPD.Method method, final String pattern, final Function<Map<String, String>, NanoHTTPD.Response> routeHandler,
+                           final ResponseCache.Policy policy) {
         this.routePattern = pattern;
         this.httpMethod = method;
         this.handler = routeHandler;
+        this.cachePolicy = policy;
+        this.segments = tokenize(pattern);
+
+        // paramNames[i] is the name of the parameter at segment i, or null for a literal segment
+        this.paramNames = new String[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            if (isParameter(segments[i])) {
+                paramNames[i] = segments[i].substring(1, segments[i].length() - 1);
+            }
+        }
     }
 
     public String getRoutePattern() {
@@ -28,30 +51,43 @@ public final class RouteDefinition {
         return handler;
     }
 
-    public boolean matches(final String uri, final NanoHTTPD.Method method, final Map<String, String> params) {
-        if (!this.httpMethod.equals(method)) {
-            return false;
-        }
+    /**
+     * @return how long responses of this route may be cached, or null if they are never cached
+     */
+    public ResponseCache.Policy getCachePolicy() {
+        return cachePolicy;
+    }
 
-        String[] patternParts = routePattern.split("/");
-        String[] uriParts = uri.split("/");
+    public String[] getSegments() {
+        return segments;
+    }
 
-        if (patternParts.length != uriParts.length) {
-            return false;
-        }
+    public String getParamName(final int segmentIndex) {
+        return paramNames[segmentIndex];
+    }
+
+    public static boolean isParameter(final String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
 
-        for (int i = 0; i < patternParts.length; i++) {
-            String patternPart = patternParts[i];
-            String uriPart = uriParts[i];
+    /**
+     * Splits a path into its non-empty segments without going through the regex engine.
+     * "/v1/players/" and "/v1/players" both yield ["v1", "players"].
+     */
+    public static String[] tokenize(final String path) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
 
-            if (patternPart.startsWith("{") && patternPart.endsWith("}")) {
-                String paramName = patternPart.substring(1, patternPart.length() - 1); // Entferne die geschweiften Klammern
-                params.put(paramName, uriPart);
-            } else if (!patternPart.equals(uriPart)) {
-                return false;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > start) {
+                    parts.add(path.substring(start, i));
+                }
+                start = i + 1;
             }
         }
 
-        return true;
+        return parts.toArray(new String[0]);
     }
 }
@@ -0,0 +1,140 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Segment trie used by the WebServer to dispatch requests.
+ * <p>
+ *     Route patterns are tokenized once when they are added. A lookup walks the trie one
+ *     path segment at a time, trying literal children before the parameter child, so
+ *     "/v1/backups/status" wins over "/v1/backups/{name}". Path parameters are only
+ *     written into the result once a complete route has matched.
+ * </p>
+ */
+public final class RouteTrie {
+    private final Node root = new Node();
+
+    public void add(final RouteDefinition route) {
+        Node node = root;
+        for (String segment : route.getSegments()) {
+            if (RouteDefinition.isParameter(segment)) {
+                if (node.paramChild == null) {
+                    node.paramChild = new Node();
+                }
+                node = node.paramChild;
+            } else {
+                node = node.literalChildren.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+
+        RouteDefinition previous = node.routes.put(route.getHttpMethod(), route);
+        if (previous != null) {
+            Logger.warning("Route " + route.getHttpMethod() + " " + route.getRoutePattern()
+                    + " replaces " + previous.getHttpMethod() + " " + previous.getRoutePattern());
+        }
+    }
+
+    /**
+     * Finds the route for the given uri and method.
+     *
+     * @return the match, or null if no route with this method matches the uri
+     */
+    public Match find(final String uri, final NanoHTTPD.Method method) {
+        String[] segments = RouteDefinition.tokenize(uri);
+        RouteDefinition route = find(root, segments, 0, method);
+        if (route == null) {
+            return null;
+        }
+
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < segments.length; i++) {
+            String paramName = route.getParamName(i);
+            if (paramName != null) {
+                params.put(paramName, segments[i]);
+            }
+        }
+
+        return new Match(route, params);
+    }
+
+    /**
+     * Returns the methods registered for the first path that matches the uri, ignoring the request method.
+     * An empty set means the path is unknown (404); a non-empty set means the method is wrong (405).
+     */
+    public Set<NanoHTTPD.Method> allowedMethods(final String uri) {
+        Node node = findNode(root, RouteDefinition.tokenize(uri), 0);
+        if (node == null) {
+            return Set.of();
+        }
+        return node.routes.keySet();
+    }
+
+    private RouteDefinition find(final Node node, final String[] segments, final int index, final NanoHTTPD.Method method) {
+        if (index == segments.length) {
+            return node.routes.get(method);
+        }
+
+        Node literal = node.literalChildren.get(segments[index]);
+        if (literal != null) {
+            RouteDefinition route = find(literal, segments, index + 1, method);
+            if (route != null) {
+                return route;
+            }
+        }
+
+        if (node.paramChild != null) {
+            return find(node.paramChild, segments, index + 1, method);
+        }
+
+        return null;
+    }
+
+    private Node findNode(final Node node, final String[] segments, final int index) {
+        if (index == segments.length) {
+            return node.routes.isEmpty() ? null : node;
+        }
+
+        Node literal = node.literalChildren.get(segments[index]);
+        if (literal != null) {
+            Node found = findNode(literal, segments, index + 1);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        if (node.paramChild != null) {
+            return findNode(node.paramChild, segments, index + 1);
+        }
+
+        return null;
+    }
+
+    public static final class Match {
+        private final RouteDefinition route;
+        private final Map<String, String> params;
+
+        private Match(final RouteDefinition matchedRoute, final Map<String, String> pathParams) {
+            this.route = matchedRoute;
+            this.params = pathParams;
+        }
+
+        public RouteDefinition getRoute() {
+            return route;
+        }
+
+        public Map<String, String> getParams() {
+            return params;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literalChildren = new HashMap<>();
+        private final Map<NanoHTTPD.Method, RouteDefinition> routes = new EnumMap<>(NanoHTTPD.Method.class);
+        private Node paramChild;
+    }
+}
@@ -0,0 +1,168 @@
+package com.shweit.serverapi.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Fans out ring buffer entries to Server-Sent Events subscribers.
+ * <p>
+ *     Every subscriber owns a bounded queue. Publishing never blocks: if a subscriber
+ *     falls behind, its oldest queued entry is dropped to make room for the new one.
+ *     Entries are only rendered to text on the subscriber's own (NanoHTTPD) thread.
+ * </p>
+ * <p>
+ *     A subscription is registered before its backlog is read, so an entry published in between is
+ *     not lost; entries the backlog already contains are dropped when they arrive live.
+ * </p>
+ */
+public final class SseBroadcaster<T> {
+    private static final long KEEP_ALIVE_SECONDS = 15;
+    private static final byte[] KEEP_ALIVE = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Function<RingBuffer.Entry<T>, String> formatter;
+    private final int queueSize;
+
+    /**
+     * @param entryFormatter renders the data of a single event, must not contain line breaks
+     * @param subscriberQueueSize how many entries are buffered per subscriber before the oldest are dropped
+     */
+    public SseBroadcaster(final Function<RingBuffer.Entry<T>, String> entryFormatter, final int subscriberQueueSize) {
+        this.formatter = entryFormatter;
+        this.queueSize = subscriberQueueSize;
+    }
+
+    public void publish(final RingBuffer.Entry<T> entry) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(entry);
+        }
+    }
+
+    /**
+     * Creates a new subscription which is pre-filled with the backlog. The backlog is read after the
+     * subscription is registered and must be ordered by sequence without gaps, as returned
+     * by {@link RingBuffer#since(long, int)}.
+     * The returned stream is meant to be passed to NanoHTTPD.newChunkedResponse and is
+     * removed from the broadcaster once NanoHTTPD closes it.
+     *
+     * @param onClose called once when the stream is closed
+     */
+    public InputStream subscribe(final Supplier<List<RingBuffer.Entry<T>>> backlog, final Runnable onClose) {
+        Subscription subscription = new Subscription(onClose);
+        subscriptions.add(subscription);
+        subscription.start(backlog.get());
+        return subscription;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private final class Subscription extends InputStream {
+        private final ArrayBlockingQueue<RingBuffer.Entry<T>> queue = new ArrayBlockingQueue<>(queueSize);
+        private final Runnable closeCallback;
+        // Live entries that arrive while the backlog is read, null once the subscription has started
+        private List<RingBuffer.Entry<T>> early = new ArrayList<>();
+        private long backlogEnd = -1;
+        private byte[] current = new byte[0];
+        private int position;
+        private volatile boolean closed;
+
+        private Subscription(final Runnable onClose) {
+            this.closeCallback = onClose;
+        }
+
+        private synchronized void start(final List<RingBuffer.Entry<T>> backlog) {
+            for (RingBuffer.Entry<T> entry : backlog) {
+                enqueue(entry);
+                backlogEnd = entry.getSequence();
+            }
+            List<RingBuffer.Entry<T>> live = early;
+            early = null;
+            for (RingBuffer.Entry<T> entry : live) {
+                offer(entry);
+            }
+        }
+
+        private synchronized void offer(final RingBuffer.Entry<T> entry) {
+            if (early != null) {
+                early.add(entry);
+            } else if (entry.getSequence() > backlogEnd) {
+                enqueue(entry);
+            }
+        }
+
+        private void enqueue(final RingBuffer.Entry<T> entry) {
+            while (!queue.offer(entry)) {
+                queue.poll();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+
+            // Only hand out the current event so it is written to the socket right away
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            while (position >= current.length) {
+                if (closed) {
+                    return false;
+                }
+
+                RingBuffer.Entry<T> entry;
+                try {
+                    entry = queue.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for events", e);
+                }
+
+                current = entry == null ? KEEP_ALIVE : render(entry);
+                position = 0;
+            }
+            return true;
+        }
+
+        private byte[] render(final RingBuffer.Entry<T> entry) {
+            String event = "id: " + entry.getSequence() + "\ndata: " + formatter.apply(entry) + "\n\n";
+            return event.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscriptions.remove(this);
+            closeCallback.run();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A file bundled with the plugin, such as the Swagger UI, read once and kept in memory together with
+ * its gzipped form and an ETag, so clients that already have it get a 304 without a body.
+ * <p>
+ *     The gzipped form is only sent if {@link ResponseCompressor#negotiate(String)} picks gzip, and has
+ *     its own ETag since its bytes differ from the file.
+ * </p>
+ */
+public final class StaticAsset {
+    private static final int ETAG_BYTES = 16;
+    private static final String GZIP = "gzip";
+    private static final String GZIP_ETAG_SUFFIX = "-gz";
+
+    private final String mimeType;
+    private final byte[] content;
+    private final byte[] gzipped;
+    private final String etag;
+    private final String gzippedEtag;
+
+    private StaticAsset(final String type, final byte[] data, final byte[] compressed, final String hash) {
+        this.mimeType = type;
+        this.content = data;
+        this.gzipped = compressed;
+        this.etag = "\"" + hash + "\"";
+        this.gzippedEtag = "\"" + hash + GZIP_ETAG_SUFFIX + "\"";
+    }
+
+    /**
+     * @param resource the path of the file in the plugin jar
+     * @return the asset, or null if the plugin has no such file
+     */
+    public static StaticAsset load(final String resource, final String mimeType) {
+        try (InputStream in = StaticAsset.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            byte[] data = in.readAllBytes();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(data);
+            }
+            // Small or already compressed files such as icons do not get smaller
+            byte[] gzippedData = compressed.size() < data.length ? compressed.toByteArray() : null;
+
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            return new StaticAsset(mimeType, data, gzippedData, HexFormat.of().formatHex(hash, 0, ETAG_BYTES));
+        } catch (IOException e) {
+            Logger.error("Could not read " + resource + ": " + e.getMessage());
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match header of the request, or null
+     * @param acceptEncoding the Accept-Encoding header of the request, or null
+     */
+    public NanoHTTPD.Response toResponse(final String ifNoneMatch, final String acceptEncoding) {
+        boolean gzip = gzipped != null && GZIP.equals(ResponseCompressor.negotiate(acceptEncoding));
+        String variantEtag = gzip ? gzippedEtag : etag;
+
+        NanoHTTPD.Response response;
+        if (ifNoneMatch != null && (ifNoneMatch.contains(variantEtag) || ifNoneMatch.trim().equals("*"))) {
+            response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_MODIFIED, mimeType, new ByteArrayInputStream(new byte[0]), 0);
+        } else if (gzip) {
+            response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, mimeType, new ByteArrayInputStream(gzipped), gzipped.length);
+            response.addHeader("Content-Encoding", GZIP);
+        } else {
+            response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, mimeType, new ByteArrayInputStream(content), content.length);
+        }
+
+        response.addHeader("ETag", variantEtag);
+        // Cached by browsers, but checked on every use, so an updated plugin is picked up right away
+        response.addHeader("Cache-Control", "no-cache");
+        if (gzipped != null) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        return response;
+    }
+}
@@ -0,0 +1,209 @@
+package com.shweit.serverapi.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the tick rate of the server.
+ * <p>
+ *     A task scheduled every tick writes {@link System#nanoTime()} into a primitive ring that holds
+ *     a little more than 15 minutes of ticks at 20 TPS. The TPS over a window is the number of ticks
+ *     recorded in it divided by the time they took.
+ * </p>
+ * <p>
+ *     The Spigot API does not tell when a tick starts or how long its work took, so the sampler
+ *     reports tick intervals: the time between two ticks as seen by the scheduler. On a healthy
+ *     server an interval is about 50ms no matter how busy the tick was; it only grows once a
+ *     tick's work takes longer than that.
+ * </p>
+ * <p>
+ *     Only the server thread writes. HTTP threads read without locking: a slot is published
+ *     by advancing {@code tickCount} after it was written, and readers never look further back
+ *     than the ring's safety margin, so they never see a slot that is being overwritten.
+ * </p>
+ */
+public final class TickSampler implements Runnable {
+    public static final double MAX_TPS = 20.0;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_WINDOW_TICKS = 15 * 60 * 20;
+    private static final int SAFETY_MARGIN = 20 * 60;
+    private static final int PERCENTILE_WINDOW_TICKS = 60 * 20;
+
+    /** Upper bounds of the tick interval histogram buckets in milliseconds; the last bucket is unbounded. */
+    private static final long[] BUCKET_BOUNDS_MS = {50, 55, 60, 75, 100, 150, 250, 500, 1000};
+
+    private final long[] timestamps;
+    private final int mask;
+    private final AtomicLong tickCount = new AtomicLong();
+    private final AtomicLong intervalSumNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+    private final long[] bucketBoundsNanos = new long[BUCKET_BOUNDS_MS.length];
+    private BukkitTask task;
+
+    public TickSampler() {
+        int capacity = Integer.highestOneBit(MAX_WINDOW_TICKS + SAFETY_MARGIN) << 1;
+        this.timestamps = new long[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            bucketBoundsNanos[i] = BUCKET_BOUNDS_MS[i] * NANOS_PER_MILLI;
+        }
+    }
+
+    public void start(final Plugin plugin) {
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        long count = tickCount.get();
+
+        if (count > 0) {
+            long interval = now - timestamps[(int) ((count - 1) & mask)];
+            int bucket = 0;
+            while (bucket < bucketBoundsNanos.length && interval > bucketBoundsNanos[bucket]) {
+                bucket++;
+            }
+            buckets.lazySet(bucket, buckets.get(bucket) + 1);
+            intervalSumNanos.lazySet(intervalSumNanos.get() + interval);
+        }
+
+        timestamps[(int) (count & mask)] = now;
+        tickCount.lazySet(count + 1);
+    }
+
+    /**
+     * @return the TPS over the last {@code seconds}, capped at 20. Reports 20 until a few ticks were recorded.
+     */
+    public double getTPS(final int seconds) {
+        long count = tickCount.get();
+        if (count < 2) {
+            return MAX_TPS;
+        }
+
+        long latest = count - 1;
+        long oldest = Math.max(0, latest - MAX_WINDOW_TICKS);
+        long newestTime = timestamps[(int) (latest & mask)];
+        long windowStart = newestTime - seconds * NANOS_PER_SECOND;
+
+        // Timestamps are ascending, find the first tick inside the window
+        long low = oldest;
+        long high = latest;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamps[(int) (middle & mask)] < windowStart) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        long ticks = latest - low;
+        long elapsed = newestTime - timestamps[(int) (low & mask)];
+        if (ticks == 0 || elapsed <= 0) {
+            return MAX_TPS;
+        }
+
+        return Math.min(MAX_TPS, ticks * (double) NANOS_PER_SECOND / elapsed);
+    }
+
+    /**
+     * @return the intervals between the ticks of the last minute in milliseconds, sorted ascending
+     */
+    private double[] recentIntervals() {
+        long count = tickCount.get();
+        int size = (int) Math.min(PERCENTILE_WINDOW_TICKS, count - 1);
+        if (size <= 0) {
+            return new double[0];
+        }
+
+        double[] intervals = new double[size];
+        long latest = count - 1;
+        for (int i = 0; i < size; i++) {
+            long tick = latest - i;
+            intervals[i] = (timestamps[(int) (tick & mask)] - timestamps[(int) ((tick - 1) & mask)]) / (double) NANOS_PER_MILLI;
+        }
+        Arrays.sort(intervals);
+        return intervals;
+    }
+
+    private static double percentile(final double[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public long getTickCount() {
+        return tickCount.get();
+    }
+
+    /**
+     * @return the upper bounds of the histogram buckets in milliseconds, without the unbounded last bucket
+     */
+    public static long[] getBucketBounds() {
+        return BUCKET_BOUNDS_MS.clone();
+    }
+
+    /**
+     * @return the number of ticks per histogram bucket since the sampler was started, not cumulative
+     */
+    public long[] getHistogram() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the sum of the tick intervals counted by {@link #getHistogram()} in seconds
+     */
+    public double getIntervalSumSeconds() {
+        return intervalSumNanos.get() / (double) NANOS_PER_SECOND;
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("tps", getTPS(60));
+        json.put("tps1m", getTPS(60));
+        json.put("tps5m", getTPS(5 * 60));
+        json.put("tps15m", getTPS(15 * 60));
+
+        double[] intervals = recentIntervals();
+        JSONObject tickInterval = new JSONObject();
+        tickInterval.put("p50", percentile(intervals, 0.50));
+        tickInterval.put("p95", percentile(intervals, 0.95));
+        tickInterval.put("p99", percentile(intervals, 0.99));
+        tickInterval.put("max", intervals.length == 0 ? 0 : intervals[intervals.length - 1]);
+        tickInterval.put("samples", intervals.length);
+        json.put("tickIntervalMs", tickInterval);
+
+        long[] counts = getHistogram();
+        JSONObject histogram = new JSONObject();
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            histogram.put("le_" + BUCKET_BOUNDS_MS[i], counts[i]);
+        }
+        histogram.put("le_inf", counts[BUCKET_BOUNDS_MS.length]);
+        json.put("histogram", histogram);
+
+        return json;
+    }
+}
@@ -0,0 +1,380 @@
+package com.shweit.serverapi.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves usernames to UUIDs without asking Mojang whenever possible.
+ * <p>
+ *     Lookup order: online players, the in-memory cache (seeded from the server's usercache.json
+ *     and the cache file of the previous run), and finally the Mojang API through a shared
+ *     HttpClient with a limited number of concurrent requests. Unknown usernames are cached as
+ *     well, for a shorter time, so repeated requests for them do not reach Mojang either.
+ * </p>
+ */
+public final class UUIDResolver implements Listener {
+    private static final String MOJANG_PROFILE_URL = "https://api.mojang.com/users/profiles/minecraft/";
+    private static final String MOJANG_BULK_URL = "https://api.mojang.com/profiles/minecraft";
+    private static final int MOJANG_BULK_SIZE = 10;
+    private static final Pattern VALID_USERNAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private static final long PERMIT_TIMEOUT_SECONDS = 10;
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+    private final Semaphore requestPermits;
+    private final File userCacheFile;
+    private final File cacheFile;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private volatile long userCacheModified;
+
+    public UUIDResolver(final File serverDirectory, final File dataFolder, final int maxEntries, final long ttl, final long negativeTtl, final int maxConcurrentRequests) {
+        this.userCacheFile = new File(serverDirectory, "usercache.json");
+        this.cacheFile = new File(dataFolder, "uuid-cache.json");
+        this.maxSize = Math.max(1, maxEntries);
+        this.ttlMillis = ttl;
+        this.negativeTtlMillis = negativeTtl;
+        this.requestPermits = new Semaphore(Math.max(1, maxConcurrentRequests));
+
+        load();
+        loadUserCache();
+    }
+
+    /**
+     * @return the UUID of the player, or null if the username does not exist or could not be resolved
+     */
+    public UUID resolve(final String username) {
+        String key = username.toLowerCase(Locale.ROOT);
+        CacheEntry entry = findLocally(username, key);
+        if (entry != null) {
+            return entry.uuid;
+        }
+
+        return requestFromMojang(username, key);
+    }
+
+    /**
+     * Resolves many usernames at once. Usernames that are not known locally are sent to Mojang
+     * in bulk requests of up to ten names instead of one request each.
+     *
+     * @return the UUID of every username by its lower-case form; null for usernames that do not exist or could not be resolved
+     */
+    public Map<String, UUID> resolveAll(final Collection<String> usernames) {
+        Map<String, UUID> resolved = new HashMap<>();
+        Map<String, String> unknown = new LinkedHashMap<>();
+        for (String username : usernames) {
+            String key = username.toLowerCase(Locale.ROOT);
+            if (resolved.containsKey(key) || unknown.containsKey(key)) {
+                continue;
+            }
+
+            CacheEntry entry = findLocally(username, key);
+            if (entry != null) {
+                resolved.put(key, entry.uuid);
+            } else if (VALID_USERNAME.matcher(username).matches()) {
+                unknown.put(key, username);
+            } else {
+                // Mojang rejects a bulk request as a whole if one of its names is invalid
+                resolved.put(key, null);
+            }
+        }
+
+        List<String> names = new ArrayList<>(unknown.values());
+        for (int i = 0; i < names.size(); i += MOJANG_BULK_SIZE) {
+            requestBulkFromMojang(names.subList(i, Math.min(names.size(), i + MOJANG_BULK_SIZE)), resolved);
+        }
+        return resolved;
+    }
+
+    @EventHandler
+    public void onPlayerJoin(final PlayerJoinEvent event) {
+        put(event.getPlayer().getName().toLowerCase(Locale.ROOT), event.getPlayer().getUniqueId(), System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * @return the entry of the username from the online players or the caches, or null if Mojang has to be asked
+     */
+    private CacheEntry findLocally(final String username, final String key) {
+        Player player = Bukkit.getPlayerExact(username);
+        if (player != null) {
+            return new CacheEntry(player.getUniqueId(), Long.MAX_VALUE);
+        }
+
+        long now = System.currentTimeMillis();
+        CacheEntry entry = cache.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry;
+        }
+
+        // The server rewrites usercache.json on its own, pick up new names before asking Mojang
+        if (userCacheFile.lastModified() != userCacheModified) {
+            loadUserCache();
+            entry = cache.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private UUID requestFromMojang(final String username, final String key) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(MOJANG_PROFILE_URL + URLEncoder.encode(username, StandardCharsets.UTF_8)))
+                .timeout(REQUEST_TIMEOUT)
+                .build();
+
+        HttpResponse<String> response = send(request, username);
+        if (response == null) {
+            return null;
+        }
+
+        if (response.statusCode() == 204 || response.statusCode() == 404) {
+            put(key, null, System.currentTimeMillis() + negativeTtlMillis);
+            return null;
+        }
+
+        if (response.statusCode() != 200) {
+            // Rate limits and server errors are not cached
+            Logger.warning("Failed to convert username to UUID: " + username + " - Response Code: " + response.statusCode());
+            return null;
+        }
+
+        try {
+            JsonObject jsonObject = JsonParser.parseString(response.body()).getAsJsonObject();
+            UUID uuid = parseUUID(jsonObject.get("id").getAsString());
+            put(key, uuid, System.currentTimeMillis() + ttlMillis);
+            return uuid;
+        } catch (RuntimeException e) {
+            Logger.error("Unexpected error occurred: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds the UUID of each username to {@code resolved}, or null if it does not exist or the request failed.
+     */
+    private void requestBulkFromMojang(final List<String> usernames, final Map<String, UUID> resolved) {
+        JsonArray names = new JsonArray();
+        for (String username : usernames) {
+            names.add(username);
+            resolved.put(username.toLowerCase(Locale.ROOT), null);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(MOJANG_BULK_URL))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(names.toString()))
+                .build();
+
+        HttpResponse<String> response = send(request, String.join(", ", usernames));
+        if (response == null) {
+            return;
+        }
+
+        if (response.statusCode() != 200) {
+            // Rate limits and server errors are not cached
+            Logger.warning("Failed to convert usernames to UUIDs: " + String.join(", ", usernames) + " - Response Code: " + response.statusCode());
+            return;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            for (JsonElement element : JsonParser.parseString(response.body()).getAsJsonArray()) {
+                JsonObject profile = element.getAsJsonObject();
+                String key = profile.get("name").getAsString().toLowerCase(Locale.ROOT);
+                UUID uuid = parseUUID(profile.get("id").getAsString());
+                resolved.put(key, uuid);
+                put(key, uuid, now + ttlMillis);
+            }
+
+            // Mojang leaves out the usernames that do not exist
+            for (String username : usernames) {
+                String key = username.toLowerCase(Locale.ROOT);
+                if (resolved.get(key) == null) {
+                    put(key, null, now + negativeTtlMillis);
+                }
+            }
+        } catch (RuntimeException e) {
+            Logger.error("Unexpected error occurred: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a request to Mojang, waiting for a free request permit first.
+     *
+     * @param usernames the usernames the request is for, used in log messages
+     * @return the response, or null if the request could not be sent
+     */
+    private HttpResponse<String> send(final HttpRequest request, final String usernames) {
+        try {
+            if (!requestPermits.tryAcquire(PERMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                Logger.warning("Too many concurrent Mojang lookups, could not resolve " + usernames);
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Logger.error("Request was interrupted: " + e.getMessage());
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Logger.error("Request was interrupted: " + e.getMessage());
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException e) {
+            Logger.error("Failed to convert username to UUID: " + usernames + " - " + e.getMessage());
+            return null;
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private void put(final String key, final UUID uuid, final long expiresAt) {
+        cache.put(key, new CacheEntry(uuid, expiresAt));
+        if (cache.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Drops expired entries and, if that is not enough, about a tenth of the cache,
+     * so a full cache is not scanned again on every insert.
+     */
+    private synchronized void evict() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(entry -> entry.expiresAt <= now);
+
+        int toRemove = cache.size() - maxSize + maxSize / 10;
+        Iterator<CacheEntry> iterator = cache.values().iterator();
+        while (toRemove > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            toRemove--;
+        }
+    }
+
+    private synchronized void loadUserCache() {
+        long modified = userCacheFile.lastModified();
+        userCacheModified = modified;
+        if (modified == 0L) {
+            return;
+        }
+
+        // Entries of usercache.json carry their own expiry date, ours is good enough
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        try (Reader reader = Files.newBufferedReader(userCacheFile.toPath(), StandardCharsets.UTF_8)) {
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject profile = element.getAsJsonObject();
+                put(profile.get("name").getAsString().toLowerCase(Locale.ROOT), UUID.fromString(profile.get("uuid").getAsString()), expiresAt);
+            }
+        } catch (Exception e) {
+            Logger.warning("Could not read usercache.json: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject entry = element.getAsJsonObject();
+                long expiresAt = entry.get("expiresAt").getAsLong();
+                if (expiresAt > now) {
+                    UUID uuid = entry.has("uuid") ? UUID.fromString(entry.get("uuid").getAsString()) : null;
+                    put(entry.get("name").getAsString(), uuid, expiresAt);
+                }
+            }
+        } catch (Exception e) {
+            Logger.warning("Could not read " + cacheFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the cache to the plugin folder so it survives restarts.
+     */
+    public void save() {
+        long now = System.currentTimeMillis();
+        JsonArray entries = new JsonArray();
+
+        for (Map.Entry<String, CacheEntry> cached : cache.entrySet()) {
+            if (cached.getValue().expiresAt <= now) {
+                continue;
+            }
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("name", cached.getKey());
+            if (cached.getValue().uuid != null) {
+                entry.addProperty("uuid", cached.getValue().uuid.toString());
+            }
+            entry.addProperty("expiresAt", cached.getValue().expiresAt);
+            entries.add(entry);
+        }
+
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            try (Writer writer = Files.newBufferedWriter(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(entries.toString());
+            }
+        } catch (IOException e) {
+            Logger.error("Could not save " + cacheFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static UUID parseUUID(final String id) {
+        if (id.length() == 32) {
+            return new UUID(Long.parseUnsignedLong(id.substring(0, 16), 16), Long.parseUnsignedLong(id.substring(16), 16));
+        }
+        return UUID.fromString(id);
+    }
+
+    private static final class CacheEntry {
+        private final UUID uuid;
+        private final long expiresAt;
+
+        private CacheEntry(final UUID entryUuid, final long entryExpiresAt) {
+            this.uuid = entryUuid;
+            this.expiresAt = entryExpiresAt;
+        }
+    }
+}
@@ -19,27 +19,42 @@ import com.shweit.serverapi.webhooks.weather.WeatherChange;
 import com.shweit.serverapi.webhooks.world.WorldLoad;
 import com.shweit.serverapi.webhooks.world.WorldSave;
 import com.shweit.serverapi.webhooks.world.WorldUnload;
+import org.bukkit.configuration.ConfigurationSection;
 import org.json.JSONObject;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.Set;
 
 public final class RegisterWebHooks {
-    private static List<String> urls;
-    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+    private static WebHookDispatcher dispatcher;
+    private static final Map<String, WebHookPolicy> POLICIES = new HashMap<>();
+    private static final List<WebHookAggregator> AGGREGATORS = new ArrayList<>();
+    // WebHooks that call createAggregator, any other WebHook cannot use the aggregate policy
+    private static final Set<WebHookEnum> AGGREGATABLE = EnumSet.of(
+            WebHookEnum.BLOCK_BREAK,
+            WebHookEnum.BLOCK_PLACE,
+            WebHookEnum.BLOCK_REDSTONE,
+            WebHookEnum.CREATURE_SPAWN,
+            WebHookEnum.ENTITY_DEATH
+    );
 
     public void registerWebHooks() {
 
-        urls = MinecraftServerAPI.config.getStringList("webhooks.urls");
+        List<String> urls = MinecraftServerAPI.config.getStringList("webhooks.urls");
 
         if (urls.isEmpty()) {
             Logger.warning("No WebHook URL's found in config.yml");
         }
 
+        dispatcher = new WebHookDispatcher(urls, WebHookDispatcher.Settings.fromConfig(MinecraftServerAPI.config));
+        dispatcher.start();
+
+        loadPolicies();
+
         // Register all webhooks
         new ServerStart().register();
         Logger.debug("Registered server_start WebHook");
@@ -153,79 +168,98 @@ public final class RegisterWebHooks {
         Logger.debug("Registered world_unload WebHook");
     }
 
+    private void loadPolicies() {
+        POLICIES.clear();
+
+        ConfigurationSection section = MinecraftServerAPI.config.getConfigurationSection("webhooks.policies");
+        if (section == null) {
+            return;
+        }
+
+        for (String eventName : section.getKeys(false)) {
+            ConfigurationSection policySection = section.getConfigurationSection(eventName);
+            if (!WebHookEnum.isValid(eventName) || policySection == null) {
+                Logger.warning("Ignoring WebHook policy for unknown WebHook '" + eventName + "'");
+                continue;
+            }
+
+            WebHookPolicy policy = WebHookPolicy.fromConfig(eventName, policySection);
+            if (policy.isAggregating() && !isAggregatable(eventName)) {
+                Logger.warning("The " + eventName + " WebHook does not support the aggregate policy, sending every event");
+                policy = WebHookPolicy.NONE;
+            }
+            POLICIES.put(eventName.toLowerCase(), policy);
+            Logger.debug("Using " + policy.getMode() + " policy for " + eventName + " WebHook");
+        }
+    }
+
+    private static boolean isAggregatable(final String eventName) {
+        for (WebHookEnum hook : AGGREGATABLE) {
+            if (hook.label.equalsIgnoreCase(eventName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static WebHookPolicy getPolicy(final String eventName) {
+        return POLICIES.getOrDefault(eventName, WebHookPolicy.NONE);
+    }
+
+    /**
+     * Creates and starts an aggregator if the webhook is configured with the aggregate policy.
+     *
+     * @return the aggregator, or null if events of this webhook are sent one by one
+     */
+    public static WebHookAggregator createAggregator(final String eventName, final String[] objectNames, final WebHookAggregator.SummaryFormatter formatter) {
+        WebHookPolicy policy = getPolicy(eventName);
+        if (!policy.isAggregating()) {
+            return null;
+        }
+
+        WebHookAggregator aggregator = new WebHookAggregator(eventName, policy.getWindowSeconds(), objectNames, formatter);
+        aggregator.start();
+        AGGREGATORS.add(aggregator);
+        return aggregator;
+    }
+
     public static void sendToAllUrls(final JSONObject jsonObject) {
-        if (urls == null || urls.isEmpty()) {
+        if (dispatcher == null || !dispatcher.hasEndpoints()) {
             Logger.warning("Keine WebHook-URLs in der config.yml gefunden");
             return;
         }
 
-        for (String url : urls) {
-            sendWebHook(url, jsonObject);
+        if (!getPolicy(jsonObject.optString("event", "")).tryAcquire()) {
+            return;
         }
+
+        dispatcher.enqueue(jsonObject);
     }
 
-    private static void sendWebHook(final String url, final JSONObject jsonObject) {
-        try {
-            URI uri = URI.create(url);
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(uri);
-            
-            // Check for Basic Authentication in URL
-            String userInfo = uri.getUserInfo();
-            if (userInfo != null && userInfo.contains(":")) {
-                // Extract username and password from URL
-                String[] credentials = userInfo.split(":", 2);
-                String username = credentials[0];
-                String password = credentials[1];
-                
-                // Create Basic Auth header
-                String auth = username + ":" + password;
-                String encodedAuth = java.util.Base64.getEncoder().encodeToString(auth.getBytes());
-                requestBuilder.header("Authorization", "Basic " + encodedAuth);
-                
-                // Rebuild URI without auth info
-                String cleanUrl = url.replaceFirst(userInfo + "@", "");
-                uri = URI.create(cleanUrl);
-                requestBuilder.uri(uri);
-            }
-            
-            // Check if only message should be sent
-            boolean onlyMessage = MinecraftServerAPI.config.getBoolean("webhooks.onlyMessage", false);
-            String bodyContent;
-            
-            if (onlyMessage && jsonObject.has("message")) {
-                // Send only the message content as plain text
-                bodyContent = jsonObject.getString("message");
-                requestBuilder.header("Content-Type", "text/plain; charset=UTF-8");
-            } else {
-                // Send full JSON object
-                bodyContent = jsonObject.toString();
-                requestBuilder.header("Content-Type", "application/json");
-            }
-            
-            HttpRequest request = requestBuilder
-                    .POST(HttpRequest.BodyPublishers.ofString(bodyContent))
-                    .build();
-
-            CompletableFuture<HttpResponse<String>> response = HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString());
-
-            response.thenAccept(httpResponse -> {
-                if (httpResponse.statusCode() == 200) {
-                    Logger.debug("WebHook '" + jsonObject.get("event") + "' erfolgreich an " + url + "gesendet");
-                } else {
-                    Logger.warning("Error while sending webhook event '" + jsonObject.get("event") + "' to " + url + ". Responde Code: " + httpResponse.statusCode());
-                    Logger.warning(httpResponse.body());
-                }
-            }).exceptionally(e -> {
-                Logger.error("Error while sending webhook event " + jsonObject.get("event") + " to " + url + ": " + e.getMessage());
-                return null;
-            });
-
-        } catch (Exception e) {
-            Logger.error("Error while sending webhook event " + jsonObject.get("event") + " to " + url + ": " + e.getMessage());
+    /**
+     * Sends the pending aggregated events, flushes the queued events and stops the delivery threads.
+     */
+    public static void shutdown() {
+        for (WebHookAggregator aggregator : AGGREGATORS) {
+            aggregator.stop();
+            aggregator.flush();
+        }
+        AGGREGATORS.clear();
+
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+            dispatcher = null;
         }
     }
 
+    public static WebHookDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public static WebHookEventRing getEventRing() {
+        return dispatcher.getEventRing();
+    }
+
     public static boolean doActivateWebhook(final String eventName) {
         String eventPath = "webhooks." + eventName;
 
@@ -0,0 +1,161 @@
+package com.shweit.serverapi.webhooks;
+
+import com.shweit.serverapi.MinecraftServerAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts webhook events per (subject, object) pair and sends one summary event per pair and window.
+ * <p>
+ *     The subject is a name such as the player, the object an enum ordinal such as the material.
+ *     Counting happens in a primitive open-addressing table, so recording an event for a known
+ *     subject does not allocate. Must only be used from the server thread.
+ * </p>
+ */
+public final class WebHookAggregator {
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long TICKS_PER_SECOND = 20L;
+
+    private final String eventName;
+    private final int windowSeconds;
+    private final String[] objectNames;
+    private final SummaryFormatter formatter;
+
+    private final Map<String, Integer> subjectIds = new HashMap<>();
+    private final List<String> subjectNames = new ArrayList<>();
+    private long[] keys;
+    private int[] counts;
+    private int size;
+    private BukkitTask flushTask;
+
+    /**
+     * @param event the webhook name put into the summary events
+     * @param window the length of an aggregation window in seconds
+     * @param names the names of all objects, indexed by their ordinal
+     * @param summaryFormatter adds the event specific fields and the message to a summary
+     */
+    public WebHookAggregator(final String event, final int window, final String[] names, final SummaryFormatter summaryFormatter) {
+        this.eventName = event;
+        this.windowSeconds = window;
+        this.objectNames = names;
+        this.formatter = summaryFormatter;
+        this.keys = new long[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public void start() {
+        long period = windowSeconds * TICKS_PER_SECOND;
+        flushTask = Bukkit.getScheduler().runTaskTimer(MinecraftServerAPI.getInstance(), this::flush, period, period);
+    }
+
+    public void stop() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+    }
+
+    public void record(final String subject, final int objectOrdinal) {
+        Integer subjectId = subjectIds.get(subject);
+        if (subjectId == null) {
+            subjectId = subjectNames.size();
+            subjectIds.put(subject, subjectId);
+            subjectNames.add(subject);
+        }
+
+        long key = ((long) subjectId << 32) | (objectOrdinal & 0xFFFFFFFFL);
+        int slot = findSlot(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+            if (size * 2 > keys.length) {
+                grow();
+                slot = findSlot(keys, key);
+            }
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * Sends one summary per counted pair and starts a new window.
+     */
+    public void flush() {
+        if (size == 0) {
+            return;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == EMPTY) {
+                continue;
+            }
+
+            String subject = subjectNames.get((int) (keys[i] >>> 32));
+            String object = objectNames[(int) keys[i]];
+
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("event", eventName);
+            jsonObject.put("aggregated", true);
+            jsonObject.put("count", counts[i]);
+            jsonObject.put("window_seconds", windowSeconds);
+            formatter.format(jsonObject, subject, object, counts[i], windowSeconds);
+
+            RegisterWebHooks.sendToAllUrls(jsonObject);
+        }
+
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(counts, 0);
+        size = 0;
+        subjectIds.clear();
+        subjectNames.clear();
+    }
+
+    private static int findSlot(final long[] table, final long key) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the names of all constants of an enum, indexed by ordinal.
+     */
+    public static String[] namesOf(final Enum<?>[] values) {
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name();
+        }
+        return names;
+    }
+
+    @FunctionalInterface
+    public interface SummaryFormatter {
+        void format(JSONObject jsonObject, String subject, String object, int count, int windowSeconds);
+    }
+}
@@ -0,0 +1,147 @@
+package com.shweit.serverapi.webhooks;
+
+import com.shweit.serverapi.utils.Logger;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers webhook events off the server thread.
+ * <p>
+ *     The configured URLs are parsed once when the dispatcher is created. Enqueuing an event
+ *     only offers it to the bounded queue of every endpoint, the HTTP requests are made by
+ *     one background thread per endpoint, so a slow or failing URL does not delay the others.
+ * </p>
+ * <p>
+ *     High-volume webhooks capture their events into the {@link WebHookEventRing} instead;
+ *     the render thread of the dispatcher turns them into JSON and enqueues them.
+ * </p>
+ */
+public final class WebHookDispatcher {
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+    // Upper bound for an idle park, the render thread is normally woken up by the ring
+    private static final long RENDER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<WebHookEndpoint> endpoints;
+    private final WebHookEventRing eventRing;
+    private final Thread renderThread;
+    private volatile boolean running = true;
+
+    public WebHookDispatcher(final List<String> urls, final Settings settings) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<WebHookEndpoint> parsed = new ArrayList<>();
+        for (String url : urls) {
+            try {
+                parsed.add(new WebHookEndpoint(url, httpClient, settings));
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                Logger.error("Invalid WebHook URL '" + url + "': " + e.getMessage());
+            }
+        }
+        this.endpoints = Collections.unmodifiableList(parsed);
+
+        this.eventRing = new WebHookEventRing(settings.captureBuffer());
+        this.renderThread = new Thread(this::render, "MinecraftServerAPI-WebHook-Render");
+        this.renderThread.setDaemon(true);
+    }
+
+    public void start() {
+        endpoints.forEach(WebHookEndpoint::start);
+        renderThread.start();
+    }
+
+    private void render() {
+        while (running) {
+            if (eventRing.drain(RegisterWebHooks::sendToAllUrls) == 0) {
+                eventRing.awaitPublished(RENDER_IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Stops all endpoints, giving the already queued events a few seconds to be delivered.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(renderThread);
+        try {
+            renderThread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Render what was captured after the render thread's last pass
+        eventRing.drain(RegisterWebHooks::sendToAllUrls);
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+        for (WebHookEndpoint endpoint : endpoints) {
+            endpoint.shutdown(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+    }
+
+    public void enqueue(final JSONObject event) {
+        for (WebHookEndpoint endpoint : endpoints) {
+            endpoint.enqueue(event);
+        }
+    }
+
+    public WebHookEventRing getEventRing() {
+        return eventRing;
+    }
+
+    public boolean hasEndpoints() {
+        return !endpoints.isEmpty();
+    }
+
+    public JSONObject getStats() {
+        JSONArray endpointStats = new JSONArray();
+        long queued = 0;
+        long deadLetters = 0;
+        long dropped = 0;
+
+        for (WebHookEndpoint endpoint : endpoints) {
+            endpointStats.put(endpoint.getStats());
+            queued += endpoint.getQueueSize();
+            deadLetters += endpoint.getDeadLetters();
+            dropped += endpoint.getDropped();
+        }
+
+        JSONObject stats = new JSONObject();
+        stats.put("queued", queued);
+        stats.put("deadLetters", deadLetters);
+        stats.put("dropped", dropped);
+        stats.put("capturePending", eventRing.getPending());
+        stats.put("captureDropped", eventRing.getDropped());
+        stats.put("endpoints", endpointStats);
+        return stats;
+    }
+
+    public record Settings(int queueSize, int maxBatchSize, long lingerMs, int maxRetries, long retryBackoffMs, boolean onlyMessage, int captureBuffer) {
+        private static final int DEFAULT_QUEUE_SIZE = 10000;
+        private static final int DEFAULT_CAPTURE_BUFFER = 8192;
+        private static final long DEFAULT_RETRY_BACKOFF_MS = 1000;
+        private static final int DEFAULT_MAX_RETRIES = 3;
+
+        public static Settings fromConfig(final FileConfiguration config) {
+            return new Settings(
+                    Math.max(1, config.getInt("webhooks.dispatch.queue_size", DEFAULT_QUEUE_SIZE)),
+                    Math.max(1, config.getInt("webhooks.dispatch.max_batch_size", 1)),
+                    Math.max(0, config.getLong("webhooks.dispatch.linger_ms", 0)),
+                    Math.max(0, config.getInt("webhooks.dispatch.max_retries", DEFAULT_MAX_RETRIES)),
+                    Math.max(1, config.getLong("webhooks.dispatch.retry_backoff_ms", DEFAULT_RETRY_BACKOFF_MS)),
+                    config.getBoolean("webhooks.onlyMessage", false),
+                    Math.max(1, config.getInt("webhooks.dispatch.capture_buffer", DEFAULT_CAPTURE_BUFFER))
+            );
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.shweit.serverapi.webhooks;
+
+import com.shweit.serverapi.utils.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single webhook URL with its own queue and delivery thread.
+ * <p>
+ *     The URL is parsed once; credentials in the user info part are turned into a Basic
+ *     Authorization header. Events queued for this endpoint are sent in batches of up to
+ *     {@code maxBatchSize}, and failed requests are retried with exponential backoff
+ *     before they are counted as dead letters.
+ * </p>
+ */
+public final class WebHookEndpoint implements Runnable {
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final URI uri;
+    private final String authorization;
+    private final HttpClient httpClient;
+    private final BlockingQueue<JSONObject> queue;
+    private final WebHookDispatcher.Settings settings;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    WebHookEndpoint(final String url, final HttpClient client, final WebHookDispatcher.Settings dispatchSettings) throws URISyntaxException {
+        URI parsed = new URI(url);
+        String userInfo = parsed.getUserInfo();
+
+        if (userInfo != null && userInfo.contains(":")) {
+            this.authorization = "Basic " + Base64.getEncoder().encodeToString(userInfo.getBytes(StandardCharsets.UTF_8));
+            parsed = new URI(parsed.getScheme(), null, parsed.getHost(), parsed.getPort(), parsed.getPath(), parsed.getQuery(), parsed.getFragment());
+        } else {
+            this.authorization = null;
+        }
+
+        this.uri = parsed;
+        this.httpClient = client;
+        this.settings = dispatchSettings;
+        this.queue = new ArrayBlockingQueue<>(dispatchSettings.queueSize());
+        this.worker = new Thread(this, "MinecraftServerAPI-WebHook-" + parsed.getHost());
+        this.worker.setDaemon(true);
+    }
+
+    void start() {
+        worker.start();
+    }
+
+    /**
+     * Stops accepting new events and waits up to {@code timeoutMs} for the queue to be flushed.
+     */
+    void shutdown(final long timeoutMs) {
+        running = false;
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+    }
+
+    void enqueue(final JSONObject event) {
+        if (!running || !queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<JSONObject> batch = new ArrayList<>(settings.maxBatchSize());
+
+        while (running || !queue.isEmpty()) {
+            try {
+                JSONObject first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.lingerMs());
+                while (batch.size() < settings.maxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    JSONObject next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                deliver(batch);
+            } catch (InterruptedException e) {
+                deadLetters.addAndGet(batch.size() + queue.size());
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(final List<JSONObject> batch) throws InterruptedException {
+        HttpRequest request = buildRequest(batch);
+
+        for (int attempt = 0;; attempt++) {
+            String error;
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                    delivered.addAndGet(batch.size());
+                    Logger.debug("Sent " + batch.size() + " WebHook event(s) to " + uri);
+                    return;
+                }
+                error = "Response Code: " + response.statusCode() + " " + response.body();
+            } catch (java.io.IOException e) {
+                error = e.getMessage();
+            }
+
+            // Do not hold up the shutdown with retries
+            if (attempt >= settings.maxRetries() || !running) {
+                deadLetters.addAndGet(batch.size());
+                Logger.warning("Giving up on " + batch.size() + " WebHook event(s) for " + uri + " after " + (attempt + 1) + " attempt(s): " + error);
+                return;
+            }
+
+            retries.incrementAndGet();
+            long backoff = Math.min(MAX_BACKOFF_MS, settings.retryBackoffMs() << Math.min(attempt, 16));
+            Logger.debug("Error while sending WebHook to " + uri + ", retrying in " + backoff + "ms: " + error);
+            Thread.sleep(backoff);
+        }
+    }
+
+    private HttpRequest buildRequest(final List<JSONObject> batch) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(REQUEST_TIMEOUT);
+
+        if (authorization != null) {
+            requestBuilder.header("Authorization", authorization);
+        }
+
+        String bodyContent;
+        if (settings.onlyMessage() && batch.stream().allMatch(event -> event.has("message"))) {
+            // Send only the message content as plain text, one line per event
+            StringBuilder messages = new StringBuilder();
+            for (JSONObject event : batch) {
+                if (messages.length() > 0) {
+                    messages.append('\n');
+                }
+                messages.append(event.getString("message"));
+            }
+            bodyContent = messages.toString();
+            requestBuilder.header("Content-Type", "text/plain; charset=UTF-8");
+        } else if (batch.size() == 1) {
+            bodyContent = batch.get(0).toString();
+            requestBuilder.header("Content-Type", "application/json");
+        } else {
+            bodyContent = new JSONArray(batch).toString();
+            requestBuilder.header("Content-Type", "application/json");
+        }
+
+        return requestBuilder
+                .POST(HttpRequest.BodyPublishers.ofString(bodyContent))
+                .build();
+    }
+
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        stats.put("url", uri.toString());
+        stats.put("queued", queue.size());
+        stats.put("delivered", delivered.get());
+        stats.put("retries", retries.get());
+        stats.put("deadLetters", deadLetters.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getDeadLetters() {
+        return deadLetters.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
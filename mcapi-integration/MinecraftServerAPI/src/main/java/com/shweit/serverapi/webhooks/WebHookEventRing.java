@@ -0,0 +1,160 @@
+package com.shweit.serverapi.webhooks;
+
+import com.shweit.serverapi.utils.Logger;
+import org.json.JSONObject;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Pre-allocated single-producer ring of captured webhook events.
+ * <p>
+ *     High-volume webhooks do not build their JSON on the server thread. Instead they claim a
+ *     {@link Slot}, copy a few primitive fields (and references to strings that already exist,
+ *     such as the player name) into it and publish it. The dispatcher's render thread turns the
+ *     slots into JSON with the {@link Renderer} registered for the webhook. Capturing an event
+ *     does not allocate; when the ring is full the event is dropped and counted.
+ * </p>
+ * <p>
+ *     An idle render thread parks in {@link #awaitPublished(long)} and is only woken up by
+ *     {@link #publish()}, so the ring costs nothing while no events are captured.
+ * </p>
+ * <p>
+ *     {@link #claim()} and {@link #publish()} must only be called from the server thread.
+ * </p>
+ */
+public final class WebHookEventRing {
+    private final Slot[] slots;
+    private final int mask;
+    private final Renderer[] renderers = new Renderer[WebHookEnum.values().length];
+
+    // Written by the server thread, read by the render thread
+    private final AtomicLong head = new AtomicLong();
+    // Written by the render thread, read by the server thread
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // The render thread while it is parked, null while it is rendering
+    private volatile Thread waiter;
+
+    public WebHookEventRing(final int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public void setRenderer(final WebHookEnum event, final Renderer renderer) {
+        renderers[event.ordinal()] = renderer;
+    }
+
+    /**
+     * Returns the next free slot, or null if the render thread has fallen a whole ring behind.
+     * The slot is only handed to the render thread once {@link #publish()} is called.
+     */
+    public Slot claim() {
+        long current = head.get();
+        if (current - tail.get() >= slots.length) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        return slots[(int) (current & mask)];
+    }
+
+    public void publish() {
+        // A full write, so either the render thread sees the new head or this thread sees it waiting
+        head.set(head.get() + 1);
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /**
+     * Parks the render thread until an event is published, the timeout elapses or the thread is unparked.
+     * Returns immediately if published events are pending.
+     */
+    void awaitPublished(final long timeoutNanos) {
+        waiter = Thread.currentThread();
+        if (head.get() == tail.get()) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        waiter = null;
+    }
+
+    /**
+     * Renders all published slots. Called by the dispatcher's render thread only.
+     *
+     * @return the number of rendered events
+     */
+    public int drain(final Consumer<JSONObject> sink) {
+        long start = tail.get();
+        long end = head.get();
+
+        for (long current = start; current < end; current++) {
+            Slot slot = slots[(int) (current & mask)];
+            Renderer renderer = renderers[slot.event.ordinal()];
+            try {
+                if (renderer != null) {
+                    sink.accept(renderer.render(slot));
+                }
+            } catch (RuntimeException e) {
+                Logger.error("Error while rendering WebHook event " + slot.event.label + ": " + e.getMessage());
+            }
+
+            // Do not keep players or worlds reachable from idle slots
+            slot.player = null;
+            slot.world = null;
+            tail.lazySet(current + 1);
+        }
+
+        return (int) (end - start);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getPending() {
+        return (int) (head.get() - tail.get());
+    }
+
+    @FunctionalInterface
+    public interface Renderer {
+        JSONObject render(Slot slot);
+    }
+
+    /**
+     * Mutable event record. The meaning of {@code type}, {@code extra1} and {@code extra2} is
+     * defined by the webhook that captures and renders it, usually enum ordinals or small numbers.
+     */
+    public static final class Slot {
+        public WebHookEnum event;
+        public long uuidMost;
+        public long uuidLeast;
+        public String player;
+        public String world;
+        public int type;
+        public int extra1;
+        public int extra2;
+        public double x;
+        public double y;
+        public double z;
+        public float yaw;
+        public float pitch;
+
+        /**
+         * Formats the captured position like {@link org.bukkit.Location#toString()}.
+         */
+        public String locationString() {
+            return "Location{world=CraftWorld{name=" + world + "},x=" + x + ",y=" + y + ",z=" + z + ",pitch=" + pitch + ",yaw=" + yaw + "}";
+        }
+
+        public UUID uuid() {
+            return new UUID(uuidMost, uuidLeast);
+        }
+    }
+}
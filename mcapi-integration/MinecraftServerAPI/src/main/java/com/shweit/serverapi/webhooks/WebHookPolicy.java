@@ -0,0 +1,104 @@
+package com.shweit.serverapi.webhooks;
+
+import com.shweit.serverapi.utils.Logger;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throttling policy of a single webhook, configured under {@code webhooks.policies.<name>}.
+ * <ul>
+ *     <li>{@code rate_limit}: token bucket allowing {@code rate} events per second with bursts of up to {@code burst}</li>
+ *     <li>{@code sample}: only every {@code every}-th event is sent</li>
+ *     <li>{@code aggregate}: events are counted and sent as one summary per {@code window_seconds}, see {@link WebHookAggregator}</li>
+ * </ul>
+ */
+public final class WebHookPolicy {
+    public static final WebHookPolicy NONE = new WebHookPolicy(Mode.NONE, 0, 0, 1, 0);
+
+    private static final int DEFAULT_WINDOW_SECONDS = 10;
+
+    private final Mode mode;
+    private final double ratePerNano;
+    private final double burst;
+    private final long sampleEvery;
+    private final int windowSeconds;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    private WebHookPolicy(final Mode policyMode, final double ratePerSecond, final double burstSize, final long every, final int window) {
+        this.mode = policyMode;
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = burstSize;
+        this.sampleEvery = every;
+        this.windowSeconds = window;
+        this.tokens = burstSize;
+    }
+
+    public static WebHookPolicy fromConfig(final String eventName, final ConfigurationSection section) {
+        String modeName = section.getString("mode", "none");
+
+        switch (modeName.toLowerCase()) {
+            case "rate_limit":
+                double rate = Math.max(0.001, section.getDouble("rate", 1));
+                return new WebHookPolicy(Mode.RATE_LIMIT, rate, Math.max(1, section.getDouble("burst", rate)), 1, 0);
+            case "sample":
+                return new WebHookPolicy(Mode.SAMPLE, 0, 0, Math.max(1, section.getLong("every", 1)), 0);
+            case "aggregate":
+                return new WebHookPolicy(Mode.AGGREGATE, 0, 0, 1, Math.max(1, section.getInt("window_seconds", DEFAULT_WINDOW_SECONDS)));
+            case "none":
+                return NONE;
+            default:
+                Logger.warning("Unknown WebHook policy mode '" + modeName + "' for " + eventName + ", sending every event");
+                return NONE;
+        }
+    }
+
+    /**
+     * Decides whether a single event may be sent. Aggregated webhooks never reach this point
+     * with raw events, their summaries are always allowed.
+     */
+    public boolean tryAcquire() {
+        switch (mode) {
+            case RATE_LIMIT:
+                return tryTakeToken();
+            case SAMPLE:
+                return sampleCounter.getAndIncrement() % sampleEvery == 0;
+            default:
+                return true;
+        }
+    }
+
+    private synchronized boolean tryTakeToken() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isAggregating() {
+        return mode == Mode.AGGREGATE;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public enum Mode {
+        NONE,
+        RATE_LIMIT,
+        SAMPLE,
+        AGGREGATE
+    }
+}
@@ -3,7 +3,12 @@ package com.shweit.serverapi.webhooks.block;
 import com.shweit.serverapi.MinecraftServerAPI;
 import com.shweit.serverapi.webhooks.RegisterWebHooks;
 import com.shweit.serverapi.webhooks.WebHook;
+import com.shweit.serverapi.webhooks.WebHookAggregator;
 import com.shweit.serverapi.webhooks.WebHookEnum;
+import com.shweit.serverapi.webhooks.WebHookEventRing;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
@@ -12,10 +17,23 @@ import org.json.JSONObject;
 public final class BlockBreak implements WebHook, Listener {
 
     private final String eventName = WebHookEnum.BLOCK_BREAK.label;
+    private final String[] materialNames = WebHookAggregator.namesOf(Material.values());
+    private WebHookAggregator aggregator;
+    private WebHookEventRing eventRing;
 
     @Override
     public void register() {
         if (RegisterWebHooks.doActivateWebhook(eventName)) {
+            aggregator = RegisterWebHooks.createAggregator(eventName, materialNames, (jsonObject, player, block, count, seconds) -> {
+                jsonObject.put("player", player);
+                jsonObject.put("block", block);
+                String blockName = block.toLowerCase().replace("_", " ");
+                jsonObject.put("message", "Player " + player + " broke " + count + " " + blockName + " blocks in the last " + seconds + "s");
+            });
+
+            eventRing = RegisterWebHooks.getEventRing();
+            eventRing.setRenderer(WebHookEnum.BLOCK_BREAK, this::render);
+
             MinecraftServerAPI plugin = MinecraftServerAPI.getInstance();
             plugin.getServer().getPluginManager().registerEvents(this, plugin);
         }
@@ -23,16 +41,47 @@ public final class BlockBreak implements WebHook, Listener {
 
     @EventHandler
     public void onBlockBreak(final BlockBreakEvent event) {
+        Player player = event.getPlayer();
+        Block block = event.getBlock();
+
+        if (aggregator != null) {
+            aggregator.record(player.getName(), block.getType().ordinal());
+            return;
+        }
+
+        WebHookEventRing.Slot slot = eventRing.claim();
+        if (slot == null) {
+            return;
+        }
+
+        slot.event = WebHookEnum.BLOCK_BREAK;
+        slot.uuidMost = player.getUniqueId().getMostSignificantBits();
+        slot.uuidLeast = player.getUniqueId().getLeastSignificantBits();
+        slot.player = player.getName();
+        slot.type = block.getType().ordinal();
+        slot.world = block.getWorld().getName();
+        slot.x = block.getX();
+        slot.y = block.getY();
+        slot.z = block.getZ();
+        slot.yaw = 0;
+        slot.pitch = 0;
+        eventRing.publish();
+    }
+
+    private JSONObject render(final WebHookEventRing.Slot slot) {
+        String block = materialNames[slot.type];
+
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("event", eventName);
-        jsonObject.put("player", event.getPlayer().getName());
-        jsonObject.put("block", event.getBlock().getType().name());
-        jsonObject.put("location", event.getBlock().getLocation().toString());
+        jsonObject.put("player", slot.player);
+        jsonObject.put("uuid", slot.uuid().toString());
+        jsonObject.put("block", block);
+        jsonObject.put("location", slot.locationString());
 
-        String blockName = event.getBlock().getType().name().toLowerCase().replace("_", " ");
-        String message = "Player " + event.getPlayer().getName() + " broke a " + blockName + " block";
+        String blockName = block.toLowerCase().replace("_", " ");
+        String message = "Player " + slot.player + " broke a " + blockName + " block";
         jsonObject.put("message", message);
 
-        RegisterWebHooks.sendToAllUrls(jsonObject);
+        return jsonObject;
     }
 }
@@ -3,19 +3,39 @@ package com.shweit.serverapi.webhooks.block;
 import com.shweit.serverapi.MinecraftServerAPI;
 import com.shweit.serverapi.webhooks.RegisterWebHooks;
 import com.shweit.serverapi.webhooks.WebHook;
+import com.shweit.serverapi.webhooks.WebHookAggregator;
 import com.shweit.serverapi.webhooks.WebHookEnum;
+import com.shweit.serverapi.webhooks.WebHookEventRing;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.json.JSONObject;
 
 public final class BlockPlace implements WebHook, Listener {
 
     private final String eventName = WebHookEnum.BLOCK_PLACE.label;
+    private final String[] materialNames = WebHookAggregator.namesOf(Material.values());
+    private final String[] handNames = WebHookAggregator.namesOf(EquipmentSlot.values());
+    private WebHookAggregator aggregator;
+    private WebHookEventRing eventRing;
 
     @Override
     public void register() {
         if (RegisterWebHooks.doActivateWebhook(eventName)) {
+            aggregator = RegisterWebHooks.createAggregator(eventName, materialNames, (jsonObject, player, block, count, seconds) -> {
+                jsonObject.put("player", player);
+                jsonObject.put("block", block);
+                String blockName = block.toLowerCase().replace("_", " ");
+                jsonObject.put("message", "Player " + player + " placed " + count + " " + blockName + " blocks in the last " + seconds + "s");
+            });
+
+            eventRing = RegisterWebHooks.getEventRing();
+            eventRing.setRenderer(WebHookEnum.BLOCK_PLACE, this::render);
+
             MinecraftServerAPI plugin = MinecraftServerAPI.getInstance();
             plugin.getServer().getPluginManager().registerEvents(this, plugin);
         }
@@ -23,18 +43,51 @@ public final class BlockPlace implements WebHook, Listener {
 
     @EventHandler
     public void onBlockPlace(final BlockPlaceEvent event) {
+        Player player = event.getPlayer();
+        Block block = event.getBlock();
+
+        if (aggregator != null) {
+            aggregator.record(player.getName(), block.getType().ordinal());
+            return;
+        }
+
+        WebHookEventRing.Slot slot = eventRing.claim();
+        if (slot == null) {
+            return;
+        }
+
+        slot.event = WebHookEnum.BLOCK_PLACE;
+        slot.uuidMost = player.getUniqueId().getMostSignificantBits();
+        slot.uuidLeast = player.getUniqueId().getLeastSignificantBits();
+        slot.player = player.getName();
+        slot.type = block.getType().ordinal();
+        slot.extra1 = event.getBlockAgainst().getType().ordinal();
+        slot.extra2 = event.getHand().ordinal();
+        slot.world = block.getWorld().getName();
+        slot.x = block.getX();
+        slot.y = block.getY();
+        slot.z = block.getZ();
+        slot.yaw = 0;
+        slot.pitch = 0;
+        eventRing.publish();
+    }
+
+    private JSONObject render(final WebHookEventRing.Slot slot) {
+        String block = materialNames[slot.type];
+
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("event", eventName);
-        jsonObject.put("player", event.getPlayer().getName());
-        jsonObject.put("block", event.getBlock().getType().name());
-        jsonObject.put("location", event.getBlock().getLocation().toString());
-        jsonObject.put("placedAgainst", event.getBlockAgainst().getType().name());
-        jsonObject.put("hand", event.getHand().name());
-
-        String blockName = event.getBlock().getType().name().toLowerCase().replace("_", " ");
-        String message = "Player " + event.getPlayer().getName() + " placed a " + blockName + " block";
+        jsonObject.put("player", slot.player);
+        jsonObject.put("uuid", slot.uuid().toString());
+        jsonObject.put("block", block);
+        jsonObject.put("location", slot.locationString());
+        jsonObject.put("placedAgainst", materialNames[slot.extra1]);
+        jsonObject.put("hand", handNames[slot.extra2]);
+
+        String blockName = block.toLowerCase().replace("_", " ");
+        String message = "Player " + slot.player + " placed a " + blockName + " block";
         jsonObject.put("message", message);
 
-        RegisterWebHooks.sendToAllUrls(jsonObject);
+        return jsonObject;
     }
 }
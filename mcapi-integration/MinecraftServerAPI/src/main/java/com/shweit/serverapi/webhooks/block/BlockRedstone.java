@@ -3,7 +3,11 @@ package com.shweit.serverapi.webhooks.block;
 import com.shweit.serverapi.MinecraftServerAPI;
 import com.shweit.serverapi.webhooks.RegisterWebHooks;
 import com.shweit.serverapi.webhooks.WebHook;
+import com.shweit.serverapi.webhooks.WebHookAggregator;
 import com.shweit.serverapi.webhooks.WebHookEnum;
+import com.shweit.serverapi.webhooks.WebHookEventRing;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockRedstoneEvent;
@@ -12,10 +16,23 @@ import org.json.JSONObject;
 public final class BlockRedstone implements WebHook, Listener {
 
     private final String eventName = WebHookEnum.BLOCK_REDSTONE.label;
+    private final String[] materialNames = WebHookAggregator.namesOf(Material.values());
+    private WebHookAggregator aggregator;
+    private WebHookEventRing eventRing;
 
     @Override
     public void register() {
         if (RegisterWebHooks.doActivateWebhook(eventName)) {
+            aggregator = RegisterWebHooks.createAggregator(eventName, materialNames, (jsonObject, world, block, count, seconds) -> {
+                jsonObject.put("world", world);
+                jsonObject.put("block", block);
+                String blockName = block.toLowerCase().replace("_", " ");
+                jsonObject.put("message", "Redstone current changed " + count + " times in " + blockName + " blocks in " + world + " in the last " + seconds + "s");
+            });
+
+            eventRing = RegisterWebHooks.getEventRing();
+            eventRing.setRenderer(WebHookEnum.BLOCK_REDSTONE, this::render);
+
             MinecraftServerAPI plugin = MinecraftServerAPI.getInstance();
             plugin.getServer().getPluginManager().registerEvents(this, plugin);
         }
@@ -23,17 +40,45 @@ public final class BlockRedstone implements WebHook, Listener {
 
     @EventHandler
     public void onBlockRedstone(final BlockRedstoneEvent event) {
+        Block block = event.getBlock();
+
+        if (aggregator != null) {
+            aggregator.record(block.getWorld().getName(), block.getType().ordinal());
+            return;
+        }
+
+        WebHookEventRing.Slot slot = eventRing.claim();
+        if (slot == null) {
+            return;
+        }
+
+        slot.event = WebHookEnum.BLOCK_REDSTONE;
+        slot.type = block.getType().ordinal();
+        slot.extra1 = event.getOldCurrent();
+        slot.extra2 = event.getNewCurrent();
+        slot.world = block.getWorld().getName();
+        slot.x = block.getX();
+        slot.y = block.getY();
+        slot.z = block.getZ();
+        slot.yaw = 0;
+        slot.pitch = 0;
+        eventRing.publish();
+    }
+
+    private JSONObject render(final WebHookEventRing.Slot slot) {
+        String block = materialNames[slot.type];
+
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("event", eventName);
-        jsonObject.put("block", event.getBlock().getType().name());
-        jsonObject.put("location", event.getBlock().getLocation().toString());
-        jsonObject.put("oldCurrent", event.getOldCurrent());
-        jsonObject.put("newCurrent", event.getNewCurrent());
+        jsonObject.put("block", block);
+        jsonObject.put("location", slot.locationString());
+        jsonObject.put("oldCurrent", slot.extra1);
+        jsonObject.put("newCurrent", slot.extra2);
 
-        String blockName = event.getBlock().getType().name().toLowerCase().replace("_", " ");
-        String message = "Redstone current changed in " + blockName + " from " + event.getOldCurrent() + " to " + event.getNewCurrent();
+        String blockName = block.toLowerCase().replace("_", " ");
+        String message = "Redstone current changed in " + blockName + " from " + slot.extra1 + " to " + slot.extra2;
         jsonObject.put("message", message);
 
-        RegisterWebHooks.sendToAllUrls(jsonObject);
+        return jsonObject;
     }
 }
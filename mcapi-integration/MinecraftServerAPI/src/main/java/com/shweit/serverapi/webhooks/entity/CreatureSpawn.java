@@ -3,6 +3,12 @@ package com.shweit.serverapi.webhooks.entity;
 import com.shweit.serverapi.MinecraftServerAPI;
 import com.shweit.serverapi.webhooks.RegisterWebHooks;
 import com.shweit.serverapi.webhooks.WebHook;
+import com.shweit.serverapi.webhooks.WebHookAggregator;
+import com.shweit.serverapi.webhooks.WebHookEnum;
+import com.shweit.serverapi.webhooks.WebHookEventRing;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
@@ -11,10 +17,27 @@ import org.json.JSONObject;
 public final class CreatureSpawn implements WebHook, Listener {
 
     private final String eventName = "creature_spawn";
+    private final String[] entityNames = WebHookAggregator.namesOf(EntityType.values());
+    private final String[] reasonNames = WebHookAggregator.namesOf(CreatureSpawnEvent.SpawnReason.values());
+    // Reused on the server thread, so reading the spawn position does not allocate a Location
+    private final Location location = new Location(null, 0, 0, 0);
+    private WebHookAggregator aggregator;
+    private WebHookEventRing eventRing;
 
     @Override
     public void register() {
         if (RegisterWebHooks.doActivateWebhook(eventName)) {
+            aggregator = RegisterWebHooks.createAggregator(eventName, entityNames, (jsonObject, spawnReason, entity, count, seconds) -> {
+                jsonObject.put("entity", entity);
+                jsonObject.put("spawnReason", spawnReason);
+                String entityName = entity.toLowerCase().replace("_", " ");
+                String reason = spawnReason.toLowerCase().replace("_", " ");
+                jsonObject.put("message", count + " " + entityName + " spawned due to " + reason + " in the last " + seconds + "s");
+            });
+
+            eventRing = RegisterWebHooks.getEventRing();
+            eventRing.setRenderer(WebHookEnum.CREATURE_SPAWN, this::render);
+
             MinecraftServerAPI plugin = MinecraftServerAPI.getInstance();
             plugin.getServer().getPluginManager().registerEvents(this, plugin);
         }
@@ -22,17 +45,46 @@ public final class CreatureSpawn implements WebHook, Listener {
 
     @EventHandler
     public void onCreatureSpawn(final CreatureSpawnEvent event) {
+        if (aggregator != null) {
+            aggregator.record(event.getSpawnReason().name(), event.getEntity().getType().ordinal());
+            return;
+        }
+
+        WebHookEventRing.Slot slot = eventRing.claim();
+        if (slot == null) {
+            return;
+        }
+
+        LivingEntity entity = event.getEntity();
+        entity.getLocation(location);
+
+        slot.event = WebHookEnum.CREATURE_SPAWN;
+        slot.type = entity.getType().ordinal();
+        slot.extra1 = event.getSpawnReason().ordinal();
+        slot.world = entity.getWorld().getName();
+        slot.x = location.getX();
+        slot.y = location.getY();
+        slot.z = location.getZ();
+        slot.yaw = location.getYaw();
+        slot.pitch = location.getPitch();
+        eventRing.publish();
+    }
+
+    private JSONObject render(final WebHookEventRing.Slot slot) {
+        String entity = entityNames[slot.type];
+        String spawnReason = reasonNames[slot.extra1];
+
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("event", eventName);
-        jsonObject.put("entity", event.getEntity().getType().name());
-        jsonObject.put("location", event.getEntity().getLocation().toString());
-        jsonObject.put("spawnReason", event.getSpawnReason().name());
+        jsonObject.put("entity", entity);
+        jsonObject.put("location", slot.locationString());
+        jsonObject.put("spawnReason", spawnReason);
 
-        String entityName = event.getEntity().getType().name().toLowerCase().replace("_", " ");
-        String reason = event.getSpawnReason().name().toLowerCase().replace("_", " ");
+        String entityName = entity.toLowerCase().replace("_", " ");
+        String reason = spawnReason.toLowerCase().replace("_", " ");
         String message = "A " + entityName + " spawned due to " + reason;
         jsonObject.put("message", message);
 
-        RegisterWebHooks.sendToAllUrls(jsonObject);
+        return jsonObject;
     }
 }
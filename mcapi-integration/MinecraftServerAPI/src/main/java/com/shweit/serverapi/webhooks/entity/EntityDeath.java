@@ -3,7 +3,9 @@ package com.shweit.serverapi.webhooks.entity;
 import com.shweit.serverapi.MinecraftServerAPI;
 import com.shweit.serverapi.webhooks.RegisterWebHooks;
 import com.shweit.serverapi.webhooks.WebHook;
+import com.shweit.serverapi.webhooks.WebHookAggregator;
 import com.shweit.serverapi.webhooks.WebHookEnum;
+import org.bukkit.entity.EntityType;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDeathEvent;
@@ -12,10 +14,22 @@ import org.json.JSONObject;
 public final class EntityDeath implements WebHook, Listener {
 
     private final String eventName = WebHookEnum.ENTITY_DEATH.label;
+    private WebHookAggregator aggregator;
 
     @Override
     public void register() {
         if (RegisterWebHooks.doActivateWebhook(eventName)) {
+            aggregator = RegisterWebHooks.createAggregator(eventName, WebHookAggregator.namesOf(EntityType.values()), (jsonObject, killedBy, entity, count, seconds) -> {
+                jsonObject.put("entity", entity);
+                jsonObject.put("killedBy", killedBy);
+                String entityName = entity.toLowerCase().replace("_", " ");
+                String message = count + " " + entityName + " died in the last " + seconds + "s";
+                if (!"null".equals(killedBy)) {
+                    message = count + " " + entityName + " were killed by " + killedBy + " in the last " + seconds + "s";
+                }
+                jsonObject.put("message", message);
+            });
+
             MinecraftServerAPI plugin = MinecraftServerAPI.getInstance();
             plugin.getServer().getPluginManager().registerEvents(this, plugin);
         }
@@ -23,6 +37,11 @@ public final class EntityDeath implements WebHook, Listener {
 
     @EventHandler
     public void onEntityDeath(final EntityDeathEvent event) {
+        if (aggregator != null) {
+            aggregator.record(event.getEntity().getKiller() != null ? event.getEntity().getKiller().getName() : "null", event.getEntity().getType().ordinal());
+            return;
+        }
+
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("event", eventName);
         jsonObject.put("entity", event.getEntity().getType().name());
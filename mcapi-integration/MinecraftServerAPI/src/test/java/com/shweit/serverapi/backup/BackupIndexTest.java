@@ -0,0 +1,155 @@
+package com.shweit.serverapi.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupIndexTest {
+    private static final byte[] LEVEL = "level data ".repeat(200).getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REGION = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void listsDirectoriesBeforeFilesSortedByName() throws IOException {
+        File archive = archive();
+
+        BackupIndex.Listing root = BackupIndex.list(archive, "", 0, 100);
+
+        assertEquals(List.of("plugins", "world", "server.properties"), names(root));
+        assertTrue(root.entries().get(0).directory());
+    }
+
+    @Test
+    void listsNestedDirectoryWithoutDirectoryEntries() throws IOException {
+        File archive = archive();
+
+        BackupIndex.Listing world = BackupIndex.list(archive, "world", 0, 100);
+
+        assertEquals(List.of("region", "level.dat"), names(world));
+        // Directories carry the total size of the files below them
+        assertEquals(REGION.length * 2L, world.entries().get(0).size());
+        assertEquals(LEVEL.length, world.entries().get(1).size());
+    }
+
+    @Test
+    void pagesThroughLargeDirectories() throws IOException {
+        File archive = archive();
+
+        BackupIndex.Listing page = BackupIndex.list(archive, "world/region", 1, 1);
+
+        assertEquals(2, page.total());
+        assertEquals(List.of("r.0.1.mca"), names(page));
+    }
+
+    @Test
+    void returnsNullForUnknownDirectory() throws IOException {
+        assertNull(BackupIndex.list(archive(), "nether", 0, 100));
+    }
+
+    @Test
+    void extractsDeflatedAndStoredEntries() throws IOException {
+        File archive = archive();
+
+        BackupIndex.Entry level = BackupIndex.find(archive, "world/level.dat");
+        BackupIndex.Entry region = BackupIndex.find(archive, "world/region/r.0.0.mca");
+
+        assertEquals(ZipEntry.DEFLATED, level.method());
+        assertArrayEquals(LEVEL, read(archive, level));
+        assertEquals(ZipEntry.STORED, region.method());
+        assertArrayEquals(REGION, read(archive, region));
+        assertNull(BackupIndex.find(archive, "world/missing.dat"));
+    }
+
+    @Test
+    void refusesToOpenDirectory() throws IOException {
+        File archive = archive();
+        BackupIndex.Entry world = BackupIndex.list(archive, "", 0, 100).entries().get(1);
+
+        assertThrows(IOException.class, () -> BackupIndex.openEntry(archive, world));
+    }
+
+    @Test
+    void rebuildsIndexWhenArchiveChanges() throws IOException {
+        File archive = archive();
+        assertEquals(3, BackupIndex.list(archive, "", 0, 100).total());
+
+        Files.delete(archive.toPath());
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(archive.toPath()))) {
+            output.putNextEntry(new ZipEntry("ops.json"));
+            output.write("[]".getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+        archive.setLastModified(archive.lastModified() + 5000);
+
+        assertEquals(List.of("ops.json"), names(BackupIndex.list(archive, "", 0, 100)));
+    }
+
+    @Test
+    void readsZip64Archive() throws IOException {
+        File archive = directory.resolve("many.zip").toFile();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(archive.toPath())) {
+            for (int i = 0; i < 70_000; i++) {
+                writer.addEntry("data/file-" + i, new byte[] {(byte) i}, 0);
+            }
+        }
+
+        assertEquals(70_000, BackupIndex.list(archive, "data", 0, 10).total());
+        assertArrayEquals(new byte[] {(byte) 69_999}, read(archive, BackupIndex.find(archive, "data/file-69999")));
+    }
+
+    private File archive() throws IOException {
+        File archive = directory.resolve("backup.zip").toFile();
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(archive.toPath()))) {
+            add(output, "server.properties", "motd=Hello".getBytes(StandardCharsets.UTF_8), false);
+            add(output, "world/level.dat", LEVEL, false);
+            add(output, "world/region/r.0.0.mca", REGION, true);
+            add(output, "world/region/r.0.1.mca", REGION, true);
+            output.putNextEntry(new ZipEntry("plugins/"));
+            output.closeEntry();
+        }
+        return archive;
+    }
+
+    private static void add(final ZipOutputStream output, final String name, final byte[] data, final boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        output.putNextEntry(entry);
+        output.write(data);
+        output.closeEntry();
+    }
+
+    private static byte[] read(final File archive, final BackupIndex.Entry entry) throws IOException {
+        try (InputStream input = BackupIndex.openEntry(archive, entry)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static List<String> names(final BackupIndex.Listing listing) {
+        return listing.entries().stream().map(BackupIndex.Entry::name).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,98 @@
+package com.shweit.serverapi.backup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentDefinedChunkerTest {
+    private static final int AVERAGE_SIZE = 4096;
+
+    @Test
+    void chunksJoinToTheInput() throws IOException {
+        byte[] data = random(1_000_000, 1);
+
+        List<byte[]> chunks = split(data);
+
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            joined.write(chunk);
+        }
+        assertArrayEquals(data, joined.toByteArray());
+        assertTrue(chunks.size() > 100);
+    }
+
+    @Test
+    void keepsChunksWithinSizeLimits() throws IOException {
+        List<byte[]> chunks = split(random(1_000_000, 2));
+
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            int length = chunks.get(i).length;
+            assertTrue(length >= AVERAGE_SIZE / 4, "chunk " + i + " is too small: " + length);
+            assertTrue(length <= AVERAGE_SIZE * 4, "chunk " + i + " is too large: " + length);
+        }
+    }
+
+    @Test
+    void cutsUniformDataAtMaximumSize() throws IOException {
+        List<byte[]> chunks = split(new byte[100_000]);
+
+        assertEquals(AVERAGE_SIZE * 4, chunks.get(0).length);
+        assertEquals(100_000 % (AVERAGE_SIZE * 4), chunks.get(chunks.size() - 1).length);
+    }
+
+    @Test
+    void insertionOnlyChangesNearbyChunks() throws IOException {
+        byte[] data = random(1_000_000, 3);
+        byte[] changed = new byte[data.length + 10];
+        System.arraycopy(data, 0, changed, 0, 500_000);
+        System.arraycopy(data, 500_000, changed, 500_010, data.length - 500_000);
+
+        Set<String> before = keys(split(data));
+        List<byte[]> after = split(changed);
+        int reused = 0;
+        for (byte[] chunk : after) {
+            if (before.contains(Arrays.toString(chunk))) {
+                reused++;
+            }
+        }
+
+        assertTrue(after.size() - reused <= 3, "only " + reused + " of " + after.size() + " chunks were reused");
+    }
+
+    @Test
+    void producesNoChunksForEmptyInput() throws IOException {
+        assertTrue(split(new byte[0]).isEmpty());
+    }
+
+    private static List<byte[]> split(final byte[] data) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        new ContentDefinedChunker(AVERAGE_SIZE).split(new ByteArrayInputStream(data), (chunk, length) -> chunks.add(Arrays.copyOf(chunk, length)));
+        return chunks;
+    }
+
+    private static Set<String> keys(final List<byte[]> chunks) {
+        Set<String> keys = new HashSet<>();
+        for (byte[] chunk : chunks) {
+            keys.add(Arrays.toString(chunk));
+        }
+        return keys;
+    }
+
+    private static byte[] random(final int length, final long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
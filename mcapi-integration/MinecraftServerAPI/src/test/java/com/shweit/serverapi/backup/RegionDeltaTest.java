@@ -0,0 +1,165 @@
+package com.shweit.serverapi.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionDeltaTest {
+    private static final long FIRST_SNAPSHOT = 1_000;
+    private static final long SECOND_SNAPSHOT = 2_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void baseDeltaHoldsEveryChunk() throws IOException {
+        RegionFile region = region(0, 1, 5, 1023);
+
+        byte[] delta = RegionDelta.create(region, null, FIRST_SNAPSHOT);
+        byte[][] payloads = new byte[RegionFile.CHUNKS][];
+        RegionDelta.Header header = RegionDelta.apply(new ByteArrayInputStream(delta), payloads);
+
+        assertTrue(header.base());
+        assertEquals(FIRST_SNAPSHOT, header.created());
+        assertEquals(4, recordCount(delta));
+        assertPayloadsEqual(region.getPayloads(), payloads);
+        assertArrayEquals(region.getTimestamps(), header.timestamps());
+    }
+
+    @Test
+    void deltaOnlyHoldsChangedAddedAndRemovedChunks() throws IOException {
+        RegionFile first = region(0, 1, 2, 3);
+        RegionDelta.Header previous = header(RegionDelta.create(first, null, FIRST_SNAPSHOT));
+
+        byte[][] payloads = copy(first.getPayloads());
+        int[] timestamps = first.getTimestamps().clone();
+        // Chunk 1 was saved again, chunk 3 was deleted and chunk 7 is new
+        payloads[1] = payload(1, 999);
+        timestamps[1] = 1_500;
+        payloads[3] = null;
+        timestamps[3] = 0;
+        payloads[7] = payload(7, 50);
+        timestamps[7] = 1_600;
+        RegionFile second = new RegionFile(timestamps, payloads);
+
+        byte[] delta = RegionDelta.create(second, previous, SECOND_SNAPSHOT);
+
+        assertFalse(header(delta).base());
+        assertEquals(3, recordCount(delta));
+
+        byte[][] restored = copy(first.getPayloads());
+        RegionDelta.apply(new ByteArrayInputStream(delta), restored);
+        assertPayloadsEqual(second.getPayloads(), restored);
+    }
+
+    @Test
+    void treatsChunkSavedInSnapshotSecondAsChanged() throws IOException {
+        RegionFile first = region(0);
+        first.getTimestamps()[0] = (int) FIRST_SNAPSHOT;
+        RegionDelta.Header previous = header(RegionDelta.create(first, null, FIRST_SNAPSHOT));
+
+        // The chunk may have been saved again later in the same second, with the same timestamp
+        byte[] delta = RegionDelta.create(first, previous, SECOND_SNAPSHOT);
+
+        assertEquals(1, recordCount(delta));
+    }
+
+    @Test
+    void unchangedRegionHasNoRecords() throws IOException {
+        RegionFile region = region(0, 10, 20);
+        RegionDelta.Header previous = header(RegionDelta.create(region, null, FIRST_SNAPSHOT));
+
+        assertEquals(0, recordCount(RegionDelta.create(region, previous, SECOND_SNAPSHOT)));
+    }
+
+    @Test
+    void rejectsDataThatIsNotADelta() {
+        byte[] data = new byte[64];
+
+        assertThrows(IOException.class, () -> RegionDelta.readHeader(new DataInputStream(new ByteArrayInputStream(data))));
+    }
+
+    @Test
+    void regionFileSurvivesWriteAndRead() throws IOException {
+        RegionFile region = region(0, 31, 32, 1023);
+        // A chunk spanning several sectors
+        region.getPayloads()[500] = payload(500, 10_000);
+        Path file = directory.resolve("r.0.0.mca");
+        try (OutputStream output = Files.newOutputStream(file)) {
+            region.write(output);
+        }
+
+        RegionFile read = RegionFile.read(file);
+
+        assertEquals(0, Files.size(file) % RegionFile.SECTOR_SIZE);
+        assertArrayEquals(region.getTimestamps(), read.getTimestamps());
+        assertPayloadsEqual(region.getPayloads(), read.getPayloads());
+    }
+
+    @Test
+    void readReturnsNullForFileThatIsNotARegion() throws IOException {
+        Path file = Files.write(directory.resolve("r.1.1.mca"), new byte[100]);
+
+        assertNull(RegionFile.read(file));
+    }
+
+    private static RegionFile region(final int... indexes) {
+        int[] timestamps = new int[RegionFile.CHUNKS];
+        byte[][] payloads = new byte[RegionFile.CHUNKS][];
+        for (int index : indexes) {
+            timestamps[index] = 500 + index;
+            payloads[index] = payload(index, 100 + index);
+        }
+        return new RegionFile(timestamps, payloads);
+    }
+
+    // Length, compression type and data, like a chunk in a region file
+    private static byte[] payload(final int seed, final int dataLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(5 + dataLength);
+        buffer.putInt(1 + dataLength);
+        buffer.put((byte) 2);
+        for (int i = 0; i < dataLength; i++) {
+            buffer.put((byte) (seed * 31 + i));
+        }
+        return buffer.array();
+    }
+
+    private static RegionDelta.Header header(final byte[] delta) throws IOException {
+        return RegionDelta.readHeader(new DataInputStream(new ByteArrayInputStream(delta)));
+    }
+
+    private static int recordCount(final byte[] delta) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(delta));
+        RegionDelta.readHeader(input);
+        return input.readInt();
+    }
+
+    private static byte[][] copy(final byte[][] payloads) {
+        byte[][] copy = new byte[payloads.length][];
+        for (int i = 0; i < payloads.length; i++) {
+            copy[i] = payloads[i] == null ? null : payloads[i].clone();
+        }
+        return copy;
+    }
+
+    private static void assertPayloadsEqual(final byte[][] expected, final byte[][] actual) {
+        for (int i = 0; i < RegionFile.CHUNKS; i++) {
+            assertTrue(Arrays.equals(expected[i], actual[i]), "payload of chunk " + i + " differs");
+        }
+    }
+}
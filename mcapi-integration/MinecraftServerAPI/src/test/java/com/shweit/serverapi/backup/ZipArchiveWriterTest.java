@@ -0,0 +1,148 @@
+package com.shweit.serverapi.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipArchiveWriterTest {
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesEntriesReadableByZipFile() throws IOException {
+        byte[] text = "Hello, world! Hello, world! Hello, world!".getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(text);
+        Path spool = directory.resolve("spool");
+        Files.write(spool, concat(new byte[] {1, 2, 3}, deflated));
+        Path archive = directory.resolve("backup.zip");
+
+        try (FileChannel source = FileChannel.open(spool, StandardOpenOption.READ);
+             ZipArchiveWriter writer = new ZipArchiveWriter(archive)) {
+            writer.addDirectory("world", MODIFIED);
+            writer.addEntry("world/level.dat", ZipEntry.DEFLATED, crc(text), text.length, deflated.length, MODIFIED, source, 3);
+            writer.addEntry("world/session.lock", new byte[] {4, 5}, MODIFIED);
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(3, zip.size());
+            assertTrue(zip.getEntry("world/").isDirectory());
+
+            ZipEntry level = zip.getEntry("world/level.dat");
+            assertEquals(ZipEntry.DEFLATED, level.getMethod());
+            assertEquals(text.length, level.getSize());
+            assertArrayEquals(text, read(zip, level));
+
+            ZipEntry lock = zip.getEntry("world/session.lock");
+            assertEquals(ZipEntry.STORED, lock.getMethod());
+            assertArrayEquals(new byte[] {4, 5}, read(zip, lock));
+        }
+    }
+
+    @Test
+    void writesZip64EndRecordForMoreThan65535Entries() throws IOException {
+        int count = 70_000;
+        Path archive = directory.resolve("many.zip");
+
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(archive)) {
+            for (int i = 0; i < count; i++) {
+                writer.addEntry("file-" + i, new byte[] {(byte) i}, MODIFIED);
+            }
+        }
+
+        assertTrue(containsSignature(archive, 0x06064b50));
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(count, zip.size());
+            assertArrayEquals(new byte[] {(byte) 69_999}, read(zip, zip.getEntry("file-69999")));
+        }
+    }
+
+    @Test
+    void writesClassicEndRecordForSmallArchives() throws IOException {
+        Path archive = directory.resolve("small.zip");
+
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(archive)) {
+            writer.addEntry("a", new byte[] {1}, MODIFIED);
+        }
+
+        assertFalse(containsSignature(archive, 0x06064b50));
+    }
+
+    @Test
+    void doesNotOverwriteExistingArchive() throws IOException {
+        Path archive = Files.createFile(directory.resolve("existing.zip"));
+
+        assertThrows(FileAlreadyExistsException.class, () -> new ZipArchiveWriter(archive));
+    }
+
+    @Test
+    void rejectsTooLongEntryName() throws IOException {
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(directory.resolve("long.zip"))) {
+            assertThrows(IOException.class, () -> writer.addEntry("x".repeat(70_000), new byte[0], MODIFIED));
+        }
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 64];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    private static long crc(final byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static byte[] read(final ZipFile zip, final ZipEntry entry) throws IOException {
+        try (InputStream input = zip.getInputStream(entry)) {
+            return input.readAllBytes();
+        }
+    }
+
+    // Only the end of the archive is searched, where the end records are
+    private static boolean containsSignature(final Path archive, final int signature) throws IOException {
+        byte[] data = Files.readAllBytes(archive);
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = data.length - 4; i >= Math.max(0, data.length - 256); i--) {
+            if (buffer.getInt(i) == signature) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
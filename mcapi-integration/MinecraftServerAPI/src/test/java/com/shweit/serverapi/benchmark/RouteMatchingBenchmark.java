@@ -0,0 +1,193 @@
+package com.shweit.serverapi.benchmark;
+
+import com.shweit.serverapi.utils.RouteDefinition;
+import com.shweit.serverapi.utils.RouteTrie;
+import fi.iki.elonen.NanoHTTPD;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linear route matcher the WebServer used before the route trie with {@link RouteTrie},
+ * using every route registered by RegisterEndpoints.
+ * <p>
+ *     Run with {@code mvn -P benchmark verify}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMatchingBenchmark {
+    // Every route of RegisterEndpoints, including the maintenance routes
+    private static final String[][] ROUTES = {
+        {"GET", "/v1/players"},
+        {"GET", "/v1/banned-players"},
+        {"GET", "/v1/offline-players"},
+        {"GET", "/v1/players/{username}"},
+        {"GET", "/v1/players/{username}/stats"},
+        {"GET", "/v1/players/{username}/advancements"},
+        {"GET", "/v1/players/{username}/inventory"},
+        {"GET", "/v1/players/{username}/inventory/{slot}"},
+        {"POST", "/v1/players/{username}/kick"},
+        {"POST", "/v1/players/{username}/ban"},
+        {"POST", "/v1/players/{username}/pardon"},
+        {"GET", "/v1/players/{username}/location"},
+        {"POST", "/v1/players/{username}/location"},
+        {"GET", "/v1/ping"},
+        {"GET", "/v1/server"},
+        {"GET", "/v1/server/health"},
+        {"GET", "/v1/server/tps"},
+        {"GET", "/v1/server/connections"},
+        {"GET", "/v1/server/http-stats"},
+        {"GET", "/v1/server/uptime"},
+        {"GET", "/v1/server/properties"},
+        {"POST", "/v1/server/properties"},
+        {"POST", "/v1/server/exec"},
+        {"POST", "/v1/server/reload"},
+        {"POST", "/v1/server/reboot"},
+        {"POST", "/v1/server/shutdown"},
+        {"POST", "/v1/server/broadcast"},
+        {"GET", "/v1/server/chat"},
+        {"GET", "/v1/server/log"},
+        {"GET", "/v1/server/chat/stream"},
+        {"GET", "/v1/server/log/stream"},
+        {"POST", "/v1/server/exec-multiple"},
+        {"GET", "/v1/whitelist"},
+        {"POST", "/v1/whitelist"},
+        {"DELETE", "/v1/whitelist"},
+        {"POST", "/v1/whitelist/activate"},
+        {"POST", "/v1/whitelist/deactivate"},
+        {"GET", "/v1/plugins"},
+        {"POST", "/v1/plugins"},
+        {"DELETE", "/v1/plugins"},
+        {"POST", "/v1/plugins/activate"},
+        {"POST", "/v1/plugins/deactivate"},
+        {"GET", "/v1/plugins/{name}"},
+        {"GET", "/v1/worlds"},
+        {"POST", "/v1/worlds"},
+        {"DELETE", "/v1/worlds"},
+        {"GET", "/v1/worlds/{world}"},
+        {"PUT", "/v1/worlds/{world}"},
+        {"GET", "/v1/backups"},
+        {"POST", "/v1/backups"},
+        {"DELETE", "/v1/backups"},
+        {"GET", "/v1/backups/status"},
+        {"GET", "/v1/backups/{name}"},
+        {"GET", "/v1/backups/{name}/download"},
+        {"GET", "/v1/backups/{name}/tree"},
+        {"GET", "/v1/backups/{name}/file"},
+        {"POST", "/v1/backups/{name}/restore"},
+        {"GET", "/v1/jobs"},
+        {"GET", "/v1/jobs/{id}"},
+        {"DELETE", "/v1/jobs/{id}"},
+        {"GET", "/v1/leaderboards/{statistic}"},
+        {"GET", "/metrics"},
+        {"GET", "/v1/webhooks"},
+        {"POST", "/v1/batch"},
+        {"GET", "/v1/maintenance"},
+        {"POST", "/v1/maintenance"},
+        {"DELETE", "/v1/maintenance"},
+        {"GET", "/v1/maintenance/whitelist"},
+        {"POST", "/v1/maintenance/whitelist"},
+        {"DELETE", "/v1/maintenance/whitelist"}
+    };
+
+    @Param({"GET /v1/server/tps", "GET /v1/players", "GET /v1/players/Notch/inventory/12", "DELETE /v1/maintenance/whitelist", "GET /v1/unknown"})
+    private String request;
+
+    private final List<LegacyRoute> legacyRoutes = new ArrayList<>();
+    private final RouteTrie trie = new RouteTrie();
+    private NanoHTTPD.Method method;
+    private String uri;
+
+    @Setup
+    public void setUp() {
+        for (String[] route : ROUTES) {
+            NanoHTTPD.Method routeMethod = NanoHTTPD.Method.valueOf(route[0]);
+            legacyRoutes.add(new LegacyRoute(routeMethod, route[1]));
+            trie.add(new RouteDefinition(routeMethod, route[1], params -> null));
+        }
+
+        String[] parts = request.split(" ");
+        method = NanoHTTPD.Method.valueOf(parts[0]);
+        uri = parts[1];
+    }
+
+    @Benchmark
+    public Object linear() {
+        Map<String, String> params = new HashMap<>();
+        for (LegacyRoute route : legacyRoutes) {
+            if (route.matches(uri, method, params)) {
+                return route;
+            }
+        }
+        return params;
+    }
+
+    @Benchmark
+    public Object trie() {
+        Map<String, String> params = new HashMap<>();
+        RouteTrie.Match match = trie.find(uri, method);
+        if (match != null) {
+            params.putAll(match.getParams());
+            return match;
+        }
+        return trie.allowedMethods(uri);
+    }
+
+    /**
+     * RouteDefinition.matches as it was before the route trie.
+     */
+    private static final class LegacyRoute {
+        private final NanoHTTPD.Method httpMethod;
+        private final String routePattern;
+
+        private LegacyRoute(final NanoHTTPD.Method method, final String pattern) {
+            this.httpMethod = method;
+            this.routePattern = pattern;
+        }
+
+        private boolean matches(final String uri, final NanoHTTPD.Method method, final Map<String, String> params) {
+            if (!this.httpMethod.equals(method)) {
+                return false;
+            }
+
+            String[] patternParts = routePattern.split("/");
+            String[] uriParts = uri.split("/");
+
+            if (patternParts.length != uriParts.length) {
+                return false;
+            }
+
+            for (int i = 0; i < patternParts.length; i++) {
+                String patternPart = patternParts[i];
+                String uriPart = uriParts[i];
+
+                if (patternPart.startsWith("{") && patternPart.endsWith("}")) {
+                    params.put(patternPart.substring(1, patternPart.length() - 1), uriPart);
+                } else if (!patternPart.equals(uriPart)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
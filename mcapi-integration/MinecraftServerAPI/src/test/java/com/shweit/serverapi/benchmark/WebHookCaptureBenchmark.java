@@ -0,0 +1,106 @@
+package com.shweit.serverapi.benchmark;
+
+import com.shweit.serverapi.webhooks.WebHookEnum;
+import com.shweit.serverapi.webhooks.WebHookEventRing;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares the server thread's cost of a block_break event when the webhook JSON is built right away
+ * ({@code eagerJson}) with capturing the event into the {@link WebHookEventRing} ({@code ring:capture})
+ * while a second thread renders it ({@code ring:render}).
+ * <p>
+ *     Run with {@code mvn -P benchmark verify}; add {@code -prof gc} to the JMH arguments to compare the
+ *     allocation per event.
+ * </p>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebHookCaptureBenchmark {
+    private static final String[] MATERIALS = {"STONE", "DIRT", "OAK_LOG", "DIAMOND_ORE"};
+
+    private final UUID uuid = UUID.randomUUID();
+    private final String player = "Steve";
+    private final String world = "world";
+    private final Consumer<JSONObject> sink = json -> rendered = json;
+    private volatile JSONObject rendered;
+    private WebHookEventRing ring;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        ring = new WebHookEventRing(8192);
+        ring.setRenderer(WebHookEnum.BLOCK_BREAK, slot -> render(slot.player, slot.uuid(), MATERIALS[slot.type], slot.locationString()));
+    }
+
+    @Benchmark
+    public JSONObject eagerJson() {
+        int type = counter++ & 3;
+        String location = "Location{world=CraftWorld{name=" + world + "},x=" + (double) type + ",y=64.0,z=-12.0,pitch=0.0,yaw=0.0}";
+        return render(player, uuid, MATERIALS[type], location);
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public boolean capture() {
+        WebHookEventRing.Slot slot = ring.claim();
+        if (slot == null) {
+            return false;
+        }
+
+        slot.event = WebHookEnum.BLOCK_BREAK;
+        slot.uuidMost = uuid.getMostSignificantBits();
+        slot.uuidLeast = uuid.getLeastSignificantBits();
+        slot.player = player;
+        slot.type = counter++ & 3;
+        slot.world = world;
+        slot.x = slot.type;
+        slot.y = 64;
+        slot.z = -12;
+        slot.yaw = 0;
+        slot.pitch = 0;
+        ring.publish();
+        return true;
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public int render() {
+        return ring.drain(sink);
+    }
+
+    // Builds the same JSON as the block_break webhook
+    private static JSONObject render(final String playerName, final UUID playerId, final String block, final String location) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("event", WebHookEnum.BLOCK_BREAK.label);
+        jsonObject.put("player", playerName);
+        jsonObject.put("uuid", playerId.toString());
+        jsonObject.put("block", block);
+        jsonObject.put("location", location);
+
+        String blockName = block.toLowerCase().replace("_", " ");
+        jsonObject.put("message", "Player " + playerName + " broke a " + blockName + " block");
+        return jsonObject;
+    }
+}
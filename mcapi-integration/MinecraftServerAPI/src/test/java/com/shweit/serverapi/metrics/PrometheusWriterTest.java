@@ -0,0 +1,56 @@
+package com.shweit.serverapi.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrometheusWriterTest {
+
+    @Test
+    void writesFamilyHeaderAndSamples() {
+        PrometheusWriter writer = new PrometheusWriter()
+                .family("minecraft_tps", "gauge", "Ticks per second, at most 20")
+                .sample("minecraft_tps", 19.5, "window", "1m")
+                .sample("minecraft_tps", 20, "window", "5m");
+
+        assertEquals("# HELP minecraft_tps Ticks per second, at most 20\n"
+                + "# TYPE minecraft_tps gauge\n"
+                + "minecraft_tps{window=\"1m\"} 19.5\n"
+                + "minecraft_tps{window=\"5m\"} 20\n", writer.toString());
+    }
+
+    @Test
+    void writesSampleWithoutLabels() {
+        assertEquals("system_cpu_count 8\n", new PrometheusWriter().sample("system_cpu_count", 8).toString());
+    }
+
+    @Test
+    void escapesLabelValues() {
+        PrometheusWriter writer = new PrometheusWriter().sample("minecraft_world_entities", 1, "world", "a\"b\\c\nd");
+
+        assertEquals("minecraft_world_entities{world=\"a\\\"b\\\\c\\nd\"} 1\n", writer.toString());
+    }
+
+    @Test
+    void writesSpecialValues() {
+        PrometheusWriter writer = new PrometheusWriter()
+                .sample("a", Double.NaN)
+                .sample("b", Double.POSITIVE_INFINITY)
+                .sample("c", Double.NEGATIVE_INFINITY)
+                .sample("d", 1e20);
+
+        assertEquals("a NaN\nb +Inf\nc -Inf\nd 1.0E20\n", writer.toString());
+    }
+
+    @Test
+    void writesCumulativeHistogramBuckets() {
+        PrometheusWriter writer = new PrometheusWriter()
+                .histogram("minecraft_tick_interval_seconds", new double[] {0.05, 0.1}, new long[] {3, 2, 1}, 0.42, "server", "lobby");
+
+        assertEquals("minecraft_tick_interval_seconds_bucket{server=\"lobby\",le=\"0.05\"} 3\n"
+                + "minecraft_tick_interval_seconds_bucket{server=\"lobby\",le=\"0.1\"} 5\n"
+                + "minecraft_tick_interval_seconds_bucket{server=\"lobby\",le=\"+Inf\"} 6\n"
+                + "minecraft_tick_interval_seconds_sum{server=\"lobby\"} 0.42\n"
+                + "minecraft_tick_interval_seconds_count{server=\"lobby\"} 6\n", writer.toString());
+    }
+}
@@ -0,0 +1,119 @@
+package com.shweit.serverapi.stats;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardIndexTest {
+    private static final StatKeys KEYS = StatKeys.build();
+    private static final UUID ALEX = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID STEVE = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID NOTCH = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @TempDir
+    Path directory;
+
+    private File statsFolder;
+    private LeaderboardIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        statsFolder = Files.createDirectories(directory.resolve("world/stats")).toFile();
+        index = new LeaderboardIndex(KEYS, statsFolder, directory.toFile(), 2);
+    }
+
+    @Test
+    void ranksPlayersBestFirst() throws IOException {
+        write(ALEX, "{\"minecraft:mined\":{\"minecraft:stone\":10,\"minecraft:dirt\":5}}");
+        write(STEVE, "{\"minecraft:mined\":{\"minecraft:stone\":30}}");
+        write(NOTCH, "{\"minecraft:mined\":{\"minecraft:stone\":20}}");
+        assertFalse(index.isReady());
+
+        index.run();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of(STEVE + "=30", NOTCH + "=20"), ranks(index.get("mine_block_stone")));
+        assertEquals(3, index.get("MINE_BLOCK_STONE").getPlayers());
+        assertEquals(List.of(STEVE + "=30", NOTCH + "=20"), ranks(index.get("MINE_BLOCK")));
+        assertEquals(List.of(), ranks(index.get("USE_ITEM_BREAD")));
+        assertNull(index.get("JUMP_HIGHER"));
+    }
+
+    @Test
+    void rebuildsOnlyLeaderboardsOfChangedFiles() throws IOException {
+        write(ALEX, "{\"minecraft:mined\":{\"minecraft:stone\":10},\"minecraft:custom\":{\"minecraft:jump\":7}}");
+        write(STEVE, "{\"minecraft:custom\":{\"minecraft:jump\":3}}");
+        index.run();
+        LeaderboardIndex.Leaderboard stone = index.get("MINE_BLOCK_STONE");
+        LeaderboardIndex.Leaderboard mined = index.get("MINE_BLOCK");
+        LeaderboardIndex.Leaderboard jump = index.get("JUMP");
+
+        write(STEVE, "{\"minecraft:custom\":{\"minecraft:jump\":9}}");
+        index.run();
+
+        assertSame(stone, index.get("MINE_BLOCK_STONE"));
+        assertSame(mined, index.get("MINE_BLOCK"));
+        assertNotSame(jump, index.get("JUMP"));
+        assertEquals(List.of(STEVE + "=9", ALEX + "=7"), ranks(index.get("JUMP")));
+    }
+
+    @Test
+    void dropsPlayersWhoseFileWasDeleted() throws IOException {
+        write(ALEX, "{\"minecraft:mined\":{\"minecraft:stone\":10}}");
+        write(STEVE, "{\"minecraft:mined\":{\"minecraft:stone\":30}}");
+        index.run();
+
+        Files.delete(statsFolder.toPath().resolve(STEVE + ".json"));
+        index.run();
+
+        assertEquals(List.of(ALEX + "=10"), ranks(index.get("MINE_BLOCK_STONE")));
+        assertEquals(List.of(ALEX + "=10"), ranks(index.get("MINE_BLOCK")));
+    }
+
+    @Test
+    void doesNotRebuildWithoutChanges() throws IOException {
+        write(ALEX, "{\"minecraft:mined\":{\"minecraft:stone\":10}}");
+        index.run();
+        LeaderboardIndex.Leaderboard stone = index.get("MINE_BLOCK_STONE");
+        long updatedAt = index.getUpdatedAt();
+
+        index.run();
+
+        assertSame(stone, index.get("MINE_BLOCK_STONE"));
+        assertEquals(updatedAt, index.getUpdatedAt());
+    }
+
+    private void write(final UUID uuid, final String stats) throws IOException {
+        File file = new File(statsFolder, uuid + ".json");
+        long previous = file.lastModified();
+        Files.write(file.toPath(), ("{\"stats\":" + stats + ",\"DataVersion\":3953}").getBytes(StandardCharsets.UTF_8));
+        // The index only looks at the modification time, which may not have moved on a fast file system
+        file.setLastModified(Math.max(file.lastModified(), previous + 1000));
+    }
+
+    private static List<String> ranks(final LeaderboardIndex.Leaderboard leaderboard) {
+        JSONArray entries = leaderboard.toJson(10);
+        List<String> ranks = new ArrayList<>();
+        for (int i = 0; i < entries.length(); i++) {
+            ranks.add(entries.getJSONObject(i).getString("uuid") + "=" + entries.getJSONObject(i).getLong("value"));
+        }
+        return ranks;
+    }
+}
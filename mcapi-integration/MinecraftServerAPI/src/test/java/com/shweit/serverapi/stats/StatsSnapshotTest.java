@@ -0,0 +1,76 @@
+package com.shweit.serverapi.stats;
+
+import org.bukkit.Statistic;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsSnapshotTest {
+    private static final StatKeys KEYS = StatKeys.build();
+
+    @Test
+    void readsTypedStatisticsFromVanillaCategories() throws Exception {
+        StatsSnapshot snapshot = read();
+
+        assertEquals(318, value(snapshot, "MINE_BLOCK_STONE"));
+        assertEquals(412, value(snapshot, "USE_ITEM_DIAMOND_PICKAXE"));
+        assertEquals(1, value(snapshot, "BREAK_ITEM_DIAMOND_PICKAXE"));
+        assertEquals(3, value(snapshot, "CRAFT_ITEM_BREAD"));
+        assertEquals(37, value(snapshot, "PICKUP_OAK_LOG"));
+        assertEquals(2, value(snapshot, "DROP_DIRT"));
+        assertEquals(14, value(snapshot, "KILL_ENTITY_ZOMBIE"));
+        assertEquals(1, value(snapshot, "ENTITY_KILLED_BY_CREEPER"));
+    }
+
+    @Test
+    void readsRenamedCustomStatistics() throws Exception {
+        StatsSnapshot snapshot = read();
+
+        assertEquals(72000, value(snapshot, "PLAY_ONE_MINUTE"));
+        assertEquals(2, value(snapshot, "DROP_COUNT"));
+        assertEquals(11, value(snapshot, "CHEST_OPENED"));
+        assertEquals(7, value(snapshot, "CRAFTING_TABLE_INTERACTION"));
+        assertEquals(2, value(snapshot, "CAKE_SLICES_EATEN"));
+        assertEquals(512, value(snapshot, "JUMP"));
+        assertEquals(72140, value(snapshot, "TOTAL_WORLD_TIME"));
+    }
+
+    @Test
+    void mapsEveryTypedStatisticToItsCategory() {
+        assertEquals("minecraft:mined", StatKeys.vanillaName(Statistic.MINE_BLOCK));
+        assertEquals("minecraft:killed_by", StatKeys.vanillaName(Statistic.ENTITY_KILLED_BY));
+        assertEquals("minecraft:deaths", StatKeys.vanillaName(Statistic.DEATHS));
+        assertEquals(KEYS.byName("MINE_BLOCK_STONE"), KEYS.byFileKey("minecraft:mined", "minecraft:stone"));
+        assertEquals(-1, KEYS.byFileKey("minecraft:mine_block", "minecraft:stone"));
+    }
+
+    @Test
+    void keepsFileTimeAndSortedKeys() throws Exception {
+        File file = file();
+        StatsSnapshot snapshot = StatsSnapshot.read(file, KEYS);
+
+        assertEquals(file.lastModified(), snapshot.getTakenAt());
+        for (int i = 1; i < snapshot.size(); i++) {
+            assertTrue(snapshot.keyAt(i - 1) < snapshot.keyAt(i));
+        }
+    }
+
+    private static int value(final StatsSnapshot snapshot, final String name) {
+        int key = KEYS.byName(name);
+        assertTrue(key >= 0, name);
+        return snapshot.get(key);
+    }
+
+    private static StatsSnapshot read() throws IOException, URISyntaxException {
+        return StatsSnapshot.read(file(), KEYS);
+    }
+
+    private static File file() throws URISyntaxException {
+        return new File(StatsSnapshotTest.class.getResource("/stats/069a79f4-44e9-4726-a5be-fca90e38aaf5.json").toURI());
+    }
+}
@@ -0,0 +1,48 @@
+package com.shweit.serverapi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileResponsesTest {
+    private static final long LENGTH = 1000;
+
+    @Test
+    void parsesClosedRange() {
+        assertArrayEquals(new long[] {0, 499}, FileResponses.parseRange("bytes=0-499", LENGTH));
+        assertArrayEquals(new long[] {500, 999}, FileResponses.parseRange("bytes= 500 - 999", LENGTH));
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        assertArrayEquals(new long[] {900, 999}, FileResponses.parseRange("bytes=900-", LENGTH));
+    }
+
+    @Test
+    void clampsEndToLastByte() {
+        assertArrayEquals(new long[] {990, 999}, FileResponses.parseRange("bytes=990-5000", LENGTH));
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertArrayEquals(new long[] {900, 999}, FileResponses.parseRange("bytes=-100", LENGTH));
+        assertArrayEquals(new long[] {0, 999}, FileResponses.parseRange("bytes=-5000", LENGTH));
+    }
+
+    @Test
+    void reportsUnsatisfiableRanges() {
+        assertArrayEquals(new long[0], FileResponses.parseRange("bytes=1000-", LENGTH));
+        assertArrayEquals(new long[0], FileResponses.parseRange("bytes=-0", LENGTH));
+        assertArrayEquals(new long[0], FileResponses.parseRange("bytes=-10", 0));
+    }
+
+    @Test
+    void ignoresInvalidAndMultipleRanges() {
+        assertNull(FileResponses.parseRange("items=0-10", LENGTH));
+        assertNull(FileResponses.parseRange("bytes=0-10,20-30", LENGTH));
+        assertNull(FileResponses.parseRange("bytes=10-5", LENGTH));
+        assertNull(FileResponses.parseRange("bytes=abc-def", LENGTH));
+        assertNull(FileResponses.parseRange("bytes=100", LENGTH));
+    }
+}
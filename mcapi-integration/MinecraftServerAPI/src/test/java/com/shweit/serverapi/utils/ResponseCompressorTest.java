@@ -0,0 +1,107 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResponseCompressorTest {
+    private static final String BODY = "{\"players\":[" + "{\"name\":\"Notch\",\"online\":true},".repeat(100) + "{}]}";
+
+    private final ResponseCompressor compressor = new ResponseCompressor(6, 256, 2);
+
+    @Test
+    void negotiatesGzipOrDeflate() {
+        assertEquals("gzip", ResponseCompressor.negotiate("gzip"));
+        assertEquals("gzip", ResponseCompressor.negotiate("gzip, deflate, br"));
+        assertEquals("gzip", ResponseCompressor.negotiate("x-gzip"));
+        assertEquals("gzip", ResponseCompressor.negotiate("GZIP;q=0.5, deflate;q=0.5"));
+        assertEquals("deflate", ResponseCompressor.negotiate("deflate"));
+        assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0.2, deflate;q=0.8"));
+    }
+
+    @Test
+    void refusesCodingsWithZeroQuality() {
+        assertNull(ResponseCompressor.negotiate(null));
+        assertNull(ResponseCompressor.negotiate(""));
+        assertNull(ResponseCompressor.negotiate("identity"));
+        assertNull(ResponseCompressor.negotiate("br, zstd"));
+        assertNull(ResponseCompressor.negotiate("gzip;q=0, deflate;q=0"));
+        assertNull(ResponseCompressor.negotiate("gzip;q=invalid"));
+        assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0, deflate"));
+    }
+
+    @Test
+    void appliesWildcardToCodingsNotListed() {
+        assertEquals("gzip", ResponseCompressor.negotiate("*"));
+        assertEquals("gzip", ResponseCompressor.negotiate("br, *;q=0.1"));
+        assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0, *"));
+        assertEquals("deflate", ResponseCompressor.negotiate("x-gzip;q=0, *"));
+        assertNull(ResponseCompressor.negotiate("*;q=0"));
+    }
+
+    @Test
+    void compressesJsonWithGzip() throws IOException {
+        NanoHTTPD.Response response = json(BODY);
+
+        compressor.compress(response, "gzip");
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        try (InputStream input = new GZIPInputStream(response.getData())) {
+            assertEquals(BODY, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void compressesJsonWithDeflate() throws IOException {
+        NanoHTTPD.Response response = json(BODY);
+
+        compressor.compress(response, "deflate");
+
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+        try (InputStream input = new InflaterInputStream(response.getData())) {
+            assertEquals(BODY, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void reusesPooledDeflaters() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            NanoHTTPD.Response response = json(BODY + i);
+            compressor.compress(response, "gzip");
+            try (InputStream input = new GZIPInputStream(response.getData())) {
+                assertEquals(BODY + i, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void leavesSmallBinaryAndEventStreamBodiesAlone() {
+        NanoHTTPD.Response small = json("{}");
+        NanoHTTPD.Response binary = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/zip", BODY);
+        NanoHTTPD.Response events = NanoHTTPD.newChunkedResponse(NanoHTTPD.Response.Status.OK, "text/event-stream",
+                new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)));
+        NanoHTTPD.Response notModified = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_MODIFIED, "application/json", BODY);
+
+        for (NanoHTTPD.Response response : new NanoHTTPD.Response[] {small, binary, events, notModified}) {
+            InputStream data = response.getData();
+            compressor.compress(response, "gzip");
+            assertNull(response.getHeader("Content-Encoding"));
+            assertSame(data, response.getData());
+        }
+    }
+
+    private static NanoHTTPD.Response json(final String body) {
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", body);
+    }
+}
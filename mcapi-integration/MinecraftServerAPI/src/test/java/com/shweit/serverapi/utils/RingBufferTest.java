@@ -0,0 +1,81 @@
+package com.shweit.serverapi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RingBufferTest {
+
+    @Test
+    void returnsEntriesAfterSequenceOldestFirst() {
+        RingBuffer<String> buffer = new RingBuffer<>(8);
+        buffer.add("a");
+        buffer.add("b");
+        buffer.add("c");
+
+        assertEquals(List.of("a", "b", "c"), values(buffer.since(-1, 100)));
+        assertEquals(List.of("c"), values(buffer.since(1, 100)));
+        assertEquals(List.of(), values(buffer.since(2, 100)));
+        assertEquals(2, buffer.getLatestSequence());
+    }
+
+    @Test
+    void honoursLimit() {
+        RingBuffer<String> buffer = new RingBuffer<>(8);
+        buffer.add("a");
+        buffer.add("b");
+        buffer.add("c");
+
+        List<RingBuffer.Entry<String>> page = buffer.since(-1, 2);
+
+        assertEquals(List.of("a", "b"), values(page));
+        assertEquals(List.of("c"), values(buffer.since(page.get(1).getSequence(), 2)));
+    }
+
+    @Test
+    void dropsOldestEntriesWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i);
+        }
+
+        assertEquals(List.of(2, 3, 4), values(buffer.since(-1, 100)));
+        // A cursor that fell behind continues at the oldest entry still held
+        assertEquals(List.of(2, 3, 4), values(buffer.since(0, 100)));
+    }
+
+    @Test
+    void stopsAtEntryThatIsNotPublishedYet() throws ReflectiveOperationException {
+        RingBuffer<String> buffer = new RingBuffer<>(8);
+        buffer.add("a");
+        // A writer claimed sequence 1 but has not stored its entry yet
+        nextSequence(buffer).getAndIncrement();
+        buffer.add("c");
+
+        List<RingBuffer.Entry<String>> entries = buffer.since(-1, 100);
+
+        assertEquals(List.of("a"), values(entries));
+        assertEquals(0, entries.get(0).getSequence());
+    }
+
+    @Test
+    void rejectsEmptyCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<String>(0));
+    }
+
+    private static <T> List<T> values(final List<RingBuffer.Entry<T>> entries) {
+        return entries.stream().map(RingBuffer.Entry::getValue).collect(Collectors.toList());
+    }
+
+    private static AtomicLong nextSequence(final RingBuffer<?> buffer) throws ReflectiveOperationException {
+        Field field = RingBuffer.class.getDeclaredField("nextSequence");
+        field.setAccessible(true);
+        return (AtomicLong) field.get(buffer);
+    }
+}
@@ -0,0 +1,97 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteTrieTest {
+    private RouteTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new RouteTrie();
+        add(NanoHTTPD.Method.GET, "/v1/players");
+        add(NanoHTTPD.Method.GET, "/v1/players/{username}");
+        add(NanoHTTPD.Method.GET, "/v1/players/{username}/inventory/{slot}");
+        add(NanoHTTPD.Method.POST, "/v1/players/{username}/kick");
+        add(NanoHTTPD.Method.GET, "/v1/backups/{name}");
+        add(NanoHTTPD.Method.GET, "/v1/backups/status");
+        add(NanoHTTPD.Method.GET, "/v1/whitelist");
+        add(NanoHTTPD.Method.POST, "/v1/whitelist");
+        add(NanoHTTPD.Method.DELETE, "/v1/whitelist");
+    }
+
+    @Test
+    void matchesLiteralRoute() {
+        RouteTrie.Match match = trie.find("/v1/players", NanoHTTPD.Method.GET);
+
+        assertNotNull(match);
+        assertEquals("/v1/players", match.getRoute().getRoutePattern());
+        assertTrue(match.getParams().isEmpty());
+    }
+
+    @Test
+    void capturesPathParameters() {
+        RouteTrie.Match match = trie.find("/v1/players/Notch/inventory/12", NanoHTTPD.Method.GET);
+
+        assertNotNull(match);
+        assertEquals("/v1/players/{username}/inventory/{slot}", match.getRoute().getRoutePattern());
+        assertEquals(Map.of("username", "Notch", "slot", "12"), match.getParams());
+    }
+
+    @Test
+    void prefersLiteralOverParameter() {
+        assertEquals("/v1/backups/status", trie.find("/v1/backups/status", NanoHTTPD.Method.GET).getRoute().getRoutePattern());
+        assertEquals("/v1/backups/{name}", trie.find("/v1/backups/daily", NanoHTTPD.Method.GET).getRoute().getRoutePattern());
+    }
+
+    @Test
+    void fallsBackToParameterWhenLiteralBranchDoesNotMatch() {
+        add(NanoHTTPD.Method.GET, "/v1/worlds/{world}/players");
+        add(NanoHTTPD.Method.GET, "/v1/worlds/nether");
+
+        RouteTrie.Match match = trie.find("/v1/worlds/nether/players", NanoHTTPD.Method.GET);
+
+        assertNotNull(match);
+        assertEquals(Map.of("world", "nether"), match.getParams());
+    }
+
+    @Test
+    void ignoresTrailingAndDoubleSlashes() {
+        assertNotNull(trie.find("/v1/players/", NanoHTTPD.Method.GET));
+        assertNotNull(trie.find("//v1//players", NanoHTTPD.Method.GET));
+    }
+
+    @Test
+    void returnsNullForUnknownPathOrWrongMethod() {
+        assertNull(trie.find("/v1/unknown", NanoHTTPD.Method.GET));
+        assertNull(trie.find("/v1/players/Notch/extra/path", NanoHTTPD.Method.GET));
+        assertNull(trie.find("/v1/players/Notch/kick", NanoHTTPD.Method.GET));
+    }
+
+    @Test
+    void reportsAllowedMethodsForWrongMethod() {
+        assertEquals(Set.of(NanoHTTPD.Method.GET, NanoHTTPD.Method.POST, NanoHTTPD.Method.DELETE), trie.allowedMethods("/v1/whitelist"));
+        assertEquals(Set.of(NanoHTTPD.Method.POST), trie.allowedMethods("/v1/players/Notch/kick"));
+        assertTrue(trie.allowedMethods("/v1/unknown").isEmpty());
+    }
+
+    @Test
+    void tokenizesWithoutEmptySegments() {
+        assertArrayEquals(new String[] {"v1", "players"}, RouteDefinition.tokenize("/v1/players/"));
+        assertArrayEquals(new String[0], RouteDefinition.tokenize("/"));
+    }
+
+    private void add(final NanoHTTPD.Method method, final String pattern) {
+        trie.add(new RouteDefinition(method, pattern, params -> null));
+    }
+}
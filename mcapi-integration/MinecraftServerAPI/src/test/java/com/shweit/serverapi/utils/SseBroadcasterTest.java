@@ -0,0 +1,91 @@
+package com.shweit.serverapi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SseBroadcasterTest {
+    private final RingBuffer<String> buffer = new RingBuffer<>(16);
+    private final SseBroadcaster<String> broadcaster = new SseBroadcaster<>(RingBuffer.Entry::getValue, 16);
+
+    @Test
+    void replaysBacklogBeforeLiveEntries() throws IOException {
+        buffer.add("a");
+        buffer.add("b");
+
+        InputStream events = broadcaster.subscribe(() -> buffer.since(0, 100), () -> { });
+        broadcaster.publish(buffer.add("c"));
+
+        assertEquals("id: 1\ndata: b\n\n", next(events));
+        assertEquals("id: 2\ndata: c\n\n", next(events));
+    }
+
+    @Test
+    void keepsEntryPublishedWhileBacklogIsRead() throws IOException {
+        buffer.add("a");
+
+        // "b" is published after the subscription was registered but before the backlog is read
+        InputStream events = broadcaster.subscribe(() -> {
+            broadcaster.publish(buffer.add("b"));
+            return buffer.since(-1, 100);
+        }, () -> { });
+        broadcaster.publish(buffer.add("c"));
+
+        assertEquals("id: 0\ndata: a\n\n", next(events));
+        assertEquals("id: 1\ndata: b\n\n", next(events));
+        assertEquals("id: 2\ndata: c\n\n", next(events));
+    }
+
+    @Test
+    void keepsEntryMissingFromBacklog() throws IOException {
+        buffer.add("a");
+
+        // The entry reaches the subscriber, but the backlog was read before it was stored
+        List<RingBuffer.Entry<String>> backlog = buffer.since(-1, 100);
+        InputStream events = broadcaster.subscribe(() -> {
+            broadcaster.publish(buffer.add("b"));
+            return backlog;
+        }, () -> { });
+
+        assertEquals("id: 0\ndata: a\n\n", next(events));
+        assertEquals("id: 1\ndata: b\n\n", next(events));
+    }
+
+    @Test
+    void dropsOldestEntriesOfSlowSubscriber() throws IOException {
+        SseBroadcaster<String> small = new SseBroadcaster<>(RingBuffer.Entry::getValue, 2);
+        InputStream events = small.subscribe(List::of, () -> { });
+        small.publish(buffer.add("a"));
+        small.publish(buffer.add("b"));
+        small.publish(buffer.add("c"));
+
+        assertEquals("id: 1\ndata: b\n\n", next(events));
+        assertEquals("id: 2\ndata: c\n\n", next(events));
+    }
+
+    @Test
+    void closeUnsubscribesOnce() throws IOException {
+        AtomicInteger closed = new AtomicInteger();
+        InputStream events = broadcaster.subscribe(List::of, closed::incrementAndGet);
+        assertEquals(1, broadcaster.getSubscriberCount());
+
+        events.close();
+        events.close();
+
+        assertEquals(0, broadcaster.getSubscriberCount());
+        assertEquals(1, closed.get());
+        assertEquals(-1, events.read(new byte[16], 0, 16));
+    }
+
+    private static String next(final InputStream events) throws IOException {
+        byte[] data = new byte[256];
+        int count = events.read(data, 0, data.length);
+        return new String(data, 0, count, StandardCharsets.UTF_8);
+    }
+}
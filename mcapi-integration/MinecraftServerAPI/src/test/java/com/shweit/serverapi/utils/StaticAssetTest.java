@@ -0,0 +1,72 @@
+package com.shweit.serverapi.utils;
+
+import fi.iki.elonen.NanoHTTPD;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StaticAssetTest {
+    private static final StaticAsset ASSET = StaticAsset.load("/assets/index.html", "text/html");
+
+    @Test
+    void servesGzipOnlyWhenNegotiated() throws IOException {
+        NanoHTTPD.Response gzip = ASSET.toResponse(null, "gzip, deflate");
+        NanoHTTPD.Response refused = ASSET.toResponse(null, "gzip;q=0, deflate");
+        NanoHTTPD.Response wildcard = ASSET.toResponse(null, "*");
+        NanoHTTPD.Response identity = ASSET.toResponse(null, null);
+
+        assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+        assertTrue(gunzip(gzip).contains("swagger-ui"));
+        assertNull(refused.getHeader("Content-Encoding"));
+        assertTrue(text(refused).contains("swagger-ui"));
+        assertEquals("gzip", wildcard.getHeader("Content-Encoding"));
+        assertNull(identity.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", identity.getHeader("Vary"));
+    }
+
+    @Test
+    void givesEachEncodingItsOwnEtag() {
+        String gzipEtag = ASSET.toResponse(null, "gzip").getHeader("ETag");
+        String identityEtag = ASSET.toResponse(null, null).getHeader("ETag");
+
+        assertNotEquals(gzipEtag, identityEtag);
+        assertTrue(gzipEtag.startsWith("\"") && gzipEtag.endsWith("-gz\""));
+    }
+
+    @Test
+    void answersNotModifiedOnlyForTheSameVariant() {
+        String gzipEtag = ASSET.toResponse(null, "gzip").getHeader("ETag");
+        String identityEtag = ASSET.toResponse(null, null).getHeader("ETag");
+
+        assertEquals(304, ASSET.toResponse(gzipEtag, "gzip").getStatus().getRequestStatus());
+        assertEquals(304, ASSET.toResponse(identityEtag, null).getStatus().getRequestStatus());
+        assertEquals(200, ASSET.toResponse(gzipEtag, null).getStatus().getRequestStatus());
+        assertEquals(200, ASSET.toResponse(identityEtag, "gzip").getStatus().getRequestStatus());
+        assertEquals(304, ASSET.toResponse("*", "gzip").getStatus().getRequestStatus());
+    }
+
+    @Test
+    void returnsNullForMissingResource() {
+        assertNull(StaticAsset.load("/assets/missing.html", "text/html"));
+    }
+
+    private static String gunzip(final NanoHTTPD.Response response) throws IOException {
+        try (InputStream input = new GZIPInputStream(response.getData())) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String text(final NanoHTTPD.Response response) throws IOException {
+        try (InputStream input = response.getData()) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.shweit.serverapi.webhooks;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebHookEventRingTest {
+    private WebHookEventRing ring;
+    private final List<JSONObject> rendered = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ring = new WebHookEventRing(4);
+        ring.setRenderer(WebHookEnum.BLOCK_BREAK, slot -> new JSONObject().put("player", slot.player).put("type", slot.type));
+    }
+
+    @Test
+    void drainsPublishedEventsInOrder() {
+        capture("Steve", 1);
+        capture("Alex", 2);
+
+        assertEquals(2, ring.getPending());
+        assertEquals(2, ring.drain(rendered::add));
+        assertEquals("Steve", rendered.get(0).getString("player"));
+        assertEquals(2, rendered.get(1).getInt("type"));
+        assertEquals(0, ring.getPending());
+        assertEquals(0, ring.drain(rendered::add));
+    }
+
+    @Test
+    void doesNotDrainClaimedSlotBeforeItIsPublished() {
+        capture("Steve", 1);
+        WebHookEventRing.Slot slot = ring.claim();
+        slot.event = WebHookEnum.BLOCK_BREAK;
+
+        assertEquals(1, ring.drain(rendered::add));
+        assertEquals(1, rendered.size());
+    }
+
+    @Test
+    void dropsEventsWhenFull() {
+        for (int i = 0; i < 4; i++) {
+            capture("Steve", i);
+        }
+
+        assertNull(ring.claim());
+        assertEquals(1, ring.getDropped());
+
+        // Draining frees the slots again
+        assertEquals(4, ring.drain(rendered::add));
+        assertNotNull(ring.claim());
+        assertEquals(1, ring.getDropped());
+    }
+
+    @Test
+    void wrapsAroundTheRing() {
+        for (int i = 0; i < 10; i++) {
+            capture("Steve", i);
+            ring.drain(rendered::add);
+        }
+
+        assertEquals(10, rendered.size());
+        assertEquals(9, rendered.get(9).getInt("type"));
+        assertEquals(0, ring.getDropped());
+    }
+
+    @Test
+    void releasesReferencesOfDrainedSlots() {
+        WebHookEventRing.Slot slot = capture("Steve", 1);
+        slot.world = "world";
+
+        ring.drain(rendered::add);
+
+        assertNull(slot.player);
+        assertNull(slot.world);
+    }
+
+    @Test
+    void skipsEventsWithoutRenderer() {
+        WebHookEventRing.Slot slot = ring.claim();
+        slot.event = WebHookEnum.BLOCK_PLACE;
+        ring.publish();
+
+        assertEquals(1, ring.drain(rendered::add));
+        assertTrue(rendered.isEmpty());
+    }
+
+    @Test
+    void awaitReturnsAtOnceWhenEventsArePending() {
+        capture("Steve", 1);
+
+        long start = System.nanoTime();
+        ring.awaitPublished(TimeUnit.SECONDS.toNanos(10));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void publishWakesUpWaitingRenderThread() throws InterruptedException {
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            capture("Steve", 1);
+        });
+
+        long start = System.nanoTime();
+        producer.start();
+        ring.awaitPublished(TimeUnit.SECONDS.toNanos(10));
+        producer.join();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, ring.drain(rendered::add));
+    }
+
+    private WebHookEventRing.Slot capture(final String player, final int type) {
+        WebHookEventRing.Slot slot = ring.claim();
+        slot.event = WebHookEnum.BLOCK_BREAK;
+        slot.player = player;
+        slot.type = type;
+        ring.publish();
+        return slot;
+    }
+}
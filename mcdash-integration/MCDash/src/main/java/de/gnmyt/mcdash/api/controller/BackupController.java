@@ -2,6 +2,7 @@ package de.gnmyt.mcdash.api.controller;
 
 import de.gnmyt.mcdash.MinecraftDashboard;
 import de.gnmyt.mcdash.api.config.BackupManager;
+import de.gnmyt.mcdash.api.entities.BackupManifestEntry;
 import de.gnmyt.mcdash.panel.routes.filebrowser.FileRoute;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -11,21 +12,28 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
+import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 public class BackupController {
 
+    private static final String RESTORE_STAGING_FOLDER = ".backup-restore";
+    private static final String RESTORE_REPLACED_FOLDER = ".backup-replaced";
+
     private final BackupManager backupManager = MinecraftDashboard.getBackupManager();
     private final File backupFolder;
+    private final IncrementalBackupController incrementalController;
 
     /**
      * Basic constructor of the {@link BackupController}
      */
     public BackupController() {
         this.backupFolder = new File(backupManager.getBackupPath());
+        this.incrementalController = new IncrementalBackupController(backupFolder);
 
         if (!backupFolder.exists()) backupFolder.mkdirs();
     }
@@ -95,12 +103,60 @@ public class BackupController {
     }
 
     /**
-     * Deletes a backup
+     * Creates a new incremental backup. Only the chunks of files that changed since an earlier
+     * incremental backup are stored, the backup itself is a manifest of all files
+     * @param modeSuffix The modes of the backup
+     * @param paths The paths to back up
+     * @throws IOException An exception that will be thrown if the backup could not be created
+     */
+    public void createIncrementalBackup(String modeSuffix, File... paths) throws IOException {
+        File manifestFile = new File(backupFolder, (new Date().getTime()) + "-" + modeSuffix + IncrementalBackupController.MANIFEST_EXTENSION);
+
+        incrementalController.createBackup(manifestFile, paths);
+    }
+
+    /**
+     * Checks if a backup is incremental
+     * @param backup The backup file
+     * @return <code>true</code> if the backup is incremental, otherwise <code>false</code>
+     */
+    public boolean isIncremental(File backup) {
+        return backup.getName().endsWith(IncrementalBackupController.MANIFEST_EXTENSION);
+    }
+
+    /**
+     * Gets the name of a backup without its extension
+     * @param backup The backup file
+     * @return the name of the backup
+     */
+    public String getBackupName(File backup) {
+        return backup.getName().replace(".zip", "").replace(IncrementalBackupController.MANIFEST_EXTENSION, "");
+    }
+
+    /**
+     * Gets the size of the files in a backup
+     * @param backup The backup file
+     * @return the size of the backup
+     * @throws IOException An exception that will be thrown if the manifest of an incremental backup could not be read
+     */
+    public long getBackupSize(File backup) throws IOException {
+        if (!isIncremental(backup)) return backup.length();
+
+        long size = 0;
+        for (BackupManifestEntry entry : incrementalController.readManifest(backup)) size += entry.getSize();
+        return size;
+    }
+
+    /**
+     * Deletes a backup. The chunks of an incremental backup that no other backup uses are deleted as well
      * @param name The name of the backup
      * @throws IOException An exception that will be thrown if the backup could not be deleted
      */
     public void deleteBackup(String name) throws IOException {
-        Files.deleteIfExists(getBackup(name).toPath());
+        File backup = getBackup(name);
+        Files.deleteIfExists(backup.toPath());
+
+        if (isIncremental(backup)) incrementalController.collectGarbage();
     }
 
     /**
@@ -126,11 +182,18 @@ public class BackupController {
      * Restores a backup
      * @param name The name of the backup
      * @param haltAfterRestore <code>true</code> if the server should be halted after the restore, otherwise <code>false</code>
+     * @return <code>false</code> if an incremental backup is incomplete and nothing was restored, otherwise <code>true</code>
      */
-    public void restoreBackup(String name, boolean haltAfterRestore) {
-        if (!backupExists(name)) return;
+    public boolean restoreBackup(String name, boolean haltAfterRestore) {
+        if (!backupExists(name)) return false;
         byte[] buffer = new byte[1024];
 
+        if (isIncremental(getBackup(name))) {
+            if (!restoreIncrementalBackup(getBackup(name))) return false;
+            if (haltAfterRestore) Runtime.getRuntime().halt(0);
+            return true;
+        }
+
         try {
             clearOldFolders(new FileInputStream(getBackup(name)));
 
@@ -154,6 +217,71 @@ public class BackupController {
         }
 
         if (haltAfterRestore) Runtime.getRuntime().halt(0);
+        return true;
+    }
+
+    /**
+     * Restores an incremental backup. All chunks are checked and the backup is restored into a staging
+     * folder first; only then are the restored files swapped in, and put back if the swap fails
+     * @param manifestFile The manifest of the backup
+     * @return <code>false</code> if the backup could not be restored and nothing was changed, otherwise <code>true</code>
+     */
+    private boolean restoreIncrementalBackup(File manifestFile) {
+        File staging = new File(RESTORE_STAGING_FOLDER);
+        File replaced = new File(RESTORE_REPLACED_FOLDER);
+
+        try {
+            incrementalController.verifyBackup(manifestFile);
+
+            FileUtils.deleteDirectory(staging);
+            FileUtils.deleteDirectory(replaced);
+            incrementalController.restoreBackup(manifestFile, staging);
+        } catch (Exception e) {
+            MinecraftDashboard.getInstance().getLogger().log(Level.SEVERE, "Could not restore the backup " + manifestFile.getName() + ", nothing was changed", e);
+            FileUtils.deleteQuietly(staging);
+            return false;
+        }
+
+        File[] restored = staging.listFiles();
+        List<String> swapped = new ArrayList<>();
+        try {
+            Files.createDirectories(replaced.toPath());
+            for (File file : restored == null ? new File[0] : restored) {
+                File current = new File(file.getName());
+                if (current.exists()) Files.move(current.toPath(), new File(replaced, file.getName()).toPath());
+                swapped.add(file.getName());
+                Files.move(file.toPath(), current.toPath());
+            }
+        } catch (IOException e) {
+            MinecraftDashboard.getInstance().getLogger().log(Level.SEVERE, "Could not swap in the restored backup " + manifestFile.getName() + ", putting the old files back", e);
+            rollBackSwap(swapped, staging, replaced);
+            return false;
+        }
+
+        FileUtils.deleteQuietly(replaced);
+        FileUtils.deleteQuietly(staging);
+        return true;
+    }
+
+    /**
+     * Puts the files that were replaced by a restore back in place
+     * @param swapped The top level names that were already swapped, in order
+     * @param staging The staging folder the restored files came from
+     * @param replaced The folder holding the replaced files
+     */
+    private void rollBackSwap(List<String> swapped, File staging, File replaced) {
+        for (int i = swapped.size() - 1; i >= 0; i--) {
+            String name = swapped.get(i);
+            try {
+                File current = new File(name);
+                if (current.exists()) Files.move(current.toPath(), new File(staging, name).toPath());
+                File old = new File(replaced, name);
+                if (old.exists()) Files.move(old.toPath(), current.toPath());
+            } catch (IOException e) {
+                MinecraftDashboard.getInstance().getLogger().log(Level.SEVERE, "Could not put " + name + " back, it is left in " + replaced.getPath(), e);
+            }
+        }
+        FileUtils.deleteQuietly(staging);
     }
 
     /**
@@ -161,10 +289,15 @@ public class BackupController {
      * @return A list of all backups
      */
     public ArrayList<File> getBackups() {
-        File[] backupFiles = FileUtils.listFiles(backupFolder, new String[]{"zip"}, true).toArray(new File[0]);
-        Arrays.sort(backupFiles);
+        ArrayList<File> backupFiles = new ArrayList<>(FileUtils.listFiles(backupFolder, new String[]{"zip"}, true));
+
+        File[] manifests = backupFolder.listFiles(file -> isIncremental(file));
+        if (manifests != null) backupFiles.addAll(Arrays.asList(manifests));
+
+        File[] sortedFiles = backupFiles.toArray(new File[0]);
+        Arrays.sort(sortedFiles);
 
-        return new ArrayList<>(Arrays.asList(backupFiles));
+        return new ArrayList<>(Arrays.asList(sortedFiles));
     }
 
     /**
@@ -173,7 +306,7 @@ public class BackupController {
      * @return The backup
      */
     public File getBackup(String name) {
-        FileFilter fileFilter = file -> file.getName().startsWith(name + "-") && file.getName().endsWith(".zip");
+        FileFilter fileFilter = file -> file.getName().startsWith(name + "-") && (file.getName().endsWith(".zip") || isIncremental(file));
         File[] backupFiles = backupFolder.listFiles(fileFilter);
         if (backupFiles == null || backupFiles.length == 0) return null;
         return backupFiles[0];
@@ -0,0 +1,443 @@
+package de.gnmyt.mcdash.api.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.gnmyt.mcdash.api.entities.BackupManifestEntry;
+
+import java.io.*;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Creates and restores incremental backups. The content of every file is split into chunks at
+ * content-defined boundaries; every chunk is stored once in the chunk folder, named after its
+ * SHA-256 hash, and a backup is only a manifest listing the chunks of every file.
+ */
+public class IncrementalBackupController {
+
+    public static final String MANIFEST_EXTENSION = ".manifest.json";
+
+    private static final int AVERAGE_CHUNK_BITS = 18;
+    private static final int MIN_CHUNK_SIZE = (1 << AVERAGE_CHUNK_BITS) / 4;
+    private static final int MAX_CHUNK_SIZE = (1 << AVERAGE_CHUNK_BITS) * 4;
+    private static final long CHUNK_MASK = ((1L << AVERAGE_CHUNK_BITS) - 1) << (Long.SIZE - AVERAGE_CHUNK_BITS);
+    private static final long[] GEAR = new long[256];
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4D696E6563726166L);
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = random.nextLong();
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final File backupFolder;
+    private final File chunkFolder;
+
+    /**
+     * Basic constructor of the {@link IncrementalBackupController}
+     * @param backupFolder The folder the manifests are stored in
+     */
+    public IncrementalBackupController(File backupFolder) {
+        this.backupFolder = backupFolder;
+        this.chunkFolder = new File(backupFolder, "chunks");
+    }
+
+    /**
+     * Creates a new incremental backup. Files whose size and modification time did not change since
+     * the latest incremental backup are not read again.
+     * @param manifestFile The file the manifest should be written to
+     * @param paths The paths to back up
+     * @throws IOException An exception that will be thrown if the backup could not be created
+     */
+    public void createBackup(File manifestFile, File... paths) throws IOException {
+        Map<String, BackupManifestEntry> previousEntries = new HashMap<>();
+        File latest = getLatestManifest();
+        if (latest != null) {
+            for (BackupManifestEntry entry : readManifest(latest)) previousEntries.put(entry.getPath(), entry);
+        }
+
+        List<BackupManifestEntry> entries = new ArrayList<>();
+        ChunkWriter writer = new ChunkWriter();
+
+        // Prevents the garbage collection of a deletion from removing chunks before the manifest references them
+        lock.readLock().lock();
+        try {
+            for (File file : paths) {
+                if (file.exists()) addFile(file, file.getName(), previousEntries, writer, entries);
+            }
+            writeManifest(manifestFile, entries);
+        } finally {
+            writer.deflater.end();
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a file or directory to the manifest entries
+     * @param file The file to add
+     * @param path The path of the file inside the backup
+     * @param previousEntries The entries of the latest incremental backup
+     * @param writer The writer of the chunks
+     * @param entries The entries of the new manifest
+     * @throws IOException An exception that will be thrown if a chunk could not be written
+     */
+    private void addFile(File file, String path, Map<String, BackupManifestEntry> previousEntries, ChunkWriter writer,
+                         List<BackupManifestEntry> entries) throws IOException {
+        if (file.isDirectory()) {
+            if (file.getAbsoluteFile().equals(backupFolder.getAbsoluteFile())) return;
+            entries.add(new BackupManifestEntry(path, true, 0, file.lastModified(), Collections.<String>emptyList()));
+
+            for (File child : Objects.requireNonNull(file.listFiles())) addFile(child, path + "/" + child.getName(), previousEntries, writer, entries);
+            return;
+        }
+
+        BackupManifestEntry previous = previousEntries.get(path);
+        if (previous != null && previous.getSize() == file.length() && previous.getLastModified() == file.lastModified()
+                && previous.getChunks().stream().allMatch(hash -> getChunkFile(hash).exists())) {
+            entries.add(previous);
+            return;
+        }
+
+        // Only a file that vanished or is locked is skipped, errors while writing the chunks fail the backup
+        InputStream source;
+        try {
+            source = Files.newInputStream(file.toPath());
+        } catch (FileSystemException e) {
+            return;
+        }
+
+        try (InputStream inputStream = source) {
+            List<String> chunks = new ArrayList<>();
+            long size = 0;
+
+            byte[] chunk = writer.chunk;
+            byte[] readBuffer = writer.readBuffer;
+            int length = 0;
+            long hash = 0;
+            int read;
+
+            while ((read = readSource(inputStream, readBuffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    chunk[length++] = readBuffer[i];
+                    hash = (hash << 1) + GEAR[readBuffer[i] & 0xFF];
+
+                    if ((length >= MIN_CHUNK_SIZE && (hash & CHUNK_MASK) == 0) || length == MAX_CHUNK_SIZE) {
+                        chunks.add(writer.write(chunk, length));
+                        size += length;
+                        length = 0;
+                        hash = 0;
+                    }
+                }
+            }
+
+            if (length > 0) {
+                chunks.add(writer.write(chunk, length));
+                size += length;
+            }
+
+            entries.add(new BackupManifestEntry(path, false, size, file.lastModified(), chunks));
+        } catch (SourceReadException ignored) { }
+    }
+
+    /**
+     * Reads from a file that is backed up
+     * @param inputStream The stream of the file
+     * @param buffer The buffer to read into
+     * @return the number of bytes read or <code>-1</code> at the end of the file
+     * @throws SourceReadException An exception that will be thrown if the file could not be read
+     */
+    private static int readSource(InputStream inputStream, byte[] buffer) throws SourceReadException {
+        try {
+            return inputStream.read(buffer);
+        } catch (IOException e) {
+            throw new SourceReadException(e);
+        }
+    }
+
+    /**
+     * Checks that every chunk of a backup exists and matches its hash, without writing anything
+     * @param manifestFile The manifest of the backup
+     * @throws IOException An exception that will be thrown if a chunk is missing or corrupt
+     */
+    public void verifyBackup(File manifestFile) throws IOException {
+        MessageDigest digest = sha256();
+        Inflater inflater = new Inflater(true);
+        Set<String> verified = new HashSet<>();
+
+        lock.readLock().lock();
+        try {
+            for (BackupManifestEntry entry : readManifest(manifestFile)) {
+                for (String hash : entry.getChunks()) {
+                    if (verified.add(hash)) readChunk(hash, digest, inflater);
+                }
+            }
+        } finally {
+            inflater.end();
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Restores an incremental backup into the server directory
+     * @param manifestFile The manifest of the backup
+     * @param target The folder the files should be restored to
+     * @throws IOException An exception that will be thrown if a chunk is missing or corrupt
+     */
+    public void restoreBackup(File manifestFile, File target) throws IOException {
+        MessageDigest digest = sha256();
+        Inflater inflater = new Inflater(true);
+        Path root = target.toPath().toAbsolutePath().normalize();
+
+        lock.readLock().lock();
+        try {
+            for (BackupManifestEntry entry : readManifest(manifestFile)) {
+                Path path = root.resolve(entry.getPath()).normalize();
+                if (!path.startsWith(root)) throw new IOException("Backup entry outside of the server folder: " + entry.getPath());
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                    continue;
+                }
+
+                if (path.getParent() != null) Files.createDirectories(path.getParent());
+                try (OutputStream outputStream = Files.newOutputStream(path)) {
+                    for (String hash : entry.getChunks()) outputStream.write(readChunk(hash, digest, inflater));
+                }
+                path.toFile().setLastModified(entry.getLastModified());
+            }
+        } finally {
+            inflater.end();
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes all chunks that are not referenced by any manifest anymore
+     * @throws IOException An exception that will be thrown if a manifest could not be read
+     */
+    public void collectGarbage() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Set<String> referenced = new HashSet<>();
+            File[] manifests = backupFolder.listFiles((dir, name) -> name.endsWith(MANIFEST_EXTENSION));
+            for (File manifest : manifests != null ? manifests : new File[0]) {
+                for (BackupManifestEntry entry : readManifest(manifest)) referenced.addAll(entry.getChunks());
+            }
+
+            File[] prefixes = chunkFolder.listFiles(File::isDirectory);
+            for (File prefix : prefixes != null ? prefixes : new File[0]) {
+                for (File chunk : Objects.requireNonNull(prefix.listFiles())) {
+                    if (!referenced.contains(chunk.getName())) Files.deleteIfExists(chunk.toPath());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the latest manifest
+     * @return the latest manifest or <code>null</code> if there is no incremental backup
+     */
+    private File getLatestManifest() {
+        File[] manifests = backupFolder.listFiles((dir, name) -> name.endsWith(MANIFEST_EXTENSION));
+        if (manifests == null || manifests.length == 0) return null;
+        Arrays.sort(manifests);
+        return manifests[manifests.length - 1];
+    }
+
+    /**
+     * Writes a manifest. It is written to a temporary file first, so a half-written manifest never exists
+     * @param manifestFile The manifest file
+     * @param entries The entries of the manifest
+     * @throws IOException An exception that will be thrown if the manifest could not be written
+     */
+    private void writeManifest(File manifestFile, List<BackupManifestEntry> entries) throws IOException {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("created", new Date().getTime());
+        ArrayNode entryArray = root.putArray("entries");
+
+        for (BackupManifestEntry entry : entries) {
+            ObjectNode node = entryArray.addObject();
+            node.put("path", entry.getPath());
+            node.put("directory", entry.isDirectory());
+            node.put("size", entry.getSize());
+            node.put("lastModified", entry.getLastModified());
+            ArrayNode chunks = node.putArray("chunks");
+            entry.getChunks().forEach(chunks::add);
+        }
+
+        File temporaryFile = new File(manifestFile.getParentFile(), manifestFile.getName() + ".tmp");
+        mapper.writeValue(temporaryFile, root);
+        Files.move(temporaryFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads the entries of a manifest
+     * @param manifestFile The manifest file
+     * @return the entries of the manifest
+     * @throws IOException An exception that will be thrown if the manifest could not be read
+     */
+    public List<BackupManifestEntry> readManifest(File manifestFile) throws IOException {
+        List<BackupManifestEntry> entries = new ArrayList<>();
+
+        for (JsonNode node : mapper.readTree(manifestFile).path("entries")) {
+            List<String> chunks = new ArrayList<>();
+            node.path("chunks").forEach(chunk -> chunks.add(chunk.asText()));
+
+            entries.add(new BackupManifestEntry(node.path("path").asText(), node.path("directory").asBoolean(),
+                    node.path("size").asLong(), node.path("lastModified").asLong(), chunks));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads a chunk and verifies its hash
+     * @param hash The hash of the chunk
+     * @param digest The digest used to verify the chunk
+     * @param inflater The inflater used for deflated chunks
+     * @return the content of the chunk
+     * @throws IOException An exception that will be thrown if the chunk is missing or corrupt
+     */
+    private byte[] readChunk(String hash, MessageDigest digest, Inflater inflater) throws IOException {
+        File chunkFile = getChunkFile(hash);
+        if (!chunkFile.isFile()) throw new IOException("Chunk " + hash + " is missing");
+
+        byte[] stored = Files.readAllBytes(chunkFile.toPath());
+        if (stored.length == 0) throw new IOException("Chunk " + hash + " is empty");
+
+        byte[] data;
+        if (stored[0] == DEFLATED) {
+            inflater.reset();
+            inflater.setInput(stored, 1, stored.length - 1);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(stored.length * 2);
+            byte[] buffer = new byte[64 * 1024];
+
+            try {
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(buffer);
+                    if (count == 0 && inflater.needsInput()) throw new IOException("Chunk " + hash + " is truncated");
+                    outputStream.write(buffer, 0, count);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Chunk " + hash + " is corrupt", e);
+            }
+            data = outputStream.toByteArray();
+        } else {
+            data = Arrays.copyOfRange(stored, 1, stored.length);
+        }
+
+        digest.reset();
+        if (!hash.equals(toHex(digest.digest(data)))) throw new IOException("Chunk " + hash + " does not match its hash");
+        return data;
+    }
+
+    /**
+     * Gets the file of a chunk
+     * @param hash The hash of the chunk
+     * @return the file of the chunk
+     */
+    private File getChunkFile(String hash) {
+        return new File(new File(chunkFolder, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * Converts bytes to a hex string
+     * @param bytes The bytes to convert
+     * @return the hex string
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte value : bytes) builder.append(String.format("%02x", value));
+        return builder.toString();
+    }
+
+    /**
+     * Creates a new SHA-256 digest
+     * @return the digest
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Thrown if a file that is backed up could not be read, in contrast to errors while writing the backup
+     */
+    private static class SourceReadException extends IOException {
+
+        private SourceReadException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Stores chunks that are not in the chunk folder yet
+     */
+    private class ChunkWriter {
+
+        private final MessageDigest digest = sha256();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final byte[] buffer = new byte[MAX_CHUNK_SIZE + 64];
+        private final byte[] chunk = new byte[MAX_CHUNK_SIZE];
+        private final byte[] readBuffer = new byte[64 * 1024];
+
+        /**
+         * Stores a chunk unless a chunk with the same content exists already.
+         * Chunks are only kept deflated if that saves at least a tenth of their size
+         * @param data The buffer holding the chunk
+         * @param length The length of the chunk
+         * @return the hash of the chunk
+         * @throws IOException An exception that will be thrown if the chunk could not be written
+         */
+        private String write(byte[] data, int length) throws IOException {
+            digest.reset();
+            digest.update(data, 0, length);
+            String hash = toHex(digest.digest());
+
+            File chunkFile = getChunkFile(hash);
+            if (chunkFile.exists()) return hash;
+
+            deflater.reset();
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            int compressedLength = deflater.deflate(buffer, 1, buffer.length - 1);
+            boolean deflated = deflater.finished() && compressedLength < length - length / 10;
+
+            chunkFile.getParentFile().mkdirs();
+            File temporaryFile = new File(chunkFile.getParentFile(), hash + ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(temporaryFile.toPath())) {
+                if (deflated) {
+                    buffer[0] = DEFLATED;
+                    outputStream.write(buffer, 0, compressedLength + 1);
+                } else {
+                    outputStream.write(RAW);
+                    outputStream.write(data, 0, length);
+                }
+            }
+            Files.move(temporaryFile.toPath(), chunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            return hash;
+        }
+    }
+
+}
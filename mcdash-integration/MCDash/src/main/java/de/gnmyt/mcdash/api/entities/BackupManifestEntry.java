@@ -0,0 +1,74 @@
+package de.gnmyt.mcdash.api.entities;
+
+import java.util.List;
+
+public class BackupManifestEntry {
+
+    private final String path;
+    private final boolean directory;
+    private final long size;
+    private final long lastModified;
+    private final List<String> chunks;
+
+    /**
+     * Constructor of the {@link BackupManifestEntry}
+     *
+     * @param path         The path of the file, relative to the server directory
+     * @param directory    <code>true</code> if the entry is a directory, otherwise <code>false</code>
+     * @param size         The size of the file
+     * @param lastModified The time the file was last modified
+     * @param chunks       The hashes of the chunks that make up the content of the file, in order
+     */
+    public BackupManifestEntry(String path, boolean directory, long size, long lastModified, List<String> chunks) {
+        this.path = path;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Gets the path of the file
+     *
+     * @return the path of the file, relative to the server directory
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Checks if the entry is a directory
+     *
+     * @return <code>true</code> if the entry is a directory, otherwise <code>false</code>
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the size of the file
+     *
+     * @return the size of the file
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the time the file was last modified
+     *
+     * @return the time the file was last modified
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the hashes of the chunks of the file
+     *
+     * @return the hashes of the chunks of the file
+     */
+    public List<String> getChunks() {
+        return chunks;
+    }
+}
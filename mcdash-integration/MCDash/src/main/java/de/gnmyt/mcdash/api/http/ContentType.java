@@ -54,7 +54,12 @@ public enum ContentType {
     /**
      * The woff2 content type
      */
-    WOFF2("font/woff2", "woff2");
+    WOFF2("font/woff2", "woff2"),
+
+    /**
+     * The zip content type
+     */
+    ZIP("application/zip", "zip");
 
     private final String type;
     private final String fileEnding;
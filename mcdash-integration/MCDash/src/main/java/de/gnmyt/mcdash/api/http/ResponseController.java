@@ -1,14 +1,27 @@
 package de.gnmyt.mcdash.api.http;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Collections;
 
 public class ResponseController {
 
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
     private HttpExchange exchange;
     private Response response = new Response();
 
@@ -136,16 +149,7 @@ public class ResponseController {
      */
     public void send() {
         OutputStream os = exchange.getResponseBody();
-        response
-                .addHeader("Server", "DashboardWrapper")
-                .addHeader("Content-Type", response.getContentType().getType())
-                .addHeader("Access-Control-Allow-Origin", "*");
-
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS"))
-            response.addHeader("Access-Control-Allow-Methods", "GET, OPTIONS, POST")
-                    .addHeader("Access-Control-Allow-Headers", "*");
-
-        response.getHeaders().forEach((key, value) -> exchange.getResponseHeaders().put(key, Collections.singletonList(value)));
+        prepareHeaders();
 
         byte[] bs = response.getBinaryOutput() == null ? response.getOutput().getBytes(StandardCharsets.UTF_8)
                 : response.getBinaryOutput();
@@ -162,6 +166,172 @@ public class ResponseController {
         }
     }
 
+    /**
+     * Streams a file to the client without loading it into memory.
+     * Answers conditional requests (If-None-Match, If-Modified-Since) with 304 and
+     * a single byte range (Range, If-Range) with 206, so interrupted downloads can be resumed
+     * @param file The file you want to send
+     */
+    public void file(File file) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        Headers requestHeaders = exchange.getRequestHeaders();
+
+        response.addHeader("Accept-Ranges", "bytes")
+                .addHeader("ETag", etag)
+                .addHeader("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(lastModified)));
+
+        if (isNotModified(requestHeaders, etag, lastModified)) {
+            response.setCode(304);
+            prepareHeaders();
+            try {
+                exchange.sendResponseHeaders(304, -1L);
+                exchange.getResponseBody().close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+
+        long start = 0;
+        long count = length;
+        String range = requestHeaders.getFirst("Range");
+        if (range != null && isRangeCurrent(requestHeaders.getFirst("If-Range"), etag, lastModified)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds != null && bounds.length == 0) {
+                response.setCode(416);
+                response.addHeader("Content-Range", "bytes */" + length);
+                writeToOutput("");
+                send();
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                count = bounds[1] - bounds[0] + 1;
+                response.setCode(206);
+                response.addHeader("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+            }
+        }
+
+        prepareHeaders();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             OutputStream os = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(response.getCode(), count == 0 ? -1L : count);
+
+            WritableByteChannel target = Channels.newChannel(os);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) break;
+                position += sent;
+                remaining -= sent;
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Checks the If-None-Match and If-Modified-Since headers of a request
+     * @param headers The request headers
+     * @param etag The entity tag of the file
+     * @param lastModified The last modification time of the file
+     * @return <code>true</code> if the client already has the current version of the file
+     */
+    private boolean isNotModified(Headers headers, String etag, long lastModified) {
+        String ifNoneMatch = headers.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.replaceFirst("^W/", "").equals(etag)) return true;
+            }
+            return false;
+        }
+
+        Long since = parseDate(headers.getFirst("If-Modified-Since"));
+        return since != null && lastModified / 1000 <= since;
+    }
+
+    /**
+     * Checks whether the If-Range header of a request still matches the file
+     * @param ifRange The value of the If-Range header, or <code>null</code>
+     * @param etag The entity tag of the file
+     * @param lastModified The last modification time of the file
+     * @return <code>true</code> if the requested range can be sent
+     */
+    private boolean isRangeCurrent(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"")) return ifRange.equals(etag);
+        if (ifRange.startsWith("W/")) return false;
+
+        Long date = parseDate(ifRange);
+        return date != null && date == lastModified / 1000;
+    }
+
+    /**
+     * Parses a Range header with a single byte range
+     * @param range The value of the Range header
+     * @param length The length of the file
+     * @return the first and last byte of the range, an empty array if the range can not be satisfied
+     * or <code>null</code> if the header is invalid or requests multiple ranges and should be ignored
+     */
+    private long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.contains(",")) return null;
+
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) return new long[0];
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (end < start) return null;
+            if (start >= length) return new long[0];
+            return new long[]{start, Math.min(end, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a HTTP date
+     * @param value The date you want to parse, may be <code>null</code>
+     * @return the date in seconds since the epoch, or <code>null</code> if it could not be parsed
+     */
+    private Long parseDate(String value) {
+        if (value == null) return null;
+        try {
+            return ZonedDateTime.parse(value.trim(), HTTP_DATE).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the default headers and copies all response headers to the exchange
+     */
+    private void prepareHeaders() {
+        response
+                .addHeader("Server", "DashboardWrapper")
+                .addHeader("Content-Type", response.getContentType().getType())
+                .addHeader("Access-Control-Allow-Origin", "*");
+
+        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS"))
+            response.addHeader("Access-Control-Allow-Methods", "GET, OPTIONS, POST")
+                    .addHeader("Access-Control-Allow-Headers", "*");
+
+        response.getHeaders().forEach((key, value) -> exchange.getResponseHeaders().put(key, Collections.singletonList(value)));
+    }
+
     public Response getResponse() {
         return response;
     }
@@ -3,9 +3,9 @@ package de.gnmyt.mcdash.panel.routes.backups;
 import de.gnmyt.mcdash.MinecraftDashboard;
 import de.gnmyt.mcdash.api.controller.BackupController;
 import de.gnmyt.mcdash.api.handler.DefaultHandler;
+import de.gnmyt.mcdash.api.http.ContentType;
 import de.gnmyt.mcdash.api.http.Request;
 import de.gnmyt.mcdash.api.http.ResponseController;
-import org.apache.commons.io.FileUtils;
 
 public class BackupDownloadRoute extends DefaultHandler {
 
@@ -33,8 +33,14 @@ public class BackupDownloadRoute extends DefaultHandler {
             return;
         }
 
+        if (controller.isIncremental(controller.getBackup(backupId))) {
+            response.code(400).message("Incremental backups can not be downloaded");
+            return;
+        }
+
+        response.type(ContentType.ZIP);
         response.header("Content-Disposition", "attachment; filename=Backup.zip");
 
-        response.bytes(FileUtils.readFileToByteArray(controller.getBackup(backupId)));
+        response.file(controller.getBackup(backupId));
     }
 }
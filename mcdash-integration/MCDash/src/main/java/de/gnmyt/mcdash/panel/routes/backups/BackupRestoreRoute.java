@@ -34,7 +34,10 @@ public class BackupRestoreRoute extends DefaultHandler {
             return;
         }
 
-        controller.restoreBackup(backupId, restart);
+        if (!controller.restoreBackup(backupId, restart)) {
+            response.code(500).message("The backup is incomplete or corrupt and was not restored");
+            return;
+        }
         response.message("Backup restored");
     }
 }
@@ -77,9 +77,10 @@ public class BackupRoute extends DefaultHandler {
         try {
             for (File backup : controller.getBackups())
                 new NodeBuilder(backups)
-                        .add("id", Long.parseLong(backup.getName().replace(".zip", "").split("-")[0]))
-                        .add("modes", backup.getName().replace(".zip", "").split("-")[1].split(""))
-                        .add("size", backup.length())
+                        .add("id", Long.parseLong(controller.getBackupName(backup).split("-")[0]))
+                        .add("modes", controller.getBackupName(backup).split("-")[1].split(""))
+                        .add("size", controller.getBackupSize(backup))
+                        .add("incremental", controller.isIncremental(backup))
                         .register();
         } catch (Exception e) {
             response.code(500).message("The backups are not well formatted. Please check your backups folder");
@@ -108,7 +109,9 @@ public class BackupRoute extends DefaultHandler {
             return;
         }
 
-        controller.createBackup(mode, directories.toArray(new File[0]));
+        if (getBooleanFromBody(request, "incremental")) {
+            controller.createIncrementalBackup(mode, directories.toArray(new File[0]));
+        } else controller.createBackup(mode, directories.toArray(new File[0]));
 
         response.message("Backup created");
     }
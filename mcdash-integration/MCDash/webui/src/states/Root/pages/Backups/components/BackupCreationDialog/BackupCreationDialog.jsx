@@ -21,6 +21,7 @@ export const BackupCreationDialog = ({open, setOpen, setLoading, currentModes =
     const {updateBackups} = useContext(BackupContext);
 
     const [modes, setModes] = useState([]);
+    const [incremental, setIncremental] = useState(false);
     const [finished, setFinished] = useState(false);
 
     const toggleMode = (mode) => {
@@ -36,7 +37,7 @@ export const BackupCreationDialog = ({open, setOpen, setLoading, currentModes =
         if (modes.length === 0) return;
         setOpen(false);
         setLoading(true);
-        request("backups/", "PUT", {mode: modes.join("")}, {}, false).then(() => {
+        request("backups/", "PUT", {mode: modes.join(""), incremental}, {}, false).then(() => {
             setFinished(true);
             setLoading(false);
             updateBackups();
@@ -84,6 +85,10 @@ export const BackupCreationDialog = ({open, setOpen, setLoading, currentModes =
                             <FormControlLabel
                                 control={<Checkbox checked={modes.includes("4")} onChange={() => toggleMode("4")}/>}
                                 label={t("backup.mode.logs")} disabled={modes.includes("0")}/>
+
+                            {!actionMode && <FormControlLabel
+                                control={<Checkbox checked={incremental} onChange={() => setIncremental(!incremental)}/>}
+                                label={t("backup.incremental")}/>}
                         </Stack>
                     </DialogContent>
                     <DialogActions>